@@ -0,0 +1,144 @@
+package de.lmu.ifi.medien.mime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.android.BaseLoaderCallback;
+import org.opencv.android.LoaderCallbackInterface;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.imgproc.Imgproc;
+
+import android.test.AndroidTestCase;
+
+/**
+ * Compares ContourTracer with Imgproc.findContours() (RETR_CCOMP, CHAIN_APPROX_SIMPLE) on hand masks and their skeletons: every contour
+ * must have the same points, in the same order and with the same start point, and the same hole flag. The order of the contours in the
+ * list isn't compared, HandDetector selects them by area and length.
+ * Needs the OpenCV Manager, like the app.
+ */
+public class ContourTracerParityTest extends AndroidTestCase {
+
+	private static final int COLS = 160;
+	private static final int ROWS = 120;
+	private static final int MASKS = 200;
+
+	private final Random mRandom = new Random(4);
+	private final ContourTracer mTracer = new ContourTracer();
+	private final ContourList mContours = new ContourList();
+	private final ZhangSuenThinning mThinning = new ZhangSuenThinning();
+
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		final CountDownLatch latch = new CountDownLatch(1);
+		final boolean[] success = new boolean[1];
+		OpenCVLoader.initAsync(OpenCVLoader.OPENCV_VERSION_2_4_9, this.getContext(), new BaseLoaderCallback(this.getContext()) {
+			@Override
+			public void onManagerConnected(int status) {
+				success[0] = status == LoaderCallbackInterface.SUCCESS;
+				latch.countDown();
+			}
+		});
+		assertTrue("OpenCV Manager not connected", latch.await(30, TimeUnit.SECONDS));
+		assertTrue("OpenCV not loaded", success[0]);
+	}
+
+	public void testHandMasks() {
+		for (int n = 0; n < MASKS; ++n) {
+			this.assertSameContours(this.randomHand());
+		}
+	}
+
+	public void testSkeletons() {
+		for (int n = 0; n < MASKS; ++n) {
+			byte[] mask = this.randomHand();
+			mThinning.thin(mask, ROWS, COLS);
+			this.assertSameContours(mask);
+		}
+	}
+
+
+	private void assertSameContours(byte[] mask) {
+		Mat image = new Mat(ROWS, COLS, CvType.CV_8UC1);
+		image.put(0, 0, mask);
+		ArrayList<MatOfPoint> contours = new ArrayList<>();
+		Mat hierarchy = new Mat();
+		Imgproc.findContours(image, contours, hierarchy, Imgproc.RETR_CCOMP, Imgproc.CHAIN_APPROX_SIMPLE);
+		ArrayList<String> expected = new ArrayList<>();
+		for (int i = 0; i < contours.size(); ++i) {
+			int[] points = new int[2 * (int) contours.get(i).total()];
+			contours.get(i).get(0, 0, points);
+			expected.add(describe(points, 0, points.length, hierarchy.get(0, i)[3] >= 0));
+			contours.get(i).release();
+		}
+		image.release();
+		hierarchy.release();
+
+		mContours.clear();
+		mTracer.find(mask.clone(), COLS, 0, 0, COLS, ROWS, mContours);
+		ArrayList<String> actual = new ArrayList<>();
+		for (int i = 0; i < mContours.size(); ++i) {
+			int offset = mContours.getOffset(i);
+			actual.add(describe(mContours.getPoints(), offset, offset + 2 * mContours.getCount(i), mContours.isHole(i)));
+		}
+
+		Collections.sort(expected);
+		Collections.sort(actual);
+		assertEquals(expected, actual);
+	}
+
+	private static String describe(int[] points, int start, int end, boolean hole) {
+		return (hole ? "hole " : "outer ") + Arrays.toString(Arrays.copyOfRange(points, start, end));
+	}
+
+	/**
+	 * Creates the mask of a hand: an elliptic palm with up to five fingers at random angles, sometimes with a hole (like the O and OK
+	 * poses) and a little noise
+	 */
+	private byte[] randomHand() {
+		byte[] mask = new byte[COLS * ROWS];
+		int cx = 50 + mRandom.nextInt(COLS - 100);
+		int cy = 45 + mRandom.nextInt(ROWS - 70);
+		int rx = 12 + mRandom.nextInt(15);
+		int ry = 12 + mRandom.nextInt(15);
+		fillEllipse(mask, cx, cy, rx, ry, (byte) -1);
+		int fingers = mRandom.nextInt(6);
+		for (int f = 0; f < fingers; ++f) {
+			double angle = Math.PI * (0.1 + 0.8 * mRandom.nextDouble());
+			int length = 20 + mRandom.nextInt(25);
+			int halfWidth = 2 + mRandom.nextInt(4);
+			for (int t = 0; t <= length; ++t) {
+				int x = cx + (int) Math.round((rx + t) * Math.cos(angle));
+				int y = cy - (int) Math.round((ry + t) * Math.sin(angle));
+				fillEllipse(mask, x, y, halfWidth, halfWidth, (byte) -1);
+			}
+		}
+		if (mRandom.nextInt(3) == 0) {
+			fillEllipse(mask, cx + mRandom.nextInt(rx) - rx / 2, cy, 3 + mRandom.nextInt(rx / 2), 3 + mRandom.nextInt(ry / 2), (byte) 0);
+		}
+		for (int k = COLS * ROWS / 400; k > 0; --k) {
+			mask[mRandom.nextInt(COLS * ROWS)] ^= -1;
+		}
+		return mask;
+	}
+
+	private static void fillEllipse(byte[] mask, int cx, int cy, int rx, int ry, byte value) {
+		for (int y = Math.max(0, cy - ry); y <= Math.min(ROWS - 1, cy + ry); ++y) {
+			for (int x = Math.max(0, cx - rx); x <= Math.min(COLS - 1, cx + rx); ++x) {
+				double dx = (double) (x - cx) / rx, dy = (double) (y - cy) / ry;
+				if (dx * dx + dy * dy <= 1) {
+					mask[y * COLS + x] = value;
+				}
+			}
+		}
+	}
+
+}
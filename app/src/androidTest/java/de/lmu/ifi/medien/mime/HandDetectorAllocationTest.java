@@ -0,0 +1,159 @@
+package de.lmu.ifi.medien.mime;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.android.BaseLoaderCallback;
+import org.opencv.android.LoaderCallbackInterface;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import android.os.Debug;
+import android.test.AndroidTestCase;
+
+import de.lmu.ifi.medien.mime.PoseRecognizer.Result;
+
+/**
+ * Checks that HandDetector processes frames without allocating on the Java heap once the FrameContext has grown to the size of the hand
+ * (NV21 input, serial segmentation, incremental thinning, no deferred recognition, no recognizer).
+ * Needs the OpenCV Manager, like the app.
+ */
+public class HandDetectorAllocationTest extends AndroidTestCase {
+
+	private static final int WIDTH = 640;
+	private static final int HEIGHT = 480;
+	private static final int WARMUP_FRAMES = 20;
+	private static final int FRAMES = 50;
+
+
+	public void testSteadyStateFramesAllocateNothing() throws InterruptedException {
+		this.loadOpenCV();
+
+		HandDetector detector = HandDetector.getInstance();
+		SyntheticFrameSource background = new SyntheticFrameSource(false);
+		SyntheticFrameSource hand = new SyntheticFrameSource(true);
+		try {
+			detector.setBackground(true);
+			detector.detect(background, true);
+			for (int i = 0; i < WARMUP_FRAMES; ++i) {
+				detector.detect(hand, true);
+			}
+
+			long allocatedBytes = detector.getAllocatedBytes();
+			Debug.resetThreadAllocCount();
+			Debug.resetThreadAllocSize();
+			Debug.startAllocCounting();
+			boolean nonZero = true;
+			for (int i = 0; i < FRAMES; ++i) {
+				Result result = detector.detect(hand, true);
+				nonZero &= result.nonZero;
+			}
+			Debug.stopAllocCounting();
+			int bytes = Debug.getThreadAllocSize();
+			int count = Debug.getThreadAllocCount();
+
+			assertTrue("Hand not detected", nonZero);
+			assertEquals("Allocated " + count + " objects", 0, bytes);
+			assertEquals(allocatedBytes, detector.getAllocatedBytes());
+		}
+		finally {
+			detector.clean();
+			background.release();
+			hand.release();
+		}
+	}
+
+
+	/**
+	 * Initializes OpenCV through the OpenCV Manager and waits for it
+	 */
+	private void loadOpenCV() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		final boolean[] success = new boolean[1];
+		OpenCVLoader.initAsync(OpenCVLoader.OPENCV_VERSION_2_4_9, this.getContext(), new BaseLoaderCallback(this.getContext()) {
+			@Override
+			public void onManagerConnected(int status) {
+				success[0] = status == LoaderCallbackInterface.SUCCESS;
+				latch.countDown();
+			}
+		});
+		assertTrue("OpenCV Manager not connected", latch.await(30, TimeUnit.SECONDS));
+		assertTrue("OpenCV not loaded", success[0]);
+	}
+
+
+	/**
+	 * Gray background, optionally with a skin colored hand (palm and three fingers)
+	 */
+	private static class SyntheticFrameSource implements FrameSource {
+
+		private final byte[] mData = new byte[WIDTH * HEIGHT * 3 / 2];
+		private Mat mRgba;
+
+		public SyntheticFrameSource(boolean hand) {
+			for (int y = 0; y < HEIGHT; ++y) {
+				for (int x = 0; x < WIDTH; ++x) {
+					boolean inside = hand && isHand(x, y);
+					mData[y * WIDTH + x] = (byte) (inside ? 160 : 40);
+					if (y % 2 == 0 && x % 2 == 0) {
+						int i = WIDTH * HEIGHT + (y / 2) * WIDTH + x;
+						mData[i] = (byte) (inside ? 190 : 128);		// V
+						mData[i + 1] = (byte) (inside ? 90 : 128);	// U
+					}
+				}
+			}
+		}
+
+		private static boolean isHand(int x, int y) {
+			int dx = x - 320, dy = y - 320;
+			if (dx * dx + dy * dy <= 90 * 90) {
+				return true;
+			}
+			for (int finger = -1; finger <= 1; ++finger) {
+				int fx = 320 + 55 * finger;
+				if (Math.abs(x - fx) <= 14 && y >= 120 && y <= 320) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public int getWidth() {
+			return WIDTH;
+		}
+
+		@Override
+		public int getHeight() {
+			return HEIGHT;
+		}
+
+		@Override
+		public byte[] getNV21(byte[] buffer) {
+			return mData;
+		}
+
+		@Override
+		public Mat rgba() {
+			if (mRgba == null) {
+				Mat yuv = new Mat(HEIGHT * 3 / 2, WIDTH, CvType.CV_8UC1);
+				yuv.put(0, 0, mData);
+				mRgba = new Mat();
+				Imgproc.cvtColor(yuv, mRgba, Imgproc.COLOR_YUV2RGBA_NV21, 4);
+				yuv.release();
+			}
+			return mRgba;
+		}
+
+		public void release() {
+			if (mRgba != null) {
+				mRgba.release();
+				mRgba = null;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,202 @@
+package de.lmu.ifi.medien.mime.$N;
+
+/**
+ * Golden section search for the best matching angle between a candidate and templates (see Util.distanceAtBestAngle()).
+ * Instead of creating rotated copies of the candidate for each probe angle, the path distance is computed directly from the candidate's
+ * centroid-relative coordinates. Centroid and relative coordinates are computed once per candidate, sine and cosine of the two initial
+ * probe angles once per search range. Results are identical to Util.distanceAtBestAngle().
+ *
+ * Optionally, probe angles are rounded to a fixed angle grid (see setAngleGrid()). The candidate is then rotated at most once per grid angle
+ * and the rotated copies are shared by all templates; a grid angle that is probed again for the same template (the last steps of the
+ * search are closer than the grid) isn't computed again. Results may differ by up to half a grid step.
+ */
+public class GoldenSectionSearch {
+
+	private double[] mRelative = new double[2 * Util.NUM_POINTS];
+	private double[] mRadius = new double[Util.NUM_POINTS];
+	private int mNumPoints = 0;
+	private double mCentroidX;
+	private double mCentroidY;
+
+	// Cached initial probes of the last search range
+	private double mRangeA = Double.NaN;
+	private double mRangeB = Double.NaN;
+	private double mCos1, mSin1, mCos2, mSin2;
+
+	// Candidate rotated at grid angles, created on first use per candidate
+	private double mGridMin = 0.0;
+	private double mGridStep = 0.0;	// 0 = no grid
+	private double[][] mGrid = new double[0][];
+	private int[] mGridStamps = new int[0];
+	private int mStamp = 0;
+	private double[] mGridDistances = new double[0];	// distances to the current template
+	private int[] mGridDistanceStamps = new int[0];
+	private int mTemplateStamp = 0;
+
+
+	/**
+	 * Sets the candidate that is compared to templates
+	 * @param points Packed candidate points (x0, y0, x1, y1, ...)
+	 * @param n Number of points
+	 */
+	public void setCandidate(double[] points, int n) {
+		if (mRelative.length < 2 * n) {
+			mRelative = new double[2 * n];
+			mRadius = new double[n];
+		}
+		mNumPoints = n;
+		++mStamp;	// invalidates the rotated copies
+		mCentroidX = PackedUtil.centroidX(points, n);
+		mCentroidY = PackedUtil.centroidY(points, n);
+		for (int i = 0; i < 2*n; i += 2) {
+			mRelative[i] = points[i] - mCentroidX;
+			mRelative[i + 1] = points[i + 1] - mCentroidY;
+			mRadius[i / 2] = Math.sqrt(mRelative[i] * mRelative[i] + mRelative[i + 1] * mRelative[i + 1]);
+		}
+	}
+	
+	/**
+	 * Rounds probe angles to a grid, so rotated copies of the candidate can be reused for all templates
+	 * @param range Grid covers -range..+range (e.g. Util.ANGLE_RANGE)
+	 * @param step Angle between grid points (e.g. Util.ANGLE_PRECISION), 0 for exact probe angles
+	 */
+	public void setAngleGrid(double range, double step) {
+		if (step == mGridStep && -range == mGridMin) {
+			return;
+		}
+		mGridStep = step;
+		mGridMin = -range;
+		int size = step > 0.0 ? (int) Math.round(2.0 * range / step) + 1 : 0;
+		mGrid = new double[size][];
+		mGridStamps = new int[size];
+		mGridDistances = new double[size];
+		mGridDistanceStamps = new int[size];
+		++mStamp;
+	}
+
+	/**
+	 * Returns a lower bound of the distance between candidate and template, valid for any rotation angle
+	 * @param template Packed template points
+	 * @return Lower bound
+	 */
+	public double lowerBound(double[] template) {
+		double d = 0.0;
+		for (int i = 0; i < 2*mNumPoints; i += 2) {
+			double dx = template[i] - mCentroidX;
+			double dy = template[i + 1] - mCentroidY;
+			d += Math.abs(mRadius[i / 2] - Math.sqrt(dx * dx + dy * dy));
+		}
+		return d / mNumPoints;
+	}
+
+	/**
+	 * Searches the angle with the smallest path distance between candidate and template
+	 * @param template Packed template points
+	 * @param a Lower angle bound
+	 * @param b Upper angle bound
+	 * @param threshold Angle precision
+	 * @param abandon Distance at which a probe is abandoned (the search then continues with a lower bound of the probe's distance);
+	 *   Double.POSITIVE_INFINITY for the exact result
+	 * @return Smallest distance
+	 */
+	public double distanceAtBestAngle(double[] template, double a, double b, double threshold, double abandon) {
+		if (a != mRangeA || b != mRangeB) {
+			mRangeA = a;
+			mRangeB = b;
+			double x1 = Util.PHI * a + (1.0 - Util.PHI) * b;
+			double x2 = (1.0 - Util.PHI) * a + Util.PHI * b;
+			mCos1 = Math.cos(x1);
+			mSin1 = Math.sin(x1);
+			mCos2 = Math.cos(x2);
+			mSin2 = Math.sin(x2);
+		}
+		boolean grid = mGridStep > 0.0;
+		++mTemplateStamp;
+		double x1 = Util.PHI * a + (1.0 - Util.PHI) * b;
+		double f1 = grid ? this.distanceAtGridAngle(template, x1, abandon) : this.distanceAtAngle(template, mCos1, mSin1, abandon);
+		double x2 = (1.0 - Util.PHI) * a + Util.PHI * b;
+		double f2 = grid ? this.distanceAtGridAngle(template, x2, abandon) : this.distanceAtAngle(template, mCos2, mSin2, abandon);
+		while (Math.abs(b - a) > threshold) {
+			if (f1 < f2) {
+				b = x2;
+				x2 = x1;
+				f2 = f1;
+				x1 = Util.PHI * a + (1.0 - Util.PHI) * b;
+				f1 = grid ? this.distanceAtGridAngle(template, x1, abandon) : this.distanceAtAngle(template, Math.cos(x1), Math.sin(x1), abandon);
+			}
+			else {
+				a = x1;
+				x1 = x2;
+				f1 = f2;
+				x2 = (1.0 - Util.PHI) * a + Util.PHI * b;
+				f2 = grid ? this.distanceAtGridAngle(template, x2, abandon) : this.distanceAtAngle(template, Math.cos(x2), Math.sin(x2), abandon);
+			}
+		}
+		return Math.min(f1, f2);
+	}
+
+
+	/**
+	 * Average distance between the candidate rotated around its centroid and the template; stops early if the average exceeds 'abandon'
+	 */
+	private double distanceAtAngle(double[] template, double cos, double sin, double abandon) {
+		final double[] relative = mRelative;
+		final double cx = mCentroidX;
+		final double cy = mCentroidY;
+		final double limit = abandon * mNumPoints;
+		double d = 0.0;
+		for (int i = 0; i < 2*mNumPoints; i += 2) {
+			double rx = relative[i];
+			double ry = relative[i + 1];
+			double dx = template[i] - (rx * cos - ry * sin + cx);
+			double dy = template[i + 1] - (rx * sin + ry * cos + cy);
+			d += Math.sqrt(dx * dx + dy * dy);
+			if (d > limit) {
+				break;
+			}
+		}
+		return d / mNumPoints;
+	}
+
+	/**
+	 * Average distance between the candidate rotated at the grid angle closest to 'angle' and the template; stops early like distanceAtAngle()
+	 */
+	private double distanceAtGridAngle(double[] template, double angle, double abandon) {
+		int k = (int) Math.round((angle - mGridMin) / mGridStep);
+		k = Math.max(0, Math.min(mGrid.length - 1, k));
+		if (mGridDistanceStamps[k] == mTemplateStamp) {
+			return mGridDistances[k];
+		}
+		double[] rotated = mGrid[k];
+		if (mGridStamps[k] != mStamp) {
+			if (rotated == null || rotated.length < 2 * mNumPoints) {
+				rotated = new double[2 * mNumPoints];
+				mGrid[k] = rotated;
+			}
+			double a = mGridMin + k * mGridStep;
+			double cos = Math.cos(a);
+			double sin = Math.sin(a);
+			for (int i = 0; i < 2*mNumPoints; i += 2) {
+				double rx = mRelative[i];
+				double ry = mRelative[i + 1];
+				rotated[i] = rx * cos - ry * sin + mCentroidX;
+				rotated[i + 1] = rx * sin + ry * cos + mCentroidY;
+			}
+			mGridStamps[k] = mStamp;
+		}
+		final double limit = abandon * mNumPoints;
+		double d = 0.0;
+		for (int i = 0; i < 2*mNumPoints; i += 2) {
+			double dx = template[i] - rotated[i];
+			double dy = template[i + 1] - rotated[i + 1];
+			d += Math.sqrt(dx * dx + dy * dy);
+			if (d > limit) {
+				break;
+			}
+		}
+		mGridDistances[k] = d / mNumPoints;
+		mGridDistanceStamps[k] = mTemplateStamp;
+		return mGridDistances[k];
+	}
+
+}
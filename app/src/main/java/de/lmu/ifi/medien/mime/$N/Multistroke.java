@@ -10,10 +10,14 @@ import org.opencv.core.Point;
 
 public class Multistroke implements Externalizable {
 	
+	// Fixed, so poses saved by earlier versions can still be read
+	private static final long serialVersionUID = -3373348971587249689L;
+	
 	private int type;
 	private int numStrokes;
 	private Unistroke[] unistrokes;
 	private Point[][] origStrokes;
+	private double[][] packedOrigStrokes;	// packed (x0, y0, x1, y1, ...) if read from a PoseStore file, converted on first use
 	
 
 	public Multistroke() { }
@@ -46,6 +50,20 @@ public class Multistroke implements Externalizable {
 		}
 	}
 	
+	/**
+	 * Creates a multistroke from already preprocessed unistrokes (e.g. read from a PoseStore file)
+	 * @param type Pose type
+	 * @param numStrokes Number of individual strokes
+	 * @param unistrokes Unistrokes
+	 * @param packedOrigStrokes Original strokes, packed (x0, y0, x1, y1, ...)
+	 */
+	public Multistroke(int type, int numStrokes, Unistroke[] unistrokes, double[][] packedOrigStrokes) {
+		this.type = type;
+		this.numStrokes = numStrokes;
+		this.unistrokes = unistrokes;
+		this.packedOrigStrokes = packedOrigStrokes;
+	}
+	
 	@Override
 	public void readExternal(ObjectInput input) throws IOException, ClassNotFoundException {
 		this.type = input.readInt();
@@ -71,8 +89,9 @@ public class Multistroke implements Externalizable {
 		for (Unistroke u : this.unistrokes) {
 			output.writeObject(u);
 		}
-		output.writeInt(this.origStrokes.length);
-		for (Point[] points : this.origStrokes) {
+		Point[][] origStrokes = this.getOrigStrokes();
+		output.writeInt(origStrokes.length);
+		for (Point[] points : origStrokes) {
 			output.writeInt(points.length);
 			for (Point p : points) {
 				output.writeDouble(p.x);
@@ -93,8 +112,17 @@ public class Multistroke implements Externalizable {
 
 	public void setUnistrokes(Unistroke[] unistrokes) { this.unistrokes = unistrokes; }
 
-	public Point[][] getOrigStrokes() { return this.origStrokes; }
+	public Point[][] getOrigStrokes() {
+		if (this.origStrokes == null && this.packedOrigStrokes != null) {
+			Point[][] strokes = new Point[this.packedOrigStrokes.length][];
+			for (int i = 0; i < strokes.length; ++i) {
+				strokes[i] = PackedUtil.unpack(this.packedOrigStrokes[i], this.packedOrigStrokes[i].length / 2);
+			}
+			this.origStrokes = strokes;
+		}
+		return this.origStrokes;
+	}
 
-	public void setOrigStrokes(Point[][] origStrokes) { this.origStrokes = origStrokes; }
+	public void setOrigStrokes(Point[][] origStrokes) { this.origStrokes = origStrokes; this.packedOrigStrokes = null; }
 	
 }
\ No newline at end of file
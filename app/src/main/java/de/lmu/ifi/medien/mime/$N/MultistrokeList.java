@@ -0,0 +1,57 @@
+package de.lmu.ifi.medien.mime.$N;
+
+import java.util.ArrayList;
+
+/**
+ * Templates held in memory as Multistroke objects
+ */
+public class MultistrokeList implements TemplateSource {
+
+	private final ArrayList<Multistroke> mMultistrokes;
+
+
+	public MultistrokeList(ArrayList<Multistroke> multistrokes) {
+		mMultistrokes = multistrokes;
+	}
+
+	@Override
+	public int size() {
+		return mMultistrokes.size();
+	}
+
+	@Override
+	public int getType(int index) {
+		return mMultistrokes.get(index).getType();
+	}
+
+	@Override
+	public int getNumStrokes(int index) {
+		return mMultistrokes.get(index).getNumStrokes();
+	}
+
+	@Override
+	public int getUnistrokeCount(int index) {
+		return mMultistrokes.get(index).getUnistrokes().length;
+	}
+
+	@Override
+	public double getStartUnitVectorX(int index, int unistroke) {
+		return mMultistrokes.get(index).getUnistrokes()[unistroke].getStartUnitVector().x;
+	}
+
+	@Override
+	public double getStartUnitVectorY(int index, int unistroke) {
+		return mMultistrokes.get(index).getUnistrokes()[unistroke].getStartUnitVector().y;
+	}
+
+	@Override
+	public double[] getPackedPoints(int index, int unistroke, double[] buffer) {
+		return mMultistrokes.get(index).getUnistrokes()[unistroke].getPackedPoints();
+	}
+
+	@Override
+	public Unistroke getUnistroke(int index, int unistroke) {
+		return mMultistrokes.get(index).getUnistrokes()[unistroke];
+	}
+
+}
@@ -72,39 +72,146 @@ package de.lmu.ifi.medien.mime.$N;
 **/
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.opencv.core.MatOfPoint;
-import org.opencv.core.Point;
 
 import de.lmu.ifi.medien.mime.PoseRecognizer;
 
 public class NDollarRecognizer {
 	
+	// Recognition modes
+	public static final int MODE_GSS = 0;				// Golden section search (original $N)
+	public static final int MODE_PROTRACTOR = 1;		// Protractor (closed-form best angle)
+	public static final int MODE_PROTRACTOR_GSS = 2;	// Protractor as prefilter, golden section search on the best k templates
+	public static final int MODE_GSS_EARLY_ABANDON = 3;	// Golden section search, probes are abandoned as soon as they can't beat the best template
+	public static final int MODE_GSS_ANGLE_GRID = 4;	// Golden section search on a fixed angle grid, rotated candidates are shared by all templates
+	public static final int DEFAULT_TOP_K = 3;
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 400;
+	private static final double LOWER_BOUND_TOLERANCE = 1e-9;	// keeps pruning safe despite rounding errors
+	static final String WORKER_NAME = "NDollarWorker";
+	
 	public static double mSquareSize = 200.0;
 	private boolean mUseBoundedRotationInvariance;
 	
-	private volatile ArrayList<Multistroke> mMultistrokes = new ArrayList<>();
+	private volatile TemplateSource mTemplates = new MultistrokeList(new ArrayList<Multistroke>());
 	private int[] mUseIndices = new int[0];
+	private volatile int mMode = MODE_GSS;
+	
+	private int mTopK = DEFAULT_TOP_K;
+	
+	// Reusable buffers for preprocessing the candidate (packed points, see PackedUtil)
+	private int[] mSkeletonBuffer = new int[0];
+	private double[] mInput = new double[0];
+	private final double[] mPoints = new double[2 * Util.NUM_POINTS];
+	private final double[] mVector = new double[2 * Util.NUM_POINTS];
+	private final double[] mStartVector = new double[2];
+	
+	// Scorers for parts of the templates, the first one is used for sequential recognition; the workers share the best distance for pruning
+	private final ArrayList<TemplateScorer> mScorers = new ArrayList<>();
+	private final AtomicLong mBound = new AtomicLong();
+	private ExecutorService mExecutor = null;	// guarded by this, shutdown() may be called from another thread
+	private boolean mShutdown = false;			// guarded by this
+	private final int mNumWorkers;
+	private int mParallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
 	
 	
 	/**
-	 * Constructor
+	 * Constructor; parallel scoring uses the default number of worker threads
 	 * @param squareSize Length of largest side of frame
 	 * @param useBoundedRotationInvariance Use rotation invariance
 	 */
 	public NDollarRecognizer(double squareSize, boolean useBoundedRotationInvariance) {
+		this(squareSize, useBoundedRotationInvariance, getDefaultWorkerCount());
+	}
+	
+	/**
+	 * Constructor
+	 * @param squareSize Length of largest side of frame
+	 * @param useBoundedRotationInvariance Use rotation invariance
+	 * @param numWorkers Number of worker threads for parallel scoring (1 = always sequential)
+	 */
+	public NDollarRecognizer(double squareSize, boolean useBoundedRotationInvariance, int numWorkers) {
 		mSquareSize = squareSize;
 		mUseBoundedRotationInvariance = useBoundedRotationInvariance;
+		mNumWorkers = Math.max(1, numWorkers);
+		mScorers.add(new TemplateScorer());
+	}
+	
+	/**
+	 * Returns the default number of worker threads: all cores except the one used by the camera thread
+	 * @return Number of threads
+	 */
+	public static int getDefaultWorkerCount() {
+		return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
 	}
 	
 	public void setMultistrokes(ArrayList<Multistroke> multistrokes) {
-		mMultistrokes = multistrokes;
+		mTemplates = new MultistrokeList(multistrokes);
+	}
+	
+	/**
+	 * Sets the templates, e.g. a memory-mapped template file
+	 * @param templates Templates
+	 */
+	public void setTemplates(TemplateSource templates) {
+		mTemplates = templates;
 	}
 	
 	public void setUseIndices(int[] indices) {
 		mUseIndices = indices;
 	}
 	
+	/**
+	 * Sets the recognition mode
+	 * @param mode One of the MODE_* constants
+	 */
+	public void setMode(int mode) {
+		mMode = mode;
+	}
+	
+	public int getMode() {
+		return mMode;
+	}
+	
+	/**
+	 * Sets the number of templates passed from the Protractor prefilter to the golden section search (MODE_PROTRACTOR_GSS)
+	 * @param k Number of templates
+	 */
+	public void setTopK(int k) {
+		mTopK = Math.max(1, k);
+	}
+	
+	/**
+	 * Sets the number of used multistrokes (see setUseIndices()) from which templates are scored by the worker pool (see constructor).
+	 * Results are identical to sequential scoring; MODE_PROTRACTOR_GSS and MODE_GSS_EARLY_ABANDON are always sequential.
+	 * @param threshold Number of multistrokes, Integer.MAX_VALUE to disable parallel scoring
+	 */
+	public void setParallelThreshold(int threshold) {
+		mParallelThreshold = threshold;
+	}
+	
+	public int getParallelThreshold() {
+		return mParallelThreshold;
+	}
+	
+	/**
+	 * Stops the worker threads of parallel scoring for good, later recognitions score sequentially; waits for a running recognition to finish
+	 */
+	public synchronized void shutdown() {
+		mShutdown = true;
+		if (mExecutor != null) {
+			mExecutor.shutdownNow();
+			mExecutor = null;
+		}
+	}
+	
 	/**
 	 * Update the square size
 	 * @param size The square size
@@ -121,73 +228,348 @@ public class NDollarRecognizer {
 	 * @return Recognized pose
 	 */
 	public Result recognize(MatOfPoint skeleton) {
-		if (skeleton != null && mMultistrokes.size() > 0) {
-			Point[][] strokes = new Point[1][];
-			strokes[0] = skeleton.toArray();
-			return this.recognize(strokes, false, false);
+		if (skeleton != null && mTemplates.size() > 0) {
+			// Read points directly into the packed buffer instead of creating Point objects
+			int count = (int) skeleton.total();
+			if (count > 0) {
+				if (mSkeletonBuffer.length < 2 * count) {
+					mSkeletonBuffer = new int[2 * count];
+					mInput = new double[2 * count];
+				}
+				skeleton.get(0, 0, mSkeletonBuffer);
+				for (int i = 0; i < 2 * count; ++i) {
+					mInput[i] = mSkeletonBuffer[i];
+				}
+				return this.recognize(mInput, count, 1, false, mMode);
+			}
+		}
+		return new Result(PoseRecognizer.NO_POSE, 0.0);
+	}
+	
+	/**
+	 * Try to recognize a pose from a single stroke
+	 * @param points Packed points (x0, y0, x1, y1, ...)
+	 * @param count Number of points
+	 * @return Recognized pose
+	 */
+	public Result recognize(double[] points, int count) {
+		if (count > 0 && mTemplates.size() > 0) {
+			return this.recognize(points, count, 1, false, mMode);
 		}
 		return new Result(PoseRecognizer.NO_POSE, 0.0);
 	}
 
 	/**
 	 * Recognition routine
-	 * @param strokes
+	 * @param input Points of all strokes, connected to one unistroke and packed (x0, y0, x1, y1, ...)
+	 * @param count Number of points
+	 * @param numStrokes Number of strokes the points were taken from
 	 * @param requireSameNoOfStrokes
-	 * @param useProtractor
+	 * @param mode Recognition mode (MODE_*)
 	 * @return Recognition result including pose and score
 	 */
-	private Result recognize(Point[][] strokes, boolean requireSameNoOfStrokes, boolean useProtractor) {
-		// make one connected unistroke from the given strokes
-		Point[] points = Util.combineStrokes(strokes);
-		points = Util.resample(points, Util.NUM_POINTS);
-		double radians = Util.indicativeAngle(points);
-		points = Util.rotateBy(points, -radians);
-		points = Util.scaleDimTo(points, mSquareSize, Util.ONE_D_THRESHOLD);
+	private Result recognize(double[] input, int count, int numStrokes, boolean requireSameNoOfStrokes, int mode) {
+		double[] points = mPoints;
+		int n = PackedUtil.resample(input, count, Util.NUM_POINTS, points);
+		double radians = PackedUtil.indicativeAngle(points, n);
+		PackedUtil.rotateBy(points, n, -radians, points);
+		PackedUtil.scaleDimTo(points, n, mSquareSize, Util.ONE_D_THRESHOLD, points);
 		if (mUseBoundedRotationInvariance) {
-			points = Util.rotateBy(points, radians);	// restore
+			PackedUtil.rotateBy(points, n, radians, points);	// restore
+		}
+		PackedUtil.translateTo(points, n, Util.ORIGIN.x, Util.ORIGIN.y, points);
+		PackedUtil.calcStartUnitVector(points, n, Util.START_ANGLE_INDEX, mStartVector);
+		boolean useProtractor = mode == MODE_PROTRACTOR || mode == MODE_PROTRACTOR_GSS;
+		if (useProtractor) {
+			PackedUtil.vectorize(points, n, mUseBoundedRotationInvariance, mVector);	// for Protractor
 		}
-		points = Util.translateTo(points, Util.ORIGIN);
-		Point startv = Util.calcStartUnitVector(points, Util.START_ANGLE_INDEX);
-		double[] vector = Util.vectorize(points, mUseBoundedRotationInvariance);	// for Protractor
 		
-		double b = Double.POSITIVE_INFINITY;
-		int u = -1;
-		for (int i : mUseIndices) {
-			if (i >= mMultistrokes.size()) {
-				continue;
-			}
-			// optional -- only attempt match when same # of component strokes
-			if (!requireSameNoOfStrokes || strokes.length == mMultistrokes.get(i).getNumStrokes()) {
-				// each unistroke within this multistroke
-				for (int j = 0; j < mMultistrokes.get(i).getUnistrokes().length; ++j) {
-					// strokes start in the same direction
-					if (Util.angleBetweenUnitVectors(startv, mMultistrokes.get(i).getUnistrokes()[j].getStartUnitVector()) <= Util.ANGLE_SIMILARITY_THRESHOLD) {
-						double d;
-						if (useProtractor) {
-							// for Protractor
-							d = Util.optimalCosineDistance(mMultistrokes.get(i).getUnistrokes()[j].getVector(), vector);
-						}
-						else {
-							// Golden Section Search (original $N)
-							d = Util.distanceAtBestAngle(points, mMultistrokes.get(i).getUnistrokes()[j], -Util.ANGLE_RANGE, +Util.ANGLE_RANGE, Util.ANGLE_PRECISION);
-						}
-						if (d < b) {
-							b = d;	// best (least) distance
-							u = i;	// multistroke owner of unistroke
-						}
+		// Score the templates, split among the worker threads for large template sets (only if the result doesn't depend on the order in which
+		// templates are scored)
+		TemplateSource templates = mTemplates;
+		int[] indices = mUseIndices;
+		int numScorers = 1;
+		mBound.set(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+		synchronized (this) {
+			if (indices.length >= mParallelThreshold && mode != MODE_PROTRACTOR_GSS && mode != MODE_GSS_EARLY_ABANDON) {
+				numScorers = this.startWorkers();
+			}
+			for (int s = 0; s < numScorers; ++s) {
+				mScorers.get(s).prepare(templates, indices, indices.length * s / numScorers, indices.length * (s + 1) / numScorers, n, numStrokes,
+						requireSameNoOfStrokes, mode);
+			}
+			if (numScorers == 1) {
+				mScorers.get(0).call();
+			}
+			else {
+				try {
+					for (Future<Void> f : mExecutor.invokeAll(mScorers.subList(0, numScorers))) {
+						f.get();
 					}
 				}
+				catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		
+		// Best template of all scorers; with equal distances, the template that comes first in mUseIndices wins as in sequential scoring
+		double b = Double.POSITIVE_INFINITY;
+		int u = -1;
+		long bestPosition = Long.MAX_VALUE;
+		for (int s = 0; s < numScorers; ++s) {
+			TemplateScorer scorer = mScorers.get(s);
+			if (scorer.mBestOwner != -1 && (scorer.mBest < b || (scorer.mBest == b && scorer.mBestPosition < bestPosition))) {
+				b = scorer.mBest;
+				u = scorer.mBestOwner;
+				bestPosition = scorer.mBestPosition;
 			}
 		}
+		
 		Result res;
 		if (u == -1) {
 			res = new Result(PoseRecognizer.NO_POSE, 0.0);
 		}
 		else {
-			res = new Result(mMultistrokes.get(u).getType(), useProtractor ? 1.0 / b : 1.0 - b / Util.mHalfDiagonal);
+			res = new Result(templates.getType(u), mode == MODE_PROTRACTOR ? 1.0 / b : 1.0 - b / Util.mHalfDiagonal);
 		}
 		return res;
 	}
+	
+	/**
+	 * Creates the worker pool and one scorer per thread on first use; never after shutdown()
+	 * @return Number of scorers, 1 for sequential scoring
+	 */
+	private int startWorkers() {
+		if (mShutdown || mNumWorkers == 1) {
+			return 1;
+		}
+		if (mExecutor == null) {
+			// Daemon threads, so a recognizer that isn't shut down doesn't keep the process alive
+			mExecutor = Executors.newFixedThreadPool(mNumWorkers, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, WORKER_NAME);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			while (mScorers.size() < mNumWorkers) {
+				mScorers.add(new TemplateScorer());
+			}
+		}
+		return mNumWorkers;
+	}
+	
+	/**
+	 * Publishes the distance of a template as bound for pruning if it is the best one so far (lock-free, the bound only decreases)
+	 */
+	private void updateBound(double d) {
+		long current = mBound.get();
+		while (d < Double.longBitsToDouble(current) && !mBound.compareAndSet(current, Double.doubleToLongBits(d))) {
+			current = mBound.get();
+		}
+	}
+
+
+	/**
+	 * Compares the candidate to a part of the used templates and finds the best one; each scorer has its own buffers, so scorers can run in
+	 * parallel. Template positions are (index in mUseIndices, unistroke index) for tie-breaking.
+	 */
+	private class TemplateScorer implements Callable<Void> {
+		private final GoldenSectionSearch mSearch = new GoldenSectionSearch();
+		private final double[] mTemplateBuffer = new double[2 * Util.NUM_POINTS];
+		
+		// Templates to be compared by golden section search: the best k by Protractor distance (sorted), or all templates with the lower bound
+		// of their distance (sorted afterwards through mSortKeys)
+		private double[] mCandidateKeys = new double[0];
+		private int[] mCandidateOwners = new int[0];
+		private long[] mCandidatePositions = new long[0];
+		private int[] mCandidateUnistrokes = new int[0];	// index within the owner multistroke
+		private long[] mSortKeys = new long[0];
+		
+		// Parameters
+		private TemplateSource mTemplates;
+		private int[] mIndices;
+		private int mFrom;
+		private int mTo;
+		private int mNumPoints;
+		private int mNumStrokes;
+		private boolean mRequireSameNoOfStrokes;
+		private int mMode;
+		
+		// Results
+		private double mBest;
+		private int mBestOwner;
+		private long mBestPosition;
+		
+		/**
+		 * Sets the templates to be scored: mUseIndices[from] to mUseIndices[to - 1]
+		 */
+		public void prepare(TemplateSource templates, int[] indices, int from, int to, int n, int numStrokes, boolean requireSameNoOfStrokes, int mode) {
+			mTemplates = templates;
+			mIndices = indices;
+			mFrom = from;
+			mTo = to;
+			mNumPoints = n;
+			mNumStrokes = numStrokes;
+			mRequireSameNoOfStrokes = requireSameNoOfStrokes;
+			mMode = mode;
+		}
+		
+		@Override
+		public Void call() {
+			TemplateSource templates = mTemplates;
+			int mode = mMode;
+			boolean useProtractor = mode == MODE_PROTRACTOR || mode == MODE_PROTRACTOR_GSS;
+			if (mode != MODE_PROTRACTOR) {
+				mSearch.setAngleGrid(Util.ANGLE_RANGE, mode == MODE_GSS_ANGLE_GRID ? Util.ANGLE_PRECISION : 0.0);
+				mSearch.setCandidate(mPoints, mNumPoints);
+			}
+			
+			// Collect templates that start in the same direction, sorted by Protractor distance (MODE_PROTRACTOR_GSS) or by the lower bound of
+			// their distance (other golden section search modes); for Protractor, this already finds the best template
+			double b = Double.POSITIVE_INFINITY;
+			int u = -1;
+			long bestPosition = Long.MAX_VALUE;
+			int candidates = 0;
+			for (int k = mFrom; k < mTo; ++k) {
+				int i = mIndices[k];
+				if (i >= templates.size()) {
+					continue;
+				}
+				// optional -- only attempt match when same # of component strokes
+				if (!mRequireSameNoOfStrokes || mNumStrokes == templates.getNumStrokes(i)) {
+					// each unistroke within this multistroke
+					int unistrokes = templates.getUnistrokeCount(i);
+					for (int j = 0; j < unistrokes; ++j) {
+						long position = ((long) k << 32) | j;
+						// strokes start in the same direction
+						if (PackedUtil.angleBetweenUnitVectors(mStartVector, templates.getStartUnitVectorX(i, j), templates.getStartUnitVectorY(i, j)) <= Util.ANGLE_SIMILARITY_THRESHOLD) {
+							if (mode == MODE_PROTRACTOR_GSS) {
+								double key = Util.optimalCosineDistance(templates.getUnistroke(i, j).getVector(), mVector);
+								candidates = this.insertCandidate(candidates, mTopK, key, i, position, j);
+								continue;
+							}
+							if (mode != MODE_PROTRACTOR) {
+								double key = mSearch.lowerBound(templates.getPackedPoints(i, j, mTemplateBuffer));
+								candidates = this.addCandidate(candidates, key, i, position, j);
+								continue;
+							}
+							double d = Util.optimalCosineDistance(templates.getUnistroke(i, j).getVector(), mVector);
+							if (d < b) {
+								b = d;	// best (least) distance
+								u = i;	// multistroke owner of unistroke
+								bestPosition = position;
+							}
+						}
+					}
+				}
+			}
+			
+			// Golden Section Search (original $N), most promising templates first. A template is skipped if even the lower bound of its distance
+			// (valid for any rotation) can't beat the best distance so far of all scorers; with equal distances, the template that comes first in
+			// mUseIndices wins as before. If sorted by lower bound, all remaining templates can be skipped at once.
+			if (!useProtractor) {
+				this.sortCandidates(candidates);
+			}
+			double abandon = Double.POSITIVE_INFINITY;
+			for (int k = 0; k < candidates; ++k) {
+				int c = useProtractor ? k : (int) mSortKeys[k];
+				double bound = Double.longBitsToDouble(mBound.get());
+				if (useProtractor && mSearch.lowerBound(templates.getPackedPoints(mCandidateOwners[c], mCandidateUnistrokes[c], mTemplateBuffer)) > bound * (1.0 + LOWER_BOUND_TOLERANCE)) {
+					continue;
+				}
+				if (!useProtractor && Float.intBitsToFloat((int) (mSortKeys[k] >>> 32)) > bound * (1.0 + LOWER_BOUND_TOLERANCE)) {
+					break;
+				}
+				double[] template = templates.getUnistroke(mCandidateOwners[c], mCandidateUnistrokes[c]).getPackedPoints();
+				if (mode == MODE_GSS_EARLY_ABANDON) {
+					abandon = b;
+				}
+				double d = mSearch.distanceAtBestAngle(template, -Util.ANGLE_RANGE, +Util.ANGLE_RANGE, Util.ANGLE_PRECISION, abandon);
+				if (d < b || (d == b && mCandidatePositions[c] < bestPosition)) {
+					b = d;
+					u = mCandidateOwners[c];
+					bestPosition = mCandidatePositions[c];
+					updateBound(d);
+				}
+			}
+			mBest = b;
+			mBestOwner = u;
+			mBestPosition = bestPosition;
+			mTemplates = null;
+			return null;
+		}
+		
+		/**
+		 * Inserts a template into the list of candidates sorted by key; if the list is full, the worst entry is dropped
+		 * @return New number of candidates
+		 */
+		private int insertCandidate(int count, int limit, double key, int owner, long position, int unistroke) {
+			if (count == limit) {
+				if (key >= mCandidateKeys[count - 1]) {
+					return count;
+				}
+				--count;
+			}
+			this.ensureCapacity(count + 1);
+			int k = count;
+			while (k > 0 && mCandidateKeys[k - 1] > key) {
+				mCandidateKeys[k] = mCandidateKeys[k - 1];
+				mCandidateOwners[k] = mCandidateOwners[k - 1];
+				mCandidatePositions[k] = mCandidatePositions[k - 1];
+				mCandidateUnistrokes[k] = mCandidateUnistrokes[k - 1];
+				--k;
+			}
+			mCandidateKeys[k] = key;
+			mCandidateOwners[k] = owner;
+			mCandidatePositions[k] = position;
+			mCandidateUnistrokes[k] = unistroke;
+			return count + 1;
+		}
+		
+		/**
+		 * Appends a template to the list of candidates without sorting (see sortCandidates())
+		 * @return New number of candidates
+		 */
+		private int addCandidate(int count, double key, int owner, long position, int unistroke) {
+			this.ensureCapacity(count + 1);
+			mCandidateKeys[count] = key;
+			mCandidateOwners[count] = owner;
+			mCandidatePositions[count] = position;
+			mCandidateUnistrokes[count] = unistroke;
+			return count + 1;
+		}
+		
+		/**
+		 * Sorts the candidates by key with a single Arrays.sort() of packed values in mSortKeys: the key rounded down to float in the upper
+		 * 32 bits (keys are not negative, so their bits compare like integers), the index of the candidate in the lower 32 bits
+		 */
+		private void sortCandidates(int count) {
+			if (mSortKeys.length < count) {
+				mSortKeys = new long[mCandidateKeys.length];
+			}
+			for (int k = 0; k < count; ++k) {
+				float key = (float) mCandidateKeys[k];
+				if (key > mCandidateKeys[k]) {
+					key = Math.nextAfter(key, Double.NEGATIVE_INFINITY);	// never above the lower bound, so pruning stays safe
+				}
+				mSortKeys[k] = ((long) Float.floatToIntBits(key) << 32) | k;
+			}
+			Arrays.sort(mSortKeys, 0, count);
+		}
+		
+		private void ensureCapacity(int count) {
+			if (count > mCandidateKeys.length) {
+				int capacity = Math.max(16, 2 * mCandidateKeys.length);
+				mCandidateKeys = Arrays.copyOf(mCandidateKeys, capacity);
+				mCandidateOwners = Arrays.copyOf(mCandidateOwners, capacity);
+				mCandidatePositions = Arrays.copyOf(mCandidatePositions, capacity);
+				mCandidateUnistrokes = Arrays.copyOf(mCandidateUnistrokes, capacity);
+			}
+		}
+	}
 
 
 	/**
@@ -0,0 +1,229 @@
+package de.lmu.ifi.medien.mime.$N;
+
+import org.opencv.core.Point;
+
+/**
+ * Allocation-free version of the $N preprocessing and matching functions in Util.
+ * Points are stored in packed arrays (x0, y0, x1, y1, ...), results are written into buffers supplied by the caller. All functions perform
+ * the same floating point operations in the same order as their counterparts in Util, so scores are identical.
+ * Unless stated otherwise, source and destination may be the same array.
+ */
+public class PackedUtil {
+
+	/**
+	 * Packs points into an array
+	 * @param points Points
+	 * @param dest Destination, at least 2 * points.length values
+	 * @return Number of points
+	 */
+	public static int pack(Point[] points, double[] dest) {
+		for (int i = 0; i < points.length; ++i) {
+			dest[2*i] = points[i].x;
+			dest[2*i + 1] = points[i].y;
+		}
+		return points.length;
+	}
+
+	/**
+	 * Unpacks points
+	 * @param src Packed points
+	 * @param n Number of points
+	 * @return New point array
+	 */
+	public static Point[] unpack(double[] src, int n) {
+		Point[] points = new Point[n];
+		for (int i = 0; i < n; ++i) {
+			points[i] = new Point(src[2*i], src[2*i + 1]);
+		}
+		return points;
+	}
+
+	/**
+	 * Resamples a path into n equidistantly spaced points
+	 * @param src Packed points
+	 * @param count Number of source points
+	 * @param n Number of points to create
+	 * @param dest Destination, at least 2 * n values; must not be the source array
+	 * @return Number of created points (n, unless the path is degenerate)
+	 */
+	public static int resample(double[] src, int count, int n, double[] dest) {
+		double I = pathLength(src, count) / (n - 1);	// interval length
+		double D = 0.0;
+		double prevX = src[0];
+		double prevY = src[1];
+		dest[0] = prevX;
+		dest[1] = prevY;
+		int size = 1;
+		int i = 1;
+		while (i < count) {
+			double x = src[2*i];
+			double y = src[2*i + 1];
+			double dx = x - prevX;
+			double dy = y - prevY;
+			double d = Math.sqrt(dx * dx + dy * dy);
+			if ((D + d) >= I) {
+				double qx = prevX + ((I - D) / d) * (x - prevX);
+				double qy = prevY + ((I - D) / d) * (y - prevY);
+				if (size < n) {
+					dest[2*size] = qx;
+					dest[2*size + 1] = qy;
+					++size;
+				}
+				// 'q' becomes the previous point, point i is visited again
+				prevX = qx;
+				prevY = qy;
+				D = 0.0;
+			}
+			else {
+				D += d;
+				prevX = x;
+				prevY = y;
+				++i;
+			}
+		}
+		// somtimes we fall a rounding-error short of adding the last point, so add it if so
+		if (size == n - 1) {
+			dest[2*size] = src[2*count - 2];
+			dest[2*size + 1] = src[2*count - 1];
+			++size;
+		}
+		return size;
+	}
+
+	public static double indicativeAngle(double[] points, int n) {
+		double cx = centroidX(points, n);
+		double cy = centroidY(points, n);
+		return Math.atan2(cy - points[1], cx - points[0]);
+	}
+
+	// rotates points around centroid
+	public static void rotateBy(double[] src, int n, double radians, double[] dest) {
+		double cx = centroidX(src, n);
+		double cy = centroidY(src, n);
+		double cos = Math.cos(radians);
+		double sin = Math.sin(radians);
+		for (int i = 0; i < 2*n; i += 2) {
+			double x = src[i];
+			double y = src[i + 1];
+			dest[i] = (x - cx) * cos - (y - cy) * sin + cx;
+			dest[i + 1] = (x - cx) * sin + (y - cy) * cos + cy;
+		}
+	}
+
+	// scales bbox uniformly for 1D, non-uniformly for 2D
+	public static void scaleDimTo(double[] src, int n, double size, double ratio1D, double[] dest) {
+		double minX = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < 2*n; i += 2) {
+			minX = Math.min(minX, src[i]);
+			minY = Math.min(minY, src[i + 1]);
+			maxX = Math.max(maxX, src[i]);
+			maxY = Math.max(maxY, src[i + 1]);
+		}
+		double width = maxX - minX;
+		double height = maxY - minY;
+		boolean uniformly = Math.min(width / height, height / width) <= ratio1D; // 1D or 2D gesture test
+		for (int i = 0; i < 2*n; i += 2) {
+			dest[i] = uniformly ? src[i] * (size / Math.max(width, height)) : src[i] * (size / width);
+			dest[i + 1] = uniformly ? src[i + 1] * (size / Math.max(width, height)) : src[i + 1] * (size / height);
+		}
+	}
+
+	// translates points' centroid
+	public static void translateTo(double[] src, int n, double x, double y, double[] dest) {
+		double cx = centroidX(src, n);
+		double cy = centroidY(src, n);
+		for (int i = 0; i < 2*n; i += 2) {
+			dest[i] = src[i] + x - cx;
+			dest[i + 1] = src[i + 1] + y - cy;
+		}
+	}
+
+	// for Protractor
+	public static void vectorize(double[] src, int n, boolean useBoundedRotationInvariance, double[] dest) {
+		double cos = 1.0;
+		double sin = 0.0;
+		if (useBoundedRotationInvariance) {
+			double iAngle = Math.atan2(src[1], src[0]);
+			double baseOrientation = (Math.PI / 4.0) * Math.floor((iAngle + Math.PI / 8.0) / (Math.PI / 4.0));
+			cos = Math.cos(baseOrientation - iAngle);
+			sin = Math.sin(baseOrientation - iAngle);
+		}
+		double sum = 0.0;
+		for (int i = 0; i < 2*n; i += 2) {
+			double x = src[i];
+			double y = src[i + 1];
+			double newX = x * cos - y * sin;
+			double newY = y * cos + x * sin;
+			dest[i] = newX;
+			dest[i + 1] = newY;
+			sum += newX * newX + newY * newY;
+		}
+		double magnitude = Math.sqrt(sum);
+		for (int i = 0; i < 2*n; ++i) {
+			dest[i] = dest[i] / magnitude;
+		}
+	}
+
+	public static double centroidX(double[] points, int n) {
+		double x = 0.0;
+		for (int i = 0; i < 2*n; i += 2) {
+			x += points[i];
+		}
+		return x / n;
+	}
+
+	public static double centroidY(double[] points, int n) {
+		double y = 0.0;
+		for (int i = 1; i < 2*n; i += 2) {
+			y += points[i];
+		}
+		return y / n;
+	}
+
+	// average distance between corresponding points in two paths
+	public static double pathDistance(double[] pts1, double[] pts2, int n) {
+		double d = 0.0;
+		for (int i = 0; i < 2*n; i += 2) {
+			double dx = pts2[i] - pts1[i];
+			double dy = pts2[i + 1] - pts1[i + 1];
+			d += Math.sqrt(dx * dx + dy * dy);
+		}
+		return d / n;
+	}
+
+	// length traversed by a point path
+	public static double pathLength(double[] points, int n) {
+		double d = 0.0;
+		for (int i = 2; i < 2*n; i += 2) {
+			double dx = points[i] - points[i - 2];
+			double dy = points[i + 1] - points[i - 1];
+			d += Math.sqrt(dx * dx + dy * dy);
+		}
+		return d;
+	}
+
+	// start angle from points[0] to points[index] normalized as a unit vector
+	public static void calcStartUnitVector(double[] points, int n, int index, double[] dest) {
+		if (index >= n) {
+			index = n-1;
+		}
+		double vx = points[2*index] - points[0];
+		double vy = points[2*index + 1] - points[1];
+		double len = Math.sqrt(vx * vx + vy * vy);
+		dest[0] = vx / len;
+		dest[1] = vy / len;
+	}
+
+	// gives acute angle between unit vectors from (0,0) to v1, and (0,0) to v2
+	public static double angleBetweenUnitVectors(double[] v1, double x2, double y2) {
+		double n = (v1[0] * x2 + v1[1] * y2);
+		if (n < -1.0 || n > +1.0) {
+			n = Util.round(n, 5);
+		}
+		return Math.acos(n); // arc cosine of the vector dot product
+	}
+
+}
@@ -0,0 +1,120 @@
+package de.lmu.ifi.medien.mime.$N;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+
+import org.opencv.core.Point;
+
+/**
+ * Compares accuracy and latency of the recognition modes of NDollarRecognizer.
+ * Test samples are created from the recorded skeletons of the templates by randomly rotating, scaling, moving and jittering them, so the
+ * report can be created on the device without a separate test set.
+ */
+public class RecognitionModeReport {
+
+	private static final double MAX_ROTATION = Math.toRadians(20.0);
+	private static final double MAX_SCALE_CHANGE = 0.2;
+	private static final double MAX_JITTER = 2.0;
+
+	public static final int[] MODES = new int[] { NDollarRecognizer.MODE_GSS, NDollarRecognizer.MODE_PROTRACTOR, NDollarRecognizer.MODE_PROTRACTOR_GSS,
+			NDollarRecognizer.MODE_GSS_EARLY_ABANDON, NDollarRecognizer.MODE_GSS_ANGLE_GRID };
+	public static final String[] MODE_NAMES = new String[] { "GSS", "Protractor", "Protractor + GSS", "GSS, early abandoning", "GSS, angle grid" };
+
+	private final int[] mCorrect = new int[MODES.length];
+	private final double[] mTime = new double[MODES.length];
+	private int mSamples = 0;
+
+
+	/**
+	 * Creates the report
+	 * @param templates Recorded templates
+	 * @param samplesPerTemplate Number of generated test samples per template
+	 * @param seed Random seed (same seed = same samples)
+	 */
+	public RecognitionModeReport(ArrayList<Multistroke> templates, int samplesPerTemplate, long seed) {
+		NDollarRecognizer recognizer = new NDollarRecognizer(NDollarRecognizer.mSquareSize, true);
+		recognizer.setMultistrokes(templates);
+		int[] indices = new int[templates.size()];
+		for (int i = 0; i < indices.length; ++i) {
+			indices[i] = i;
+		}
+		recognizer.setUseIndices(indices);
+
+		Random random = new Random(seed);
+		for (Multistroke template : templates) {
+			Point[] stroke = Util.combineStrokes(template.getOrigStrokes());
+			if (stroke.length == 0) {
+				continue;
+			}
+			for (int s = 0; s < samplesPerTemplate; ++s) {
+				double[] sample = createSample(stroke, random);
+				++mSamples;
+				for (int m = 0; m < MODES.length; ++m) {
+					recognizer.setMode(MODES[m]);
+					long start = System.nanoTime();
+					NDollarRecognizer.Result result = recognizer.recognize(sample, stroke.length);
+					mTime[m] += (System.nanoTime() - start) / 1000000.0;
+					if (result.pose == template.getType()) {
+						++mCorrect[m];
+					}
+				}
+			}
+		}
+		recognizer.shutdown();
+	}
+
+	/**
+	 * Returns the share of correctly recognized samples
+	 * @param mode Index in MODES
+	 * @return Accuracy (0..1)
+	 */
+	public double getAccuracy(int mode) {
+		return mSamples == 0 ? 0 : (double) mCorrect[mode] / mSamples;
+	}
+
+	/**
+	 * Returns the average recognition time
+	 * @param mode Index in MODES
+	 * @return Time in milliseconds
+	 */
+	public double getLatency(int mode) {
+		return mSamples == 0 ? 0 : mTime[mode] / mSamples;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(mSamples).append(" samples");
+		for (int m = 0; m < MODES.length; ++m) {
+			sb.append(String.format(Locale.US, "\n%s: %.1f%%, %.2f ms", MODE_NAMES[m], 100.0 * this.getAccuracy(m), this.getLatency(m)));
+		}
+		return sb.toString();
+	}
+
+
+	/**
+	 * Creates a randomly transformed copy of a stroke (also used for training PoseClassifier)
+	 * @param stroke Points of the stroke
+	 * @param random Random number generator
+	 * @return Packed points
+	 */
+	public static double[] createSample(Point[] stroke, Random random) {
+		double angle = (2.0 * random.nextDouble() - 1.0) * MAX_ROTATION;
+		double scale = 1.0 + (2.0 * random.nextDouble() - 1.0) * MAX_SCALE_CHANGE;
+		double offsetX = (2.0 * random.nextDouble() - 1.0) * NDollarRecognizer.mSquareSize * 0.1;
+		double offsetY = (2.0 * random.nextDouble() - 1.0) * NDollarRecognizer.mSquareSize * 0.1;
+		Point c = Util.centroid(stroke);
+		double cos = Math.cos(angle);
+		double sin = Math.sin(angle);
+		double[] sample = new double[2 * stroke.length];
+		for (int i = 0; i < stroke.length; ++i) {
+			double x = stroke[i].x - c.x;
+			double y = stroke[i].y - c.y;
+			sample[2*i] = scale * (x * cos - y * sin) + c.x + offsetX + (2.0 * random.nextDouble() - 1.0) * MAX_JITTER;
+			sample[2*i + 1] = scale * (x * sin + y * cos) + c.y + offsetY + (2.0 * random.nextDouble() - 1.0) * MAX_JITTER;
+		}
+		return sample;
+	}
+
+}
@@ -0,0 +1,63 @@
+package de.lmu.ifi.medien.mime.$N;
+
+/**
+ * Templates (multistrokes and their unistrokes) the NDollarRecognizer compares candidates to.
+ * Start vectors and points can be read without creating Unistroke objects; a Unistroke is only requested for templates that survive
+ * the start angle filter and lower bound pruning.
+ */
+public interface TemplateSource {
+
+	/**
+	 * @return Number of multistrokes
+	 */
+	int size();
+
+	/**
+	 * @param index Multistroke index
+	 * @return Pose type of the multistroke
+	 */
+	int getType(int index);
+
+	/**
+	 * @param index Multistroke index
+	 * @return Number of individual strokes of the multistroke
+	 */
+	int getNumStrokes(int index);
+
+	/**
+	 * @param index Multistroke index
+	 * @return Number of unistrokes of the multistroke
+	 */
+	int getUnistrokeCount(int index);
+
+	/**
+	 * @param index Multistroke index
+	 * @param unistroke Unistroke index within the multistroke
+	 * @return X component of the start unit vector
+	 */
+	double getStartUnitVectorX(int index, int unistroke);
+
+	/**
+	 * @param index Multistroke index
+	 * @param unistroke Unistroke index within the multistroke
+	 * @return Y component of the start unit vector
+	 */
+	double getStartUnitVectorY(int index, int unistroke);
+
+	/**
+	 * Returns the packed points of a unistroke, either as the template's own array or copied into 'buffer'
+	 * @param index Multistroke index
+	 * @param unistroke Unistroke index within the multistroke
+	 * @param buffer Buffer that may be used for the points (2 * Util.NUM_POINTS)
+	 * @return Packed points, must not be modified
+	 */
+	double[] getPackedPoints(int index, int unistroke, double[] buffer);
+
+	/**
+	 * @param index Multistroke index
+	 * @param unistroke Unistroke index within the multistroke
+	 * @return The unistroke
+	 */
+	Unistroke getUnistroke(int index, int unistroke);
+
+}
@@ -9,25 +9,55 @@ import org.opencv.core.Point;
 
 public class Unistroke implements Externalizable {
 	
+	// Fixed, so poses saved by earlier versions can still be read
+	private static final long serialVersionUID = 9005373057936886620L;
+	
 	private Point[] points;
 	private Point startUnitVector;
 	private double[] vector;
+	private double[] packedPoints;	// points as packed array (x0, y0, x1, y1, ...), see PackedUtil
 	
 
 	public Unistroke() { }
 
 	public Unistroke(boolean useBoundedRotationInvariance, Point[] points) {
-		double radians = Util.indicativeAngle(points);
-		points = Util.resample(points, Util.NUM_POINTS);
-		points = Util.rotateBy(points, -radians);
-		points = Util.scaleDimTo(points, NDollarRecognizer.mSquareSize, Util.ONE_D_THRESHOLD);
+		double[] input = new double[2 * points.length];
+		PackedUtil.pack(points, input);
+		double radians = PackedUtil.indicativeAngle(input, points.length);
+		double[] packed = new double[2 * Util.NUM_POINTS];
+		int n = PackedUtil.resample(input, points.length, Util.NUM_POINTS, packed);
+		PackedUtil.rotateBy(packed, n, -radians, packed);
+		PackedUtil.scaleDimTo(packed, n, NDollarRecognizer.mSquareSize, Util.ONE_D_THRESHOLD, packed);
 		if (useBoundedRotationInvariance) {
-			points = Util.rotateBy(points, radians);	// restore
+			PackedUtil.rotateBy(packed, n, radians, packed);	// restore
+		}
+		PackedUtil.translateTo(packed, n, Util.ORIGIN.x, Util.ORIGIN.y, packed);
+		if (n < Util.NUM_POINTS) {
+			double[] shortened = new double[2 * n];
+			System.arraycopy(packed, 0, shortened, 0, 2 * n);
+			packed = shortened;
 		}
-		this.points = Util.translateTo(points, Util.ORIGIN);
+		this.packedPoints = packed;
+		this.points = PackedUtil.unpack(packed, n);
 		
-		this.startUnitVector = Util.calcStartUnitVector(this.points, Util.START_ANGLE_INDEX);
-		this.vector = Util.vectorize(this.points, useBoundedRotationInvariance);	// for Protractor
+		double[] startv = new double[2];
+		PackedUtil.calcStartUnitVector(packed, n, Util.START_ANGLE_INDEX, startv);
+		this.startUnitVector = new Point(startv[0], startv[1]);
+		this.vector = new double[2 * n];
+		PackedUtil.vectorize(packed, n, useBoundedRotationInvariance, this.vector);	// for Protractor
+	}
+	
+	/**
+	 * Creates a unistroke from already preprocessed points (e.g. read from a PoseStore file)
+	 * @param useBoundedRotationInvariance Use rotation invariance
+	 * @param packedPoints Resampled, scaled and translated points, packed (x0, y0, x1, y1, ...)
+	 * @param startUnitVector Start direction
+	 */
+	public Unistroke(boolean useBoundedRotationInvariance, double[] packedPoints, Point startUnitVector) {
+		this.packedPoints = packedPoints;
+		this.startUnitVector = startUnitVector;
+		this.vector = new double[packedPoints.length];
+		PackedUtil.vectorize(packedPoints, packedPoints.length / 2, useBoundedRotationInvariance, this.vector);	// for Protractor
 	}
 	
 	@Override
@@ -45,8 +75,9 @@ public class Unistroke implements Externalizable {
 	
 	@Override
 	public void writeExternal(ObjectOutput output) throws IOException {
-		output.writeInt(this.points.length);
-		for (Point p : this.points) {
+		Point[] points = this.getPoints();
+		output.writeInt(points.length);
+		for (Point p : points) {
 			output.writeDouble(p.x);
 			output.writeDouble(p.y);
 		}
@@ -58,9 +89,27 @@ public class Unistroke implements Externalizable {
 		}
 	}
 
-	public Point[] getPoints() { return this.points; }
+	public Point[] getPoints() {
+		if (this.points == null) {
+			this.points = PackedUtil.unpack(this.packedPoints, this.packedPoints.length / 2);	// created on first use if read from a PoseStore file
+		}
+		return this.points;
+	}
+
+	public void setPoints(Point[] points) { this.points = points; this.packedPoints = null; }
 
-	public void setPoints(Point[] points) { this.points = points; }
+	/**
+	 * Returns the points as packed array (x0, y0, x1, y1, ...); created on first use if read from a stream
+	 * @return Packed points, must not be modified
+	 */
+	public double[] getPackedPoints() {
+		if (this.packedPoints == null) {
+			double[] packed = new double[2 * this.points.length];
+			PackedUtil.pack(this.points, packed);
+			this.packedPoints = packed;
+		}
+		return this.packedPoints;
+	}
 
 	public Point getStartUnitVector() { return this.startUnitVector; }
 
@@ -0,0 +1,122 @@
+package de.lmu.ifi.medien.mime;
+
+/**
+ * Background subtraction with thresholding and color blob detection on raw HSV buffers.
+ * All per-pixel decisions are precomputed into lookup tables whenever the thresholds or weightings change, so the inner loop only consists of integer
+ * arithmetic and table lookups. The result is identical to comparing the (signed) byte values directly.
+ */
+public class BackgroundSubtractionKernel {
+
+	private static final int DIFF_OFFSET = 255;
+
+	/**
+	 * Lookup tables for one set of thresholds and weightings; never changed once published, so apply() can run on other threads while the
+	 * preferences change
+	 */
+	private static class Tables {
+		// Weighting for a channel difference, indexed by (input - background + DIFF_OFFSET)
+		final int[] diffLutH = new int[2 * DIFF_OFFSET + 1];
+		final int[] diffLutS = new int[2 * DIFF_OFFSET + 1];
+		final int[] diffLutV = new int[2 * DIFF_OFFSET + 1];
+
+		// Color blob masks (-1 = inside blob range, 0 = outside), indexed by unsigned channel value
+		final int[] blobLutH = new int[256];
+		final int[] blobLutS = new int[256];
+
+		// Resulting mask value, indexed by the (byte) sum of all weightings
+		final byte[] resultLut = new byte[256];
+
+		int weightingB;
+	}
+
+	private volatile Tables mTables = new Tables();
+
+
+	/**
+	 * Recomputes all lookup tables; they are built in new arrays and replace the current ones at once
+	 * @param thresholdH Distance threshold for H channel
+	 * @param thresholdS Distance threshold for S channel
+	 * @param thresholdV Distance threshold for V channel
+	 * @param thresholdLowerH Lower threshold (H channel) for color blob detection
+	 * @param thresholdUpperH Upper threshold (H channel) for color blob detection
+	 * @param thresholdBlobS Threshold (S channel) for color blob detection
+	 * @param weightingH Weighting for result from H channel
+	 * @param weightingS Weighting for result from S channel
+	 * @param weightingV Weighting for result from V channel
+	 * @param weightingB Weighting for result from blob detection
+	 * @param weightingThreshold Weighting threshold
+	 */
+	public void update(double thresholdH, double thresholdS, double thresholdV, int thresholdLowerH, int thresholdUpperH, int thresholdBlobS,
+			int weightingH, int weightingS, int weightingV, int weightingB, int weightingThreshold) {
+		Tables tables = new Tables();
+		for (int d = -DIFF_OFFSET; d <= DIFF_OFFSET; ++d) {
+			int abs = Math.abs(d);
+			tables.diffLutH[d + DIFF_OFFSET] = abs > thresholdH ? weightingH : 0;
+			tables.diffLutS[d + DIFF_OFFSET] = abs > thresholdS ? weightingS : 0;
+			tables.diffLutV[d + DIFF_OFFSET] = abs > thresholdV ? weightingV : 0;
+		}
+		for (int i = 0; i < 256; ++i) {
+			// Channel values are compared as signed bytes, just like the original per-pixel implementation
+			byte value = (byte) i;
+			tables.blobLutH[i] = (value <= thresholdLowerH || value >= thresholdUpperH) ? -1 : 0;
+			tables.blobLutS[i] = value <= thresholdBlobS ? -1 : 0;
+			tables.resultLut[i] = value >= weightingThreshold ? (byte) 255 : 0;
+		}
+		tables.weightingB = weightingB;
+		mTables = tables;
+	}
+
+	/**
+	 * Subtracts the background from a three channel HSV frame and writes the thresholded result into a single channel mask
+	 * @param input HSV frame
+	 * @param background HSV background frame
+	 * @param mask Output mask (one byte per pixel; 255 = foreground)
+	 * @param width Frame width
+	 * @param channels Number of channels of input and background (at least 3)
+	 * @param rowStart First row to process
+	 * @param rowEnd Row after the last row to process
+	 */
+	public void apply(byte[] input, byte[] background, byte[] mask, int width, int channels, int rowStart, int rowEnd) {
+		this.apply(input, background, mask, width, channels, rowStart, rowEnd, 0, width);
+	}
+
+	/**
+	 * Subtracts the background within a rectangular region; the mask isn't changed outside the region
+	 * @param input HSV frame
+	 * @param background HSV background frame
+	 * @param mask Output mask (one byte per pixel; 255 = foreground)
+	 * @param width Frame width
+	 * @param channels Number of channels of input and background (at least 3)
+	 * @param rowStart First row to process
+	 * @param rowEnd Row after the last row to process
+	 * @param colStart First column to process
+	 * @param colEnd Column after the last column to process
+	 */
+	public void apply(byte[] input, byte[] background, byte[] mask, int width, int channels, int rowStart, int rowEnd, int colStart, int colEnd) {
+		// Read the tables once, so a concurrent update() can't mix old and new tables within the processed rows
+		final Tables tables = mTables;
+		final int[] diffLutH = tables.diffLutH;
+		final int[] diffLutS = tables.diffLutS;
+		final int[] diffLutV = tables.diffLutV;
+		final int[] blobLutH = tables.blobLutH;
+		final int[] blobLutS = tables.blobLutS;
+		final byte[] resultLut = tables.resultLut;
+		final int weightingB = tables.weightingB;
+
+		for (int y = rowStart; y < rowEnd; ++y) {
+			int m = y * width + colStart;
+			int i = m * channels;
+			int end = m + colEnd - colStart;
+			for (; m < end; ++m, i += channels) {
+				int h = input[i];
+				int s = input[i+1];
+				int value = diffLutH[h - background[i] + DIFF_OFFSET]
+						+ diffLutS[s - background[i+1] + DIFF_OFFSET]
+						+ diffLutV[input[i+2] - background[i+2] + DIFF_OFFSET]
+						+ (blobLutH[h & 0xFF] & blobLutS[s & 0xFF] & weightingB);
+				mask[m] = resultLut[value & 0xFF];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+package de.lmu.ifi.medien.mime;
+
+import org.opencv.android.CameraBridgeViewBase.CvCameraViewFrame;
+import org.opencv.core.Mat;
+
+/**
+ * Frame source for the frames of a camera view.
+ * JavaCameraView keeps the NV21 preview data in a single Mat and returns the Y plane as a submat from gray(); the submat is extended to the
+ * chroma rows to read the NV21 data without any conversion. Other camera views (e.g. NativeCameraView) have no NV21 data, HandDetector
+ * falls back to rgba() then.
+ */
+public class CameraFrameSource implements FrameSource {
+
+	private CvCameraViewFrame mFrame;
+	private Mat mGray;
+	private int mWidth;
+	private int mHeight;
+
+
+	/**
+	 * Sets the current camera frame
+	 * @param frame Camera frame
+	 */
+	public void setFrame(CvCameraViewFrame frame) {
+		this.release();
+		mFrame = frame;
+		mGray = frame.gray();
+		mWidth = mGray.cols();
+		mHeight = mGray.rows();
+	}
+
+	/**
+	 * Frees the Mat header of the current frame
+	 */
+	public void release() {
+		if (mGray != null) {
+			mGray.release();
+			mGray = null;
+		}
+		mFrame = null;
+	}
+
+	@Override
+	public int getWidth() {
+		return mWidth;
+	}
+
+	@Override
+	public int getHeight() {
+		return mHeight;
+	}
+
+	@Override
+	public byte[] getNV21(byte[] buffer) {
+		// The submat can only grow within the NV21 Mat of JavaCameraView
+		mGray.adjustROI(0, mHeight / 2, 0, 0);
+		try {
+			if (mGray.rows() != mHeight + mHeight / 2 || mGray.cols() != mWidth || !mGray.isContinuous() || buffer.length < mGray.total()) {
+				return null;
+			}
+			mGray.get(0, 0, buffer);
+			return buffer;
+		}
+		finally {
+			mGray.adjustROI(0, mHeight - mGray.rows(), 0, 0);
+		}
+	}
+
+	@Override
+	public Mat rgba() {
+		return mFrame.rgba();
+	}
+
+}
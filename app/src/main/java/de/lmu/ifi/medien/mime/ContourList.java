@@ -0,0 +1,215 @@
+package de.lmu.ifi.medien.mime;
+
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Rect;
+
+/**
+ * List of contours stored as packed points (x, y) in a single array, reused from frame to frame.
+ * Replaces the ArrayList<MatOfPoint> of the per-frame processing: once the arrays are large enough, adding contours allocates nothing, and
+ * area, bounding rectangle and length are computed without JNI calls. A contour is built with addPoint() and closed with endContour().
+ */
+public class ContourList {
+
+	private int[] mPoints = new int[2048];
+	private int[] mStart = new int[65];			// index of the first value of each contour; mStart[size] is the start of the open contour
+	private boolean[] mHoles = new boolean[64];
+	private int mSize = 0;
+	private int mLength = 0;
+	private int[] mBuffer = new int[0];			// for toMat()
+
+
+	/**
+	 * Removes all contours
+	 */
+	public void clear() {
+		mSize = 0;
+		mLength = 0;
+		mStart[0] = 0;
+	}
+
+	/**
+	 * Returns the number of (closed) contours
+	 * @return Number of contours
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * Returns the points of all contours
+	 * @return Packed points (x, y); the array is replaced if the list grows
+	 */
+	public int[] getPoints() {
+		return mPoints;
+	}
+
+	/**
+	 * Returns the size of the arrays of this list; only changes if the list grows
+	 * @return Bytes
+	 */
+	public long getCapacityBytes() {
+		return 4L * (mPoints.length + mStart.length + mBuffer.length) + mHoles.length;
+	}
+
+	/**
+	 * Returns the index of the first value of a contour in getPoints()
+	 * @param i Index of the contour
+	 * @return Index of the x coordinate of its first point
+	 */
+	public int getOffset(int i) {
+		return mStart[i];
+	}
+
+	/**
+	 * Returns the number of points of a contour
+	 * @param i Index of the contour
+	 * @return Number of points
+	 */
+	public int getCount(int i) {
+		return (mStart[i + 1] - mStart[i]) / 2;
+	}
+
+	/**
+	 * Checks if a contour is the border of a hole (like a contour with a parent in the hierarchy of Imgproc.RETR_CCOMP)
+	 * @param i Index of the contour
+	 * @return Contour is a hole border
+	 */
+	public boolean isHole(int i) {
+		return mHoles[i];
+	}
+
+	/**
+	 * Adds a point to the open contour
+	 */
+	public void addPoint(int x, int y) {
+		if (mLength + 2 > mPoints.length) {
+			int[] points = new int[2 * mPoints.length];
+			System.arraycopy(mPoints, 0, points, 0, mLength);
+			mPoints = points;
+		}
+		mPoints[mLength++] = x;
+		mPoints[mLength++] = y;
+	}
+
+	/**
+	 * Replaces the last point of the open contour
+	 */
+	public void setLastPoint(int x, int y) {
+		mPoints[mLength - 2] = x;
+		mPoints[mLength - 1] = y;
+	}
+
+	/**
+	 * Removes the last point of the open contour
+	 */
+	public void removeLastPoint() {
+		mLength -= 2;
+	}
+
+	/**
+	 * Removes the first point of the open contour
+	 */
+	public void removeFirstPoint() {
+		int start = mStart[mSize];
+		System.arraycopy(mPoints, start + 2, mPoints, start, mLength - start - 2);
+		mLength -= 2;
+	}
+
+	/**
+	 * Closes the open contour
+	 * @param hole Contour is a hole border
+	 */
+	public void endContour(boolean hole) {
+		if (mSize == mHoles.length) {
+			int[] start = new int[2 * mHoles.length + 1];
+			System.arraycopy(mStart, 0, start, 0, mStart.length);
+			mStart = start;
+			boolean[] holes = new boolean[2 * mHoles.length];
+			System.arraycopy(mHoles, 0, holes, 0, mHoles.length);
+			mHoles = holes;
+		}
+		mHoles[mSize] = hole;
+		mStart[++mSize] = mLength;
+	}
+
+	/**
+	 * Adds a copy of a contour
+	 * @param source List of the contour
+	 * @param i Index of the contour
+	 */
+	public void add(ContourList source, int i) {
+		int[] points = source.mPoints;
+		for (int k = source.mStart[i]; k < source.mStart[i + 1]; k += 2) {
+			this.addPoint(points[k], points[k + 1]);
+		}
+		this.endContour(source.mHoles[i]);
+	}
+
+	/**
+	 * Calculates the area of a contour, like Imgproc.contourArea()
+	 * @param i Index of the contour
+	 * @return Area (not oriented)
+	 */
+	public double area(int i) {
+		int[] p = mPoints;
+		int start = mStart[i];
+		int end = mStart[i + 1];
+		if (end - start < 6) {
+			return 0;
+		}
+		long area = 0;
+		for (int k = start, prev = end - 2; k < end; prev = k, k += 2) {
+			area += (long) p[prev] * p[k + 1] - (long) p[k] * p[prev + 1];
+		}
+		return Math.abs(area) / 2.0;
+	}
+
+	/**
+	 * Calculates the length of a closed contour
+	 * @param i Index of the contour
+	 * @return Perimeter
+	 */
+	public double arcLength(int i) {
+		return ContourProcessor.arcLength(mPoints, mStart[i], mStart[i + 1] - mStart[i]);
+	}
+
+	/**
+	 * Calculates the bounding rectangle of all contours, like Imgproc.boundingRect() of all points
+	 * @param bounds Receives the rectangle
+	 * @return There are points (bounds is unchanged otherwise)
+	 */
+	public boolean getBounds(Rect bounds) {
+		if (mLength == 0) {
+			return false;
+		}
+		int[] p = mPoints;
+		int minX = p[0], maxX = p[0], minY = p[1], maxY = p[1];
+		for (int k = 2; k < mLength; k += 2) {
+			minX = Math.min(minX, p[k]);
+			maxX = Math.max(maxX, p[k]);
+			minY = Math.min(minY, p[k + 1]);
+			maxY = Math.max(maxY, p[k + 1]);
+		}
+		bounds.x = minX;
+		bounds.y = minY;
+		bounds.width = maxX - minX + 1;
+		bounds.height = maxY - minY + 1;
+		return true;
+	}
+
+	/**
+	 * Copies a contour into a MatOfPoint (allocates native memory only if the size of the Mat changes)
+	 * @param i Index of the contour
+	 * @param dest Destination
+	 */
+	public void toMat(int i, MatOfPoint dest) {
+		int length = mStart[i + 1] - mStart[i];
+		if (mBuffer.length < length) {
+			mBuffer = new int[Math.max(length, 2 * mBuffer.length)];
+		}
+		System.arraycopy(mPoints, mStart[i], mBuffer, 0, length);
+		dest.alloc(length / 2);
+		dest.put(0, 0, mBuffer);
+	}
+
+}
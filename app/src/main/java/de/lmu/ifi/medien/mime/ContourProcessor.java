@@ -0,0 +1,118 @@
+package de.lmu.ifi.medien.mime;
+
+import org.opencv.core.CvType;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Processes contours without converting them to Point arrays.
+ * MatOfPoint.toArray() and new MatOfPoint(Point...) copy every contour through a Point object per point and several JNI calls; here contours
+ * are packed int arrays in a ContourList (rotation in Java, approximation through reused Mats).
+ */
+public class ContourProcessor {
+
+	private int mHeight;			// rotate = transpose + flip, like OpenCVUtil.rotatePoints()
+	private MatOfPoint mContour;
+	private MatOfPoint2f mContour2f;
+	private MatOfPoint2f mApprox2f;
+	private MatOfPoint mApprox;
+	private int[] mBuffer = new int[256];
+
+
+	/**
+	 * Sets the size of the frame the contours are found in; must be called before rotate()
+	 * @param size Size of the frame before rotation
+	 */
+	public void setFrameSize(Size size) {
+		// (x, y) -> (height - y, x); OpenCVUtil.rotatePoints() truncates to int
+		mHeight = (int) Math.floor(size.height);
+	}
+
+	/**
+	 * Adds a rotated copy of a contour to a list
+	 * @param source List of the contour
+	 * @param i Index of the contour
+	 * @param dest Receives the rotated contour
+	 */
+	public void rotate(ContourList source, int i, ContourList dest) {
+		int[] points = source.getPoints();
+		for (int k = source.getOffset(i); k < source.getOffset(i + 1); k += 2) {
+			dest.addPoint(mHeight - points[k + 1], points[k]);
+		}
+		dest.endContour(source.isHole(i));
+	}
+
+	/**
+	 * Approximates a contour with a polygon (closed) and adds it to a list
+	 * @param source List of the contour
+	 * @param i Index of the contour
+	 * @param epsilon Maximum distance between contour and polygon
+	 * @param dest Receives the polygon
+	 */
+	public void approximate(ContourList source, int i, double epsilon, ContourList dest) {
+		if (mContour == null) {
+			mContour = new MatOfPoint();
+			mContour2f = new MatOfPoint2f();
+			mApprox2f = new MatOfPoint2f();
+			mApprox = new MatOfPoint();
+		}
+		source.toMat(i, mContour);
+		mContour.convertTo(mContour2f, CvType.CV_32F);
+		Imgproc.approxPolyDP(mContour2f, mApprox2f, epsilon, true);
+		mApprox2f.convertTo(mApprox, CvType.CV_32S);
+		int length = 2 * (int) mApprox.total();
+		if (mBuffer.length < length) {
+			mBuffer = new int[Math.max(length, 2 * mBuffer.length)];
+		}
+		if (length > 0) {
+			mApprox.get(0, 0, mBuffer);
+		}
+		for (int k = 0; k < length; k += 2) {
+			dest.addPoint(mBuffer[k], mBuffer[k + 1]);
+		}
+		dest.endContour(source.isHole(i));
+	}
+
+	/**
+	 * Calculates the length of a closed contour
+	 * @param points Packed points (x, y)
+	 * @param offset Index of the first value
+	 * @param length Number of used values (twice the number of points)
+	 * @return Perimeter
+	 */
+	public static double arcLength(int[] points, int offset, int length) {
+		if (length == 0) {
+			return 0;
+		}
+		double result = 0;
+		int px = points[offset + length - 2];
+		int py = points[offset + length - 1];
+		for (int i = offset; i < offset + length; i += 2) {
+			int dx = points[i] - px;
+			int dy = points[i + 1] - py;
+			result += Math.sqrt(dx * dx + dy * dy);
+			px = points[i];
+			py = points[i + 1];
+		}
+		return result;
+	}
+
+	/**
+	 * Frees the native memory
+	 */
+	public void release() {
+		if (mContour != null) {
+			mContour.release();
+			mContour2f.release();
+			mApprox2f.release();
+			mApprox.release();
+			mContour = null;
+			mContour2f = null;
+			mApprox2f = null;
+			mApprox = null;
+		}
+	}
+
+}
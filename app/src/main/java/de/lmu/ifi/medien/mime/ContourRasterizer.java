@@ -0,0 +1,122 @@
+package de.lmu.ifi.medien.mime;
+
+/**
+ * Draws contours of a ContourList into a raw pixel buffer, replacing Imgproc.drawContours() (which converts the whole list of contours into
+ * a new Mat for every call). Filling uses the even-odd rule over all contours, like drawContours() with a negative thickness, so hole
+ * borders cut holes into the shapes around them; outlines are 8-connected lines.
+ */
+public class ContourRasterizer {
+
+	private double[] mCrossings = new double[64];
+
+
+	/**
+	 * Fills all contours of a list
+	 * @param contours Contours
+	 * @param image Image pixels
+	 * @param cols Number of columns of the image
+	 * @param rows Number of rows of the image
+	 * @param value Pixel value
+	 */
+	public void fill(ContourList contours, byte[] image, int cols, int rows, byte value) {
+		int[] p = contours.getPoints();
+		int size = contours.size();
+		if (size == 0) {
+			return;
+		}
+		int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+		for (int k = 1; k < contours.getOffset(size); k += 2) {
+			minY = Math.min(minY, p[k]);
+			maxY = Math.max(maxY, p[k]);
+		}
+		minY = Math.max(0, minY);
+		maxY = Math.min(rows - 1, maxY);
+
+		// Interior: spans between pairs of edge crossings of each row
+		for (int y = minY; y <= maxY; ++y) {
+			int count = 0;
+			for (int i = 0; i < size; ++i) {
+				int start = contours.getOffset(i);
+				int end = contours.getOffset(i + 1);
+				for (int k = start, prev = end - 2; k < end; prev = k, k += 2) {
+					int y0 = p[prev + 1], y1 = p[k + 1];
+					if ((y0 <= y && y < y1) || (y1 <= y && y < y0)) {
+						if (count == mCrossings.length) {
+							double[] crossings = new double[2 * count];
+							System.arraycopy(mCrossings, 0, crossings, 0, count);
+							mCrossings = crossings;
+						}
+						mCrossings[count++] = p[prev] + (double) (y - y0) * (p[k] - p[prev]) / (y1 - y0);
+					}
+				}
+			}
+			double[] crossings = mCrossings;
+			for (int a = 1; a < count; ++a) {
+				double c = crossings[a];
+				int b = a - 1;
+				for (; b >= 0 && crossings[b] > c; --b) {
+					crossings[b + 1] = crossings[b];
+				}
+				crossings[b + 1] = c;
+			}
+			int row = y * cols;
+			for (int a = 0; a + 1 < count; a += 2) {
+				int from = Math.max(0, (int) Math.ceil(crossings[a]));
+				int to = Math.min(cols - 1, (int) Math.floor(crossings[a + 1]));
+				for (int x = from; x <= to; ++x) {
+					image[row + x] = value;
+				}
+			}
+		}
+
+		// Borders, so shapes include the pixels they were traced along
+		for (int i = 0; i < size; ++i) {
+			this.draw(contours, i, image, cols, rows, value);
+		}
+	}
+
+	/**
+	 * Draws the outline of a closed contour
+	 * @param contours Contours
+	 * @param i Index of the contour
+	 * @param image Image pixels
+	 * @param cols Number of columns of the image
+	 * @param rows Number of rows of the image
+	 * @param value Pixel value
+	 */
+	public void draw(ContourList contours, int i, byte[] image, int cols, int rows, byte value) {
+		int[] p = contours.getPoints();
+		int start = contours.getOffset(i);
+		int end = contours.getOffset(i + 1);
+		for (int k = start, prev = end - 2; k < end; prev = k, k += 2) {
+			line(image, cols, rows, p[prev], p[prev + 1], p[k], p[k + 1], value);
+		}
+	}
+
+	/**
+	 * Draws an 8-connected line (Bresenham), clipped to the image
+	 */
+	private static void line(byte[] image, int cols, int rows, int x0, int y0, int x1, int y1, byte value) {
+		int dx = Math.abs(x1 - x0), sx = x0 < x1 ? 1 : -1;
+		int dy = -Math.abs(y1 - y0), sy = y0 < y1 ? 1 : -1;
+		int error = dx + dy;
+		while (true) {
+			if (x0 >= 0 && x0 < cols && y0 >= 0 && y0 < rows) {
+				image[y0 * cols + x0] = value;
+			}
+			if (x0 == x1 && y0 == y1) {
+				break;
+			}
+			int e2 = 2 * error;
+			if (e2 >= dy) {
+				error += dy;
+				x0 += sx;
+			}
+			if (e2 <= dx) {
+				error += dx;
+				y0 += sy;
+			}
+		}
+	}
+
+}
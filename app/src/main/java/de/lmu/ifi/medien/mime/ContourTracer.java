@@ -0,0 +1,165 @@
+package de.lmu.ifi.medien.mime;
+
+/**
+ * Finds the contours of a binary image by border following (Suzuki and Abe), like Imgproc.findContours() with RETR_CCOMP and
+ * CHAIN_APPROX_SIMPLE, but adds them to a ContourList instead of creating a MatOfPoint per contour.
+ * Like findContours(), it works on the image itself: filled pixels are relabeled and the border of the searched region is cleared.
+ * @link http://dx.doi.org/10.1016/0734-189X(85)90016-7
+ */
+public class ContourTracer {
+
+	// Pixel labels (every value except 0 is filled)
+	private static final byte FILLED = 1;
+	private static final byte VISITED = 2;
+	private static final byte VISITED_RIGHT = -2;	// visited, right neighbor is empty (can't start a hole border)
+
+	// Neighbors in counterclockwise order (y axis downwards), starting with the right neighbor
+	private static final int[] DX = { 1, 1, 0, -1, -1, -1, 0, 1 };
+	private static final int[] DY = { 0, -1, -1, -1, 0, 1, 1, 1 };
+	private static final int RIGHT = 0;
+	private static final int LEFT = 4;
+
+	private final int[] mOffsets = new int[8];
+	private int mCols = -1;
+
+
+	/**
+	 * Finds all outer borders and hole borders within a region of a binary image
+	 * @param image Image pixels (filled pixels != 0), method works in-place
+	 * @param cols Number of columns of the image
+	 * @param x Left column of the region
+	 * @param y Top row of the region
+	 * @param width Width of the region
+	 * @param height Height of the region
+	 * @param contours Receives the contours in image coordinates
+	 * @return Number of found contours
+	 */
+	public int find(byte[] image, int cols, int x, int y, int width, int height, ContourList contours) {
+		this.initOffsets(cols);
+		int right = x + width - 1;
+		int bottom = y + height - 1;
+
+		// Binarize; the border of the region is treated as empty
+		for (int r = y; r <= bottom; ++r) {
+			for (int c = x, i = r*cols + x; c <= right; ++c, ++i) {
+				if (image[i] != 0) {
+					image[i] = r == y || r == bottom || c == x || c == right ? 0 : FILLED;
+				}
+			}
+		}
+
+		// Raster scan, following every border that hasn't been visited yet
+		int found = 0;
+		for (int r = y + 1; r < bottom; ++r) {
+			for (int c = x + 1, i = r*cols + c; c < right; ++c, ++i) {
+				byte value = image[i];
+				if (value == FILLED && image[i-1] == 0) {
+					this.follow(image, i, c, r, LEFT, false, contours);
+					++found;
+				}
+				else if (value >= FILLED && image[i+1] == 0) {
+					this.follow(image, i, c, r, RIGHT, true, contours);
+					++found;
+				}
+			}
+		}
+		return found;
+	}
+
+
+	/**
+	 * Follows a border and adds it as a new contour; only points where the direction changes are kept
+	 * @param start Index of the first pixel
+	 * @param direction Direction of the empty neighbor the border was found from
+	 */
+	private void follow(byte[] image, int start, int x, int y, int direction, boolean hole, ContourList contours) {
+		int[] offsets = mOffsets;
+		int startX = x, startY = y;
+		contours.addPoint(x, y);
+
+		// Search clockwise for the first filled neighbor; isolated pixel if there is none
+		int firstDirection = -1;
+		for (int k = 0; k < 8; ++k) {
+			int d = (direction - k) & 7;
+			if (image[start + offsets[d]] != 0) {
+				firstDirection = d;
+				break;
+			}
+		}
+		if (firstDirection < 0) {
+			image[start] = VISITED_RIGHT;
+			contours.endContour(hole);
+			return;
+		}
+		int first = start + offsets[firstDirection];
+
+		int current = start;
+		int back = firstDirection;		// direction of the previous pixel, seen from the current one
+		int previousStep = -1;
+		int firstStep = -1;
+		while (true) {
+			// Search counterclockwise for the next filled neighbor, starting after the previous pixel
+			boolean rightEmpty = false;
+			int d = back;
+			int next = current;
+			for (int k = 0; k < 8; ++k) {
+				d = (d + 1) & 7;
+				int n = current + offsets[d];
+				if (image[n] != 0) {
+					next = n;
+					break;
+				}
+				if (d == RIGHT) {
+					rightEmpty = true;
+				}
+			}
+			if (rightEmpty) {
+				image[current] = VISITED_RIGHT;
+			}
+			else if (image[current] == FILLED) {
+				image[current] = VISITED;
+			}
+			if (next == start && current == first) {
+				break;
+			}
+
+			x += DX[d];
+			y += DY[d];
+			if (d == previousStep) {
+				contours.setLastPoint(x, y);
+			}
+			else {
+				contours.addPoint(x, y);
+			}
+			previousStep = d;
+			if (firstStep < 0) {
+				firstStep = d;
+			}
+			back = (d + 4) & 7;
+			current = next;
+		}
+
+		// The last point is redundant if the border goes on straight to the first one, the first point if the border goes on straight
+		// from the last one (possible for hole borders); findContours() doesn't keep them either
+		if (previousStep >= 0) {
+			int dx = startX - x, dy = startY - y;
+			if (dx * DY[previousStep] == dy * DX[previousStep] && dx * DX[previousStep] + dy * DY[previousStep] > 0) {
+				contours.removeLastPoint();
+			}
+			if (firstStep == ((firstDirection + 4) & 7)) {
+				contours.removeFirstPoint();
+			}
+		}
+		contours.endContour(hole);
+	}
+
+	private void initOffsets(int cols) {
+		if (cols != mCols) {
+			mCols = cols;
+			for (int d = 0; d < 8; ++d) {
+				mOffsets[d] = DY[d] * cols + DX[d];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,267 @@
+package de.lmu.ifi.medien.mime;
+
+import java.util.ArrayDeque;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+
+import de.lmu.ifi.medien.mime.PoseRecognizer.Result;
+
+/**
+ * Decouples hand detection and pose recognition from the camera thread.
+ * Frames pass through the stages capture (camera thread) -> detection (own thread; color conversion, segmentation and feature extraction) ->
+ * recognition (own thread) -> render (camera thread). Stages are connected by bounded queues that drop frames if a stage falls behind, so
+ * the preview keeps running at camera rate even if recognition is slow.
+ */
+public class DetectionPipeline {
+
+	public static final int STAGE_CAPTURE     = 0;
+	public static final int STAGE_DETECTION   = 1;
+	public static final int STAGE_RECOGNITION = 2;
+	public static final int STAGE_RENDER      = 3;
+	private static final int NUM_STAGES = 4;
+
+	public static final int QUEUE_DETECTION   = 0;
+	public static final int QUEUE_RECOGNITION = 1;
+	public static final int QUEUE_RENDER      = 2;
+
+	private static final double LATENCY_SMOOTHING = 0.1;
+
+	private final HandDetector mDetector;
+
+	// Queues between stages and pools of reusable frames
+	private final FrameQueue<Mat> mDetectionQueue;
+	private final FrameQueue<Result> mRecognitionQueue;
+	private final FrameQueue<Mat> mRenderQueue;
+	private final ArrayDeque<Mat> mFreeInputFrames = new ArrayDeque<>();
+	private final ArrayDeque<Mat> mFreeOutputFrames = new ArrayDeque<>();
+	private Mat mRenderFrame = null;
+
+	private volatile Result mLatestResult = new Result();
+	private final double[] mLatency = new double[NUM_STAGES];
+
+	private Thread mDetectionThread;
+	private Thread mRecognitionThread;
+
+
+	/**
+	 * Constructor
+	 * @param detector Hand detector used by the detection and recognition stage
+	 * @param queueCapacity Maximum number of frames waiting for each stage
+	 * @param dropPolicy Which frame to drop if a stage falls behind (FrameQueue.DROP_OLDEST or FrameQueue.DROP_NEWEST)
+	 */
+	public DetectionPipeline(HandDetector detector, int queueCapacity, int dropPolicy) {
+		mDetector = detector;
+		mDetectionQueue = new FrameQueue<>(queueCapacity, dropPolicy);
+		mRecognitionQueue = new FrameQueue<>(queueCapacity, dropPolicy);
+		mRenderQueue = new FrameQueue<>(1, FrameQueue.DROP_OLDEST);
+	}
+
+	/**
+	 * Starts the detection and recognition threads
+	 */
+	public void start() {
+		mDetector.setDeferRecognition(true);
+		mDetectionThread = new Thread(new DetectionWorker(), "DetectionStage");
+		mRecognitionThread = new Thread(new RecognitionWorker(), "RecognitionStage");
+		mDetectionThread.start();
+		mRecognitionThread.start();
+	}
+
+	/**
+	 * Stops all threads (waits until the current frames are finished) and frees resources
+	 */
+	public void stop() {
+		// Shut down stage by stage, so every queued frame is consumed
+		try {
+			mDetectionQueue.close();
+			if (mDetectionThread != null) {
+				mDetectionThread.join();
+			}
+			mRecognitionQueue.close();
+			if (mRecognitionThread != null) {
+				mRecognitionThread.join();
+			}
+		}
+		catch (InterruptedException e) { }
+		mDetectionThread = null;
+		mRecognitionThread = null;
+		mDetector.setDeferRecognition(false);
+
+		Mat frame;
+		while ((frame = mDetectionQueue.poll()) != null) {
+			frame.release();
+		}
+		while ((frame = mRenderQueue.poll()) != null) {
+			frame.release();
+		}
+		synchronized (this) {
+			for (Mat m : mFreeInputFrames) {
+				m.release();
+			}
+			for (Mat m : mFreeOutputFrames) {
+				m.release();
+			}
+			mFreeInputFrames.clear();
+			mFreeOutputFrames.clear();
+		}
+		if (mRenderFrame != null) {
+			mRenderFrame.release();
+			mRenderFrame = null;
+		}
+	}
+
+	/**
+	 * Capture stage: copies a camera frame into the pipeline; called from the camera thread
+	 * @param frame Camera frame (RGBA)
+	 */
+	public void submit(Mat frame) {
+		long start = System.nanoTime();
+		Mat input = this.obtain(mFreeInputFrames);
+		frame.copyTo(input);
+		Mat dropped = mDetectionQueue.offer(input);
+		if (dropped != null) {
+			this.recycle(mFreeInputFrames, dropped);
+		}
+		this.measure(STAGE_CAPTURE, start);
+	}
+
+	/**
+	 * Render stage: returns the most recently processed frame; called from the camera thread
+	 * @return Processed frame, null if no frame has been processed yet
+	 */
+	public Mat getRenderFrame() {
+		long start = System.nanoTime();
+		Mat frame = mRenderQueue.poll();
+		if (frame != null) {
+			if (mRenderFrame != null) {
+				this.recycle(mFreeOutputFrames, mRenderFrame);
+			}
+			mRenderFrame = frame;
+		}
+		this.measure(STAGE_RENDER, start);
+		return mRenderFrame;
+	}
+
+	/**
+	 * Returns the result of the most recently recognized frame
+	 * @return Recognition result (without frame)
+	 */
+	public Result getLatestResult() {
+		return mLatestResult;
+	}
+
+	/**
+	 * Returns the smoothed processing time of a stage
+	 * @param stage One of the STAGE_* constants
+	 * @return Latency in milliseconds
+	 */
+	public double getStageLatency(int stage) {
+		synchronized (mLatency) {
+			return mLatency[stage];
+		}
+	}
+
+	/**
+	 * Returns the number of frames waiting in front of a stage
+	 * @param queue One of the QUEUE_* constants
+	 * @return Queue depth
+	 */
+	public int getQueueDepth(int queue) {
+		return this.getQueue(queue).size();
+	}
+
+	/**
+	 * Returns the number of frames dropped in front of a stage
+	 * @param queue One of the QUEUE_* constants
+	 * @return Number of dropped frames
+	 */
+	public long getDropCount(int queue) {
+		return this.getQueue(queue).getDropCount();
+	}
+
+
+	private FrameQueue<?> getQueue(int queue) {
+		switch (queue) {
+			case QUEUE_DETECTION:
+				return mDetectionQueue;
+			case QUEUE_RECOGNITION:
+				return mRecognitionQueue;
+			default:
+				return mRenderQueue;
+		}
+	}
+
+	private synchronized Mat obtain(ArrayDeque<Mat> pool) {
+		Mat m = pool.poll();
+		return m != null ? m : new Mat();
+	}
+
+	private synchronized void recycle(ArrayDeque<Mat> pool, Mat m) {
+		pool.push(m);
+	}
+
+	private void measure(int stage, long start) {
+		double ms = (System.nanoTime() - start) / 1000000.0;
+		synchronized (mLatency) {
+			mLatency[stage] = mLatency[stage] == 0 ? ms : (1.0 - LATENCY_SMOOTHING) * mLatency[stage] + LATENCY_SMOOTHING * ms;
+		}
+	}
+
+
+	private class DetectionWorker implements Runnable {
+		@Override
+		public void run() {
+			Mat input;
+			while ((input = mDetectionQueue.take()) != null) {
+				long start = System.nanoTime();
+				Result result = mDetector.detect(input, true);
+				recycle(mFreeInputFrames, input);
+
+				// Copy rendered frame, the detector reuses it for the next frame
+				Mat output = obtain(mFreeOutputFrames);
+				result.frame.copyTo(output);
+				result.frame = null;
+				Mat dropped = mRenderQueue.offer(output);
+				if (dropped != null) {
+					recycle(mFreeOutputFrames, dropped);
+				}
+
+				Result droppedResult = mRecognitionQueue.offer(result);
+				if (droppedResult != null) {
+					release(droppedResult);
+				}
+				measure(STAGE_DETECTION, start);
+			}
+		}
+	}
+
+	private class RecognitionWorker implements Runnable {
+		@Override
+		public void run() {
+			Result result;
+			while ((result = mRecognitionQueue.take()) != null) {
+				long start = System.nanoTime();
+				if (result.features != null) {
+					Result recognized = mDetector.recognize(result.features);
+					result.pose = recognized.pose;
+					result.confidence = recognized.confidence;
+					release(result);
+				}
+				mLatestResult = result;
+				measure(STAGE_RECOGNITION, start);
+			}
+		}
+	}
+
+	private static void release(Result result) {
+		if (result.features != null) {
+			MatOfPoint skeleton = result.features.skeleton;
+			if (skeleton != null) {
+				skeleton.release();
+			}
+			result.features = null;
+		}
+	}
+
+}
@@ -0,0 +1,261 @@
+package de.lmu.ifi.medien.mime;
+
+import org.opencv.core.Mat;
+
+/**
+ * Skeletonization by distance ordered thinning, independent of the thickness of the shape (unlike Zhang-Suen, which needs one iteration per
+ * pixel of half the thickness).
+ * A chamfer distance transform (weights 3 and 4) gives every pixel its distance to the background; local maxima of the distance map (the
+ * ridge in the middle of fingers and palm) become anchors. Pixels are removed in order of increasing distance as long as this doesn't change
+ * the topology (simple points, decided by a lookup table); only anchors are kept as line ends, so the skeleton is connected, one pixel wide,
+ * keeps the holes, runs along the middle of the shape and has no spurs at small bumps of the border. Each pixel is only revisited if one of its
+ * neighbors has been removed. Where lines cross diagonally, a 2x2 block without simple pixels is left; one of its pixels is moved out of the
+ * block afterwards. Works on binary images (filled pixels = white).
+ */
+public class DistanceTransformThinning {
+
+	private static final int STRAIGHT = 3;			// chamfer distance to a horizontal/vertical neighbor
+	private static final int DIAGONAL = 4;			// chamfer distance to a diagonal neighbor
+
+	// Simple point decision for each 8-neighborhood (bit 0 = p2, top middle, counting clockwise up to bit 7 = p9, like LookupTableThinning)
+	private static final boolean[] SIMPLE_LUT = new boolean[256];
+
+	static {
+		for (int index = 0; index < 256; ++index) {
+			// Neighbors counter-clockwise starting on the right (x1 = p4, x2 = p3, x3 = p2, x4 = p9, ..., x8 = p5)
+			int[] bits = { 2, 1, 0, 7, 6, 5, 4, 3 };
+			int[] x = new int[9];
+			for (int k = 0; k < 8; ++k) {
+				x[k] = (index >> bits[k]) & 1;
+			}
+			x[8] = x[0];
+			// Yokoi connectivity number for 8-connected shapes; a border pixel is simple if it's 1
+			int connectivity = 0;
+			for (int k = 0; k < 8; k += 2) {
+				int a = 1 - x[k], b = 1 - x[k+1], c = 1 - x[(k+2) % 8];
+				connectivity += a - a * b * c;
+			}
+			SIMPLE_LUT[index] = connectivity == 1;
+		}
+	}
+
+	private byte[] mBuffer = new byte[0];
+	private int[] mDistance = new int[0];
+	private boolean[] mAnchor = new boolean[0];
+	private boolean[] mQueued = new boolean[0];
+	private int[] mNext = new int[0];			// linked lists of queued pixels, one per distance
+	private int[] mHead = new int[0];
+	private final int[] mOffsets = new int[8];
+	private final int[] mMoves = new int[16];		// pairs of block pixel and target for removeBlocks()
+
+
+	/**
+	 * Thins a binary image
+	 * @param img The image, method works in-place
+	 */
+	public void thin(Mat img) {
+		int rows = img.rows();
+		int cols = img.cols();
+		if (mBuffer.length != rows * cols) {
+			mBuffer = new byte[rows * cols];
+		}
+		img.get(0, 0, mBuffer);
+		this.thin(mBuffer, rows, cols);
+		img.put(0, 0, mBuffer);
+	}
+
+	/**
+	 * Thins a binary image given as raw pixel buffer
+	 * @param buffer Image pixels (filled pixels = -1), method works in-place
+	 * @param rows Number of rows
+	 * @param cols Number of columns
+	 */
+	public void thin(byte[] buffer, int rows, int cols) {
+		int total = rows * cols;
+		if (mDistance.length < total) {
+			mDistance = new int[total];
+			mAnchor = new boolean[total];
+			mQueued = new boolean[total];
+			mNext = new int[total];
+		}
+		int maxDistance = this.distanceTransform(buffer, rows, cols);
+		if (mHead.length < maxDistance + 1) {
+			mHead = new int[maxDistance + 1];
+		}
+		int[] distance = mDistance;
+		boolean[] anchor = mAnchor;
+		boolean[] queued = mQueued;
+		int[] next = mNext;
+		int[] head = mHead;
+		for (int d = 0; d <= maxDistance; ++d) {
+			head[d] = -1;
+		}
+
+		// Find anchors and queue the pixels at the border of the shape (the others can't be removed until a neighbor has been removed)
+		for (int y = 1; y < rows-1; ++y) {
+			for (int x = 1; x < cols-1; ++x) {
+				int i = y*cols + x;
+				int d = distance[i];
+				queued[i] = false;
+				anchor[i] = false;
+				if (d == 0) {
+					continue;
+				}
+				anchor[i] = distance[i-1] <= d && distance[i+1] <= d && distance[i-cols] <= d && distance[i+cols] <= d
+						&& distance[i-cols-1] <= d && distance[i-cols+1] <= d && distance[i+cols-1] <= d && distance[i+cols+1] <= d;
+				if (d == STRAIGHT) {
+					queued[i] = true;
+					next[i] = head[d];
+					head[d] = i;
+				}
+			}
+		}
+
+		// Remove simple pixels (except anchors at the end of a line) in order of increasing distance; removing a pixel queues its neighbors again
+		int[] offsets = mOffsets;
+		offsets[0] = -cols;
+		offsets[1] = -cols+1;
+		offsets[2] = 1;
+		offsets[3] = cols+1;
+		offsets[4] = cols;
+		offsets[5] = cols-1;
+		offsets[6] = -1;
+		offsets[7] = -cols-1;
+		for (int level = 0; level <= maxDistance; ++level) {
+			while (head[level] >= 0) {
+				int i = head[level];
+				head[level] = next[i];
+				queued[i] = false;
+				if (buffer[i] != -1) {
+					continue;
+				}
+				int neighborhood = neighborhood(buffer, i, cols);
+				if (!SIMPLE_LUT[neighborhood] || (anchor[i] && Integer.bitCount(neighborhood) == 1)) {
+					continue;
+				}
+				buffer[i] = 0;
+				for (int offset : offsets) {
+					int n = i + offset;
+					if (buffer[n] == -1 && !queued[n]) {
+						int d = Math.max(level, distance[n]);
+						queued[n] = true;
+						next[n] = head[d];
+						head[d] = n;
+					}
+				}
+			}
+		}
+		this.removeBlocks(buffer, rows, cols);
+	}
+
+
+	/**
+	 * Removes the 2x2 blocks left where lines cross diagonally (none of the four pixels is simple there): a pixel of the block is moved to a
+	 * free 4-neighbor outside of the block, as two simple point changes (adding the neighbor, then removing the pixel), so the topology stays
+	 * the same
+	 */
+	private void removeBlocks(byte[] buffer, int rows, int cols) {
+		for (int y = 1; y < rows-2; ++y) {
+			for (int x = 1; x < cols-2; ++x) {
+				int i = y*cols + x;
+				if (!isBlock(buffer, i, cols)) {
+					continue;
+				}
+				// Block pixels with their two 4-neighbors outside of the block
+				int[] moves = mMoves;
+				moves[0] = i;			moves[1] = i-cols;
+				moves[2] = i;			moves[3] = i-1;
+				moves[4] = i+1;			moves[5] = i+1-cols;
+				moves[6] = i+1;			moves[7] = i+2;
+				moves[8] = i+cols;		moves[9] = i+2*cols;
+				moves[10] = i+cols;		moves[11] = i+cols-1;
+				moves[12] = i+cols+1;	moves[13] = i+2*cols+1;
+				moves[14] = i+cols+1;	moves[15] = i+cols+2;
+				for (int k = 0; k < moves.length; k += 2) {
+					if (move(buffer, moves[k], moves[k+1], rows, cols)) {
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves a filled pixel to an empty 4-neighbor if both changes are simple and no new 2x2 block is created
+	 * @return Pixel has been moved
+	 */
+	private static boolean move(byte[] buffer, int from, int to, int rows, int cols) {
+		int x = to % cols, y = to / cols;
+		if (x < 1 || x > cols-2 || y < 1 || y > rows-2 || buffer[to] == -1 || !SIMPLE_LUT[neighborhood(buffer, to, cols)]) {
+			return false;
+		}
+		buffer[to] = -1;
+		if (SIMPLE_LUT[neighborhood(buffer, from, cols)]) {
+			buffer[from] = 0;
+			if (!isBlock(buffer, to, cols) && !isBlock(buffer, to-1, cols) && !isBlock(buffer, to-cols, cols) && !isBlock(buffer, to-cols-1, cols)) {
+				return true;
+			}
+			buffer[from] = -1;
+		}
+		buffer[to] = 0;
+		return false;
+	}
+
+	/**
+	 * Checks if a pixel and its right, lower and lower right neighbors are filled
+	 */
+	private static boolean isBlock(byte[] buffer, int i, int cols) {
+		return buffer[i] == -1 && buffer[i+1] == -1 && buffer[i+cols] == -1 && buffer[i+cols+1] == -1;
+	}
+
+	/**
+	 * Chamfer distance transform (two passes); clears the image border and all pixels that aren't filled, like the other thinning algorithms
+	 * @return Largest distance
+	 */
+	private int distanceTransform(byte[] buffer, int rows, int cols) {
+		int[] distance = mDistance;
+		int infinity = STRAIGHT * (rows + cols);
+		for (int y = 0; y < rows; ++y) {
+			for (int x = 0; x < cols; ++x) {
+				int i = y*cols + x;
+				if (buffer[i] != -1 || y == 0 || y == rows-1 || x == 0 || x == cols-1) {
+					buffer[i] = 0;
+					distance[i] = 0;
+				}
+				else {
+					distance[i] = Math.min(infinity, Math.min(distance[i-1] + STRAIGHT, distance[i-cols] + STRAIGHT));
+					distance[i] = Math.min(distance[i], Math.min(distance[i-cols-1] + DIAGONAL, distance[i-cols+1] + DIAGONAL));
+				}
+			}
+		}
+		int max = 0;
+		for (int y = rows-2; y > 0; --y) {
+			for (int x = cols-2; x > 0; --x) {
+				int i = y*cols + x;
+				if (distance[i] == 0) {
+					continue;
+				}
+				int d = Math.min(distance[i], Math.min(distance[i+1] + STRAIGHT, distance[i+cols] + STRAIGHT));
+				d = Math.min(d, Math.min(distance[i+cols+1] + DIAGONAL, distance[i+cols-1] + DIAGONAL));
+				distance[i] = d;
+				max = Math.max(max, d);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Packs the 8-neighborhood of a (non-border) pixel into a byte index
+	 */
+	private static int neighborhood(byte[] buffer, int i, int cols) {
+		return (buffer[i-cols] == -1 ? 1 : 0)
+				| (buffer[i-cols+1] == -1 ? 2 : 0)
+				| (buffer[i+1] == -1 ? 4 : 0)
+				| (buffer[i+cols+1] == -1 ? 8 : 0)
+				| (buffer[i+cols] == -1 ? 16 : 0)
+				| (buffer[i+cols-1] == -1 ? 32 : 0)
+				| (buffer[i-1] == -1 ? 64 : 0)
+				| (buffer[i-cols-1] == -1 ? 128 : 0);
+	}
+
+}
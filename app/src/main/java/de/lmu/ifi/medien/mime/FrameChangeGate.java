@@ -0,0 +1,128 @@
+package de.lmu.ifi.medien.mime;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Decides whether a camera frame differs enough from the last processed frame to run hand detection again.
+ * Frames are reduced to a small luma thumbnail (area averaging also removes most of the sensor noise) which is compared cell by cell with the
+ * thumbnail of the last processed frame. Comparing against the last processed frame instead of the previous one means that slow movements
+ * add up until they are detected. Every n-th frame is processed anyway, e.g. for gradual lighting changes.
+ */
+public class FrameChangeGate {
+
+	public static final int THUMBNAIL_WIDTH = 40;
+	public static final int THUMBNAIL_HEIGHT = 24;
+	public static final int DEFAULT_PIXEL_THRESHOLD = 12;	// luma difference of a thumbnail cell that counts as changed
+	public static final int DEFAULT_CHANGED_CELLS = 2;		// number of changed cells that counts as a changed frame
+	public static final int DEFAULT_MAX_SKIPPED = 30;		// frames are processed at least every n frames
+
+	private final int mPixelThreshold;
+	private final int mChangedCells;
+	private final int mMaxSkipped;
+
+	private Mat mThumbnail;	// created on first use, OpenCV may not be loaded yet when the gate is created
+	private final Size mThumbnailSize = new Size(THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+	private byte[] mCurrent = new byte[THUMBNAIL_WIDTH * THUMBNAIL_HEIGHT];
+	private byte[] mReference = new byte[THUMBNAIL_WIDTH * THUMBNAIL_HEIGHT];
+	private boolean mHasReference = false;
+	private int mSkippedInRow = 0;
+
+	private long mFrames = 0;
+	private long mSkippedFrames = 0;
+
+
+	public FrameChangeGate() {
+		this(DEFAULT_PIXEL_THRESHOLD, DEFAULT_CHANGED_CELLS, DEFAULT_MAX_SKIPPED);
+	}
+
+	/**
+	 * Constructor
+	 * @param pixelThreshold Luma difference of a thumbnail cell that counts as changed
+	 * @param changedCells Number of changed cells that counts as a changed frame
+	 * @param maxSkipped Maximum number of frames skipped in a row
+	 */
+	public FrameChangeGate(int pixelThreshold, int changedCells, int maxSkipped) {
+		mPixelThreshold = pixelThreshold;
+		mChangedCells = Math.max(1, changedCells);
+		mMaxSkipped = maxSkipped;
+	}
+
+	/**
+	 * Checks if a frame has to be processed; if so, it becomes the reference for the following frames
+	 * @param gray Luma of the camera frame (e.g. the Y plane of a NV21 preview frame, as returned by CvCameraViewFrame.gray())
+	 * @param force Process the frame anyway (e.g. because the background is being set)
+	 * @return Frame has changed and should be processed
+	 */
+	public synchronized boolean hasChanged(Mat gray, boolean force) {
+		if (mThumbnail == null) {
+			mThumbnail = new Mat();
+		}
+		Imgproc.resize(gray, mThumbnail, mThumbnailSize, 0, 0, Imgproc.INTER_AREA);
+		mThumbnail.get(0, 0, mCurrent);
+		return this.update(force);
+	}
+
+	/**
+	 * Processes the next frame anyway, e.g. after settings or the background have changed
+	 */
+	public synchronized void reset() {
+		mHasReference = false;
+		mSkippedInRow = 0;
+	}
+
+	/**
+	 * Returns the number of frames that were not processed since they haven't changed
+	 * @return Number of skipped frames
+	 */
+	public synchronized long getSkippedFrames() {
+		return mSkippedFrames;
+	}
+
+	/**
+	 * Returns the number of frames passed to hasChanged()
+	 * @return Number of frames
+	 */
+	public synchronized long getFrames() {
+		return mFrames;
+	}
+
+	/**
+	 * Returns the share of skipped frames
+	 * @return Skip ratio (0 - 1)
+	 */
+	public synchronized double getSkipRatio() {
+		return mFrames > 0 ? (double) mSkippedFrames / mFrames : 0.0;
+	}
+
+
+	/**
+	 * Compares the current thumbnail with the reference and swaps them if the frame is processed
+	 */
+	boolean update(boolean force) {
+		++mFrames;
+		if (!force && mHasReference && mSkippedInRow < mMaxSkipped && !this.differs(mCurrent, mReference)) {
+			++mSkippedInRow;
+			++mSkippedFrames;
+			return false;
+		}
+		byte[] tmp = mReference;
+		mReference = mCurrent;
+		mCurrent = tmp;
+		mHasReference = true;
+		mSkippedInRow = 0;
+		return true;
+	}
+
+	private boolean differs(byte[] current, byte[] reference) {
+		int changed = 0;
+		for (int i = 0; i < current.length; ++i) {
+			if (Math.abs((current[i] & 0xFF) - (reference[i] & 0xFF)) > mPixelThreshold && ++changed >= mChangedCells) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
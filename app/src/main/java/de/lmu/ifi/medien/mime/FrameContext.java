@@ -0,0 +1,180 @@
+package de.lmu.ifi.medien.mime;
+
+import java.util.ArrayList;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+
+import de.lmu.ifi.medien.mime.HandDetector.PoseFeatures;
+import de.lmu.ifi.medien.mime.PoseRecognizer.Result;
+
+/**
+ * Holds all buffers, Mats, contour lists and result objects needed by HandDetector to process a single frame.
+ * Everything is sized once on initialization and reset (instead of re-created) for every new frame, so a frame processed without deferred
+ * recognition allocates nothing on the Java heap once the containers have grown to the size of the hand; allocations are counted so the
+ * steady state can be verified.
+ */
+public class FrameContext {
+
+	// Raw image data
+	public byte[] inputBuffer;
+	public byte[] diffBuffer;
+	public byte[] openingBuffer;
+	public byte[] skeletonBuffer;
+	public byte[] markerBuffer;
+	public byte[] contourBuffer;
+	public byte[] regionBuffer;
+
+	// Reusable Mats
+	public Mat diffFrame;
+	public Mat contourFrame;
+	public MatOfPoint skeleton;
+	public MatOfPoint emptyContour;
+
+	// Reusable containers
+	public final ContourList contours = new ContourList();
+	public final ContourList found = new ContourList();
+	public final ContourList biggestContours = new ContourList();
+	public final ContourList biggestContoursToDraw = new ContourList();
+	public final ContourList filledContours = new ContourList();
+	public final ContourList skeletonContours = new ContourList();
+	public final ArrayList<PoseFeatures> features = new ArrayList<>();
+	public final PoseFeatures mergedFeatures = new PoseFeatures();
+	public final Result result = new Result();
+
+	// Reusable geometry
+	public final Rect bounds = new Rect();
+	public final Rect roiBounds = new Rect();
+	public final Rect region = new Rect();
+	public final Point point = new Point();
+
+	private final ContourList[] mContourLists = { contours, found, biggestContours, biggestContoursToDraw, filledContours, skeletonContours };
+	private final ArrayList<PoseFeatures> mFeaturePool = new ArrayList<>();
+	private boolean mInitialized = false;
+	private long mAllocatedBytes = 0;		// buffers and Mats of init()
+	private int mAllocationCount = 0;
+
+
+	/**
+	 * Allocates all buffers and Mats for the given frame sizes; does nothing if already initialized
+	 * @param scaledSize Size of the scaled down frame
+	 * @param scaledSizeRot Size of the scaled down and rotated frame
+	 * @param channels Number of channels of the scaled down frame
+	 */
+	public void init(Size scaledSize, Size scaledSizeRot, int channels) {
+		if (mInitialized) {
+			return;
+		}
+		mInitialized = true;
+
+		int total = (int) scaledSize.width * (int) scaledSize.height;
+		inputBuffer = new byte[total * channels];
+		diffBuffer = new byte[total];
+		openingBuffer = new byte[total];
+		skeletonBuffer = new byte[total];
+		markerBuffer = new byte[total];
+		contourBuffer = new byte[total];
+		regionBuffer = new byte[total];
+
+		diffFrame = new Mat(scaledSize, CvType.CV_8UC1);
+		contourFrame = new Mat(scaledSizeRot, CvType.CV_8UC1);
+		skeleton = new MatOfPoint();
+		emptyContour = new MatOfPoint();
+		mAllocatedBytes += inputBuffer.length + 6L * total + diffFrame.total() * diffFrame.elemSize() + contourFrame.total() * contourFrame.elemSize();
+		mAllocationCount += 11;
+	}
+
+	/**
+	 * Prepares the context for a new frame; empties all containers
+	 */
+	public void reset() {
+		contours.clear();
+		found.clear();
+		biggestContours.clear();
+		biggestContoursToDraw.clear();
+		filledContours.clear();
+		skeletonContours.clear();
+		features.clear();
+	}
+
+	/**
+	 * Returns empty features for the next contour of the frame and adds them to the features
+	 * @return Features, recycled with the next frame
+	 */
+	public PoseFeatures addFeatures() {
+		int i = features.size();
+		if (i == mFeaturePool.size()) {
+			mFeaturePool.add(new PoseFeatures());
+			++mAllocationCount;
+		}
+		PoseFeatures f = mFeaturePool.get(i);
+		f.reset();
+		features.add(f);
+		return f;
+	}
+
+	/**
+	 * Returns the result object of the frame, with all fields reset
+	 * @return Result, recycled with the next frame
+	 */
+	public Result obtainResult() {
+		result.pose = PoseRecognizer.NO_POSE;
+		result.confidence = 1.0;
+		result.nonZero = false;
+		result.frame = null;
+		result.features = null;
+		return result;
+	}
+
+	/**
+	 * Returns the total number of bytes allocated by this context for buffers, Mat data and contour lists; stays constant after warm-up
+	 * @return Allocated bytes
+	 */
+	public long getAllocatedBytes() {
+		long bytes = mAllocatedBytes;
+		for (ContourList list : mContourLists) {
+			bytes += list.getCapacityBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of times this context had to allocate new buffers or pooled features
+	 * @return Number of allocations
+	 */
+	public int getAllocationCount() {
+		return mAllocationCount;
+	}
+
+	/**
+	 * Frees all resources; the context has to be initialized again before it can be used
+	 */
+	public void release() {
+		reset();
+		inputBuffer = null;
+		diffBuffer = null;
+		openingBuffer = null;
+		skeletonBuffer = null;
+		markerBuffer = null;
+		contourBuffer = null;
+		regionBuffer = null;
+		diffFrame = release(diffFrame);
+		contourFrame = release(contourFrame);
+		skeleton = (MatOfPoint) release(skeleton);
+		emptyContour = (MatOfPoint) release(emptyContour);
+		mInitialized = false;
+	}
+
+
+	private static Mat release(Mat mat) {
+		if (mat != null) {
+			mat.release();
+		}
+		return null;
+	}
+
+}
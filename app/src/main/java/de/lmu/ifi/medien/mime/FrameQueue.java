@@ -0,0 +1,109 @@
+package de.lmu.ifi.medien.mime;
+
+/**
+ * Bounded queue for handing frames (or results) from one processing stage to the next; one producer and one consumer thread.
+ * If the queue is full, either the oldest queued item or the new item is dropped, so the producer never has to wait.
+ * @param <T> Type of the queued items
+ */
+public class FrameQueue<T> {
+
+	public static final int DROP_OLDEST = 0;
+	public static final int DROP_NEWEST = 1;
+
+	private final Object[] mItems;
+	private final int mPolicy;
+	private int mHead = 0;
+	private int mSize = 0;
+	private long mDropCount = 0;
+	private boolean mClosed = false;
+
+
+	/**
+	 * Constructor
+	 * @param capacity Maximum number of queued items
+	 * @param policy Which item to drop if the queue is full (DROP_OLDEST or DROP_NEWEST)
+	 */
+	public FrameQueue(int capacity, int policy) {
+		mItems = new Object[Math.max(1, capacity)];
+		mPolicy = policy;
+	}
+
+	/**
+	 * Adds an item to the queue; never blocks
+	 * @param item The item
+	 * @return The dropped item if the queue was full (so it can be recycled), otherwise null
+	 */
+	public synchronized T offer(T item) {
+		T dropped = null;
+		if (mSize == mItems.length) {
+			++mDropCount;
+			if (mPolicy == DROP_NEWEST) {
+				return item;
+			}
+			dropped = this.removeFirst();
+		}
+		mItems[(mHead + mSize) % mItems.length] = item;
+		++mSize;
+		this.notifyAll();
+		return dropped;
+	}
+
+	/**
+	 * Removes the oldest item, waits until one is available
+	 * @return The item, or null if the queue has been closed
+	 */
+	public synchronized T take() {
+		while (mSize == 0 && !mClosed) {
+			try {
+				this.wait();
+			}
+			catch (InterruptedException e) {
+				return null;
+			}
+		}
+		return mSize == 0 ? null : this.removeFirst();
+	}
+
+	/**
+	 * Removes the oldest item without waiting
+	 * @return The item, or null if the queue is empty
+	 */
+	public synchronized T poll() {
+		return mSize == 0 ? null : this.removeFirst();
+	}
+
+	/**
+	 * Wakes up the consumer; take() returns null as soon as the queue is empty
+	 */
+	public synchronized void close() {
+		mClosed = true;
+		this.notifyAll();
+	}
+
+	/**
+	 * Returns the number of queued items
+	 * @return Queue depth
+	 */
+	public synchronized int size() {
+		return mSize;
+	}
+
+	/**
+	 * Returns the number of items dropped so far because the queue was full
+	 * @return Number of dropped items
+	 */
+	public synchronized long getDropCount() {
+		return mDropCount;
+	}
+
+
+	@SuppressWarnings("unchecked")
+	private T removeFirst() {
+		T item = (T) mItems[mHead];
+		mItems[mHead] = null;
+		mHead = (mHead + 1) % mItems.length;
+		--mSize;
+		return item;
+	}
+
+}
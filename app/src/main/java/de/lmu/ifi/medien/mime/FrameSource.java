@@ -0,0 +1,36 @@
+package de.lmu.ifi.medien.mime;
+
+import org.opencv.core.Mat;
+
+/**
+ * Camera frame in NV21 format (full resolution Y plane followed by interleaved V/U samples at half resolution), as delivered by the camera
+ * preview. Implemented for the live camera and for recorded NV21 files, so HandDetector can process frames on a desktop JVM as well.
+ */
+public interface FrameSource {
+
+	/**
+	 * Returns the width of the frame
+	 * @return Width in pixels
+	 */
+	public int getWidth();
+
+	/**
+	 * Returns the height of the frame
+	 * @return Height in pixels
+	 */
+	public int getHeight();
+
+	/**
+	 * Returns the NV21 data of the frame
+	 * @param buffer Buffer the data may be copied to, with at least NV21Downsampler.getBufferSize() bytes
+	 * @return NV21 data (the buffer or an array of the source), null if the source can't provide NV21 data
+	 */
+	public byte[] getNV21(byte[] buffer);
+
+	/**
+	 * Returns the frame converted to RGBA, e.g. for showing it before the background has been set
+	 * @return RGBA frame
+	 */
+	public Mat rgba();
+
+}
@@ -0,0 +1,224 @@
+package de.lmu.ifi.medien.mime;
+
+import java.util.Arrays;
+
+import org.opencv.core.Point;
+
+/**
+ * Computes the geometric features of a hand contour (convex hull, convexity defects, centroid) on the polygon itself, in pure Java.
+ * Replaces Imgproc.convexHull(), Imgproc.convexityDefects() and Imgproc.moments() (same definitions, results as indices into the contour)
+ * and the flood filling of shallow defects: filled defects are bridged by their hull edge in a new polygon, which is drawn only once.
+ * Coordinates must be non-negative and below 65536, like those of a frame.
+ */
+public class GeometricFeatureExtractor {
+
+	private int[] mPoints = new int[256];		// x, y
+	private int mCount = 0;
+	private long[] mSorted = new long[128];
+	private int[] mHull = new int[257];			// indices, in the order of the contour
+	private int mHullCount = 0;
+	private int[] mDefects = new int[128];		// start index, end index, deepest point index, depth * 256 (like Imgproc.convexityDefects())
+	private int mDefectCount = 0;
+	private boolean[] mSkip = new boolean[128];	// points removed by filled defects
+
+
+	/**
+	 * Sets the points of a contour
+	 * @param points Packed points (x, y)
+	 * @param offset Index of the first value
+	 * @param count Number of points
+	 */
+	public void setContour(int[] points, int offset, int count) {
+		this.ensureCapacity(count);
+		System.arraycopy(points, offset, mPoints, 0, 2 * count);
+		this.reset(count);
+	}
+
+	/**
+	 * Calculates the convex hull (monotone chain, without collinear points)
+	 * @return Number of hull points
+	 */
+	public int computeHull() {
+		int n = mCount;
+		mHullCount = 0;
+		if (n == 0) {
+			return 0;
+		}
+
+		// Sort by x, then y; the index is packed into the lower bits so no objects are needed
+		long[] sorted = mSorted;
+		for (int i = 0; i < n; ++i) {
+			sorted[i] = ((long) mPoints[2*i] << 48) | ((long) mPoints[2*i + 1] << 32) | i;
+		}
+		Arrays.sort(sorted, 0, n);
+
+		// Lower and upper hull
+		int[] hull = mHull;
+		int k = 0;
+		for (int i = 0; i < n; ++i) {
+			int p = (int) sorted[i];
+			while (k >= 2 && this.cross(hull[k-2], hull[k-1], p) <= 0) {
+				--k;
+			}
+			hull[k++] = p;
+		}
+		for (int i = n - 2, lower = k + 1; i >= 0; --i) {
+			int p = (int) sorted[i];
+			while (k >= lower && this.cross(hull[k-2], hull[k-1], p) <= 0) {
+				--k;
+			}
+			hull[k++] = p;
+		}
+		k = n == 1 ? 1 : k - 1;
+
+		// Same orientation as the contour, like Imgproc.convexityDefects() expects (decided by the first three indices)
+		if (k >= 3 && ((hull[1] > hull[0] ? 1 : 0) + (hull[2] > hull[1] ? 1 : 0) + (hull[0] > hull[2] ? 1 : 0)) != 2) {
+			for (int i = 0, j = k - 1; i < j; ++i, --j) {
+				int tmp = hull[i];
+				hull[i] = hull[j];
+				hull[j] = tmp;
+			}
+		}
+		mHullCount = k;
+		return k;
+	}
+
+	/**
+	 * Calculates the convexity defects of the contour; computeHull() must have been called
+	 * @return Number of defects
+	 */
+	public int computeDefects() {
+		mDefectCount = 0;
+		int n = mCount;
+		int hullCount = mHullCount;
+		if (n <= 3 || hullCount <= 2) {
+			return 0;
+		}
+		if (mDefects.length < 4 * hullCount) {
+			mDefects = new int[4 * hullCount];
+		}
+		int[] points = mPoints;
+		int current = mHull[hullCount - 1];
+		for (int i = 0; i < hullCount; ++i) {
+			int next = mHull[i];
+			double x0 = points[2*current];
+			double y0 = points[2*current + 1];
+			double dx0 = points[2*next] - x0;
+			double dy0 = points[2*next + 1] - y0;
+			double scale = dx0 == 0 && dy0 == 0 ? 0 : 1.0 / Math.sqrt(dx0*dx0 + dy0*dy0);
+
+			// Deepest contour point between two hull points
+			int deepest = -1;
+			double depth = 0;
+			for (int j = current + 1 == n ? 0 : current + 1; j != next; j = j + 1 == n ? 0 : j + 1) {
+				double dist = Math.abs(-dy0 * (points[2*j] - x0) + dx0 * (points[2*j + 1] - y0)) * scale;
+				if (dist > depth) {
+					depth = dist;
+					deepest = j;
+				}
+			}
+			if (deepest >= 0) {
+				int d = 4 * mDefectCount++;
+				mDefects[d] = current;
+				mDefects[d+1] = next;
+				mDefects[d+2] = deepest;
+				mDefects[d+3] = (int) Math.round(depth * 256);
+			}
+			current = next;
+		}
+		return mDefectCount;
+	}
+
+	/**
+	 * Fills a convexity defect, i.e. removes the contour points between its start and end point from the filled contour
+	 * @param defect Index of the defect
+	 */
+	public void fillDefect(int defect) {
+		int n = mCount;
+		int end = mDefects[4*defect + 1];
+		for (int j = mDefects[4*defect] + 1 == n ? 0 : mDefects[4*defect] + 1; j != end; j = j + 1 == n ? 0 : j + 1) {
+			mSkip[j] = true;
+		}
+	}
+
+	/**
+	 * Adds the contour with all filled defects bridged by their hull edge to a list
+	 * @param dest Receives the filled contour
+	 */
+	public void getFilledContour(ContourList dest) {
+		for (int i = 0; i < mCount; ++i) {
+			if (!mSkip[i]) {
+				dest.addPoint(mPoints[2*i], mPoints[2*i + 1]);
+			}
+		}
+		dest.endContour(false);
+	}
+
+	/**
+	 * Calculates the centroid of the contour (polygon moments, like Imgproc.moments())
+	 * @param centroid Receives the centroid, NaN if the contour has no area
+	 */
+	public void getCentroid(Point centroid) {
+		int[] points = mPoints;
+		double m00 = 0, m10 = 0, m01 = 0;
+		for (int i = 0, prev = mCount - 1; i < mCount; prev = i++) {
+			double xp = points[2*prev], yp = points[2*prev + 1];
+			double x = points[2*i], y = points[2*i + 1];
+			double cross = xp * y - x * yp;
+			m00 += cross;
+			m10 += (xp + x) * cross;
+			m01 += (yp + y) * cross;
+		}
+		m00 /= 2;
+		centroid.x = m10 / (6 * m00);
+		centroid.y = m01 / (6 * m00);
+	}
+
+	/**
+	 * Returns the points of the contour
+	 * @return Packed points (x, y); the array is reused for the next contour
+	 */
+	public int[] getPoints() {
+		return mPoints;
+	}
+
+	/**
+	 * Returns the convexity defects found by computeDefects()
+	 * @return Four values per defect (start index, end index, deepest point index, depth * 256); the array is reused for the next contour
+	 */
+	public int[] getDefects() {
+		return mDefects;
+	}
+
+
+	private void ensureCapacity(int count) {
+		if (mPoints.length < 2 * count) {
+			mPoints = new int[4 * count];
+		}
+		if (mSorted.length < count) {
+			mSorted = new long[2 * count];
+			mSkip = new boolean[2 * count];
+		}
+		if (mHull.length < 2 * count + 1) {
+			mHull = new int[4 * count + 1];
+		}
+	}
+
+	private void reset(int count) {
+		mCount = count;
+		mHullCount = 0;
+		mDefectCount = 0;
+		Arrays.fill(mSkip, 0, count, false);
+	}
+
+	/**
+	 * Cross product of (a b) and (a c); positive for a counter-clockwise turn (y axis upwards)
+	 */
+	private long cross(int a, int b, int c) {
+		int[] p = mPoints;
+		long abx = p[2*b] - p[2*a], aby = p[2*b + 1] - p[2*a + 1];
+		long acx = p[2*c] - p[2*a], acy = p[2*c + 1] - p[2*a + 1];
+		return abx * acy - aby * acx;
+	}
+
+}
@@ -1,18 +1,16 @@
 package de.lmu.ifi.medien.mime;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfInt;
-import org.opencv.core.MatOfInt4;
 import org.opencv.core.MatOfPoint;
-import org.opencv.core.MatOfPoint2f;
 import org.opencv.core.Point;
+import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
-import org.opencv.imgproc.Moments;
 
 import android.content.Context;
 import de.lmu.ifi.medien.mime.PoseRecognizer.Result;
@@ -44,8 +42,54 @@ public class HandDetector {
 	// Fields used for background subtraction
 	private byte[] mBackground;
     private boolean mSetBackground = false;
+    private final BackgroundSubtractionKernel mSubtractionKernel = new BackgroundSubtractionKernel();
+    
+    // Multi-core segmentation
+    private volatile boolean mUseParallelSegmentation = false;
+    private ParallelSegmenter mParallelSegmenter = null;
+    
+    // Thinning algorithms (selectable for comparison)
+    public static final int THINNING_ITERATIVE = 0;
+    public static final int THINNING_INCREMENTAL = 1;
+    public static final int THINNING_LOOKUP_TABLE = 2;
+    public static final int THINNING_DISTANCE_TRANSFORM = 3;
+    private static final double THINNING_TIME_SMOOTHING = 0.1;
+    private static final double DETECTION_TIME_SMOOTHING = 0.1;
+    private volatile int mThinningAlgorithm = THINNING_INCREMENTAL;
+    private final ZhangSuenThinning mThinning = new ZhangSuenThinning();
+    private final LookupTableThinning mLookupTableThinning = new LookupTableThinning();
+    private final DistanceTransformThinning mDistanceTransformThinning = new DistanceTransformThinning();
+    private volatile double mThinningTime = 0;
+    
+    // Region of interest tracking: search only around the hand of the previous frame
+    private static final int ROI_REFRESH_FRAMES = 10;	// search the whole frame at least every n frames
+    private static final double ROI_MARGIN = 0.25;		// motion margin around the hand (relative to its larger side)
+    private static final int ROI_MIN_MARGIN = 8;		// minimum motion margin in pixels of the scaled frame
+    private volatile boolean mUseRoiTracking = false;
+    private Rect mTrackedRoi = null;					// mRoi if there is a tracked region
+    private final Rect mRoi = new Rect();
+    private int mRoiFrames = 0;
+    private volatile long mRoiAttempts = 0;
+    private volatile long mRoiHits = 0;
+    private volatile double mDetectionTime = 0;
+    
+    // Kalman filtered hand position (predicts the region of interest, stabilizes screen quadrants)
+    private volatile boolean mUseHandTracking = false;
+    private final HandTracker mHandTracker = new HandTracker();
+    private final Point mCentroid = new Point();
+    private final Point mVelocity = new Point();
+    private double mHandArea;						// measured area of the hand in the last frame
+    
+    // Adaptive resolution: the scale factor follows the frame time
+    private volatile boolean mUseAdaptiveResolution = false;
+    private ResolutionController mResolutionController;
+    private int mBaseScaleFactor;				// scale factor for mPrefTargetWidth
+    private int mNextScaleFactor;
+    private double mResolutionScale = 1.0;		// width of processed frames relative to mPrefTargetWidth, scales lengths and areas
+    private long mFrameStart;
     
     // Cached values and objects
+    private static final int CHANNELS = 3;	// HSV
     private boolean mInitialized = false;
     private Size mFrameSize;
     private Size mFrameSizeRot;
@@ -53,20 +97,33 @@ public class HandDetector {
     private Size mScaledSizeRot;
     private Mat mEmptyMatRot;
     private Mat mOpeningKernel;
+    private int mOpeningKernelSize;		// side length of mOpeningKernel (for ParallelSegmenter)
     private Mat mCachedRotFrame;
     private Mat mCachedResultFrame;
     private Mat mCachedScaledFrame;
+    private int mScaleFactor;
+    private byte[] mNV21Buffer;
+    private final NV21Downsampler mDownsampler = new NV21Downsampler();
+    private FrameContext mFrameContext = new FrameContext();
+    private final ContourProcessor mContourProcessor = new ContourProcessor();
+    private final ContourTracer mContourTracer = new ContourTracer();
+    private final ContourRasterizer mRasterizer = new ContourRasterizer();
+    private final GeometricFeatureExtractor mFeatureExtractor = new GeometricFeatureExtractor();
     
     // Colors
     private static final Scalar BLACK = new Scalar(0);
-    private static final Scalar WHITE = new Scalar(255);
-    private static final Scalar GRAY = new Scalar(192);
+    private static final byte WHITE = (byte) 255;
+    private static final byte GRAY = (byte) 192;
     
     // Pose recognizing and recording
     private PoseRecognizer mRecognizer = null;
+    private TemporalPoseRecognizer mTemporalRecognizer = null;
+    private volatile boolean mUseTemporalSmoothing = false;
     private MatOfPoint mRecordedSkeleton;
+    private PoseFeatures mRecordedFeatures;		// features of the frame of the recorded skeleton, for training the classifier
     private volatile boolean mRecordPose = false;
     private volatile boolean mRecordMode = false;
+    private volatile boolean mDeferRecognition = false;
     
     private BackgroundHolder mBackgroundHolder;
     
@@ -75,6 +132,7 @@ public class HandDetector {
     
     private HandDetector() {
     	mBackgroundHolder = BackgroundHolder.getInstance();
+    	this.updateSubtractionKernel();
     }
     
     /**
@@ -91,355 +149,642 @@ public class HandDetector {
     
     /**
      * Detects hand shape in a OpenCV image (= camera frame); optionally also finds number of fingers
-     * @param frame Camera frame encoded as OpenCV Mat
+     * @param frame Camera frame encoded as OpenCV Mat; owned by the caller, it isn't modified or released
      * @param recognize Run recognizer
      * @return Container with detected pose (if any), processed frame and additional info
      */
 	public Result detect(Mat frame, boolean recognize) {
-		// Initialize cached settings
+		if (!mInitialized) {
+			this.initialize(frame.size());
+		}
+		boolean parallel = this.prepareFrame();
+    	
+    	// No background set yet, do nothing
+    	if (mBackground == null && !mSetBackground) {
+    		OpenCVUtil.rotate(frame, mCachedRotFrame);
+    		Result result = this.obtainResult();
+    		result.frame = mCachedRotFrame;
+    		return result;
+    	}
+		
+		// Scale down
+    	Imgproc.resize(frame, mCachedScaledFrame, mScaledSize, 0, 0, Imgproc.INTER_CUBIC);
+    	
+    	// Convert to HSV, then get raw image data
+        Imgproc.cvtColor(mCachedScaledFrame, mCachedScaledFrame, Imgproc.COLOR_RGB2HSV, 3);
+        mFrameContext.init(mScaledSize, mScaledSizeRot, CHANNELS);
+        mCachedScaledFrame.get(0, 0, mFrameContext.inputBuffer);
+        
+        return this.detect(recognize, parallel);
+	}
+	
+	/**
+	 * Detects hand shape in a NV21 camera frame; scales down and converts to HSV in a single pass over the NV21 data instead of converting the
+	 * full frame to RGBA first
+	 * @param source Camera frame
+	 * @param recognize Run recognizer
+	 * @return Container with detected pose (if any), processed frame and additional info
+	 */
+	public Result detect(FrameSource source, boolean recognize) {
+		if (!mInitialized) {
+			this.initialize(new Size(source.getWidth(), source.getHeight()));
+		}
+		
+		// No background set yet, show the camera frame
+		byte[] nv21 = null;
+		if (mBackground != null || mSetBackground) {
+			if (mNV21Buffer == null || mNV21Buffer.length != NV21Downsampler.getBufferSize(source.getWidth(), source.getHeight())) {
+				mNV21Buffer = new byte[NV21Downsampler.getBufferSize(source.getWidth(), source.getHeight())];
+			}
+			nv21 = source.getNV21(mNV21Buffer);
+		}
+		if (nv21 == null) {
+			// NV21 data not available (or no background), take the RGBA path
+			return this.detect(source.rgba(), recognize);
+		}
+		boolean parallel = this.prepareFrame();
+		
+		mFrameContext.init(mScaledSize, mScaledSizeRot, CHANNELS);
+		mDownsampler.toHSV(nv21, source.getWidth(), source.getHeight(), mScaleFactor, mFrameContext.inputBuffer);
+		
+		return this.detect(recognize, parallel);
+	}
+	
+	/**
+	 * Initializes cached settings and buffers for the given frame size (on the first frame)
+	 */
+	private void initialize(Size frameSize) {
 		if (!mInitialized) {
 			mInitialized = true;
 			
-			mFrameSize = frame.size();
+			mFrameSize = frameSize;
 			mFrameSizeRot = new Size(mFrameSize.height, mFrameSize.width);
-			int scaleFactor = Math.max(1, (int) Math.floor(mFrameSize.width / mPrefTargetWidth));
-			mScaledSize = new Size(mFrameSize.width/scaleFactor, mFrameSize.height/scaleFactor);
+			mScaleFactor = Math.max(1, (int) Math.floor(mFrameSize.width / mPrefTargetWidth));
+			mScaledSize = new Size(mFrameSize.width/mScaleFactor, mFrameSize.height/mScaleFactor);
 			mScaledSizeRot = new Size(mScaledSize.height, mScaledSize.width);
+			mBaseScaleFactor = mScaleFactor;
+			mNextScaleFactor = mScaleFactor;
+			mResolutionScale = 1.0;
+			mResolutionController = new ResolutionController(ResolutionController.DEFAULT_TARGET_FPS, (int) mFrameSize.width, mScaleFactor);
+			mContourProcessor.setFrameSize(mScaledSize);
 			
 			if (mRecognizer != null) {
 				mRecognizer.setSquareSize(this.getFrameSize());
 			}
 			
 			mEmptyMatRot = OpenCVUtil.getFrame(mFrameSizeRot, BLACK);
-			mOpeningKernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(3, 3));
+			mOpeningKernelSize = 3;
+			mOpeningKernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(mOpeningKernelSize, mOpeningKernelSize));
 			
 			mCachedRotFrame = new Mat();
 			mCachedResultFrame = new Mat();
 			mCachedScaledFrame = new Mat();
 		}
-    	
-    	// No background set yet, do nothing
-    	if (mBackground == null && !mSetBackground) {
-    		OpenCVUtil.rotate(frame, mCachedRotFrame);
-    		Result result = new Result();
-    		result.frame = mCachedRotFrame;
-    		return result;
-    	}
+	}
+	
+	/**
+	 * Recycles the buffers of the previous frame and starts worker threads on demand
+	 * @return Use parallel segmentation for this frame
+	 */
+	private boolean prepareFrame() {
+		mFrameStart = System.nanoTime();
+		if (mNextScaleFactor != mScaleFactor) {
+			this.setScaleFactor(mNextScaleFactor);
+		}
 		
-		// Scale down
-    	Imgproc.resize(frame, mCachedScaledFrame, mScaledSize, 0, 0, Imgproc.INTER_CUBIC);
-    	frame.release();
-    	frame = null;
-    	
-    	// Convert to HSV
-        Imgproc.cvtColor(mCachedScaledFrame, mCachedScaledFrame, Imgproc.COLOR_RGB2HSV, 3);
+		// Recycle buffers and containers of the previous frame
+		mFrameContext.reset();
+		
+		// Start worker threads on demand
+		boolean parallel = mUseParallelSegmentation;
+		if (parallel && mParallelSegmenter == null) {
+			mParallelSegmenter = new ParallelSegmenter(ParallelSegmenter.getDefaultThreadCount());
+		}
+		return parallel;
+	}
+	
+	/**
+	 * Detects hand shape in the scaled down HSV frame in the input buffer of the frame context and measures the time needed
+	 * @param recognize Run recognizer
+	 * @param parallel Use parallel segmentation
+	 * @return Container with detected pose (if any), processed frame and additional info
+	 */
+	private Result detect(boolean recognize, boolean parallel) {
+		long start = System.nanoTime();
+		Result result = this.process(recognize, parallel);
+		long end = System.nanoTime();
+		double time = (end - start) / 1000000.0;
+		mDetectionTime = mDetectionTime == 0 ? time : (1.0 - DETECTION_TIME_SMOOTHING) * mDetectionTime + DETECTION_TIME_SMOOTHING * time;
+		
+		// Choose the resolution of the next frames from the time of the whole frame (including scaling down); background recording
+		// averages frames of the original resolution
+		if (mUseAdaptiveResolution && !mBackgroundHolder.isBackgroundRecordingEnabled()) {
+			mNextScaleFactor = mResolutionController.update((end - mFrameStart) / 1000000.0);
+		}
+		else {
+			mNextScaleFactor = mBaseScaleFactor;
+			mResolutionController.reset(mBaseScaleFactor);
+		}
+		return result;
+	}
+	
+	/**
+	 * Changes the resolution of the processed frames; buffers are sized again with the next frame, the background is resampled and
+	 * everything tracked in coordinates of the scaled frame is reset
+	 * @param factor Scale factor
+	 */
+	private void setScaleFactor(int factor) {
+		Size previousSize = mScaledSize;
+		mScaleFactor = factor;
+		mScaledSize = new Size(mFrameSize.width/mScaleFactor, mFrameSize.height/mScaleFactor);
+		mScaledSizeRot = new Size(mScaledSize.height, mScaledSize.width);
+		mResolutionScale = (double) mBaseScaleFactor / mScaleFactor;
+		mContourProcessor.setFrameSize(mScaledSize);
+		
+		mFrameContext.release();
+		if (mBackground != null) {
+			mBackground = this.resizeBackground(mBackground, previousSize, mScaledSize);
+		}
+		mOpeningKernelSize = 2 * (int) Math.max(1, Math.round(mResolutionScale)) + 1;
+		mOpeningKernel.release();
+		mOpeningKernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(mOpeningKernelSize, mOpeningKernelSize));
+		
+		mTrackedRoi = null;
+		mHandTracker.reset();
+		this.resetTemporalRecognizer();
+		if (mRecognizer != null) {
+			mRecognizer.setSquareSize(this.getFrameSize());
+		}
+	}
+	
+	/**
+	 * Resamples an HSV background frame (nearest neighbor, so hues aren't mixed)
+	 */
+	private byte[] resizeBackground(byte[] background, Size from, Size to) {
+		Mat src = new Mat(from, CvType.CV_8UC3);
+		src.put(0, 0, background);
+		Mat dest = new Mat();
+		Imgproc.resize(src, dest, to, 0, 0, Imgproc.INTER_NEAREST);
+		byte[] result = new byte[(int) dest.total() * CHANNELS];
+		dest.get(0, 0, result);
+		src.release();
+		dest.release();
+		return result;
+	}
+	
+	private Result process(boolean recognize, boolean parallel) {
+        byte[] inputBuffer = mFrameContext.inputBuffer;
+        int channels = CHANNELS;
         
         // Set background
     	if (mSetBackground) {
     		mSetBackground = false;
+    		mTrackedRoi = null;
+    		mHandTracker.reset();
     		if (mBackgroundHolder.useSavedBackground()) {
     			mBackground = mBackgroundHolder.getBackground();
+    			if (mBackground != null && mScaleFactor != mBaseScaleFactor) {
+    				// Saved backgrounds have the original resolution
+    				mBackground = this.resizeBackground(mBackground, new Size(mFrameSize.width/mBaseScaleFactor, mFrameSize.height/mBaseScaleFactor), mScaledSize);
+    			}
     			if (mBackground == null) {
-    				mBackground = new byte[(int) mCachedScaledFrame.total() * mCachedScaledFrame.channels()];
-        			mCachedScaledFrame.get(0, 0, mBackground);
-        			mBackgroundHolder.addBackgroundFrame(mBackground);
+    				mBackground = inputBuffer.clone();
+    				if (mScaleFactor == mBaseScaleFactor) {
+    					mBackgroundHolder.addBackgroundFrame(mBackground);
+    				}
     			}
     		}
     		else {
-    			mBackground = new byte[(int) mCachedScaledFrame.total() * mCachedScaledFrame.channels()];
-    			mCachedScaledFrame.get(0, 0, mBackground);
+    			mBackground = inputBuffer.clone();
     		}
     	}
     	
-    	// Get raw image data
-        int channels = mCachedScaledFrame.channels();
-    	byte[] inputBuffer = new byte[(int) mCachedScaledFrame.total() * channels];
-    	byte[] diffBuffer = new byte[(int) mCachedScaledFrame.total()];
-    	mCachedScaledFrame.get(0, 0, inputBuffer);
-    	
     	// Background averaging
     	if (mBackgroundHolder.isBackgroundRecordingEnabled()) {
-    		mBackgroundHolder.addBackgroundFrame(inputBuffer);
+    		mBackgroundHolder.addBackgroundFrame(inputBuffer.clone());
     	}
     	
-    	// Background subtraction with thresholding
-        for (int i = 0; i < inputBuffer.length; i += channels) {
-        	byte value = 0;
-        	
-        	// Different thresholds for each channel
-        	if (Math.sqrt((inputBuffer[i] - mBackground[i]) * (inputBuffer[i] - mBackground[i])) > mPrefThresholdH) {
-        		value += mPrefWeightingH;
-        	}
-        	if (Math.sqrt((inputBuffer[i+1] - mBackground[i+1]) * (inputBuffer[i+1] - mBackground[i+1])) > mPrefThresholdS) {
-        		value += mPrefWeightingS;
-        	}
-    		if (Math.sqrt((inputBuffer[i+2] - mBackground[i+2]) * (inputBuffer[i+2] - mBackground[i+2])) > mPrefThresholdV) {
-    			value += mPrefWeightingV;
+    	// Segment the hand, only within the tracked region if the hand has been found in the previous frame
+    	FrameContext context = mFrameContext;
+    	ContourList found = null;
+    	Rect roi = mUseRoiTracking && mRoiFrames < ROI_REFRESH_FRAMES && mTrackedRoi != null && mTrackedRoi.area() > 0 ? mTrackedRoi : null;
+    	if (mUseRoiTracking) {
+    		++mRoiAttempts;
+    	}
+    	if (roi != null) {
+    		found = this.segment(inputBuffer, channels, roi, parallel);
+    		Rect roiBounds = context.roiBounds;
+    		// Lost or possibly cut off at the border of the region, search the whole frame
+    		if (!found.getBounds(roiBounds) || this.touchesBorder(roiBounds, roi)) {
+    			found = null;
     		}
-    		// Color blob detection
-        	if ((inputBuffer[i] <= mPrefThresholdLowerH || inputBuffer[i] >= mPrefThresholdUpperH) && inputBuffer[i+1] <= mPrefThresholdBlobS) {
-        		value += mPrefWeightingB;
-        	}
-        	
-        	// Set pixel in 8 bit single channel image
-        	diffBuffer[i/channels] = value >= mPrefWeightingThreshold ? (byte) 255 : 0;
-        }
-        
-        // Create image from buffer
-        Mat diff = new Mat(mScaledSize, CvType.CV_8U);
-        diff.put(0, 0, diffBuffer);
-        
-        // Opening (remove smaller specks)
-        Imgproc.morphologyEx(diff, diff, Imgproc.MORPH_OPEN, mOpeningKernel);
-        
-        // Find contours, including holes
-        ArrayList<MatOfPoint> contours = new ArrayList<>();
-        Imgproc.findContours(diff, contours, new Mat(), Imgproc.RETR_CCOMP, Imgproc.CHAIN_APPROX_SIMPLE);
-       	diff.release();
-       	diff = null;
-        
-        // Nothing found, return empty frame
-        if (contours.isEmpty()) {
-        	Result result = new Result();
-    		result.frame = mEmptyMatRot;
-    		return result;
-        }
-        
-        // Find all contours that exceed minimum area threshold
-        ArrayList<MatOfPoint2f> biggestContours2f = new ArrayList<>();
-        for (MatOfPoint contour : contours) {
-        	if (Imgproc.contourArea(contour) > mPrefMinimumArea) {
-        		// Rotate points so we don't have to rotate an entire rendered frame
-        		biggestContours2f.add(OpenCVUtil.convert(OpenCVUtil.rotatePoints(contour, mScaledSize)));
-        	}
-        }
-        contours.clear();
-        contours = null;
+    		else {
+    			++mRoiHits;
+    			++mRoiFrames;
+    		}
+    	}
+    	if (found == null) {
+    		found = this.segment(inputBuffer, channels, null, parallel);
+    		mRoiFrames = 0;
+    	}
+    	Rect bounds = context.bounds;
+    	boolean hasBounds = found.getBounds(bounds);
+    	if (!hasBounds) {
+    		mHandTracker.reset();
+    		mTrackedRoi = null;
+    	}
+    	else if (mUseHandTracking) {
+    		// Move the region by the predicted movement (the tracker works on the rotated frame); if parts of the hand are missing in this frame
+    		// (area below the filtered area), the margin grows with the size the hand is expected to have
+    		Point velocity = this.updateHandTracker(found);
+    		double growth = mHandArea > 0 ? Math.max(1.0, Math.sqrt(mHandTracker.getArea() / mHandArea)) : 1.0;
+    		mTrackedRoi = this.expand(bounds.x + (int) Math.round(velocity.y), bounds.y - (int) Math.round(velocity.x), bounds.width, bounds.height,
+    				growth);
+    	}
+    	else {
+    		mTrackedRoi = this.expand(bounds.x, bounds.y, bounds.width, bounds.height, 1.0);
+    	}
         
-        // No detected area exceeds minimum area threshold
-        if (biggestContours2f.size() == 0) {
-        	Result result = new Result();
+        // Nothing found (or no detected area exceeds minimum area threshold), return empty frame
+        if (!hasBounds) {
+        	this.resetTemporalRecognizer();
+        	Result result = this.obtainResult();
     		result.frame = mEmptyMatRot;
     		return result;
         }
         
-    	// Convert contours (these different incompatible Mat types in OpenCV are just stupid oO)
-        ArrayList<MatOfPoint> biggestContours = new ArrayList<>();
-        ArrayList<MatOfPoint> biggestContoursToDraw = new ArrayList<>();
-        for (MatOfPoint2f contour2f : biggestContours2f) {
-        	MatOfPoint2f newContour2f = new MatOfPoint2f();
-        	Imgproc.approxPolyDP(contour2f, newContour2f, 4.5, true);
-        	biggestContours.add(OpenCVUtil.convert(newContour2f));
-        	biggestContoursToDraw.add(OpenCVUtil.convert(contour2f));
-        	contour2f.release();
+        // Rotate contours so we don't have to rotate an entire rendered frame, then approximate them
+        ContourList biggestContours = context.biggestContours;
+        ContourList biggestContoursToDraw = context.biggestContoursToDraw;
+        for (int i = 0; i < found.size(); ++i) {
+        	mContourProcessor.rotate(found, i, biggestContoursToDraw);
+        	mContourProcessor.approximate(biggestContoursToDraw, i, 4.5 * mResolutionScale, biggestContours);
         }
-        biggestContours2f.clear();
-        biggestContours2f = null;
         
         // Render resulting contours
-    	Mat contourFrame;
-    	Mat skeletonFrame;
-    	if (mRecordMode) {
-    		contourFrame = OpenCVUtil.getFrame(mScaledSizeRot, BLACK);
-	    	Imgproc.drawContours(contourFrame, biggestContours, -1, WHITE, -1);
-	        skeletonFrame = contourFrame.clone();
-    	}
-    	else {
-    		contourFrame = OpenCVUtil.getFrame(mScaledSizeRot, BLACK);
-    		Imgproc.drawContours(contourFrame, biggestContoursToDraw, -1, WHITE, -1);
-	        skeletonFrame = OpenCVUtil.getFrame(mScaledSizeRot, BLACK);
-	        Imgproc.drawContours(skeletonFrame, biggestContours, -1, WHITE, -1);
-    	}
+        int cols = (int) mScaledSizeRot.width;
+        int rows = (int) mScaledSizeRot.height;
+    	byte[] contourBuffer = context.contourBuffer;
+    	Arrays.fill(contourBuffer, (byte) 0);
+    	mRasterizer.fill(mRecordMode ? biggestContours : biggestContoursToDraw, contourBuffer, cols, rows, WHITE);
     	
     	PoseFeatures mergedFeatures = null;
+    	ContourList skeletonShapes = biggestContours;
     	if (mRecordMode || recognize) {
-	    	// Extract features
-	    	ArrayList<PoseFeatures> features = new ArrayList<>();
-	    	for (MatOfPoint contour : biggestContours) {
-	    		PoseFeatures f = this.extractFeatures(contour, skeletonFrame);
-	    		if (f != null) {
-	    			features.add(f);
-	    		}
-	        	contour.release();
-	        }
-	        for (MatOfPoint contour : biggestContoursToDraw) {
-	        	contour.release();
+	    	// Extract features; the shapes to thin are the contours with filled shallow convexity defects
+	    	ArrayList<PoseFeatures> features = context.features;
+	    	skeletonShapes = context.filledContours;
+	    	for (int i = 0; i < biggestContours.size(); ++i) {
+	    		this.extractFeatures(biggestContours, i, skeletonShapes);
 	        }
-	        biggestContours.clear();
-	        biggestContours = null;
-	        biggestContoursToDraw.clear();
-	        biggestContoursToDraw = null;
 	        
 	        // Merge feature vectors
 	        if (features.size() == 1) {
 	        	mergedFeatures = features.get(0);
 	        }
-	        else if (features.size() == 0) {
-	        	mergedFeatures = new PoseFeatures();
-	        }
 	        else {
-	        	mergedFeatures = new PoseFeatures();
-	        	mergedFeatures.topScreen = features.get(0).topScreen;
-	        	mergedFeatures.leftScreen = features.get(0).leftScreen;
-	        	for (PoseFeatures f : features) {
-	        		mergedFeatures.fingerDefects += f.fingerDefects;
-	        		mergedFeatures.defectBisectAngles.addAll(f.defectBisectAngles);
-	        		mergedFeatures.numHoles += f.numHoles;
-	        		mergedFeatures.narrowVertAngle |= f.narrowVertAngle;
+	        	mergedFeatures = context.mergedFeatures;
+	        	mergedFeatures.reset();
+	        	if (features.size() > 1) {
+		        	mergedFeatures.topScreen = features.get(0).topScreen;
+		        	mergedFeatures.leftScreen = features.get(0).leftScreen;
+		        	for (int i = 0; i < features.size(); ++i) {
+		        		mergedFeatures.merge(features.get(i));
+		        	}
 	        	}
 	        }
+	        
+	        // Screen quadrant of the filtered position (with hysteresis) instead of the current frame's
+	        if (mUseHandTracking && mHandTracker.isTracking()) {
+	        	mergedFeatures.topScreen = mHandTracker.isTopScreen();
+	        	mergedFeatures.leftScreen = mHandTracker.isLeftScreen();
+	        }
     	}
+    	byte[] skeletonBuffer = context.skeletonBuffer;
+    	Arrays.fill(skeletonBuffer, (byte) 0);
+    	mRasterizer.fill(skeletonShapes, skeletonBuffer, cols, rows, WHITE);
         
         // Get skeleton of shapes, then get coordinates of skeleton lines
-        OpenCVUtil.zhangSuenThinning(skeletonFrame);
-        ArrayList<MatOfPoint> skeletonContours = new ArrayList<>();
-        Mat hierarchy = new Mat();
-        Imgproc.findContours(skeletonFrame, skeletonContours, hierarchy, Imgproc.RETR_CCOMP, Imgproc.CHAIN_APPROX_SIMPLE);
-        skeletonFrame.release();
-        skeletonFrame = null;
+        long thinningStart = System.nanoTime();
+        Rect region = context.region;
+        if (mUseRoiTracking) {
+        	// Everything outside the hand's bounding box is black, only thin the bounding box (with a black border)
+        	this.clamp((int) mScaledSize.height - bounds.y - bounds.height - 1, bounds.x - 2, bounds.height + 4, bounds.width + 4, cols, rows, region);
+        	this.thinRegion(skeletonBuffer, cols, region);
+        }
+        else {
+        	this.clamp(0, 0, cols, rows, cols, rows, region);
+        	if (parallel && mThinningAlgorithm != THINNING_DISTANCE_TRANSFORM) {
+        		// Parallel Zhang-Suen thinning; the distance transform has no parallel version (and doesn't need one)
+        		mParallelSegmenter.thin(skeletonBuffer, context.markerBuffer, cols, rows);
+        	}
+        	else {
+        		this.thin(skeletonBuffer, rows, cols);
+        	}
+        }
+        double thinningTime = (System.nanoTime() - thinningStart) / 1000000.0;
+        mThinningTime = mThinningTime == 0 ? thinningTime : (1.0 - THINNING_TIME_SMOOTHING) * mThinningTime + THINNING_TIME_SMOOTHING * thinningTime;
+        ContourList skeletonContours = context.skeletonContours;
+        mContourTracer.find(skeletonBuffer, cols, region.x, region.y, region.width, region.height, skeletonContours);
         
         Result result = null;
         if (mRecordMode || recognize) {
-	        // Count number of holes
+	        // Count number of holes (hole borders enclosing at least the minimum area)
 	        int holeCount = 0;
-	        if (!hierarchy.empty()) {
-	        	int[] hierarchyBuffer = new int[(int) (hierarchy.total() * hierarchy.channels())];
-	        	hierarchy.get(0, 0, hierarchyBuffer);
-		        for (int i = 0; i < hierarchyBuffer.length; i += hierarchy.channels()) {
-		        	if (hierarchyBuffer[i + 3] >= 0 && Imgproc.contourArea(skeletonContours.get(i % 4)) > mPrefMinHoleArea) {
-		        		++holeCount;
-		        	}
-		        }
+	        for (int i = 0; i < skeletonContours.size(); ++i) {
+	        	if (skeletonContours.isHole(i) && skeletonContours.area(i) > mPrefMinHoleArea * mResolutionScale * mResolutionScale) {
+	        		++holeCount;
+	        	}
 	        }
 	        mergedFeatures.numHoles = holeCount;
         }
 	        
         // Find longest contour
-        MatOfPoint skeleton = new MatOfPoint();
+        MatOfPoint skeleton = context.emptyContour;
+        int longest = -1;
         if (skeletonContours.size() > 0) {
-        	double maxL = Imgproc.arcLength(OpenCVUtil.convert(skeletonContours.get(0)), true);
-        	MatOfPoint max = skeletonContours.get(0);
-	        for (MatOfPoint mop : skeletonContours) {
-		        double l = Imgproc.arcLength(OpenCVUtil.convert(mop), true);
+        	double maxL = skeletonContours.arcLength(0);
+        	longest = 0;
+	        for (int i = 1; i < skeletonContours.size(); ++i) {
+		        double l = skeletonContours.arcLength(i);
 		        if (l > maxL) {
-		        	max = mop;
+		        	longest = i;
 		        	maxL = l;
 		        }
 		    }
-	        skeleton = max;
+	        skeleton = context.skeleton;
+	        skeletonContours.toMat(longest, skeleton);
 	        
 	        if (mRecordMode || recognize) {
-	        	mergedFeatures.skeleton = max;
+	        	mergedFeatures.skeleton = skeleton;
 	        }
         }
 	    
         // Record the current pose
         if (mRecordPose) {
         	mRecordPose = false;
-        	mRecordedSkeleton = skeleton;
+        	// Copy, since the skeleton and the features are recycled with the next frame
+        	mRecordedSkeleton = new MatOfPoint(skeleton.toArray());
+        	mRecordedFeatures = mergedFeatures != null ? mergedFeatures.copy() : null;
+        	if (mRecordedFeatures != null) {
+        		mRecordedFeatures.skeleton = mRecordedSkeleton;
+        	}
         }
 	        
         // Try to recognize poses
         if ((mRecordMode || recognize) && mRecognizer != null) {
-        	result = mRecognizer.recognize(mergedFeatures);
+        	if (mDeferRecognition) {
+        		// Hand over a copy of the features to another thread, since the skeleton and the features are recycled with the next frame
+        		PoseFeatures features = mergedFeatures.copy();
+        		if (features.skeleton != null) {
+        			features.skeleton = new MatOfPoint(features.skeleton.toArray());
+        		}
+        		result = new Result();
+        		result.features = features;
+        	}
+        	else {
+        		result = this.recognize(mergedFeatures);
+        	}
         }
         
         if (result == null) {
-        	result = new Result();
+        	result = this.obtainResult();
         }
         
         // There must have been detected shapes, otherwise we couldn't have reached this code
         result.nonZero = true;
         
         // Draw skeleton lines
-        OpenCVUtil.drawContour(contourFrame, skeleton, GRAY, false);
+        if (longest >= 0) {
+        	mRasterizer.draw(skeletonContours, longest, contourBuffer, cols, rows, GRAY);
+        }
+        context.contourFrame.put(0, 0, contourBuffer);
        	
         // Scale up
-        Imgproc.resize(contourFrame, mCachedResultFrame, mFrameSizeRot, 0, 0, Imgproc.INTER_CUBIC);
-        contourFrame.release();
-        contourFrame = null;
+        Imgproc.resize(context.contourFrame, mCachedResultFrame, mFrameSizeRot, 0, 0, Imgproc.INTER_CUBIC);
         
         // Whew! :)
         result.frame = mCachedResultFrame;
         return result;
 	}
+	
+	/**
+	 * Thins the skeleton shapes with the selected algorithm
+	 * @param buffer Image pixels (filled pixels = -1), method works in-place
+	 * @param rows Number of rows
+	 * @param cols Number of columns
+	 */
+	private void thin(byte[] buffer, int rows, int cols) {
+		switch (mThinningAlgorithm) {
+			case THINNING_ITERATIVE:
+				// Reference implementation, allocates for every iteration anyway
+				Mat img = new Mat(rows, cols, CvType.CV_8UC1);
+				img.put(0, 0, buffer);
+				OpenCVUtil.zhangSuenThinning(img);
+				img.get(0, 0, buffer);
+				img.release();
+				break;
+			case THINNING_LOOKUP_TABLE:
+				mLookupTableThinning.thin(buffer, rows, cols);
+				break;
+			case THINNING_DISTANCE_TRANSFORM:
+				mDistanceTransformThinning.thin(buffer, rows, cols);
+				break;
+			default:
+				mThinning.thin(buffer, rows, cols);
+		}
+	}
+	
+	/**
+	 * Thins the skeleton shapes within a region only (copied to the region buffer and back)
+	 * @param buffer Image pixels (filled pixels = -1), method works in-place
+	 * @param cols Number of columns of the image
+	 * @param region Region to thin
+	 */
+	private void thinRegion(byte[] buffer, int cols, Rect region) {
+		byte[] regionBuffer = mFrameContext.regionBuffer;
+		for (int y = 0; y < region.height; ++y) {
+			System.arraycopy(buffer, (region.y + y) * cols + region.x, regionBuffer, y * region.width, region.width);
+		}
+		this.thin(regionBuffer, region.height, region.width);
+		for (int y = 0; y < region.height; ++y) {
+			System.arraycopy(regionBuffer, y * region.width, buffer, (region.y + y) * cols + region.x, region.width);
+		}
+	}
 
 	/**
-	 * Extracts various features from a given contour
-	 * @param contour
-	 * @param frame
-	 * @return Extracted features
+	 * Background subtraction with thresholding and color blob detection, then opening (remove smaller specks); finds all contours that
+	 * exceed the minimum area threshold
+	 * @param inputBuffer Scaled down HSV frame
+	 * @param channels Number of channels of the frame
+	 * @param roi Region to search (the mask is cleared outside), null for the whole frame
+	 * @param parallel Use parallel segmentation (whole frame only)
+	 * @return Contours in coordinates of the scaled frame
 	 */
-	private PoseFeatures extractFeatures(MatOfPoint contour, Mat frame) {
-		MatOfInt4 convexityDefects = new MatOfInt4();
-		MatOfInt hullIndices = new MatOfInt();
+	private ContourList segment(byte[] inputBuffer, int channels, Rect roi, boolean parallel) {
+		byte[] diffBuffer = mFrameContext.diffBuffer;
+		Mat diff = mFrameContext.diffFrame;
+		int cols = (int) mScaledSize.width;
+		int rows = (int) mScaledSize.height;
+		ContourList contours = mFrameContext.contours;
+		ContourList found = mFrameContext.found;
+		contours.clear();
+		found.clear();
 		
-		// Fill shallow convexity defects
-		Imgproc.convexHull(contour, hullIndices);
-		MatOfPoint convexHull = OpenCVUtil.getNewContourFromIndices(contour, hullIndices);
-		if (hullIndices.size().height <= 3) {
-			return null;
+		if (roi != null) {
+			Arrays.fill(diffBuffer, (byte) 0);
+			mSubtractionKernel.apply(inputBuffer, mBackground, diffBuffer, cols, channels, roi.y, roi.y + roi.height, roi.x, roi.x + roi.width);
+			// The mask is empty outside the region, so opening the whole frame gives the same result as opening the region (no submat needed)
+			diff.put(0, 0, diffBuffer);
+			Imgproc.morphologyEx(diff, diff, Imgproc.MORPH_OPEN, mOpeningKernel);
+			diff.get(0, 0, diffBuffer);
+			mContourTracer.find(diffBuffer, cols, roi.x, roi.y, roi.width, roi.height, contours);
+		}
+		else {
+			if (parallel) {
+				mParallelSegmenter.subtract(mSubtractionKernel, inputBuffer, mBackground, diffBuffer, cols, rows, channels);
+				mParallelSegmenter.open(diffBuffer, mFrameContext.openingBuffer, cols, rows, mOpeningKernelSize);
+			}
+			else {
+				mSubtractionKernel.apply(inputBuffer, mBackground, diffBuffer, cols, channels, 0, rows);
+				diff.put(0, 0, diffBuffer);
+				Imgproc.morphologyEx(diff, diff, Imgproc.MORPH_OPEN, mOpeningKernel);
+				diff.get(0, 0, diffBuffer);
+			}
+			
+			// Find contours, including holes
+			mContourTracer.find(diffBuffer, cols, 0, 0, cols, rows, contours);
+		}
+		
+		double minimumArea = mPrefMinimumArea * mResolutionScale * mResolutionScale;
+		for (int i = 0; i < contours.size(); ++i) {
+			if (contours.area(i) > minimumArea) {
+				found.add(contours, i);
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Adds centroid and area of the hand (all contours) to the hand tracker
+	 * @param contours Contours of the hand in coordinates of the scaled frame
+	 * @return Filtered velocity in the rotated frame
+	 */
+	private Point updateHandTracker(ContourList contours) {
+		// Polygon moments of each contour, like Imgproc.moments()
+		int[] p = contours.getPoints();
+		double m00 = 0, m10 = 0, m01 = 0;
+		for (int i = 0; i < contours.size(); ++i) {
+			double a00 = 0, a10 = 0, a01 = 0;
+			int start = contours.getOffset(i);
+			int end = contours.getOffset(i + 1);
+			for (int k = start, prev = end - 2; k < end; prev = k, k += 2) {
+				double cross = (double) p[prev] * p[k + 1] - (double) p[k] * p[prev + 1];
+				a00 += cross;
+				a10 += (p[prev] + p[k]) * cross;
+				a01 += (p[prev + 1] + p[k + 1]) * cross;
+			}
+			double sign = a00 < 0 ? -1 : 1;
+			m00 += sign * a00 / 2;
+			m10 += sign * a10 / 6;
+			m01 += sign * a01 / 6;
 		}
-		try {
-			Imgproc.convexityDefects(contour, hullIndices, convexityDefects);
+		if (m00 > 0) {
+			// Rotate like OpenCVUtil.rotatePoints()
+			mCentroid.x = mScaledSize.height - m01 / m00;
+			mCentroid.y = m10 / m00;
+			mHandTracker.update(mCentroid, m00, mScaledSizeRot);
+		}
+		mHandArea = m00;
+		mHandTracker.getVelocity(mVelocity);
+		return mVelocity;
+	}
+	
+	/**
+	 * Checks if a shape touches the border of the searched region (unless it's also the border of the frame)
+	 */
+	private boolean touchesBorder(Rect bounds, Rect roi) {
+		return (bounds.x <= roi.x && roi.x > 0) || (bounds.y <= roi.y && roi.y > 0)
+				|| (bounds.x + bounds.width >= roi.x + roi.width && roi.x + roi.width < (int) mScaledSize.width)
+				|| (bounds.y + bounds.height >= roi.y + roi.height && roi.y + roi.height < (int) mScaledSize.height);
+	}
+	
+	/**
+	 * Adds the motion margin to the bounding rectangle of the hand
+	 * @param growth Factor for the size the margin is relative to (at least 1)
+	 * @return Tracked region (reused)
+	 */
+	private Rect expand(int x, int y, int width, int height, double growth) {
+		double size = Math.max(width, height);
+		int margin = Math.max(ROI_MIN_MARGIN, (int) (ROI_MARGIN * size + (growth - 1.0) * size / 2));
+		return this.clamp(x - margin, y - margin, width + 2 * margin, height + 2 * margin, (int) mScaledSize.width, (int) mScaledSize.height, mRoi);
+	}
+	
+	private Rect clamp(int x, int y, int width, int height, int cols, int rows, Rect dest) {
+		int left = Math.max(0, x);
+		int top = Math.max(0, y);
+		dest.x = left;
+		dest.y = top;
+		dest.width = Math.max(0, Math.min(cols, x + width) - left);
+		dest.height = Math.max(0, Math.min(rows, y + height) - top);
+		return dest;
+	}
+	
+	/**
+	 * Extracts various features from a given contour and adds them to the features of the frame
+	 * @param contours Contours
+	 * @param index Index of the contour
+	 * @param filledContours Receives the contour with filled shallow convexity defects
+	 * @return Extracted features, null if the contour has no convexity defects
+	 */
+	private PoseFeatures extractFeatures(ContourList contours, int index, ContourList filledContours) {
+		GeometricFeatureExtractor extractor = mFeatureExtractor;
+		extractor.setContour(contours.getPoints(), contours.getOffset(index), contours.getCount(index));
+		if (extractor.computeHull() <= 3) {
+			extractor.getFilledContour(filledContours);
+			return null;
 		}
-		catch (Exception e) { }
-		hullIndices.release();
-		hullIndices = null;
 		
-		PoseFeatures features = new PoseFeatures();
+		PoseFeatures features = mFrameContext.addFeatures();
 		
-		if (convexityDefects.size().width > 0) {
-			// Draw convex hull as boundary
-			OpenCVUtil.drawContour(frame, convexHull, WHITE, false);
+		// Array of joined 4 element vectors describing a convexity defect (start point, end point, defect point, defect depth)
+		int defectCount = extractor.computeDefects();
+		int[] convexityDefectsInt = extractor.getDefects();
+		int[] p = extractor.getPoints();
+		for (int i = 0; i < 4 * defectCount; i += 4) {
+			// Check distance to convex hull
+			double convexityDepth = (double) convexityDefectsInt[i+3] / 256.0;
 			
-			// Retrieve array of joined 4 element vectors describing a convexity defect (start point, end point, defect point, defect depth)
-			int[] convexityDefectsInt = convexityDefects.toArray();
-			convexityDefects.release();
-			convexityDefects = null;
+			// Get points and check angle
+			int start = 2 * convexityDefectsInt[i];
+			int end = 2 * convexityDefectsInt[i+1];
+			int inner = 2 * convexityDefectsInt[i+2];
 			
-			Point[] contourPoints = contour.toArray();
-			for (int i = 0; i < convexityDefectsInt.length; i += 4) {
-				// Check distance to convex hull
-				double convexityDepth = (double) convexityDefectsInt[i+3] / 256.0;
-				
-				// Get points and check angle
-				Point start = contourPoints[convexityDefectsInt[i]];
-				Point end = contourPoints[convexityDefectsInt[i+1]];
-				Point inner = contourPoints[convexityDefectsInt[i+2]];
+			double defAngle = OpenCVUtil.angle(p[start], p[start+1], p[inner], p[inner+1], p[end], p[end+1]);
+			if (convexityDepth < mPrefMinDepth * mResolutionScale) {
+				// Fill shallow convexity defects (the hull edge replaces the defect in the filled contour)
+				extractor.fillDefect(i / 4);
+			}
+			else if (convexityDepth > mPrefMinFingerDepth * mResolutionScale && defAngle < mPrefMaxFingerAngle) {
+				// Count fingers and get angles
+				++features.fingerDefects;
+				double angle = OpenCVUtil.angleBisectionAngle(p[start], p[start+1], p[inner], p[inner+1], p[end], p[end+1]);
+				features.addDefect(angle, defAngle);
 				
-				double defAngle = OpenCVUtil.angle(start, inner, end);
-				if (convexityDepth < mPrefMinDepth) {
-					// Get centroid for flood filling this defect
-					double centroidX = (start.x + end.x + inner.x) / 3;
-					double centroidY = (start.y + end.y + inner.y) / 3;
-					Imgproc.floodFill(frame, new Mat(), new Point(centroidX, centroidY), WHITE);
-				}
-				else if (convexityDepth > mPrefMinFingerDepth && defAngle < mPrefMaxFingerAngle) {
-					// Count fingers and get angles
-					++features.fingerDefects;
-					double angle = OpenCVUtil.angleBisectionAngle(start, inner, end);
-					features.defectBisectAngles.add(angle);
-					features.defectAngles.add(defAngle);
-					
-					if (angle > 75 && angle < 105 && defAngle < 60) {
-						features.narrowVertAngle = true;
-					}
+				if (angle > 75 && angle < 105 && defAngle < 60) {
+					features.narrowVertAngle = true;
 				}
 			}
-			
-			// Reset boundary
-			OpenCVUtil.drawContour(frame, convexHull, BLACK, false);
 		}
+		extractor.getFilledContour(filledContours);
 		
 		// Calculate moments to find center of gravity (and the corresponding screen quadrant)
-		Moments m = Imgproc.moments(contour, true);
-		double gravityCenterX = m.get_m10() / m.get_m00();
-		double gravityCenterY = m.get_m01() / m.get_m00();
-		if (gravityCenterX < mScaledSizeRot.width/2) {
+		Point gravityCenter = mFrameContext.point;
+		extractor.getCentroid(gravityCenter);
+		if (gravityCenter.x < mScaledSizeRot.width/2) {
 			features.leftScreen = true;
 		}
-		if (gravityCenterY < mScaledSizeRot.height/2) {
+		if (gravityCenter.y < mScaledSizeRot.height/2) {
 			features.topScreen = true;
 		}
 		
@@ -447,6 +792,55 @@ public class HandDetector {
 	}
 	
 	
+	/**
+	 * Returns the result object for the current frame
+	 * @return Result of the frame context, a new one if recognition is deferred (the result is handed over to another thread then)
+	 */
+	private Result obtainResult() {
+		return mDeferRecognition ? new Result() : mFrameContext.obtainResult();
+	}
+	
+	/**
+	 * Recognizes a pose from features extracted by detect(); used if recognition is deferred
+	 * @param features Extracted features
+	 * @return Recognition result
+	 */
+	public Result recognize(PoseFeatures features) {
+		if (mRecognizer == null) {
+			return new Result();
+		}
+		TemporalPoseRecognizer temporalRecognizer = mTemporalRecognizer;
+		if (mUseTemporalSmoothing && !mRecordMode && temporalRecognizer != null) {
+			return temporalRecognizer.recognize(features);
+		}
+		return mRecognizer.recognize(features);
+	}
+	
+	/**
+	 * Returns the recognizer that smooths poses over consecutive frames (used if enabled in the preferences)
+	 * @return Temporal recognizer, null if no PoseRecognizer has been set
+	 */
+	public TemporalPoseRecognizer getTemporalRecognizer() {
+		return mTemporalRecognizer;
+	}
+	
+	/**
+	 * Forgets the poses of previous frames
+	 */
+	private void resetTemporalRecognizer() {
+		if (mTemporalRecognizer != null) {
+			mTemporalRecognizer.reset();
+		}
+	}
+	
+	/**
+	 * Enables/disables deferred recognition; if enabled, detect() only extracts features (see Result.features) and recognize() has to be called separately
+	 * @param defer Defer recognition
+	 */
+	public void setDeferRecognition(boolean defer) {
+		mDeferRecognition = defer;
+	}
+	
 	/**
 	 * Indicates that a new background should be set
 	 * @param value Set a new background
@@ -463,6 +857,14 @@ public class HandDetector {
 		return mBackground != null;
 	}
 	
+	/**
+	 * Checks if the next frame has to be processed regardless of whether it has changed (background or pose pending, background recording)
+	 * @return Next frame is needed
+	 */
+	public boolean needsNextFrame() {
+		return mBackground == null || mSetBackground || mRecordPose || mBackgroundHolder.isBackgroundRecordingEnabled();
+	}
+	
 	/**
 	 * Record the current pose
 	 */
@@ -475,7 +877,8 @@ public class HandDetector {
 	 * @param type Pose type
 	 */
 	public void savePose(int type) {
-		mRecognizer.addPose(type, mRecordedSkeleton);
+		mRecognizer.addPose(type, mRecordedSkeleton, mRecordedFeatures);
+		this.resetTemporalRecognizer();
 	}
 	
 	/**
@@ -507,6 +910,7 @@ public class HandDetector {
 	public void setRecognizer(PoseRecognizer recognizer) {
 		mRecognizer = recognizer;
 		mRecognizer.setSquareSize(this.getFrameSize());
+		mTemporalRecognizer = new TemporalPoseRecognizer(recognizer, TemporalPoseRecognizer.DEFAULT_WINDOW);
 	}
 	
 	/**
@@ -536,8 +940,72 @@ public class HandDetector {
 			mCachedScaledFrame.release();
 			mCachedScaledFrame = null;
 		}
+		mFrameContext.release();
+		mContourProcessor.release();
+		if (mParallelSegmenter != null) {
+			mParallelSegmenter.shutdown();
+			mParallelSegmenter = null;
+		}
 		mInitialized = false;
         mSetBackground = false;
+        mTrackedRoi = null;
+	}
+	
+	/**
+	 * Returns the share of frames (since ROI tracking has been enabled) in which the hand was found within the tracked region
+	 * @return ROI hit rate (0 - 1)
+	 */
+	public double getRoiHitRate() {
+		long attempts = mRoiAttempts;
+		return attempts > 0 ? (double) mRoiHits / attempts : 0.0;
+	}
+	
+	/**
+	 * Returns the size of the processed (scaled down) frames
+	 * @return Frame size, null before the first frame
+	 */
+	public Size getProcessingSize() {
+		return mScaledSize;
+	}
+	
+	/**
+	 * Returns the controller choosing the processing resolution (used if enabled in the preferences)
+	 * @return Resolution controller, null before the first frame
+	 */
+	public ResolutionController getResolutionController() {
+		return mResolutionController;
+	}
+	
+	/**
+	 * Returns the tracker of the hand position (used if enabled in the preferences)
+	 * @return Hand tracker
+	 */
+	public HandTracker getHandTracker() {
+		return mHandTracker;
+	}
+	
+	/**
+	 * Returns the total number of bytes allocated for per-frame buffers and containers; doesn't change between frames after warm-up
+	 * @return Allocated bytes
+	 */
+	public long getAllocatedBytes() {
+		return mFrameContext.getAllocatedBytes();
+	}
+	
+	/**
+	 * Returns the smoothed time needed for segmentation, thinning and recognition of a scaled down frame
+	 * @return Detection time in milliseconds
+	 */
+	public double getDetectionTime() {
+		return mDetectionTime;
+	}
+	
+	/**
+	 * Returns the smoothed time needed for thinning the segmented frame
+	 * @return Thinning time in milliseconds
+	 */
+	public double getThinningTime() {
+		return mThinningTime;
 	}
 	
 	public void updatePrefs(Context ctx) {
@@ -549,61 +1017,172 @@ public class HandDetector {
 		mPrefWeightingV = prefs[PreferenceHelper.PREF_WEIGHTING_V];
 		mPrefWeightingB = prefs[PreferenceHelper.PREF_WEIGHTING_B];
 		mPrefWeightingThreshold = prefs[PreferenceHelper.PREF_WEIGHTING_THRESHOLD];
+		mUseParallelSegmentation = PreferenceHelper.getInstance(ctx).useParallelSegmentation();
+		if (PreferenceHelper.getInstance(ctx).useRoiTracking() != mUseRoiTracking) {
+			mUseRoiTracking = PreferenceHelper.getInstance(ctx).useRoiTracking();
+			mRoiAttempts = 0;
+			mRoiHits = 0;
+			mDetectionTime = 0;
+		}
+		mUseAdaptiveResolution = PreferenceHelper.getInstance(ctx).useAdaptiveResolution();
+		if (PreferenceHelper.getInstance(ctx).useHandTracking() != mUseHandTracking) {
+			mUseHandTracking = PreferenceHelper.getInstance(ctx).useHandTracking();
+			mHandTracker.reset();
+		}
+		if (PreferenceHelper.getInstance(ctx).useTemporalSmoothing() != mUseTemporalSmoothing) {
+			mUseTemporalSmoothing = PreferenceHelper.getInstance(ctx).useTemporalSmoothing();
+			this.resetTemporalRecognizer();
+		}
+		if (PreferenceHelper.getInstance(ctx).getThinningAlgorithm() != mThinningAlgorithm) {
+			mThinningAlgorithm = PreferenceHelper.getInstance(ctx).getThinningAlgorithm();
+			mThinningTime = 0;
+		}
+		this.updateSubtractionKernel();
+	}
+	
+	/**
+	 * Rebuilds the lookup tables of the background subtraction kernel from the current preferences
+	 */
+	private void updateSubtractionKernel() {
+		mSubtractionKernel.update(mPrefThresholdH, mPrefThresholdS, mPrefThresholdV, mPrefThresholdLowerH, mPrefThresholdUpperH, mPrefThresholdBlobS,
+				mPrefWeightingH, mPrefWeightingS, mPrefWeightingV, mPrefWeightingB, mPrefWeightingThreshold);
 	}
 	
 	public boolean importPoses(Context ctx) {
 		if (mRecognizer != null) {
-			return mRecognizer.importPoses(ctx);
+			boolean success = mRecognizer.importPoses(ctx);
+			this.resetTemporalRecognizer();
+			return success;
+		}
+		return false;
+	}
+	
+	/**
+	 * Import the pose decision tree while the app is running
+	 * @param ctx Application context
+	 * @return Decision tree successfully imported
+	 */
+	public boolean importDecisionTree(Context ctx) {
+		if (mRecognizer != null) {
+			boolean success = mRecognizer.importDecisionTree(ctx);
+			this.resetTemporalRecognizer();
+			return success;
 		}
 		return false;
 	}
 	
 	
-	public class PoseFeatures {
+	/**
+	 * Features of the hand in a frame, extracted by detect()
+	 */
+	public static class PoseFeatures {
 		public static final int NO_DIRECTION = -1;
 		public static final int HORIZONTAL   = 0;
 		public static final int VERTICAL     = 1;
 		
 		public int fingerDefects = 0;
-		public ArrayList<Double> defectBisectAngles = new ArrayList<>();
-		public ArrayList<Double> defectAngles = new ArrayList<>();
 		public int numHoles = 0;
 		public MatOfPoint skeleton = null;
 		public boolean topScreen = false;
 		public boolean leftScreen = false;
 		public boolean narrowVertAngle = false;
 		
+		// Angles of the finger defects; merged features only have the bisection angles
+		private double[] mBisectAngles = new double[8];
+		private int mBisectAngleCount = 0;
+		private double[] mDefectAngles = new double[8];
+		private int mDefectAngleCount = 0;
+		
+		/**
+		 * Adds the angles of a finger defect
+		 * @param bisectAngle Angle of the bisection of the defect
+		 * @param defectAngle Angle between the fingers
+		 */
+		public void addDefect(double bisectAngle, double defectAngle) {
+			mBisectAngles = append(mBisectAngles, mBisectAngleCount++, bisectAngle);
+			mDefectAngles = append(mDefectAngles, mDefectAngleCount++, defectAngle);
+		}
+		
+		/**
+		 * Adds the features of another contour of the same frame
+		 * @param f Features
+		 */
+		public void merge(PoseFeatures f) {
+			fingerDefects += f.fingerDefects;
+			for (int i = 0; i < f.mBisectAngleCount; ++i) {
+				mBisectAngles = append(mBisectAngles, mBisectAngleCount++, f.mBisectAngles[i]);
+			}
+			numHoles += f.numHoles;
+			narrowVertAngle |= f.narrowVertAngle;
+		}
+		
+		/**
+		 * Resets all features, so the object can be reused for another frame
+		 */
+		public void reset() {
+			fingerDefects = 0;
+			numHoles = 0;
+			skeleton = null;
+			topScreen = false;
+			leftScreen = false;
+			narrowVertAngle = false;
+			mBisectAngleCount = 0;
+			mDefectAngleCount = 0;
+		}
+		
+		/**
+		 * Creates a copy (the skeleton is shared)
+		 * @return New features
+		 */
+		public PoseFeatures copy() {
+			PoseFeatures f = new PoseFeatures();
+			f.fingerDefects = fingerDefects;
+			f.numHoles = numHoles;
+			f.skeleton = skeleton;
+			f.topScreen = topScreen;
+			f.leftScreen = leftScreen;
+			f.narrowVertAngle = narrowVertAngle;
+			f.mBisectAngles = mBisectAngles.clone();
+			f.mBisectAngleCount = mBisectAngleCount;
+			f.mDefectAngles = mDefectAngles.clone();
+			f.mDefectAngleCount = mDefectAngleCount;
+			return f;
+		}
+		
 		public int getDirection() {
-			if (defectBisectAngles.size() == 0) {
+			int count = mBisectAngleCount;
+			if (count == 0) {
 				return NO_DIRECTION;
 			}
-			ArrayList<Integer> dirs = new ArrayList<>();
-			for (double d : defectBisectAngles) {
-				if (d <= 45 || d >= 135) {
-					dirs.add(HORIZONTAL);
-				}
-				else {
-					dirs.add(VERTICAL);
+			// Average of the directions (HORIZONTAL = 0, VERTICAL = 1), without allocating a list
+			int vertical = 0;
+			for (int i = 0; i < count; ++i) {
+				double d = mBisectAngles[i];
+				if (d > 45 && d < 135) {
+					++vertical;
 				}
 			}
-			if (dirs.size() == 1) {
-				return dirs.get(0);
-			}
-			double avgDir = 0;
-			for (int dir : dirs) {
-				avgDir += (double) dir;
-			}
-			return (int) Math.round(avgDir / dirs.size());
+			return (int) Math.round((double) vertical / count);
 		}
 		
 		public boolean checkForU() {
-			for (int i = 0; i < defectAngles.size(); ++i) {
-				if (defectBisectAngles.get(i) > 65 && defectBisectAngles.get(i) < 100 && defectAngles.get(i) > 60 && defectAngles.get(i) < 90) {
+			for (int i = 0; i < mDefectAngleCount; ++i) {
+				if (mBisectAngles[i] > 65 && mBisectAngles[i] < 100 && mDefectAngles[i] > 60 && mDefectAngles[i] < 90) {
 					return true;
 				}
 			}
 			return false;
 		}
+		
+		private static double[] append(double[] values, int count, double value) {
+			if (count == values.length) {
+				double[] grown = new double[2 * values.length];
+				System.arraycopy(values, 0, grown, 0, count);
+				values = grown;
+			}
+			values[count] = value;
+			return values;
+		}
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,164 @@
+package de.lmu.ifi.medien.mime;
+
+import org.opencv.core.Point;
+import org.opencv.core.Size;
+
+/**
+ * Tracks the hand's centroid and area over consecutive frames with a Kalman filter.
+ * The centroid uses a constant velocity model per axis, the area a random walk. The filtered velocity and area are used for ROI tracking, the
+ * filtered position gives screen quadrant flags with hysteresis, so they don't flicker while the hand is near a center line.
+ * Coordinates are those of the rotated frame, like the features extracted by HandDetector.
+ */
+public class HandTracker {
+
+	private static final double POSITION_PROCESS_NOISE = 1.0;		// variance of the acceleration (pixels per frame²)
+	private static final double POSITION_MEASUREMENT_NOISE = 4.0;	// variance of the measured centroid (pixels²)
+	private static final double AREA_PROCESS_NOISE = 0.01;			// variance of the area change per frame (relative)
+	private static final double AREA_MEASUREMENT_NOISE = 0.04;		// variance of the measured area (relative)
+	public static final double QUADRANT_HYSTERESIS = 0.05;			// distance from the center line needed to change a quadrant flag (relative)
+
+	private final Axis mX = new Axis();
+	private final Axis mY = new Axis();
+	private double mArea;
+	private double mAreaVariance;
+	private boolean mInitialized = false;
+
+	private boolean mTopScreen;
+	private boolean mLeftScreen;
+
+
+	/**
+	 * Adds the measurement of the next frame
+	 * @param centroid Centroid of the hand
+	 * @param area Area of the hand
+	 * @param frameSize Size of the (rotated) frame
+	 */
+	public synchronized void update(Point centroid, double area, Size frameSize) {
+		if (!mInitialized) {
+			mInitialized = true;
+			mX.init(centroid.x);
+			mY.init(centroid.y);
+			mArea = area;
+			mAreaVariance = AREA_MEASUREMENT_NOISE * area * area;
+			mLeftScreen = centroid.x < frameSize.width / 2;
+			mTopScreen = centroid.y < frameSize.height / 2;
+			return;
+		}
+
+		mX.predict();
+		mY.predict();
+		mX.correct(centroid.x);
+		mY.correct(centroid.y);
+
+		// Area: random walk, noise relative to the current area
+		mAreaVariance += AREA_PROCESS_NOISE * mArea * mArea;
+		double gain = mAreaVariance / (mAreaVariance + AREA_MEASUREMENT_NOISE * mArea * mArea);
+		mArea += gain * (area - mArea);
+		mAreaVariance *= 1.0 - gain;
+
+		// Quadrants change only if the filtered position is clearly on the other side
+		boolean left = this.side(mX.position, frameSize.width, mLeftScreen);
+		boolean top = this.side(mY.position, frameSize.height, mTopScreen);
+		mLeftScreen = left;
+		mTopScreen = top;
+	}
+
+	/**
+	 * Forgets the hand, e.g. if it has left the frame
+	 */
+	public synchronized void reset() {
+		mInitialized = false;
+	}
+
+	/**
+	 * Checks if the hand is being tracked
+	 * @return Hand has been measured since the last reset
+	 */
+	public synchronized boolean isTracking() {
+		return mInitialized;
+	}
+
+	/**
+	 * Returns the filtered velocity
+	 * @param velocity Receives the movement of the centroid per frame
+	 */
+	public synchronized void getVelocity(Point velocity) {
+		velocity.x = mX.velocity;
+		velocity.y = mY.velocity;
+	}
+
+	/**
+	 * Returns the filtered area
+	 * @return Area of the hand
+	 */
+	public synchronized double getArea() {
+		return mArea;
+	}
+
+	public synchronized boolean isTopScreen() {
+		return mTopScreen;
+	}
+
+	public synchronized boolean isLeftScreen() {
+		return mLeftScreen;
+	}
+
+
+	/**
+	 * Checks on which side of the center line a position is
+	 * @return Position is on the lower side (left/top)
+	 */
+	private boolean side(double position, double size, boolean lower) {
+		double center = size / 2;
+		double band = QUADRANT_HYSTERESIS * size;
+		return lower ? position < center + band : position < center - band;
+	}
+
+	/**
+	 * Kalman filter for position and velocity along one axis
+	 */
+	private static class Axis {
+		double position;
+		double velocity;
+		// Covariance
+		double p00, p01, p10, p11;
+
+		void init(double z) {
+			position = z;
+			velocity = 0;
+			p00 = POSITION_MEASUREMENT_NOISE;
+			p01 = p10 = 0;
+			p11 = POSITION_MEASUREMENT_NOISE;
+		}
+
+		void predict() {
+			// x = F x, P = F P F^T + Q with F = [1 1; 0 1] and Q for a white noise acceleration
+			position += velocity;
+			double n00 = p00 + p01 + p10 + p11 + POSITION_PROCESS_NOISE / 4;
+			double n01 = p01 + p11 + POSITION_PROCESS_NOISE / 2;
+			double n10 = p10 + p11 + POSITION_PROCESS_NOISE / 2;
+			double n11 = p11 + POSITION_PROCESS_NOISE;
+			p00 = n00;
+			p01 = n01;
+			p10 = n10;
+			p11 = n11;
+		}
+
+		void correct(double z) {
+			// Measurement of the position only (H = [1 0])
+			double s = p00 + POSITION_MEASUREMENT_NOISE;
+			double k0 = p00 / s;
+			double k1 = p10 / s;
+			double residual = z - position;
+			position += k0 * residual;
+			velocity += k1 * residual;
+			double n10 = p10 - k1 * p00;
+			double n11 = p11 - k1 * p01;
+			p00 = (1 - k0) * p00;
+			p01 = (1 - k0) * p01;
+			p10 = n10;
+			p11 = n11;
+		}
+	}
+
+}
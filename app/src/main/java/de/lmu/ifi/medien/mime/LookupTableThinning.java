@@ -0,0 +1,159 @@
+package de.lmu.ifi.medien.mime;
+
+import org.opencv.core.Mat;
+
+/**
+ * Zhang-Suen thinning driven by precomputed decision tables.
+ * The 8-neighborhood of a pixel is packed into a byte index (bit 0 = p2, top middle, counting clockwise up to bit 7 = p9); for both steps a
+ * 256-entry table tells if a filled pixel with this neighborhood has to be eliminated. While scanning a row, the 3x3 window is updated by
+ * shifting in one new column per pixel instead of reloading all eight neighbors. Works on binary images (filled pixels = white).
+ */
+public class LookupTableThinning {
+
+	// Elimination decision for each 8-neighborhood, one table per step
+	private static final boolean[][] NEIGHBORHOOD_LUT = new boolean[2][256];
+
+	// Same decisions indexed by the 9 bit window (3 bits per column: top, middle, bottom; left column in the lowest bits)
+	private static final boolean[][] WINDOW_LUT = new boolean[2][512];
+
+	static {
+		// Derive tables from the reference implementation
+		byte[] window = new byte[9];
+		for (int step = 0; step <= 1; ++step) {
+			for (int index = 0; index < 256; ++index) {
+				// Neighbor positions in a 3x3 buffer: p2 .. p9
+				int[] positions = { 1, 2, 5, 8, 7, 6, 3, 0 };
+				for (int bit = 0; bit < 8; ++bit) {
+					window[positions[bit]] = (byte) (((index >> bit) & 1) == 1 ? -1 : 0);
+				}
+				window[4] = -1;
+				NEIGHBORHOOD_LUT[step][index] = OpenCVUtil.zhangSuenMarker(window, 4, 3, step) == 0;
+			}
+			for (int w = 0; w < 512; ++w) {
+				boolean center = ((w >> 4) & 1) == 1;
+				WINDOW_LUT[step][w] = center && NEIGHBORHOOD_LUT[step][windowToIndex(w)];
+			}
+		}
+	}
+
+	private byte[] mBuffer = new byte[0];
+	private byte[] mColumns = new byte[0];
+	private int[] mRemoved = new int[0];
+
+
+	/**
+	 * Thins a binary image
+	 * @param img The image, method works in-place
+	 */
+	public void thin(Mat img) {
+		int rows = img.rows();
+		int cols = img.cols();
+		if (mBuffer.length != rows * cols) {
+			mBuffer = new byte[rows * cols];
+		}
+		img.get(0, 0, mBuffer);
+		this.thin(mBuffer, rows, cols);
+		img.put(0, 0, mBuffer);
+	}
+
+	/**
+	 * Thins a binary image given as raw pixel buffer
+	 * @param buffer Image pixels (filled pixels = -1), method works in-place
+	 * @param rows Number of rows
+	 * @param cols Number of columns
+	 */
+	public void thin(byte[] buffer, int rows, int cols) {
+		if (mRemoved.length < rows * cols) {
+			mRemoved = new int[rows * cols];
+		}
+		if (mColumns.length < cols) {
+			mColumns = new byte[cols];
+		}
+
+		boolean first = true;
+		boolean changed;
+		do {
+			int removed = this.step(buffer, rows, cols, 0);
+			if (first) {
+				// Like the reference implementation, the first step also clears the image border
+				removed += clearBorder(buffer, rows, cols);
+				first = false;
+			}
+			removed += this.step(buffer, rows, cols, 1);
+			changed = removed > 0;
+		}
+		while (changed);
+	}
+
+	/**
+	 * Runs one step of the algorithm on the whole image
+	 * @return Number of removed pixels
+	 */
+	private int step(byte[] buffer, int rows, int cols, int step) {
+		final boolean[] lut = WINDOW_LUT[step];
+		final byte[] columns = mColumns;
+		int removed = 0;
+
+		for (int y = 1; y < rows-1; ++y) {
+			int prev = cols*(y-1);
+			int cur  = cols*y;
+			int next = cols*(y+1);
+
+			// Pack each column of the three rows into 3 bits
+			for (int x = 0; x < cols; ++x) {
+				columns[x] = (byte) ((buffer[prev + x] == -1 ? 1 : 0) | (buffer[cur + x] == -1 ? 2 : 0) | (buffer[next + x] == -1 ? 4 : 0));
+			}
+
+			// Slide the window along the row
+			int w = (columns[0] << 3) | (columns[1] << 6);
+			for (int x = 1; x < cols-1; ++x) {
+				w = (w >>> 3) | (columns[x+1] << 6);
+				if (lut[w]) {
+					mRemoved[removed++] = cur + x;
+				}
+			}
+		}
+
+		// Eliminate pixels
+		for (int k = 0; k < removed; ++k) {
+			buffer[mRemoved[k]] = 0;
+		}
+		return removed;
+	}
+
+	/**
+	 * Clears the image border and all pixels that aren't filled
+	 * @return Number of changed pixels
+	 */
+	private static int clearBorder(byte[] buffer, int rows, int cols) {
+		int changed = 0;
+		for (int y = 0; y < rows; ++y) {
+			for (int x = 0; x < cols; ++x) {
+				int i = y*cols + x;
+				boolean border = y == 0 || y == rows-1 || x == 0 || x == cols-1;
+				if (buffer[i] != 0 && (border || buffer[i] != -1)) {
+					buffer[i] = 0;
+					++changed;
+				}
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Converts a 9 bit window into the corresponding 8-neighborhood index
+	 */
+	private static int windowToIndex(int w) {
+		// Window bit = 3 * column + row; column 0 = left, row 0 = top
+		int p2 = (w >> 3) & 1;
+		int p3 = (w >> 6) & 1;
+		int p4 = (w >> 7) & 1;
+		int p5 = (w >> 8) & 1;
+		int p6 = (w >> 5) & 1;
+		int p7 = (w >> 2) & 1;
+		int p8 = (w >> 1) & 1;
+		int p9 = w & 1;
+		return p2 | (p3 << 1) | (p4 << 2) | (p5 << 3) | (p6 << 4) | (p7 << 5) | (p8 << 6) | (p9 << 7);
+	}
+
+}
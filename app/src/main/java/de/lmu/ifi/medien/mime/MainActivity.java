@@ -10,10 +10,16 @@ import org.opencv.android.CameraBridgeViewBase.CvCameraViewFrame;
 import org.opencv.android.CameraBridgeViewBase.CvCameraViewListener2;
 import org.opencv.android.LoaderCallbackInterface;
 import org.opencv.android.OpenCVLoader;
+import org.opencv.core.Core;
 import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
 
 import android.app.Activity;
+import android.app.ProgressDialog;
 import android.content.Context;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.view.Menu;
@@ -23,6 +29,7 @@ import android.view.View.OnClickListener;
 import android.view.WindowManager;
 import android.widget.Button;
 import android.widget.ListView;
+import de.lmu.ifi.medien.mime.$N.RecognitionModeReport;
 
 public class MainActivity extends Activity implements CvCameraViewListener2 {
 	
@@ -34,6 +41,9 @@ public class MainActivity extends Activity implements CvCameraViewListener2 {
 	private boolean mShowRecognition = false;
 	private volatile boolean mRecordPose = false;
 	private volatile boolean mCheckPoseNow = false;
+	private volatile boolean mUsePipeline = false;
+	private volatile boolean mUseNV21 = false;
+	private volatile boolean mUseChangeGate = false;
 	
 	private HandDetector mHandDetector;
 	private PoseRecognizer mPoseRecognizer;
@@ -42,6 +52,12 @@ public class MainActivity extends Activity implements CvCameraViewListener2 {
 	private PreferenceHelper mPrefs;
 	private SQLiteManager mDatabase;
 	private ActionManager mActionManager;
+	private DetectionPipeline mPipeline;
+	private CameraFrameSource mFrameSource = new CameraFrameSource();
+	private FrameChangeGate mChangeGate = new FrameChangeGate();
+	private PoseRecognizer.Result mLastResult;	// result of the last processed frame, reused for unchanged frames
+	private Mat mLastFrame;						// clean copy of its frame
+	private Mat mOverlayFrame;					// copy of the shown frame for the FPS overlays; the frames of detector and pipeline are shared
 	
 	private Button mConfirmButton;
 	
@@ -71,6 +87,9 @@ public class MainActivity extends Activity implements CvCameraViewListener2 {
 		mBackgroundHolder = BackgroundHolder.getInstance();
 		mBackgroundHolder.setUseSavedBackground(mPrefs.useSavedBackground());
 		mBackgroundHolder.load(this);
+		mUsePipeline = mPrefs.usePipeline();
+		mUseNV21 = mPrefs.useNV21Input();
+		mUseChangeGate = mPrefs.useChangeGate();
 		
         mHandDetector = HandDetector.getInstance();
         mHandDetector.updatePrefs(MainActivity.this);
@@ -127,6 +146,8 @@ public class MainActivity extends Activity implements CvCameraViewListener2 {
 					
 					// Finish initialization
 					mPoseRecognizer = new PoseRecognizer(MainActivity.this, mHandDetector.getFrameSize());
+					mPoseRecognizer.setRecognitionMode(mPrefs.getRecognitionMode());
+					mPoseRecognizer.setUseClassifier(mPrefs.useClassifier());
 			        mHandDetector.setRecognizer(mPoseRecognizer);
 			        
 			        // Initialize list of poses
@@ -205,6 +226,9 @@ public class MainActivity extends Activity implements CvCameraViewListener2 {
         if (mPoseListHelper != null) {
         	mPoseListHelper.clean();
         }
+        if (mPoseRecognizer != null) {
+        	mPoseRecognizer.release();
+        }
 	}
 	
 	@Override
@@ -216,6 +240,15 @@ public class MainActivity extends Activity implements CvCameraViewListener2 {
 	@Override
     public boolean onPrepareOptionsMenu(Menu menu) {
     	menu.findItem(R.id.menu_savedbg).setTitle(mPrefs.useSavedBackground() ? R.string.menu_savedbg2 : R.string.menu_savedbg1);
+    	menu.findItem(R.id.menu_parallel).setTitle(mPrefs.useParallelSegmentation() ? R.string.menu_parallel2 : R.string.menu_parallel1);
+    	menu.findItem(R.id.menu_roi).setTitle(mPrefs.useRoiTracking() ? R.string.menu_roi2 : R.string.menu_roi1);
+    	menu.findItem(R.id.menu_tracking).setTitle(mPrefs.useHandTracking() ? R.string.menu_tracking2 : R.string.menu_tracking1);
+    	menu.findItem(R.id.menu_adaptive).setTitle(mPrefs.useAdaptiveResolution() ? R.string.menu_adaptive2 : R.string.menu_adaptive1);
+    	menu.findItem(R.id.menu_pipeline).setTitle(mUsePipeline ? R.string.menu_pipeline2 : R.string.menu_pipeline1);
+    	menu.findItem(R.id.menu_nv21).setTitle(mUseNV21 ? R.string.menu_nv212 : R.string.menu_nv211);
+    	menu.findItem(R.id.menu_classifier).setTitle(mPrefs.useClassifier() ? R.string.menu_classifier2 : R.string.menu_classifier1);
+    	menu.findItem(R.id.menu_smoothing).setTitle(mPrefs.useTemporalSmoothing() ? R.string.menu_smoothing2 : R.string.menu_smoothing1);
+    	menu.findItem(R.id.menu_changegate).setTitle(mUseChangeGate ? R.string.menu_changegate2 : R.string.menu_changegate1);
     	menu.findItem(R.id.menu_recordpos).setTitle(mRecordPose ? R.string.menu_recordpos2 : R.string.menu_recordpos1);
     	
     	boolean studyModeEnabled = mPrefs.isStudyModeEnabled();
@@ -225,6 +258,17 @@ public class MainActivity extends Activity implements CvCameraViewListener2 {
     	menu.findItem(R.id.menu_togglefps).setVisible(!studyModeEnabled);
     	menu.findItem(R.id.menu_recordbg).setVisible(!studyModeEnabled);
     	menu.findItem(R.id.menu_savedbg).setVisible(!studyModeEnabled);
+    	menu.findItem(R.id.menu_parallel).setVisible(!studyModeEnabled);
+    	menu.findItem(R.id.menu_roi).setVisible(!studyModeEnabled);
+    	menu.findItem(R.id.menu_tracking).setVisible(!studyModeEnabled);
+    	menu.findItem(R.id.menu_adaptive).setVisible(!studyModeEnabled);
+    	menu.findItem(R.id.menu_pipeline).setVisible(!studyModeEnabled);
+    	menu.findItem(R.id.menu_nv21).setVisible(!studyModeEnabled);
+    	menu.findItem(R.id.menu_thinning).setVisible(!studyModeEnabled);
+    	menu.findItem(R.id.menu_recognitionmode).setVisible(!studyModeEnabled && mPoseRecognizer != null);
+    	menu.findItem(R.id.menu_classifier).setVisible(!studyModeEnabled && mPoseRecognizer != null);
+    	menu.findItem(R.id.menu_smoothing).setVisible(!studyModeEnabled);
+    	menu.findItem(R.id.menu_changegate).setVisible(!studyModeEnabled);
     	menu.findItem(R.id.menu_recordpos).setVisible(!studyModeEnabled);
     	menu.findItem(R.id.menu_showpos).setVisible(!studyModeEnabled);
     	menu.findItem(R.id.menu_showrecognition).setVisible(!studyModeEnabled);
@@ -285,6 +329,93 @@ public class MainActivity extends Activity implements CvCameraViewListener2 {
 				invalidateOptionsMenu();
 				return true;
 			
+			// Enable/disable multi-core segmentation
+			case R.id.menu_parallel:
+				boolean enable3 = !mPrefs.useParallelSegmentation();
+				mPrefs.setUseParallelSegmentation(enable3);
+				mHandDetector.updatePrefs(MainActivity.this);
+				item.setTitle(enable3 ? R.string.menu_parallel2 : R.string.menu_parallel1);
+				return true;
+			
+			// Enable/disable searching the hand only around its position in the previous frame
+			case R.id.menu_roi:
+				boolean enable5 = !mPrefs.useRoiTracking();
+				mPrefs.setUseRoiTracking(enable5);
+				mHandDetector.updatePrefs(MainActivity.this);
+				item.setTitle(enable5 ? R.string.menu_roi2 : R.string.menu_roi1);
+				return true;
+			
+			// Enable/disable filtering the hand position over consecutive frames
+			case R.id.menu_tracking:
+				boolean enable6 = !mPrefs.useHandTracking();
+				mPrefs.setUseHandTracking(enable6);
+				mHandDetector.updatePrefs(MainActivity.this);
+				item.setTitle(enable6 ? R.string.menu_tracking2 : R.string.menu_tracking1);
+				return true;
+			
+			// Enable/disable adapting the processing resolution to the frame time
+			case R.id.menu_adaptive:
+				boolean enable7 = !mPrefs.useAdaptiveResolution();
+				mPrefs.setUseAdaptiveResolution(enable7);
+				mHandDetector.updatePrefs(MainActivity.this);
+				item.setTitle(enable7 ? R.string.menu_adaptive2 : R.string.menu_adaptive1);
+				return true;
+			
+			// Enable/disable pipelined processing
+			case R.id.menu_pipeline:
+				mUsePipeline = !mUsePipeline;
+				mPrefs.setUsePipeline(mUsePipeline);
+				item.setTitle(mUsePipeline ? R.string.menu_pipeline2 : R.string.menu_pipeline1);
+				return true;
+			
+			// Enable/disable scaling down NV21 camera frames directly (colors differ slightly, so the background is set again)
+			case R.id.menu_nv21:
+				mUseNV21 = !mUseNV21;
+				mPrefs.setUseNV21Input(mUseNV21);
+				mHandDetector.setBackground(true);
+				item.setTitle(mUseNV21 ? R.string.menu_nv212 : R.string.menu_nv211);
+				return true;
+			
+			// Select thinning algorithm
+			case R.id.menu_thinning:
+				Util.select(this, R.string.thinning_select, new int[] { R.string.thinning_iterative, R.string.thinning_incremental, R.string.thinning_lookup, R.string.thinning_distance }, mPrefs.getThinningAlgorithm(), new Util.Callback<Integer>() {
+					@Override
+					public void call(Integer param) {
+						mPrefs.setThinningAlgorithm(param);
+						mHandDetector.updatePrefs(MainActivity.this);
+					}
+				});
+				return true;
+			
+			// Select recognition mode; options show accuracy and latency on samples generated from the recorded poses
+			case R.id.menu_recognitionmode:
+				new ModeReportTask().execute(mPoseRecognizer);
+				return true;
+			
+			// Enable/disable the classifier trained on the recorded poses (asked before the $N recognizer)
+			case R.id.menu_classifier:
+				boolean enable8 = !mPrefs.useClassifier();
+				mPrefs.setUseClassifier(enable8);
+				mPoseRecognizer.setUseClassifier(enable8);
+				item.setTitle(enable8 ? R.string.menu_classifier2 : R.string.menu_classifier1);
+				return true;
+			
+			// Enable/disable smoothing of recognized poses over consecutive frames
+			case R.id.menu_smoothing:
+				boolean enable4 = !mPrefs.useTemporalSmoothing();
+				mPrefs.setUseTemporalSmoothing(enable4);
+				mHandDetector.updatePrefs(MainActivity.this);
+				item.setTitle(enable4 ? R.string.menu_smoothing2 : R.string.menu_smoothing1);
+				return true;
+			
+			// Enable/disable skipping of frames that haven't changed
+			case R.id.menu_changegate:
+				mUseChangeGate = !mUseChangeGate;
+				mPrefs.setUseChangeGate(mUseChangeGate);
+				mChangeGate.reset();
+				item.setTitle(mUseChangeGate ? R.string.menu_changegate2 : R.string.menu_changegate1);
+				return true;
+			
 			// Show/hide button for recording poses
 			case R.id.menu_recordpos:
 				mRecordPose = !mRecordPose;
@@ -312,17 +443,48 @@ public class MainActivity extends Activity implements CvCameraViewListener2 {
 				String posesPath = Util.getSDCardDirPath() + "/" + PoseRecognizer.FILENAME;
 				String backgroundPath = Util.getSDCardDirPath() + "/" + BackgroundHolder.FILENAME;
 				File poses = new File(posesPath);
+				File binaryPoses = new File(Util.getSDCardDirPath() + "/" + PoseStore.FILENAME);
 				File background = new File(backgroundPath);
 				try {
-					Util.copyFile(new FileInputStream(poses), this.openFileOutput(PoseRecognizer.FILENAME, Context.MODE_PRIVATE));
+					// The pose file may be memory-mapped by the recognizer, so it is replaced instead of overwritten
+					if (binaryPoses.exists()) {
+						Util.replaceFile(binaryPoses, this.getFileStreamPath(PoseStore.FILENAME));
+					}
+					else {
+						// Serialized poses are converted by PoseRecognizer.restore()
+						Util.replaceFile(poses, this.getFileStreamPath(PoseRecognizer.FILENAME));
+					}
 					Util.copyFile(new FileInputStream(background), this.openFileOutput(BackgroundHolder.FILENAME, Context.MODE_PRIVATE));
 				}
 				catch (Exception e) { }
+				File decisionTree = new File(Util.getSDCardDirPath() + "/" + PoseDecisionTree.FILENAME);
+				try {
+					if (decisionTree.exists()) {
+						Util.copyFile(new FileInputStream(decisionTree), this.openFileOutput(PoseDecisionTree.FILENAME, Context.MODE_PRIVATE));
+					}
+				}
+				catch (Exception e) { }
+				// Samples of the classifier only fit the poses they were recorded with
+				File classifier = new File(Util.getSDCardDirPath() + "/" + PoseClassifier.FILENAME);
+				try {
+					if (classifier.exists()) {
+						Util.copyFile(new FileInputStream(classifier), this.openFileOutput(PoseClassifier.FILENAME, Context.MODE_PRIVATE));
+					}
+					else {
+						deleteFile(PoseClassifier.FILENAME);
+					}
+				}
+				catch (Exception e) { }
 				
+				boolean decisionTreeImported = mHandDetector.importDecisionTree(this);
 				if (!mHandDetector.importPoses(this)) {
 					Util.toast(this, R.string.message_error_importing_poses);
 					return true;
 				}
+				if (!decisionTreeImported) {
+					Util.toast(this, R.string.message_error_importing_decision_tree);
+					return true;
+				}
 				if (!mBackgroundHolder.importBackground(this)) {
 					Util.toast(this, R.string.message_error_importing_background);
 					return true;
@@ -341,6 +503,8 @@ public class MainActivity extends Activity implements CvCameraViewListener2 {
 						mPoseRecognizer.reset();
 						deleteFile(BackgroundHolder.FILENAME);
 						deleteFile(PoseRecognizer.FILENAME);
+						deleteFile(PoseStore.FILENAME);
+						deleteFile(PoseClassifier.FILENAME);
 					}
 				});
 				return true;
@@ -386,30 +550,190 @@ public class MainActivity extends Activity implements CvCameraViewListener2 {
 		}
     }
 
-    public void onCameraViewStopped() { }
+    public void onCameraViewStopped() {
+    	this.stopPipeline();
+    	mChangeGate.reset();
+    	mFrameSource.release();
+    	mLastResult = null;
+    	if (mLastFrame != null) {
+    		mLastFrame.release();
+    		mLastFrame = null;
+    	}
+    	if (mOverlayFrame != null) {
+    		mOverlayFrame.release();
+    		mOverlayFrame = null;
+    	}
+    }
 
     public Mat onCameraFrame(CvCameraViewFrame inputFrame) {
-    	final PoseRecognizer.Result result = mHandDetector.detect(inputFrame.rgba(), true);
+    	final PoseRecognizer.Result result;
+    	Mat frame;
+    	
+    	// Skip frames that haven't changed since the last processed frame (gray() is the camera's Y plane, no conversion needed)
+    	boolean changed = true;
+    	if (mUseChangeGate) {
+    		boolean force = mHandDetector.needsNextFrame() || (!mUsePipeline && mLastResult == null);
+    		changed = mChangeGate.hasChanged(inputFrame.gray(), force);
+    	}
+    	
+    	if (mUsePipeline) {
+    		// Detection and recognition run on their own threads, show the latest results
+    		if (mPipeline == null) {
+    			mPipeline = new DetectionPipeline(mHandDetector, 1, FrameQueue.DROP_OLDEST);
+    			mPipeline.start();
+    		}
+    		if (changed) {
+    			mPipeline.submit(inputFrame.rgba());
+    		}
+    		result = mPipeline.getLatestResult();
+    		frame = mPipeline.getRenderFrame();
+    		mLastResult = null;
+    	}
+    	else {
+    		this.stopPipeline();
+    		if (changed) {
+    			if (mUseNV21) {
+    				mFrameSource.setFrame(inputFrame);
+    				result = mHandDetector.detect(mFrameSource, true);
+    			}
+    			else {
+    				result = mHandDetector.detect(inputFrame.rgba(), true);
+    			}
+    			frame = result.frame;
+    			if (mUseChangeGate && frame != null) {
+    				// Keep a copy without overlays for the following unchanged frames
+    				if (mLastFrame == null) {
+    					mLastFrame = new Mat();
+    				}
+    				frame.copyTo(mLastFrame);
+    				mLastResult = result;
+    			}
+    			else {
+    				mLastResult = null;
+    			}
+    		}
+    		else {
+    			// Reuse the result of the last processed frame and show its clean copy
+    			result = mLastResult;
+    			frame = mLastFrame;
+    		}
+    	}
     	
     	if (result.nonZero) {
     		mActionManager.reaction();
     	}
     	if (mCheckPoseNow) {
-	    	// Note: We are not in UI thread here!
+	    	// Note: We are not in UI thread here! The result is reused for the next frame, so the pose is copied
+	    	final int pose = result.pose;
 	    	MainActivity.this.runOnUiThread(new Runnable(){
 			    public void run(){
 			    	// Now we're on the UI thread...
 		    		mCheckPoseNow = false;
 		    		mConfirmButton.setEnabled(true);
-			    	mActionManager.check(result.pose);
+			    	mActionManager.check(pose);
 			    	if (mShowRecognition) {
-			    		Util.toast(MainActivity.this, "ID:" + result.pose + ", Pose: " + PoseRecognizer.getDescription(result.pose));
+			    		Util.toast(MainActivity.this, "ID:" + pose + ", Pose: " + PoseRecognizer.getDescription(pose));
 			    	}
 			    }
 	    	});
     	}
     	
-    	return result.frame;
+    	// Show thinning time along with the FPS meter (for comparing thinning algorithms); drawn on a copy, so the overlays don't end up in
+    	// frames that are shown again (e.g. the detector's empty frame if no hand was found, the pipeline's frame until the next one is ready)
+    	if (mShowFPS && frame != null) {
+    		if (mOverlayFrame == null) {
+    			mOverlayFrame = new Mat();
+    		}
+    		frame.copyTo(mOverlayFrame);
+    		frame = mOverlayFrame;
+    		Core.putText(frame, String.format("Thinning: %.2f ms", mHandDetector.getThinningTime()), new Point(20, frame.rows() - 20), Core.FONT_HERSHEY_SIMPLEX, 0.8, new Scalar(255, 255, 255, 255));
+    		TemporalPoseRecognizer temporalRecognizer = mHandDetector.getTemporalRecognizer();
+    		if (mPrefs.useTemporalSmoothing() && temporalRecognizer != null) {
+    			Core.putText(frame, String.format("Pose: %s (%.0f%%), skipped %d/%d frames", PoseRecognizer.getDescription(result.pose), 100.0 * result.confidence,
+    					temporalRecognizer.getSkippedFrames(), temporalRecognizer.getFrames()), new Point(20, frame.rows() - 50), Core.FONT_HERSHEY_SIMPLEX, 0.8, new Scalar(255, 255, 255, 255));
+    		}
+    		if (mPrefs.useRoiTracking()) {
+    			Core.putText(frame, String.format("Detection: %.2f ms, ROI hits %.0f%%", mHandDetector.getDetectionTime(), 100.0 * mHandDetector.getRoiHitRate()),
+    					new Point(20, frame.rows() - 110), Core.FONT_HERSHEY_SIMPLEX, 0.8, new Scalar(255, 255, 255, 255));
+    		}
+    		ResolutionController controller = mHandDetector.getResolutionController();
+    		if (mPrefs.useAdaptiveResolution() && controller != null) {
+    			Size size = mHandDetector.getProcessingSize();
+    			Core.putText(frame, String.format("Resolution: %.0fx%.0f, %.1f/%.1f ms per frame", size.width, size.height, controller.getFrameTime(), controller.getBudget()),
+    					new Point(20, frame.rows() - 140), Core.FONT_HERSHEY_SIMPLEX, 0.8, new Scalar(255, 255, 255, 255));
+    		}
+    		if (mPrefs.useClassifier() && mPoseRecognizer != null) {
+    			PoseClassifier classifier = mPoseRecognizer.getClassifier();
+    			Core.putText(frame, String.format("Classifier: %.1f us per call, $N needed %.0f%% of %d calls", classifier.getLatency(),
+    					100.0 * classifier.getFallbackRate(), classifier.getCalls()), new Point(20, frame.rows() - 170), Core.FONT_HERSHEY_SIMPLEX, 0.8, new Scalar(255, 255, 255, 255));
+    		}
+    		if (mUseChangeGate) {
+    			Core.putText(frame, String.format("Unchanged: skipped %d/%d frames (%.0f%%)", mChangeGate.getSkippedFrames(), mChangeGate.getFrames(),
+    					100.0 * mChangeGate.getSkipRatio()), new Point(20, frame.rows() - 80), Core.FONT_HERSHEY_SIMPLEX, 0.8, new Scalar(255, 255, 255, 255));
+    		}
+    		if (mPipeline != null) {
+    			Core.putText(frame, String.format("Stages: capture %.1f, detection %.1f, recognition %.1f, render %.1f ms",
+    					mPipeline.getStageLatency(DetectionPipeline.STAGE_CAPTURE), mPipeline.getStageLatency(DetectionPipeline.STAGE_DETECTION),
+    					mPipeline.getStageLatency(DetectionPipeline.STAGE_RECOGNITION), mPipeline.getStageLatency(DetectionPipeline.STAGE_RENDER)),
+    					new Point(20, frame.rows() - 200), Core.FONT_HERSHEY_SIMPLEX, 0.8, new Scalar(255, 255, 255, 255));
+    			Core.putText(frame, String.format("Queues: detection %d (dropped %d), recognition %d (dropped %d), render %d (dropped %d)",
+    					mPipeline.getQueueDepth(DetectionPipeline.QUEUE_DETECTION), mPipeline.getDropCount(DetectionPipeline.QUEUE_DETECTION),
+    					mPipeline.getQueueDepth(DetectionPipeline.QUEUE_RECOGNITION), mPipeline.getDropCount(DetectionPipeline.QUEUE_RECOGNITION),
+    					mPipeline.getQueueDepth(DetectionPipeline.QUEUE_RENDER), mPipeline.getDropCount(DetectionPipeline.QUEUE_RENDER)),
+    					new Point(20, frame.rows() - 230), Core.FONT_HERSHEY_SIMPLEX, 0.8, new Scalar(255, 255, 255, 255));
+    		}
+    	}
+    	
+    	return frame;
+    }
+    
+    /**
+     * Stops the detection pipeline (if running); must be called from the camera thread or after the camera has been stopped
+     */
+    private void stopPipeline() {
+    	if (mPipeline != null) {
+    		mPipeline.stop();
+    		mPipeline = null;
+    	}
     }
+    
+	/**
+	 * Creates the recognition mode report in the background (it reads all poses and recognizes every sample in every mode), then lets the
+	 * user select a mode
+	 */
+	private class ModeReportTask extends AsyncTask<PoseRecognizer,Void,RecognitionModeReport> {
+		private PoseRecognizer recognizer;
+		private ProgressDialog progress;
+		
+		@Override
+		protected void onPreExecute() {
+			progress = ProgressDialog.show(MainActivity.this, null, getString(R.string.recognitionmode_progress), true, false);
+		}
+		
+		@Override
+		protected RecognitionModeReport doInBackground(PoseRecognizer... args) {
+			recognizer = args[0];
+			return recognizer.createModeReport(10);
+		}
+		
+		@Override
+		protected void onPostExecute(RecognitionModeReport report) {
+			progress.dismiss();
+			if (MainActivity.this.isFinishing()) {
+				return;
+			}
+			String[] options = new String[RecognitionModeReport.MODES.length];
+			for (int i = 0; i < options.length; ++i) {
+				options[i] = getString(R.string.recognitionmode_option, RecognitionModeReport.MODE_NAMES[i], 100.0 * report.getAccuracy(i), report.getLatency(i));
+			}
+			Util.select(MainActivity.this, R.string.recognitionmode_select, options, recognizer.getRecognitionMode(), new Util.Callback<Integer>() {
+				@Override
+				public void call(Integer param) {
+					mPrefs.setRecognitionMode(RecognitionModeReport.MODES[param]);
+					mPoseRecognizer.setRecognitionMode(RecognitionModeReport.MODES[param]);
+				}
+			});
+		}
+	}
 	
 }
\ No newline at end of file
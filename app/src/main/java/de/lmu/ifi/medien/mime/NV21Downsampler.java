@@ -0,0 +1,136 @@
+package de.lmu.ifi.medien.mime;
+
+/**
+ * Scales down NV21 camera frames and converts them to HSV in a single pass, without creating the full resolution RGBA frame.
+ * Y, U and V are averaged over blocks of factor x factor pixels (each pixel uses the chroma sample of its 2x2 block); the averages are
+ * converted to RGB and then to HSV with the same fixed point arithmetic as OpenCV's cvtColor (COLOR_YUV2RGB_NV21, COLOR_RGB2HSV), so the
+ * thresholds of the background subtraction apply unchanged. Pure Java, runs on a desktop JVM as well.
+ */
+public class NV21Downsampler {
+
+	public static final int CHANNELS = 3;
+
+	// YUV to RGB (ITU-R BT.601), fixed point coefficients of OpenCV
+	private static final int SHIFT = 20;
+	private static final int CY  = 1220542;
+	private static final int CUB = 2116026;
+	private static final int CUG = -409993;
+	private static final int CVG = -852492;
+	private static final int CVR = 1673527;
+
+	// RGB to HSV, tables of OpenCV (H in 0 - 180)
+	private static final int HSV_SHIFT = 12;
+	private static final int[] SDIV_TABLE = new int[256];
+	private static final int[] HDIV_TABLE = new int[256];
+	static {
+		for (int i = 1; i < 256; ++i) {
+			SDIV_TABLE[i] = (int) Math.round((255 << HSV_SHIFT) / (double) i);
+			HDIV_TABLE[i] = (int) Math.round((180 << HSV_SHIFT) / (6.0 * i));
+		}
+	}
+
+	// Column sums of the current block row
+	private int[] mSumY = new int[0];
+	private int[] mSumU = new int[0];
+	private int[] mSumV = new int[0];
+
+
+	/**
+	 * Returns the size of a NV21 frame
+	 * @param width Width of the frame
+	 * @param height Height of the frame
+	 * @return Size in bytes
+	 */
+	public static int getBufferSize(int width, int height) {
+		return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+	}
+
+	/**
+	 * Scales down a NV21 frame and converts it to HSV
+	 * @param nv21 NV21 frame
+	 * @param width Width of the frame
+	 * @param height Height of the frame
+	 * @param factor Scale factor; the scaled frame is (width / factor) x (height / factor) pixels, remaining rows and columns are ignored
+	 * @param hsv Scaled frame (3 bytes per pixel, H in 0 - 180)
+	 */
+	public void toHSV(byte[] nv21, int width, int height, int factor, byte[] hsv) {
+		int scaledWidth = width / factor;
+		int scaledHeight = height / factor;
+		int uvStride = 2 * ((width + 1) / 2);
+		int area = factor * factor;
+		if (mSumY.length < scaledWidth) {
+			mSumY = new int[scaledWidth];
+			mSumU = new int[scaledWidth];
+			mSumV = new int[scaledWidth];
+		}
+		int[] sumY = mSumY;
+		int[] sumU = mSumU;
+		int[] sumV = mSumV;
+
+		int out = 0;
+		for (int sy = 0; sy < scaledHeight; ++sy) {
+			for (int sx = 0; sx < scaledWidth; ++sx) {
+				sumY[sx] = 0;
+				sumU[sx] = 0;
+				sumV[sx] = 0;
+			}
+			for (int y = sy * factor; y < (sy + 1) * factor; ++y) {
+				int yRow = y * width;
+				int uvRow = width * height + (y >> 1) * uvStride;
+				int x = 0;
+				for (int sx = 0; sx < scaledWidth; ++sx) {
+					int ys = 0, us = 0, vs = 0;
+					for (int end = x + factor; x < end; ++x) {
+						int uv = uvRow + (x & ~1);
+						ys += nv21[yRow + x] & 0xFF;
+						vs += nv21[uv] & 0xFF;
+						us += nv21[uv + 1] & 0xFF;
+					}
+					sumY[sx] += ys;
+					sumU[sx] += us;
+					sumV[sx] += vs;
+				}
+			}
+			for (int sx = 0; sx < scaledWidth; ++sx) {
+				int yy = (sumY[sx] + area / 2) / area;
+				int u = (sumU[sx] + area / 2) / area - 128;
+				int v = (sumV[sx] + area / 2) / area - 128;
+
+				// YUV to RGB
+				int y00 = Math.max(0, yy - 16) * CY;
+				int r = clamp((y00 + (1 << (SHIFT - 1)) + CVR * v) >> SHIFT);
+				int g = clamp((y00 + (1 << (SHIFT - 1)) + CVG * v + CUG * u) >> SHIFT);
+				int b = clamp((y00 + (1 << (SHIFT - 1)) + CUB * u) >> SHIFT);
+
+				// RGB to HSV
+				int max = Math.max(r, Math.max(g, b));
+				int diff = max - Math.min(r, Math.min(g, b));
+				int s = (diff * SDIV_TABLE[max] + (1 << (HSV_SHIFT - 1))) >> HSV_SHIFT;
+				int h;
+				if (max == r) {
+					h = g - b;
+				}
+				else if (max == g) {
+					h = b - r + 2 * diff;
+				}
+				else {
+					h = r - g + 4 * diff;
+				}
+				h = (h * HDIV_TABLE[diff] + (1 << (HSV_SHIFT - 1))) >> HSV_SHIFT;
+				if (h < 0) {
+					h += 180;
+				}
+
+				hsv[out++] = (byte) h;
+				hsv[out++] = (byte) s;
+				hsv[out++] = (byte) max;
+			}
+		}
+	}
+
+
+	private static int clamp(int value) {
+		return value < 0 ? 0 : (value > 255 ? 255 : value);
+	}
+
+}
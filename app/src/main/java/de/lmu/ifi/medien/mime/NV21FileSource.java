@@ -0,0 +1,110 @@
+package de.lmu.ifi.medien.mime;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Frame source for recorded NV21 frames, e.g. for running HandDetector on a desktop JVM.
+ * The file contains raw NV21 frames of the same size one after another (as written from Camera.PreviewCallback), without any header; frames
+ * can be read from any other stream as well, e.g. from a byte array in unit tests.
+ */
+public class NV21FileSource implements FrameSource, Closeable {
+
+	private final DataInputStream mStream;
+	private final int mWidth;
+	private final int mHeight;
+	private final byte[] mData;
+	private Mat mYuv;
+	private Mat mRgba;
+
+
+	/**
+	 * Opens a file of NV21 frames
+	 * @param file File with raw NV21 frames
+	 * @param width Width of the frames
+	 * @param height Height of the frames
+	 * @throws IOException If the file can't be opened
+	 */
+	public NV21FileSource(File file, int width, int height) throws IOException {
+		this(new BufferedInputStream(new FileInputStream(file)), width, height);
+	}
+
+	/**
+	 * Reads NV21 frames from a stream
+	 * @param in Stream of raw NV21 frames, closed by close()
+	 * @param width Width of the frames
+	 * @param height Height of the frames
+	 */
+	public NV21FileSource(InputStream in, int width, int height) {
+		mStream = new DataInputStream(in);
+		mWidth = width;
+		mHeight = height;
+		mData = new byte[NV21Downsampler.getBufferSize(width, height)];
+	}
+
+	/**
+	 * Reads the next frame
+	 * @return False if there are no more frames
+	 * @throws IOException If the file can't be read
+	 */
+	public boolean next() throws IOException {
+		try {
+			mStream.readFully(mData);
+			return true;
+		}
+		catch (EOFException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		mStream.close();
+		if (mYuv != null) {
+			mYuv.release();
+			mYuv = null;
+		}
+		if (mRgba != null) {
+			mRgba.release();
+			mRgba = null;
+		}
+	}
+
+	@Override
+	public int getWidth() {
+		return mWidth;
+	}
+
+	@Override
+	public int getHeight() {
+		return mHeight;
+	}
+
+	@Override
+	public byte[] getNV21(byte[] buffer) {
+		return mData;
+	}
+
+	@Override
+	public Mat rgba() {
+		// Needs the native OpenCV library, unlike getNV21()
+		if (mYuv == null) {
+			mYuv = new Mat(mHeight + mHeight / 2, mWidth, CvType.CV_8UC1);
+			mRgba = new Mat();
+		}
+		mYuv.put(0, 0, mData);
+		Imgproc.cvtColor(mYuv, mRgba, Imgproc.COLOR_YUV2RGBA_NV21, 4);
+		return mRgba;
+	}
+
+}
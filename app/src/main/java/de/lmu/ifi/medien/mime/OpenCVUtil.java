@@ -79,18 +79,22 @@ public class OpenCVUtil {
 	 * @param indices Indices of points to extract
 	 */
 	public static MatOfPoint getNewContourFromIndices(MatOfPoint origContour, MatOfInt indices) {
-		int height = (int) indices.size().height;
-		MatOfPoint2f newContour = new MatOfPoint2f();
-		newContour.create(height, 1, CvType.CV_32FC2);
-		for (int i = 0; i < height; ++i) {
-			int index = (int) indices.get(i, 0)[0];
-			double[] point = new double[] {
-				origContour.get(index, 0)[0], 
-				origContour.get(index, 0)[1]
-			};
-			newContour.put(i, 0, point);
+		// Read both Mats at once instead of point by point
+		MatOfPoint newContour = new MatOfPoint();
+		int[] index = indices.toArray();
+		if (index.length == 0) {
+			return newContour;
 		}
-		return convert(newContour);
+		int[] points = new int[2 * (int) origContour.total()];
+		origContour.get(0, 0, points);
+		int[] newPoints = new int[2 * index.length];
+		for (int i = 0; i < index.length; ++i) {
+			newPoints[2*i] = points[2 * index[i]];
+			newPoints[2*i + 1] = points[2 * index[i] + 1];
+		}
+		newContour.alloc(index.length);
+		newContour.put(0, 0, newPoints);
+		return newContour;
 	}
 	
 	/**
@@ -113,12 +117,20 @@ public class OpenCVUtil {
 	 * @return Angle in degrees
 	 */
 	public static double angle(Point p1, Point center, Point p2) {
-		Point v1 = new Point(p1.x-center.x, p1.y-center.y);
-		Point v2 = new Point(p2.x-center.x, p2.y-center.y);
+		return angle(p1.x, p1.y, center.x, center.y, p2.x, p2.y);
+	}
+	
+	/**
+	 * Calculates the angle described by two points and one center point, given as coordinates (no Point objects needed)
+	 * @return Angle in degrees
+	 */
+	public static double angle(double x1, double y1, double cx, double cy, double x2, double y2) {
+		double v1x = x1-cx, v1y = y1-cy;
+		double v2x = x2-cx, v2y = y2-cy;
 		
-		double len1 = Math.sqrt(v1.x*v1.x + v1.y*v1.y);
-		double len2 = Math.sqrt(v2.x*v2.x + v2.y*v2.y);
-		double dot = v1.x*v2.x + v1.y*v2.y;
+		double len1 = Math.sqrt(v1x*v1x + v1y*v1y);
+		double len2 = Math.sqrt(v2x*v2x + v2y*v2y);
+		double dot = v1x*v2x + v1y*v2y;
 		
 		double a = dot / (len1*len2);
 
@@ -139,9 +151,17 @@ public class OpenCVUtil {
 	 * @return Angle in degrees
 	 */
 	public static double angleBisectionAngle(Point p1, Point center, Point p2) {
-		Point vector = new Point(p2.x-p1.x, p2.y-p1.y);
-		Point bisection = new Point(p1.x + 0.5*vector.x, p1.y + 0.5*vector.y);
-		return angle(new Point(bisection.x + 1.0, bisection.y), bisection, center);
+		return angleBisectionAngle(p1.x, p1.y, center.x, center.y, p2.x, p2.y);
+	}
+	
+	/**
+	 * Calculates the angle described by a vector (p1 p2) and a third point, given as coordinates (no Point objects needed)
+	 * @return Angle in degrees
+	 */
+	public static double angleBisectionAngle(double x1, double y1, double cx, double cy, double x2, double y2) {
+		double bx = x1 + 0.5*(x2-x1);
+		double by = y1 + 0.5*(y2-y1);
+		return angle(bx + 1.0, by, bx, by, cx, cy);
 	}
 	
 	/**
@@ -179,68 +199,117 @@ public class OpenCVUtil {
 		int rows = img.rows();
 		int cols = img.cols();
 		
-		// Process all pixels
-	    for (int y = 1; y < rows-1; ++y) {
+		// Process all pixels, then eliminate pixels and save result
+		zhangSuenMark(buffer, markerBuffer, rows, cols, step, 0, rows);
+		zhangSuenEliminate(buffer, markerBuffer, 0, buffer.length);
+	    img.put(0, 0, buffer);
+	}
+	
+	/**
+	 * Marks the pixels that have to be eliminated in an iteration step of the Zhang-Suen thinning algorithm; only reads the rows adjacent to the given range
+	 * @param buffer Image pixels
+	 * @param markerBuffer Marker for each pixel; 0 = "delete pixel", -1 = "keep pixel"
+	 * @param rows Number of rows of the image
+	 * @param cols Number of columns of the image
+	 * @param step Iteration step (0 or 1)
+	 * @param rowStart First row to process
+	 * @param rowEnd Row after the last row to process
+	 */
+	public static void zhangSuenMark(byte[] buffer, byte[] markerBuffer, int rows, int cols, int step, int rowStart, int rowEnd) {
+	    for (int y = rowStart; y < rowEnd; ++y) {
+	    	// Border pixels are always eliminated
+	    	if (y == 0 || y == rows-1) {
+	    		for (int x = 0; x < cols; ++x) {
+	    			markerBuffer[cols*y + x] = 0;
+	    		}
+	    		continue;
+	    	}
+	    	markerBuffer[cols*y] = 0;
+	    	markerBuffer[cols*y + cols-1] = 0;
+	    	
 			for (int x = 1; x < cols-1; ++x) {
-				// Pre-calculate offsets (indices in buffer)
-				int prev = cols*(y-1) + x;
-				int cur  = cols*y     + x;
-				int next = cols*(y+1) + x;
-				
-				// Get 8-neighborhood of current pixel (center = p1; p2 = top middle, counting clockwise)
-				byte p2 = buffer[prev];
-				byte p3 = buffer[prev + 1];
-				byte p4 = buffer[cur  + 1];
-				byte p5 = buffer[next + 1];
-				byte p6 = buffer[next];
-				byte p7 = buffer[next - 1];
-				byte p8 = buffer[cur  - 1];
-				byte p9 = buffer[prev - 1];
-				
-				// Get number of black-white transitions in ordered sequence of points in the 8-neighborhood; note: a filled pixel (white) has a value of -1
-				int a = 0;
-				if (p2 == 0 && p3 == -1) {
-					++a;
-				}
-				if (p3 == 0 && p4 == -1) {
-					++a;
-				}
-				if (p4 == 0 && p5 == -1) {
-					++a;
-				}
-				if (p5 == 0 && p6 == -1) {
-					++a;
-				}
-				if (p6 == 0 && p7 == -1) {
-					++a;
-				}
-				if (p7 == 0 && p8 == -1) {
-					++a;
-				}
-				if (p8 == 0 && p9 == -1) {
-					++a;
-				}
-				if (p9 == 0 && p2 == -1) {
-					++a;
-				}
-				
-				// Number of filled pixels in the 8-neighborhood
-				int b  = Math.abs(p2 + p3 + p4 + p5 + p6 + p7 + p8 + p9);
-				
-				// Condition 3 and 4
-				int c3 = step == 0 ? (p2 * p4 * p6) : (p2 * p4 * p8);
-				int c4 = step == 0 ? (p4 * p6 * p8) : (p2 * p6 * p8);
-				
-				// Determine if the current pixel has to be eliminated; 0 = "delete pixel", -1 = "keep pixel"
-				markerBuffer[cur] = (byte) ((a == 1 && b >= 2 && b <= 6 && c3 == 0 && c4 == 0) ? 0 : -1);
+				markerBuffer[cols*y + x] = zhangSuenMarker(buffer, cols*y + x, cols, step);
 			}
 		}
-	    
-	    // Eliminate pixels and save result
-	    for (int i = 0; i < buffer.length; ++i) {
-	    	buffer[i] = (byte) ((buffer[i] == -1 && markerBuffer[i] == -1) ? -1 : 0);
+	}
+	
+	/**
+	 * Determines if a single (non-border) pixel has to be eliminated in an iteration step of the Zhang-Suen thinning algorithm
+	 * @param buffer Image pixels
+	 * @param cur Index of the pixel
+	 * @param cols Number of columns of the image
+	 * @param step Iteration step (0 or 1)
+	 * @return 0 = "delete pixel", -1 = "keep pixel"
+	 */
+	public static byte zhangSuenMarker(byte[] buffer, int cur, int cols, int step) {
+		// Pre-calculate offsets (indices in buffer)
+		int prev = cur - cols;
+		int next = cur + cols;
+		
+		// Get 8-neighborhood of current pixel (center = p1; p2 = top middle, counting clockwise)
+		byte p2 = buffer[prev];
+		byte p3 = buffer[prev + 1];
+		byte p4 = buffer[cur  + 1];
+		byte p5 = buffer[next + 1];
+		byte p6 = buffer[next];
+		byte p7 = buffer[next - 1];
+		byte p8 = buffer[cur  - 1];
+		byte p9 = buffer[prev - 1];
+		
+		// Get number of black-white transitions in ordered sequence of points in the 8-neighborhood; note: a filled pixel (white) has a value of -1
+		int a = 0;
+		if (p2 == 0 && p3 == -1) {
+			++a;
+		}
+		if (p3 == 0 && p4 == -1) {
+			++a;
+		}
+		if (p4 == 0 && p5 == -1) {
+			++a;
+		}
+		if (p5 == 0 && p6 == -1) {
+			++a;
+		}
+		if (p6 == 0 && p7 == -1) {
+			++a;
+		}
+		if (p7 == 0 && p8 == -1) {
+			++a;
+		}
+		if (p8 == 0 && p9 == -1) {
+			++a;
+		}
+		if (p9 == 0 && p2 == -1) {
+			++a;
+		}
+		
+		// Number of filled pixels in the 8-neighborhood
+		int b  = Math.abs(p2 + p3 + p4 + p5 + p6 + p7 + p8 + p9);
+		
+		// Condition 3 and 4
+		int c3 = step == 0 ? (p2 * p4 * p6) : (p2 * p4 * p8);
+		int c4 = step == 0 ? (p4 * p6 * p8) : (p2 * p6 * p8);
+		
+		// Determine if the current pixel has to be eliminated
+		return (byte) ((a == 1 && b >= 2 && b <= 6 && c3 == 0 && c4 == 0) ? 0 : -1);
+	}
+	
+	/**
+	 * Eliminates the pixels marked by zhangSuenMark()
+	 * @param buffer Image pixels
+	 * @param markerBuffer Marker for each pixel
+	 * @param start First index to process
+	 * @param end Index after the last index to process
+	 * @return Any pixel has changed
+	 */
+	public static boolean zhangSuenEliminate(byte[] buffer, byte[] markerBuffer, int start, int end) {
+		boolean changed = false;
+	    for (int i = start; i < end; ++i) {
+	    	byte value = (byte) ((buffer[i] == -1 && markerBuffer[i] == -1) ? -1 : 0);
+	    	changed |= value != buffer[i];
+	    	buffer[i] = value;
 	    }
-	    img.put(0, 0, buffer);
+	    return changed;
 	}
 	
 }
\ No newline at end of file
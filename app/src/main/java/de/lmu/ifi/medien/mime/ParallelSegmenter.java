@@ -0,0 +1,211 @@
+package de.lmu.ifi.medien.mime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the segmentation steps of HandDetector (background subtraction, opening and Zhang-Suen thinning) on horizontal stripes of the frame using a
+ * small worker pool. Each step is split into phases separated by barriers; stripes only write their own rows and read a few halo rows above and
+ * below, so the result is identical to processing the whole frame at once.
+ */
+public class ParallelSegmenter {
+
+	private static final int PHASE_SUBTRACT    = 0;
+	private static final int PHASE_ERODE       = 1;
+	private static final int PHASE_DILATE      = 2;
+	private static final int PHASE_THIN_MARK   = 3;
+	private static final int PHASE_THIN_DELETE = 4;
+
+	private final ExecutorService mExecutor;
+	private final ArrayList<StripeTask> mTasks = new ArrayList<>();
+
+	// Parameters of the current phase
+	private int mPhase;
+	private int mStep;
+	private int mWidth;
+	private int mHeight;
+	private int mChannels;
+	private int mRadius;
+	private byte[] mSrc;
+	private byte[] mDest;
+	private byte[] mBackground;
+	private BackgroundSubtractionKernel mKernel;
+
+
+	/**
+	 * Constructor
+	 * @param numThreads Number of worker threads (= number of stripes)
+	 */
+	public ParallelSegmenter(int numThreads) {
+		numThreads = Math.max(1, numThreads);
+		mExecutor = Executors.newFixedThreadPool(numThreads);
+		for (int i = 0; i < numThreads; ++i) {
+			mTasks.add(new StripeTask(i, numThreads));
+		}
+	}
+
+	/**
+	 * Returns the default number of worker threads: all cores except the one used by the camera thread
+	 * @return Number of threads
+	 */
+	public static int getDefaultThreadCount() {
+		return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+	}
+
+	/**
+	 * Parallel version of BackgroundSubtractionKernel.apply()
+	 * @param kernel Background subtraction kernel
+	 * @param input HSV frame
+	 * @param background HSV background frame
+	 * @param mask Output mask
+	 * @param width Frame width
+	 * @param height Frame height
+	 * @param channels Number of channels of input and background
+	 */
+	public void subtract(BackgroundSubtractionKernel kernel, byte[] input, byte[] background, byte[] mask, int width, int height, int channels) {
+		mKernel = kernel;
+		mSrc = input;
+		mBackground = background;
+		mDest = mask;
+		mWidth = width;
+		mHeight = height;
+		mChannels = channels;
+		this.run(PHASE_SUBTRACT);
+		mKernel = null;
+		mBackground = null;
+	}
+
+	/**
+	 * Morphological opening with a square kernel; equivalent to Imgproc.morphologyEx(MORPH_OPEN) with a MORPH_RECT kernel and the default border
+	 * handling
+	 * @param mask Binary image, works in-place
+	 * @param tmp Temporary buffer of the same size
+	 * @param width Image width
+	 * @param height Image height
+	 * @param kernelSize Side length of the kernel (odd)
+	 */
+	public void open(byte[] mask, byte[] tmp, int width, int height, int kernelSize) {
+		mWidth = width;
+		mHeight = height;
+		mRadius = kernelSize / 2;
+		mSrc = mask;
+		mDest = tmp;
+		this.run(PHASE_ERODE);
+		mSrc = tmp;
+		mDest = mask;
+		this.run(PHASE_DILATE);
+	}
+
+	/**
+	 * Zhang-Suen thinning; produces the same result as OpenCVUtil.zhangSuenThinning()
+	 * @param img Binary image, works in-place
+	 * @param marker Temporary buffer of the same size
+	 * @param width Image width
+	 * @param height Image height
+	 */
+	public void thin(byte[] img, byte[] marker, int width, int height) {
+		mWidth = width;
+		mHeight = height;
+		mSrc = img;
+		mDest = marker;
+		boolean changed;
+		do {
+			changed = false;
+			for (mStep = 0; mStep <= 1; ++mStep) {
+				this.run(PHASE_THIN_MARK);
+				changed |= this.run(PHASE_THIN_DELETE);
+			}
+		}
+		while (changed);
+	}
+
+	/**
+	 * Stops all worker threads
+	 */
+	public void shutdown() {
+		mExecutor.shutdownNow();
+	}
+
+
+	/**
+	 * Processes all stripes and waits until they are finished
+	 * @param phase Phase to run
+	 * @return Any stripe reported a change
+	 */
+	private boolean run(int phase) {
+		mPhase = phase;
+		boolean changed = false;
+		try {
+			List<Future<Boolean>> futures = mExecutor.invokeAll(mTasks);
+			for (Future<Boolean> f : futures) {
+				changed |= f.get();
+			}
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		return changed;
+	}
+
+	/**
+	 * Erodes (= minimum) or dilates (= maximum) the given rows with a square kernel; pixels outside the image are ignored
+	 */
+	private static void morph(byte[] src, byte[] dest, int width, int height, int radius, int rowStart, int rowEnd, boolean erode) {
+		for (int y = rowStart; y < rowEnd; ++y) {
+			int y0 = Math.max(0, y - radius);
+			int y1 = Math.min(height - 1, y + radius);
+			for (int x = 0; x < width; ++x) {
+				int x0 = Math.max(0, x - radius);
+				int x1 = Math.min(width - 1, x + radius);
+				int value = erode ? 255 : 0;
+				for (int ny = y0; ny <= y1; ++ny) {
+					int offset = ny * width;
+					for (int nx = x0; nx <= x1; ++nx) {
+						int v = src[offset + nx] & 0xFF;
+						value = erode ? Math.min(value, v) : Math.max(value, v);
+					}
+				}
+				dest[y * width + x] = (byte) value;
+			}
+		}
+	}
+
+
+	private class StripeTask implements Callable<Boolean> {
+		private final int mIndex;
+		private final int mCount;
+
+		public StripeTask(int index, int count) {
+			mIndex = index;
+			mCount = count;
+		}
+
+		@Override
+		public Boolean call() {
+			int rowStart = mHeight * mIndex / mCount;
+			int rowEnd = mHeight * (mIndex + 1) / mCount;
+			switch (mPhase) {
+				case PHASE_SUBTRACT:
+					mKernel.apply(mSrc, mBackground, mDest, mWidth, mChannels, rowStart, rowEnd);
+					break;
+				case PHASE_ERODE:
+					morph(mSrc, mDest, mWidth, mHeight, mRadius, rowStart, rowEnd, true);
+					break;
+				case PHASE_DILATE:
+					morph(mSrc, mDest, mWidth, mHeight, mRadius, rowStart, rowEnd, false);
+					break;
+				case PHASE_THIN_MARK:
+					OpenCVUtil.zhangSuenMark(mSrc, mDest, mHeight, mWidth, mStep, rowStart, rowEnd);
+					break;
+				case PHASE_THIN_DELETE:
+					return OpenCVUtil.zhangSuenEliminate(mSrc, mDest, rowStart * mWidth, rowEnd * mWidth);
+			}
+			return false;
+		}
+	}
+
+}
@@ -12,6 +12,9 @@ import de.lmu.ifi.medien.mime.$N.Multistroke;
  */
 public class Pose implements Externalizable, Comparable<Pose> {
 	
+	// Fixed, so poses saved by earlier versions can still be read
+	private static final long serialVersionUID = 1147412283662047544L;
+	
 	private int type;
 	private Multistroke multistroke;
 	
@@ -0,0 +1,369 @@
+package de.lmu.ifi.medien.mime;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.ml.CvKNearest;
+
+import de.lmu.ifi.medien.mime.HandDetector.PoseFeatures;
+import de.lmu.ifi.medien.mime.$N.PackedUtil;
+import de.lmu.ifi.medien.mime.$N.RecognitionModeReport;
+
+/**
+ * Fast first stage of the recognition: a k-nearest neighbors classifier (OpenCV ML) on a fixed-length vector made of the scalar pose features
+ * and a skeleton descriptor (the skeleton resampled to a few points and normalized like a Protractor vector).
+ * It's trained with the features recorded along with each pose, plus randomly rotated, scaled and jittered copies of the recorded skeleton.
+ * A pose is only returned if most of the nearest neighbors agree, otherwise the $N recognizer has to decide.
+ *
+ * File:   magic "MIMC", int32 version, int32 vector length, int32 number of samples, samples (big-endian, as written by DataOutputStream)
+ * Sample: int32 type, float32 values
+ */
+public class PoseClassifier {
+
+	public static final String FILENAME = ".pose_classifier";
+
+	private static final int MAGIC = 0x4D494D43;	// "MIMC"
+	public static final int VERSION = 1;
+
+	public static final int SCALAR_FEATURES = 7;	// finger defects, holes, narrow angle, U shape, direction, top, left
+	public static final int DESCRIPTOR_POINTS = 16;
+	public static final int LENGTH = SCALAR_FEATURES + 2 * DESCRIPTOR_POINTS;
+	private static final double DESCRIPTOR_WEIGHT = 4.0;	// descriptor is a unit vector; a different skeleton weighs about as much as 3 defects
+	public static final int SAMPLES_PER_POSE = 20;			// recorded skeleton and generated copies
+	public static final int K = 5;
+	public static final int MIN_VOTES = 4;					// neighbors that must agree on the pose
+
+	private ArrayList<float[]> mSamples = new ArrayList<>();
+	private ArrayList<Integer> mTypes = new ArrayList<>();
+	private CvKNearest mModel;		// null until trained with the current samples
+	private boolean mChanged = false;
+	private Random mRandom = new Random(0);
+
+	// Buffers for classify()
+	private Mat mQuery;
+	private Mat mResults;
+	private Mat mNeighbors;
+	private Mat mDistances;
+	private float[] mVector = new float[LENGTH];
+	private float[] mNeighborResponses = new float[K];
+	private int[] mSkeletonBuffer = new int[0];
+	private double[] mPoints = new double[0];
+	private double[] mResampled = new double[2 * DESCRIPTOR_POINTS];
+
+	// Statistics
+	private int mCalls = 0;
+	private int mFallbacks = 0;
+	private long mTime = 0;
+
+
+	/**
+	 * Adds the training samples of a recorded pose, replacing earlier samples of its type
+	 * @param type Pose type
+	 * @param features Features of the frame the pose was recorded in
+	 * @param skeleton Recorded skeleton
+	 */
+	public synchronized void addSamples(int type, PoseFeatures features, MatOfPoint skeleton) {
+		this.removeType(type);
+		Point[] stroke = skeleton.toArray();
+		for (int s = 0; s < SAMPLES_PER_POSE; ++s) {
+			double[] points = new double[2 * stroke.length];
+			if (s == 0) {
+				PackedUtil.pack(stroke, points);
+			}
+			else if (stroke.length > 0) {
+				points = RecognitionModeReport.createSample(stroke, mRandom);
+			}
+			float[] sample = new float[LENGTH];
+			this.computeVector(features, points, stroke.length, sample);
+			mSamples.add(sample);
+			mTypes.add(type);
+		}
+		mModel = null;
+		mChanged = true;
+	}
+
+	/**
+	 * Removes the training samples of a pose
+	 * @param type Pose type
+	 */
+	public synchronized void removeType(int type) {
+		for (int i = mTypes.size() - 1; i >= 0; --i) {
+			if (mTypes.get(i) == type) {
+				mTypes.remove(i);
+				mSamples.remove(i);
+				mModel = null;
+				mChanged = true;
+			}
+		}
+	}
+
+	/**
+	 * Removes all training samples
+	 */
+	public synchronized void reset() {
+		mSamples.clear();
+		mTypes.clear();
+		mModel = null;
+		mChanged = true;
+	}
+
+	/**
+	 * Checks if there are training samples for all given poses
+	 * @param candidates Pose types
+	 * @return All poses are known
+	 */
+	public synchronized boolean isTrained(int[] candidates) {
+		for (int type : candidates) {
+			if (!mTypes.contains(type)) {
+				return false;
+			}
+		}
+		return mSamples.size() >= K;
+	}
+
+	/**
+	 * Classifies the features of a frame
+	 * @param features Features, including the skeleton
+	 * @param candidates Poses that may be returned (e.g. from the decision tree)
+	 * @return Pose type, NO_POSE if the neighbors don't agree on one of the candidates (the $N recognizer has to decide)
+	 */
+	public synchronized int classify(PoseFeatures features, int[] candidates) {
+		long start = System.nanoTime();
+		int pose = PoseRecognizer.NO_POSE;
+		if (this.isTrained(candidates)) {
+			if (mModel == null) {
+				this.train();
+			}
+			int count = this.readSkeleton(features.skeleton);
+			this.computeVector(features, mPoints, count, mVector);
+			mQuery.put(0, 0, mVector);
+			mModel.find_nearest(mQuery, K, mResults, mNeighbors, mDistances);
+			mNeighbors.get(0, 0, mNeighborResponses);
+			pose = vote(mNeighborResponses, candidates);
+		}
+		mTime += System.nanoTime() - start;
+		++mCalls;
+		if (pose == PoseRecognizer.NO_POSE) {
+			++mFallbacks;
+		}
+		return pose;
+	}
+
+	/**
+	 * Returns the number of calls of classify()
+	 * @return Number of calls
+	 */
+	public synchronized int getCalls() {
+		return mCalls;
+	}
+
+	/**
+	 * Returns the share of calls of classify() that didn't return a pose, i.e. the $N recognizer still had to decide
+	 * @return Share of fallbacks (0..1)
+	 */
+	public synchronized double getFallbackRate() {
+		return mCalls == 0 ? 0 : (double) mFallbacks / mCalls;
+	}
+
+	/**
+	 * Returns the average time of a call of classify()
+	 * @return Time in microseconds
+	 */
+	public synchronized double getLatency() {
+		return mCalls == 0 ? 0 : mTime / 1000.0 / mCalls;
+	}
+
+	public synchronized int getSampleCount() {
+		return mSamples.size();
+	}
+
+	/**
+	 * Restores the training samples from file
+	 * @param file Source file
+	 * @return Samples were read (false if there is no file or it can't be read; the classifier is empty then)
+	 */
+	public synchronized boolean read(File file) {
+		this.reset();
+		mChanged = false;
+		if (!file.exists()) {
+			return false;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new FileInputStream(file));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != LENGTH) {
+				return false;
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; ++i) {
+				int type = in.readInt();
+				float[] sample = new float[LENGTH];
+				for (int j = 0; j < LENGTH; ++j) {
+					sample[j] = in.readFloat();
+				}
+				mTypes.add(type);
+				mSamples.add(sample);
+			}
+			return true;
+		}
+		catch (Exception e) {
+			mSamples.clear();
+			mTypes.clear();
+			return false;
+		}
+		finally {
+			try {
+				if (in != null) {
+					in.close();
+				}
+			}
+			catch (IOException e) { }
+		}
+	}
+
+	/**
+	 * Writes the training samples to file (only if they have changed since they were read)
+	 * @param file Target file
+	 * @throws IOException
+	 */
+	public synchronized void write(File file) throws IOException {
+		if (!mChanged) {
+			return;
+		}
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(LENGTH);
+			out.writeInt(mSamples.size());
+			for (int i = 0; i < mSamples.size(); ++i) {
+				out.writeInt(mTypes.get(i));
+				for (float value : mSamples.get(i)) {
+					out.writeFloat(value);
+				}
+			}
+		}
+		finally {
+			out.close();
+		}
+		mChanged = false;
+	}
+
+
+	/**
+	 * Trains the model with all samples
+	 */
+	private void train() {
+		Mat samples = new Mat(mSamples.size(), LENGTH, CvType.CV_32FC1);
+		Mat responses = new Mat(mSamples.size(), 1, CvType.CV_32FC1);
+		for (int i = 0; i < mSamples.size(); ++i) {
+			samples.put(i, 0, mSamples.get(i));
+			responses.put(i, 0, (float) (int) mTypes.get(i));
+		}
+		Mat sampleIdx = new Mat();	// empty: use all samples
+		mModel = new CvKNearest();
+		mModel.train(samples, responses, sampleIdx, false, K, false);
+		samples.release();
+		responses.release();
+		sampleIdx.release();
+		if (mQuery == null) {
+			mQuery = new Mat(1, LENGTH, CvType.CV_32FC1);
+			mResults = new Mat();
+			mNeighbors = new Mat();
+			mDistances = new Mat();
+		}
+	}
+
+	/**
+	 * Reads the points of the skeleton into the packed buffer
+	 * @return Number of points
+	 */
+	private int readSkeleton(MatOfPoint skeleton) {
+		int count = 0;
+		try {
+			count = (int) skeleton.total();
+			if (mSkeletonBuffer.length < 2 * count) {
+				mSkeletonBuffer = new int[2 * count];
+				mPoints = new double[2 * count];
+			}
+			if (count > 0) {
+				skeleton.get(0, 0, mSkeletonBuffer);
+			}
+			for (int i = 0; i < 2 * count; ++i) {
+				mPoints[i] = mSkeletonBuffer[i];
+			}
+		}
+		catch (Exception e) {
+			count = 0;
+		}
+		return count;
+	}
+
+	/**
+	 * Creates the feature vector: scalar features, then the skeleton resampled to DESCRIPTOR_POINTS points, moved to the origin and
+	 * normalized (Protractor vector with bounded rotation invariance); all zero if there is no skeleton
+	 * @param features Features of the frame
+	 * @param points Packed skeleton points
+	 * @param count Number of skeleton points
+	 * @param dest Destination, LENGTH values
+	 */
+	void computeVector(PoseFeatures features, double[] points, int count, float[] dest) {
+		dest[0] = features.fingerDefects;
+		dest[1] = features.numHoles;
+		dest[2] = features.narrowVertAngle ? 1 : 0;
+		dest[3] = features.checkForU() ? 1 : 0;
+		dest[4] = features.getDirection();
+		dest[5] = features.topScreen ? 1 : 0;
+		dest[6] = features.leftScreen ? 1 : 0;
+
+		double[] resampled = mResampled;
+		boolean valid = count >= 2 && PackedUtil.pathLength(points, count) > 0
+				&& PackedUtil.resample(points, count, DESCRIPTOR_POINTS, resampled) == DESCRIPTOR_POINTS;
+		if (valid) {
+			PackedUtil.translateTo(resampled, DESCRIPTOR_POINTS, 0, 0, resampled);
+			PackedUtil.vectorize(resampled, DESCRIPTOR_POINTS, true, resampled);
+		}
+		for (int i = 0; i < 2 * DESCRIPTOR_POINTS; ++i) {
+			double value = valid ? DESCRIPTOR_WEIGHT * resampled[i] : 0;
+			dest[SCALAR_FEATURES + i] = Double.isNaN(value) ? 0 : (float) value;
+		}
+	}
+
+	/**
+	 * Majority vote of the nearest neighbors
+	 * @param neighborResponses Pose types of the K nearest neighbors
+	 * @param candidates Poses that may be returned
+	 * @return Pose with at least MIN_VOTES votes if it's one of the candidates, NO_POSE otherwise
+	 */
+	static int vote(float[] neighborResponses, int[] candidates) {
+		for (int i = 0; i < neighborResponses.length; ++i) {
+			int type = (int) neighborResponses[i];
+			int votes = 0;
+			for (float response : neighborResponses) {
+				if ((int) response == type) {
+					++votes;
+				}
+			}
+			if (votes >= MIN_VOTES) {
+				for (int candidate : candidates) {
+					if (candidate == type) {
+						return type;
+					}
+				}
+				return PoseRecognizer.NO_POSE;
+			}
+		}
+		return PoseRecognizer.NO_POSE;
+	}
+
+}
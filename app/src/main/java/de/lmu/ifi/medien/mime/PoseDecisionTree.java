@@ -0,0 +1,411 @@
+package de.lmu.ifi.medien.mime;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import android.content.Context;
+import de.lmu.ifi.medien.mime.HandDetector.PoseFeatures;
+
+/**
+ * Decision tree over the features extracted by HandDetector, used by PoseRecognizer to decide on a pose or on the poses the $N recognizer
+ * has to choose from. The tree is read from a text file and compiled into flat arrays, so evaluating it doesn't allocate anything.
+ *
+ * Each line of the file defines a node (the first one is the root; # starts a comment):
+ *   label = feature op operand ? target : target
+ * with op one of == != < <= > >=, operand a number, a feature or one of true, false, HORIZONTAL, VERTICAL, NO_DIRECTION, and target
+ * another node's label, "pose NAME" or "candidates NAME NAME ..." ("candidates *" for all poses); names as in PoseRecognizer.getType().
+ */
+public class PoseDecisionTree {
+
+	public static final String FILENAME = ".pose_tree";
+
+	// Features (values of booleans are 0 and 1)
+	private static final String[] FEATURES = { "fingerDefects", "numHoles", "narrowVertAngle", "uShape", "direction", "topScreen", "leftScreen",
+		"hasSkeleton", "skeletonWidth", "skeletonHeight" };
+	private static final int FINGER_DEFECTS = 0;
+	private static final int NUM_HOLES = 1;
+	private static final int NARROW_VERT_ANGLE = 2;
+	private static final int U_SHAPE = 3;
+	private static final int DIRECTION = 4;
+	private static final int TOP_SCREEN = 5;
+	private static final int LEFT_SCREEN = 6;
+	private static final int HAS_SKELETON = 7;
+	private static final int SKELETON_WIDTH = 8;
+	private static final int SKELETON_HEIGHT = 9;
+
+	private static final String[] OPERATORS = { "==", "!=", "<", "<=", ">", ">=" };
+	private static final int EQ = 0;
+	private static final int NE = 1;
+	private static final int LT = 2;
+	private static final int LE = 3;
+	private static final int GT = 4;
+
+	// Nodes; a negative target is a leaf (~target = leaf index)
+	private final int[] mFeature;
+	private final int[] mOperator;
+	private final int[] mOperandFeature;	// -1 if the operand is a constant
+	private final double[] mOperand;
+	private final int[] mTrue;
+	private final int[] mFalse;
+
+	// Leaves
+	private final int[] mLeafPose;			// NO_POSE for candidate sets
+	private final int[][] mLeafCandidates;
+
+	// Features of the current evaluation, computed on first use
+	private final double[] mValues = new double[FEATURES.length];
+	private final boolean[] mKnown = new boolean[FEATURES.length];
+	private PoseFeatures mFeatures;
+	private final SkeletonBox mSkeletonBox = new SkeletonBox();
+
+
+	private PoseDecisionTree(int nodes, int leaves) {
+		mFeature = new int[nodes];
+		mOperator = new int[nodes];
+		mOperandFeature = new int[nodes];
+		mOperand = new double[nodes];
+		mTrue = new int[nodes];
+		mFalse = new int[nodes];
+		mLeafPose = new int[leaves];
+		mLeafCandidates = new int[leaves][];
+	}
+
+	/**
+	 * Loads the decision tree imported to the app's files, or the one shipped with the app if there is none (or it's invalid)
+	 * @param ctx Application context
+	 * @return Decision tree
+	 */
+	public static PoseDecisionTree load(Context ctx) {
+		try {
+			PoseDecisionTree tree = loadImported(ctx);
+			if (tree != null) {
+				return tree;
+			}
+		}
+		catch (IOException e) { }
+		try {
+			return read(ctx.getResources().openRawResource(R.raw.pose_tree));
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Invalid pose decision tree shipped with the app", e);
+		}
+	}
+
+	/**
+	 * Loads the decision tree imported to the app's files
+	 * @param ctx Application context
+	 * @return Decision tree, null if none has been imported
+	 * @throws IOException If the imported tree can't be read or is invalid
+	 */
+	public static PoseDecisionTree loadImported(Context ctx) throws IOException {
+		File file = ctx.getFileStreamPath(FILENAME);
+		return file.exists() ? read(new FileInputStream(file)) : null;
+	}
+
+	/**
+	 * Reads a decision tree and closes the stream
+	 * @param in Text of the decision tree (UTF-8)
+	 * @return Decision tree
+	 * @throws IOException If the tree can't be read or is invalid
+	 */
+	public static PoseDecisionTree read(InputStream in) throws IOException {
+		try {
+			return parse(new InputStreamReader(in, "UTF-8"));
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Parses and compiles a decision tree
+	 * @param reader Text of the decision tree
+	 * @return Decision tree
+	 * @throws IOException If the tree can't be read or is invalid
+	 */
+	public static PoseDecisionTree parse(Reader reader) throws IOException {
+		BufferedReader in = new BufferedReader(reader);
+		ArrayList<String[]> nodes = new ArrayList<>();
+		HashMap<String, Integer> labels = new HashMap<>();
+		int leaves = 0;
+		String line;
+		for (int lineNumber = 1; (line = in.readLine()) != null; ++lineNumber) {
+			int comment = line.indexOf('#');
+			String[] tokens = (comment >= 0 ? line.substring(0, comment) : line).trim().split("\\s+");
+			if (tokens.length == 1 && tokens[0].isEmpty()) {
+				continue;
+			}
+			int separator = Arrays.asList(tokens).indexOf(":");
+			if (tokens.length < 9 || !tokens[1].equals("=") || !tokens[5].equals("?") || separator < 7 || separator == tokens.length - 1) {
+				throw new IOException("Line " + lineNumber + ": expected \"label = feature op operand ? target : target\"");
+			}
+			if (labels.put(tokens[0], nodes.size()) != null) {
+				throw new IOException("Line " + lineNumber + ": duplicate label " + tokens[0]);
+			}
+			nodes.add(tokens);
+			// Targets of more than one token are leaves
+			leaves += (separator > 7 ? 1 : 0) + (tokens.length - separator > 2 ? 1 : 0);
+		}
+		if (nodes.isEmpty()) {
+			throw new IOException("Empty decision tree");
+		}
+
+		PoseDecisionTree tree = new PoseDecisionTree(nodes.size(), leaves);
+		int leaf = 0;
+		for (int n = 0; n < nodes.size(); ++n) {
+			String[] tokens = nodes.get(n);
+			tree.mFeature[n] = feature(tokens[2], tokens[0]);
+			tree.mOperator[n] = Arrays.asList(OPERATORS).indexOf(tokens[3]);
+			if (tree.mOperator[n] < 0) {
+				throw new IOException(tokens[0] + ": unknown operator " + tokens[3]);
+			}
+			tree.mOperandFeature[n] = Arrays.asList(FEATURES).indexOf(tokens[4]);
+			if (tree.mOperandFeature[n] < 0) {
+				tree.mOperand[n] = constant(tokens[4], tokens[0]);
+			}
+
+			// Targets
+			int separator = Arrays.asList(tokens).indexOf(":");
+			int[] targets = new int[2];
+			int[][] ranges = { { 6, separator }, { separator + 1, tokens.length } };
+			for (int t = 0; t < 2; ++t) {
+				String[] target = Arrays.copyOfRange(tokens, ranges[t][0], ranges[t][1]);
+				if (target.length == 1) {
+					Integer node = labels.get(target[0]);
+					if (node == null) {
+						throw new IOException(tokens[0] + ": unknown label " + target[0]);
+					}
+					targets[t] = node;
+				}
+				else if (target[0].equals("pose") && target.length == 2) {
+					tree.mLeafPose[leaf] = pose(target[1], tokens[0]);
+					targets[t] = ~leaf++;
+				}
+				else if (target[0].equals("candidates")) {
+					int[] candidates;
+					if (target.length == 2 && target[1].equals("*")) {
+						candidates = new int[PoseRecognizer.getAllDescriptions().length];
+						for (int i = 0; i < candidates.length; ++i) {
+							candidates[i] = i;
+						}
+					}
+					else {
+						candidates = new int[target.length - 1];
+						for (int i = 0; i < candidates.length; ++i) {
+							candidates[i] = pose(target[i + 1], tokens[0]);
+						}
+					}
+					tree.mLeafPose[leaf] = PoseRecognizer.NO_POSE;
+					tree.mLeafCandidates[leaf] = candidates;
+					targets[t] = ~leaf++;
+				}
+				else {
+					throw new IOException(tokens[0] + ": invalid target " + Arrays.toString(target));
+				}
+			}
+			tree.mTrue[n] = targets[0];
+			tree.mFalse[n] = targets[1];
+		}
+		tree.checkCycles(0, new boolean[nodes.size()], new boolean[nodes.size()]);
+		return tree;
+	}
+
+	/**
+	 * Evaluates the tree for extracted features
+	 * @param features Features of a frame
+	 * @return Index of the reached leaf
+	 */
+	public int evaluate(PoseFeatures features) {
+		mFeatures = features;
+		Arrays.fill(mKnown, false);
+		int leaf = this.run();
+		mFeatures = null;
+		return leaf;
+	}
+
+	/**
+	 * Evaluates the tree for given feature values
+	 * @param values Value of each feature, in the order of getFeatureNames()
+	 * @return Index of the reached leaf
+	 */
+	public int evaluate(double[] values) {
+		System.arraycopy(values, 0, mValues, 0, mValues.length);
+		Arrays.fill(mKnown, true);
+		return this.run();
+	}
+
+	/**
+	 * Returns the pose of a leaf
+	 * @param leaf Index of the leaf
+	 * @return Pose type, NO_POSE if the $N recognizer has to decide between the leaf's candidates
+	 */
+	public int getPose(int leaf) {
+		return mLeafPose[leaf];
+	}
+
+	/**
+	 * Returns the candidates of a leaf
+	 * @param leaf Index of the leaf
+	 * @return Pose types the $N recognizer has to decide between, null if the leaf is a pose (the array must not be modified)
+	 */
+	public int[] getCandidates(int leaf) {
+		return mLeafCandidates[leaf];
+	}
+
+	public int getNodeCount() {
+		return mFeature.length;
+	}
+
+	public int getLeafCount() {
+		return mLeafPose.length;
+	}
+
+	public static String[] getFeatureNames() {
+		return FEATURES.clone();
+	}
+
+
+	private int run() {
+		int node = 0;
+		while (node >= 0) {
+			double value = this.value(mFeature[node]);
+			double operand = mOperandFeature[node] >= 0 ? this.value(mOperandFeature[node]) : mOperand[node];
+			boolean result;
+			switch (mOperator[node]) {
+				case EQ:
+					result = value == operand;
+					break;
+				case NE:
+					result = value != operand;
+					break;
+				case LT:
+					result = value < operand;
+					break;
+				case LE:
+					result = value <= operand;
+					break;
+				case GT:
+					result = value > operand;
+					break;
+				default:
+					result = value >= operand;
+			}
+			node = result ? mTrue[node] : mFalse[node];
+		}
+		return ~node;
+	}
+
+	/**
+	 * Returns the value of a feature, computes it on first use
+	 */
+	private double value(int feature) {
+		if (mKnown[feature]) {
+			return mValues[feature];
+		}
+		PoseFeatures pf = mFeatures;
+		double value;
+		switch (feature) {
+			case FINGER_DEFECTS:
+				value = pf.fingerDefects;
+				break;
+			case NUM_HOLES:
+				value = pf.numHoles;
+				break;
+			case NARROW_VERT_ANGLE:
+				value = pf.narrowVertAngle ? 1 : 0;
+				break;
+			case U_SHAPE:
+				value = pf.checkForU() ? 1 : 0;
+				break;
+			case DIRECTION:
+				value = pf.getDirection();
+				break;
+			case TOP_SCREEN:
+				value = pf.topScreen ? 1 : 0;
+				break;
+			case LEFT_SCREEN:
+				value = pf.leftScreen ? 1 : 0;
+				break;
+			default:
+				this.readSkeleton();
+				return mValues[feature];
+		}
+		mValues[feature] = value;
+		mKnown[feature] = true;
+		return value;
+	}
+
+	/**
+	 * Computes the bounding box of the skeleton
+	 */
+	private void readSkeleton() {
+		SkeletonBox box = mSkeletonBox;
+		mValues[HAS_SKELETON] = box.read(mFeatures.skeleton) ? 1 : 0;
+		mValues[SKELETON_WIDTH] = box.getWidth();
+		mValues[SKELETON_HEIGHT] = box.getHeight();
+		mKnown[HAS_SKELETON] = mKnown[SKELETON_WIDTH] = mKnown[SKELETON_HEIGHT] = true;
+	}
+
+	/**
+	 * Makes sure every path from a node ends in a leaf
+	 */
+	private void checkCycles(int node, boolean[] onPath, boolean[] done) throws IOException {
+		if (node < 0 || done[node]) {
+			return;
+		}
+		if (onPath[node]) {
+			throw new IOException("Decision tree contains a cycle");
+		}
+		onPath[node] = true;
+		this.checkCycles(mTrue[node], onPath, done);
+		this.checkCycles(mFalse[node], onPath, done);
+		onPath[node] = false;
+		done[node] = true;
+	}
+
+	private static int feature(String name, String label) throws IOException {
+		int feature = Arrays.asList(FEATURES).indexOf(name);
+		if (feature < 0) {
+			throw new IOException(label + ": unknown feature " + name);
+		}
+		return feature;
+	}
+
+	private static double constant(String token, String label) throws IOException {
+		switch (token) {
+			case "true":
+				return 1;
+			case "false":
+				return 0;
+			case "HORIZONTAL":
+				return PoseFeatures.HORIZONTAL;
+			case "VERTICAL":
+				return PoseFeatures.VERTICAL;
+			case "NO_DIRECTION":
+				return PoseFeatures.NO_DIRECTION;
+		}
+		try {
+			return Double.parseDouble(token);
+		}
+		catch (NumberFormatException e) {
+			throw new IOException(label + ": invalid operand " + token);
+		}
+	}
+
+	private static int pose(String name, String label) throws IOException {
+		int type = PoseRecognizer.getType(name);
+		if (type == PoseRecognizer.NO_POSE) {
+			throw new IOException(label + ": unknown pose " + name);
+		}
+		return type;
+	}
+
+}
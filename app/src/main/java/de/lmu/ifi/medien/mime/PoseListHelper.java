@@ -23,8 +23,11 @@ import android.widget.TextView;
 
 public class PoseListHelper {
 	
+	private Context mContext;
+	private PoseRecognizer mRecognizer;
 	private ListView mListView;
-	private PoseListAdapter mAdapter;
+	private PoseListAdapter mAdapter;		// created when the list is shown, so the poses are only read if needed
+	private ArrayList<Pose> mAdapterPoses;
 	
 	private static PoseListHelper instance = null;
 	
@@ -42,7 +45,7 @@ public class PoseListHelper {
 	}
 	
 	/**
-	 * Creates and initializes the ListView
+	 * Creates and initializes the ListView; the poses are read when the list is shown for the first time
 	 * @param ctx Application context
 	 * @param pr Instance of the PoseRecognizer
 	 * @param list ListView
@@ -53,9 +56,6 @@ public class PoseListHelper {
 		LayoutInflater li = LayoutInflater.from(ctx);
 		View headerView = li.inflate(R.layout.list_header, null);
 		list.addHeaderView(headerView);
-		
-		mAdapter = new PoseListAdapter(ctx, pr.getPoses());
-		list.setAdapter(mAdapter);
     	
 		list.setOnItemLongClickListener(new OnItemLongClickListener() {
     		// Long click listener for list items to delete single items from list
@@ -75,6 +75,8 @@ public class PoseListHelper {
             }
     	});
 		
+		mContext = ctx;
+		mRecognizer = pr;
 		mListView = list;
 	}
 	
@@ -83,6 +85,9 @@ public class PoseListHelper {
 	 * @param visible Set visible
 	 */
 	public void setVisible(boolean visible) {
+		if (visible) {
+			this.updateAdapter();
+		}
 		mListView.setVisibility(visible ? View.VISIBLE : View.GONE);
 	}
 	
@@ -94,6 +99,18 @@ public class PoseListHelper {
 	}
 	
 	
+	/**
+	 * Sets the adapter on first use and whenever the recognizer's poses have been replaced (e.g. imported)
+	 */
+	private void updateAdapter() {
+		ArrayList<Pose> poses = mRecognizer.getPoses();
+		if (mAdapter == null || poses != mAdapterPoses) {
+			mAdapter = new PoseListAdapter(mContext, poses);
+			mAdapterPoses = poses;
+			mListView.setAdapter(mAdapter);
+		}
+	}
+	
 	private class PoseListAdapter extends ArrayAdapter<Pose> {
 		public PoseListAdapter(Context context, ArrayList<Pose> data) {
 			super(context, R.layout.list_item, data);
@@ -1,25 +1,23 @@
 package de.lmu.ifi.medien.mime;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.Point;
-import org.opencv.core.Rect;
-import org.opencv.imgproc.Imgproc;
 
 import android.content.Context;
 import de.lmu.ifi.medien.mime.HandDetector.PoseFeatures;
 import de.lmu.ifi.medien.mime.$N.Multistroke;
 import de.lmu.ifi.medien.mime.$N.NDollarRecognizer;
+import de.lmu.ifi.medien.mime.$N.RecognitionModeReport;
 
 /**
- * Recognize a given hand pose based on a set of extracted features, with the $N recognizer as fallback
+ * Recognize a given hand pose based on a set of extracted features, optionally with a classifier trained on the recorded poses, with the
+ * $N recognizer as fallback
  */
 public class PoseRecognizer {
 	
@@ -40,139 +38,70 @@ public class PoseRecognizer {
 	public static final int POSE_E = 11;
 	
 	private static String[] mDescriptions = new String[] { "O", "Minus", "I", "V", "U", "C", "OK", "L", "Inverse L", "Top down L", "W", "E" };
+	private static String[] mNames = new String[] { "O", "MINUS", "I", "V", "U", "C", "OK", "L", "INV_L", "TD_L", "W", "E" };	// as in the decision tree
 	
-	private int[] mIndexSubset0 = new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11 };
-	private int[] mIndexSubset1 = new int[] {POSE_L, POSE_INV_L, POSE_TD_L, POSE_U};
-	private int[] mIndexSubset2 = new int[] {POSE_C, POSE_MINUS};
-	private int[] mIndexSubset3 = new int[] {POSE_L, POSE_INV_L, POSE_TD_L, POSE_W};
-	private int[] mIndexSubset4 = new int[] {POSE_L, POSE_W};
-	private int[] mIndexSubset5 = new int[] {POSE_INV_L, POSE_W};
-	private int[] mIndexSubset6 = new int[] {POSE_TD_L, POSE_W};
-	private int[] mIndexSubset7 = new int[] {POSE_I, POSE_MINUS};
-	
+	private PoseDecisionTree mDecisionTree;
+	private PoseClassifier mClassifier = new PoseClassifier();
+	private volatile boolean mUseClassifier = false;	// set from the UI thread
 	private NDollarRecognizer mNDollarRecognizer;
-	private ArrayList<Pose> mPoses;
+	private TemplateRepository mRepository;	// saved poses, used for recognition until poses are edited
+	private ArrayList<Pose> mPoses;			// null while not read from the repository
+	private boolean mPosesChanged = false;	// poses were added or deleted since they were restored or saved
 	private double mSquareSize;
+	private int mRecognitionMode = NDollarRecognizer.MODE_GSS;
 	
 	public PoseRecognizer(Context ctx, double squareSize) {
 		this.restore(ctx);
-		Collections.sort(mPoses);
+		mDecisionTree = PoseDecisionTree.load(ctx);
 		mSquareSize = squareSize;
 		mNDollarRecognizer = new NDollarRecognizer(squareSize, true);
-		mNDollarRecognizer.setMultistrokes(this.getMultistrokePoses());
+		this.updateTemplates();
 	}
 	
 	public Result recognize(PoseFeatures pf) {
-		int likelyPose = NO_POSE;
-		NDollarRecognizer.Result result = null;
-		
 		Result recognitionResult = new Result();
-
-		// Primitive heuristic recognition based on the known set of poses
-		if (pf.fingerDefects == 0 && pf.numHoles >= 1) {
-			likelyPose = POSE_O;
-		}
-		else if (pf.fingerDefects == 0) {
-			if (pf.skeleton != null) {
-				try {
-					Rect boundingRect = Imgproc.boundingRect(pf.skeleton);
-					if (boundingRect.width > boundingRect.height) {
-						likelyPose = POSE_MINUS;
-					}
-					else {
-						likelyPose = POSE_I;
-					}
-				}
-				catch (Exception e) {
-					mNDollarRecognizer.setUseIndices(mIndexSubset7);
-					result = mNDollarRecognizer.recognize(pf.skeleton);
-				}
-			}
-			else {
-				mNDollarRecognizer.setUseIndices(mIndexSubset7);
-				result = mNDollarRecognizer.recognize(pf.skeleton);
-			}
-		}
-		else if (pf.fingerDefects <= 1) {
-			if (pf.numHoles >= 1) {
-				likelyPose = POSE_OK;
-			}
-			else if (pf.narrowVertAngle) {
-				likelyPose = POSE_V;
-			}
-			else if (pf.checkForU()) {
-				likelyPose = POSE_U;
-			}
-			else if (pf.topScreen && pf.leftScreen) {
-				likelyPose = POSE_TD_L;
-			}
-			else if (pf.getDirection() == PoseFeatures.HORIZONTAL) {
-				mNDollarRecognizer.setUseIndices(mIndexSubset2);
-				result = mNDollarRecognizer.recognize(pf.skeleton);
-			}
-			else if (!pf.topScreen && pf.leftScreen) {
-				likelyPose = POSE_L;
-			}
-			else if (!pf.topScreen && !pf.leftScreen) {
-				likelyPose = POSE_INV_L;
-			}
-			else {
-				mNDollarRecognizer.setUseIndices(mIndexSubset1);
-				result = mNDollarRecognizer.recognize(pf.skeleton);
-			}
-		}
-		else if (pf.fingerDefects <= 2) {
-			int direction = pf.getDirection();
-			if (direction == PoseFeatures.HORIZONTAL) {
-				likelyPose = POSE_E;
-			}
-			else if (pf.topScreen && pf.leftScreen) {
-				mNDollarRecognizer.setUseIndices(mIndexSubset6);
-				result = mNDollarRecognizer.recognize(pf.skeleton);
-			}
-			else if (!pf.topScreen && pf.leftScreen) {
-				mNDollarRecognizer.setUseIndices(mIndexSubset4);
-				result = mNDollarRecognizer.recognize(pf.skeleton);
-			}
-			else if (!pf.topScreen && !pf.leftScreen) {
-				mNDollarRecognizer.setUseIndices(mIndexSubset5);
-				result = mNDollarRecognizer.recognize(pf.skeleton);
-			}
-			else {
-				mNDollarRecognizer.setUseIndices(mIndexSubset3);
-				result = mNDollarRecognizer.recognize(pf.skeleton);
-			}
-		}
-		else if (pf.fingerDefects == 3) {
-			if (pf.getDirection() == PoseFeatures.HORIZONTAL) {
-				likelyPose = POSE_E;
-			}
-			else {
-				likelyPose = POSE_W;
-			}
-		}
-		
+		recognitionResult.pose = this.recognizePose(pf);
+		return recognitionResult;
+	}
+	
+	/**
+	 * Recognizes the pose of a frame without creating a result object
+	 * @param pf Features of the frame
+	 * @return Pose type, NO_POSE if none was recognized
+	 */
+	public int recognizePose(PoseFeatures pf) {
+		// Heuristic recognition based on the known set of poses (decision tree), the $N recognizer decides between the remaining candidates
+		int leaf = mDecisionTree.evaluate(pf);
+		int likelyPose = mDecisionTree.getPose(leaf);
 		if (likelyPose != NO_POSE) {
-			recognitionResult.pose = likelyPose;
-			return recognitionResult;
-		}
-		if (result != null) {
-			recognitionResult.pose = result.pose;
-			return recognitionResult;
+			return likelyPose;
 		}
+		int[] candidates = mDecisionTree.getCandidates(leaf);
 		
-		// Worst case, nothing else works
-		mNDollarRecognizer.setUseIndices(mIndexSubset0);
-		result = mNDollarRecognizer.recognize(pf.skeleton);
-		recognitionResult.pose = result.pose;
-		return recognitionResult;
+		// The classifier answers if most of the nearest recorded samples agree, the $N recognizer only has to decide otherwise
+		if (mUseClassifier) {
+			likelyPose = mClassifier.classify(pf, candidates);
+			if (likelyPose != NO_POSE) {
+				return likelyPose;
+			}
+		}
+		mNDollarRecognizer.setUseIndices(candidates);
+		return mNDollarRecognizer.recognize(pf.skeleton).pose;
 	}
 	
-	public boolean addPose(int type, MatOfPoint skeleton) {
+	/**
+	 * Adds a recorded pose, replacing an earlier pose of the same type
+	 * @param type Pose type
+	 * @param skeleton Recorded skeleton
+	 * @param features Features of the frame the pose was recorded in, used for training the classifier (may be null)
+	 * @return Pose was added
+	 */
+	public boolean addPose(int type, MatOfPoint skeleton, PoseFeatures features) {
+		ArrayList<Pose> poses = this.getPoses();
 		// Check if type is unique
 		int delete = -1;
-		for (int i = 0; i < mPoses.size(); ++i) {
-			if (mPoses.get(i).getType() == type) {
+		for (int i = 0; i < poses.size(); ++i) {
+			if (poses.get(i).getType() == type) {
 				delete = i;
 				break;
 			}
@@ -189,20 +118,26 @@ public class PoseRecognizer {
 			Pose pose = new Pose();
 			pose.setMultistroke(new Multistroke(type, true, strokes));
 			pose.setType(type);
-			mPoses.add(pose);
-			Collections.sort(mPoses);
-			mNDollarRecognizer.setMultistrokes(this.getMultistrokePoses());
+			poses.add(pose);
+			Collections.sort(poses);
+			mPosesChanged = true;
+			this.updateTemplates();
+			if (features != null) {
+				mClassifier.addSamples(type, features, skeleton);
+			}
 			return true;
 		}
 		return false;
 	}
 	
 	public boolean deletePose(int index) {
-		if (index >= mPoses.size()) {
+		ArrayList<Pose> poses = this.getPoses();
+		if (index >= poses.size()) {
 			return false;
 		}
-		mPoses.remove(index);
-		mNDollarRecognizer.setMultistrokes(this.getMultistrokePoses());
+		mClassifier.removeType(poses.remove(index).getType());
+		mPosesChanged = true;
+		this.updateTemplates();
 		return true;
 	}
 	
@@ -210,10 +145,62 @@ public class PoseRecognizer {
 		mNDollarRecognizer.setSquareSize(size);
 	}
 	
+	/**
+	 * Sets how the $N recognizer compares skeletons to the recorded poses
+	 * @param mode One of the NDollarRecognizer.MODE_* constants
+	 */
+	public void setRecognitionMode(int mode) {
+		mRecognitionMode = mode;
+		mNDollarRecognizer.setMode(mode);
+	}
+	
+	public int getRecognitionMode() {
+		return mRecognitionMode;
+	}
+	
+	/**
+	 * Enables/disables the classifier stage; if enabled, the classifier is asked before the $N recognizer
+	 * @param enable Use the classifier
+	 */
+	public void setUseClassifier(boolean enable) {
+		mUseClassifier = enable;
+	}
+	
+	/**
+	 * Returns the classifier, e.g. for its latency and the share of frames that still needed the $N recognizer
+	 * @return Classifier
+	 */
+	public PoseClassifier getClassifier() {
+		return mClassifier;
+	}
+	
+	/**
+	 * Compares accuracy and latency of all recognition modes on samples generated from the recorded poses
+	 * @param samplesPerPose Number of samples per pose
+	 * @return The report
+	 */
+	public RecognitionModeReport createModeReport(int samplesPerPose) {
+		return new RecognitionModeReport(this.getMultistrokePoses(), samplesPerPose, 0);
+	}
+	
 	public static String[] getAllDescriptions() {
 		return mDescriptions.clone();
 	}
 	
+	/**
+	 * Returns the type of a pose given by its name (e.g. "INV_L" for POSE_INV_L)
+	 * @param name Name of the pose
+	 * @return Pose type, NO_POSE if there is no pose with this name
+	 */
+	public static int getType(String name) {
+		for (int i = 0; i < mNames.length; ++i) {
+			if (mNames[i].equals(name)) {
+				return i;
+			}
+		}
+		return NO_POSE;
+	}
+	
 	public static String getDescription(int type) {
 		if (type == NO_POSE) {
 			return "n/a";
@@ -224,7 +211,15 @@ public class PoseRecognizer {
 		return mDescriptions[type];
 	}
 	
+	/**
+	 * Returns the poses; they are read from the template repository on first use and replace it for recognition afterwards
+	 * @return Poses, sorted by type
+	 */
 	public ArrayList<Pose> getPoses() {
+		if (mPoses == null) {
+			mPoses = mRepository != null ? mRepository.readPoses() : new ArrayList<Pose>();
+			Collections.sort(mPoses);
+		}
 		return mPoses;
 	}
 
@@ -234,54 +229,65 @@ public class PoseRecognizer {
 	 */
 	private ArrayList<Multistroke> getMultistrokePoses() {
 		ArrayList<Multistroke> poses = new ArrayList<>();
-		for (Pose p : mPoses) {
+		for (Pose p : this.getPoses()) {
 			poses.add(p.getMultistroke());
 		}
 		return poses;
 	}
 	
 	/**
-	 * Restore saved poses from file
+	 * Passes the poses to the $N recognizer: the mapped template repository as long as the poses haven't been read, the poses otherwise
+	 */
+	private void updateTemplates() {
+		if (mPoses == null && mRepository != null) {
+			mNDollarRecognizer.setTemplates(mRepository);
+		}
+		else {
+			mNDollarRecognizer.setMultistrokes(this.getMultistrokePoses());
+		}
+	}
+	
+	/**
+	 * Restore saved poses from file; poses saved with Java serialization (older versions, imported files) are converted once.
+	 * The file is mapped into memory, templates are only read when the recognizer needs them. The samples of the classifier are read as well.
 	 * @param ctx Application context
 	 */
 	public boolean restore(Context ctx) {
 		boolean success = true;
+		mClassifier.read(ctx.getFileStreamPath(PoseClassifier.FILENAME));
 		try {
-			FileInputStream fis = ctx.openFileInput(FILENAME);
-			ObjectInputStream ois = new ObjectInputStream(fis);
-			int length = ois.readInt();
-			mPoses = new ArrayList<>();
-			for (int i = 0; i < length; ++i) {
-				Pose p = (Pose) ois.readObject();
-				mPoses.add(p);
+			File legacyFile = ctx.getFileStreamPath(FILENAME);
+			File file = ctx.getFileStreamPath(PoseStore.FILENAME);
+			if (legacyFile.exists()) {
+				PoseStore.migrate(legacyFile, file, true);
 			}
-			fis.close();
+			mRepository = TemplateRepository.open(file);
+			mPoses = null;
+			mPosesChanged = false;
 		}
 		catch (Exception e) {
 			success = false;
 		}
-		if (mPoses == null) {
-			mPoses = new ArrayList<>();
-		}
 		return success;
 	}
 	
 	/**
-	 * Save gesture collection to file
+	 * Save gesture collection to file (only if poses were added or deleted, otherwise the file is unchanged) and the samples of the classifier
 	 * @param ctx Application context
 	 */
 	public void save(Context ctx) {
 		try {
-	        FileOutputStream fos = ctx.openFileOutput(FILENAME, Context.MODE_PRIVATE);
-	        ObjectOutputStream oos = new ObjectOutputStream(fos);
-	        oos.writeInt(mPoses.size());
-		    for (Pose p : mPoses) {
-		    	oos.writeObject(p);
-		    }
-		    oos.flush();
-	        fos.close();
-	    }
-	    catch (Exception e) { }
+			mClassifier.write(ctx.getFileStreamPath(PoseClassifier.FILENAME));
+		}
+		catch (Exception e) { }
+		if (!mPosesChanged) {
+			return;
+		}
+		try {
+			PoseStore.write(ctx.getFileStreamPath(PoseStore.FILENAME), mPoses, true);
+			mPosesChanged = false;
+		}
+		catch (Exception e) { }
 	}
 
 	/**
@@ -291,25 +297,55 @@ public class PoseRecognizer {
 	 */
 	public boolean importPoses(Context ctx) {
 		boolean success = this.restore(ctx);
-		Collections.sort(mPoses);
+		mNDollarRecognizer.shutdown();
 		mNDollarRecognizer = new NDollarRecognizer(mSquareSize, true);
-		mNDollarRecognizer.setMultistrokes(this.getMultistrokePoses());
+		this.updateTemplates();
+		mNDollarRecognizer.setMode(mRecognitionMode);
 		return success;
 	}
 	
+	/**
+	 * Import the decision tree while the app is running; an invalid tree is deleted and the one shipped with the app is used instead
+	 * @param ctx Application context
+	 * @return Decision tree successfully imported (or none to import)
+	 */
+	public boolean importDecisionTree(Context ctx) {
+		try {
+			PoseDecisionTree tree = PoseDecisionTree.loadImported(ctx);
+			mDecisionTree = tree != null ? tree : PoseDecisionTree.load(ctx);
+			return true;
+		}
+		catch (IOException e) {
+			ctx.deleteFile(PoseDecisionTree.FILENAME);
+			mDecisionTree = PoseDecisionTree.load(ctx);
+			return false;
+		}
+	}
+	
+	/**
+	 * Stops the worker threads of the $N recognizer
+	 */
+	public void release() {
+		mNDollarRecognizer.shutdown();
+	}
+	
 	/**
 	 * Reset all poses
 	 */
 	public void reset() {
-		mPoses.clear();
+		mPoses = new ArrayList<>();
+		mPosesChanged = true;
 		mNDollarRecognizer.setMultistrokes(new ArrayList<Multistroke>());
+		mClassifier.reset();
 	}
 	
 	
 	public static class Result {
 		public int pose = NO_POSE;			//type
+		public double confidence = 1.0;		//share of recent frames with this pose, set by TemporalPoseRecognizer
 		public boolean nonZero = false;		//set by HandDetector
 		public Mat frame;					//set by HandDetector
+		public PoseFeatures features;		//set by HandDetector if recognition is deferred
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,240 @@
+package de.lmu.ifi.medien.mime;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.opencv.core.Point;
+
+import de.lmu.ifi.medien.mime.$N.Multistroke;
+import de.lmu.ifi.medien.mime.$N.Unistroke;
+
+/**
+ * Binary file format for recorded poses, replaces Java serialization of Pose objects.
+ * All values are little-endian; coordinates are stored as float32, the Protractor vector is not stored but computed from the points.
+ *
+ * File:      magic "MIMP", int32 version, int32 flags (FLAG_*), int32 number of poses, int32 file offset of each pose
+ * Pose:      int32 type, int32 number of strokes, int32 number of original strokes, original strokes, int32 number of unistrokes, unistrokes
+ * Stroke:    int32 number of points, float32 x0, y0, x1, y1, ...
+ * Unistroke: float32 start unit vector x, y, stroke of resampled points
+ *
+ * Files are read through a MappedByteBuffer, without creating objects per point.
+ */
+public class PoseStore {
+
+	public static final String FILENAME = ".poses";
+
+	private static final int MAGIC = 0x504D494D;	// "MIMP" in little-endian order
+	public static final int VERSION = 1;
+	public static final int FLAG_BOUNDED_ROTATION_INVARIANCE = 1;
+
+	static final int HEADER_SIZE = 16;
+
+
+	/**
+	 * Writes poses to a file (replaces the file atomically)
+	 * @param file Target file
+	 * @param poses Poses
+	 * @param useBoundedRotationInvariance Unistrokes were created with bounded rotation invariance
+	 * @throws IOException
+	 */
+	public static void write(File file, ArrayList<Pose> poses, boolean useBoundedRotationInvariance) throws IOException {
+		// Compute size and offsets first
+		int[] offsets = new int[poses.size()];
+		int size = HEADER_SIZE + 4 * poses.size();
+		for (int i = 0; i < poses.size(); ++i) {
+			offsets[i] = size;
+			size += getSize(poses.get(i).getMultistroke());
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(useBoundedRotationInvariance ? FLAG_BOUNDED_ROTATION_INVARIANCE : 0);
+		buffer.putInt(poses.size());
+		for (int offset : offsets) {
+			buffer.putInt(offset);
+		}
+		for (Pose pose : poses) {
+			Multistroke multistroke = pose.getMultistroke();
+			buffer.putInt(pose.getType());
+			buffer.putInt(multistroke.getNumStrokes());
+			Point[][] origStrokes = multistroke.getOrigStrokes();
+			buffer.putInt(origStrokes.length);
+			for (Point[] stroke : origStrokes) {
+				buffer.putInt(stroke.length);
+				for (Point p : stroke) {
+					buffer.putFloat((float) p.x);
+					buffer.putFloat((float) p.y);
+				}
+			}
+			Unistroke[] unistrokes = multistroke.getUnistrokes();
+			buffer.putInt(unistrokes.length);
+			for (Unistroke u : unistrokes) {
+				buffer.putFloat((float) u.getStartUnitVector().x);
+				buffer.putFloat((float) u.getStartUnitVector().y);
+				double[] points = u.getPackedPoints();
+				buffer.putInt(points.length / 2);
+				for (double d : points) {
+					buffer.putFloat((float) d);
+				}
+			}
+		}
+
+		File tmp = new File(file.getPath() + ".tmp");
+		FileOutputStream fos = new FileOutputStream(tmp);
+		try {
+			fos.write(buffer.array());
+			fos.getFD().sync();
+		}
+		finally {
+			fos.close();
+		}
+		if (!tmp.renameTo(file)) {
+			throw new IOException("Could not replace " + file);
+		}
+	}
+
+	/**
+	 * Reads poses from a file
+	 * @param file Source file
+	 * @return Poses
+	 * @throws IOException If the file doesn't exist or isn't a valid pose file
+	 */
+	public static ArrayList<Pose> read(File file) throws IOException {
+		try {
+			return readPoses(map(file));
+		}
+		catch (RuntimeException e) {
+			// Truncated or corrupt file
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Reads poses saved with Java serialization (format used before PoseStore)
+	 * @param file Source file
+	 * @return Poses
+	 * @throws Exception
+	 */
+	public static ArrayList<Pose> readLegacy(File file) throws Exception {
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			ObjectInputStream ois = new ObjectInputStream(fis);
+			int length = ois.readInt();
+			ArrayList<Pose> poses = new ArrayList<>();
+			for (int i = 0; i < length; ++i) {
+				poses.add((Pose) ois.readObject());
+			}
+			return poses;
+		}
+		finally {
+			fis.close();
+		}
+	}
+
+	/**
+	 * Converts a file in the legacy format, poses are sorted by type; the legacy file is deleted afterwards
+	 * @param legacyFile Legacy file
+	 * @param file Target file
+	 * @param useBoundedRotationInvariance Unistrokes were created with bounded rotation invariance
+	 * @return Converted poses
+	 * @throws Exception
+	 */
+	public static ArrayList<Pose> migrate(File legacyFile, File file, boolean useBoundedRotationInvariance) throws Exception {
+		ArrayList<Pose> poses = readLegacy(legacyFile);
+		Collections.sort(poses);
+		write(file, poses, useBoundedRotationInvariance);
+		legacyFile.delete();
+		return poses;
+	}
+
+
+	/**
+	 * Maps a pose file into memory and checks its header; the mapping stays valid after the file is closed or replaced
+	 * @param file Source file
+	 * @return Little-endian buffer of the whole file
+	 * @throws IOException If the file doesn't exist or isn't a valid pose file
+	 */
+	static ByteBuffer map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+				throw new IOException("Not a pose file: " + file);
+			}
+			if (buffer.getInt(4) > VERSION) {
+				throw new IOException("Unsupported pose file version " + buffer.getInt(4));
+			}
+			return buffer;
+		}
+		finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads all poses from a mapped file (moves the buffer's position)
+	 * @param buffer Buffer returned by map()
+	 * @return Poses
+	 */
+	static ArrayList<Pose> readPoses(ByteBuffer buffer) {
+		boolean useBoundedRotationInvariance = (buffer.getInt(8) & FLAG_BOUNDED_ROTATION_INVARIANCE) != 0;
+		int count = buffer.getInt(12);
+		ArrayList<Pose> poses = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i) {
+			buffer.position(buffer.getInt(HEADER_SIZE + 4 * i));
+			poses.add(readPose(buffer, useBoundedRotationInvariance));
+		}
+		return poses;
+	}
+
+
+	private static Pose readPose(ByteBuffer buffer, boolean useBoundedRotationInvariance) {
+		int type = buffer.getInt();
+		int numStrokes = buffer.getInt();
+		double[][] origStrokes = new double[buffer.getInt()][];
+		for (int i = 0; i < origStrokes.length; ++i) {
+			origStrokes[i] = readStroke(buffer);
+		}
+		Unistroke[] unistrokes = new Unistroke[buffer.getInt()];
+		for (int i = 0; i < unistrokes.length; ++i) {
+			Point startUnitVector = new Point(buffer.getFloat(), buffer.getFloat());
+			unistrokes[i] = new Unistroke(useBoundedRotationInvariance, readStroke(buffer), startUnitVector);
+		}
+		Pose pose = new Pose();
+		pose.setType(type);
+		pose.setMultistroke(new Multistroke(type, numStrokes, unistrokes, origStrokes));
+		return pose;
+	}
+
+	private static double[] readStroke(ByteBuffer buffer) {
+		double[] points = new double[2 * buffer.getInt()];
+		for (int i = 0; i < points.length; ++i) {
+			points[i] = buffer.getFloat();
+		}
+		return points;
+	}
+
+	private static int getSize(Multistroke multistroke) {
+		int size = 12;
+		for (Point[] stroke : multistroke.getOrigStrokes()) {
+			size += 4 + 8 * stroke.length;
+		}
+		size += 4;
+		for (Unistroke u : multistroke.getUnistrokes()) {
+			size += 8 + 4 + 4 * u.getPackedPoints().length;
+		}
+		return size;
+	}
+
+}
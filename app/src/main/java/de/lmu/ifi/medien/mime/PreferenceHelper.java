@@ -3,6 +3,7 @@ package de.lmu.ifi.medien.mime;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
+import de.lmu.ifi.medien.mime.$N.NDollarRecognizer;
 
 public class PreferenceHelper {
 	
@@ -13,6 +14,28 @@ public class PreferenceHelper {
 	private static final boolean STUDYMODE_DEFAULT = false;
 	private static final String SAVEDBG_KEY = "savedbg";
 	private static final boolean SAVEDBG_DEFAULT = false;
+	private static final String PARALLEL_KEY = "parallel";
+	private static final boolean PARALLEL_DEFAULT = false;
+	private static final String ROI_KEY = "roi";
+	private static final boolean ROI_DEFAULT = false;
+	private static final String TRACKING_KEY = "tracking";
+	private static final boolean TRACKING_DEFAULT = false;
+	private static final String ADAPTIVE_KEY = "adaptive";
+	private static final boolean ADAPTIVE_DEFAULT = false;
+	private static final String PIPELINE_KEY = "pipeline";
+	private static final boolean PIPELINE_DEFAULT = false;
+	private static final String NV21_KEY = "nv21";
+	private static final boolean NV21_DEFAULT = false;
+	private static final String THINNING_KEY = "thinning";
+	private static final int THINNING_DEFAULT = HandDetector.THINNING_INCREMENTAL;
+	private static final String CLASSIFIER_KEY = "classifier";
+	private static final boolean CLASSIFIER_DEFAULT = false;
+	private static final String SMOOTHING_KEY = "smoothing";
+	private static final boolean SMOOTHING_DEFAULT = false;
+	private static final String CHANGEGATE_KEY = "changegate";
+	private static final boolean CHANGEGATE_DEFAULT = false;
+	private static final String RECOGNITION_MODE_KEY = "recognitionmode";
+	private static final int RECOGNITION_MODE_DEFAULT = NDollarRecognizer.MODE_GSS;
 	
 	private static final String PREF_KEY = "pref";
 	private static final int[] PREF_DEFAULT = new int[] { 30, 225, 1, 1, 1, 3, 3 };
@@ -55,6 +78,105 @@ public class PreferenceHelper {
 		editor.apply();
 	}
 	
+	public boolean useParallelSegmentation() {
+		return mSettings.getBoolean(PARALLEL_KEY, PARALLEL_DEFAULT);
+	}
+	public void setUseParallelSegmentation(boolean enabled) {
+		Editor editor = mSettings.edit();
+		editor.putBoolean(PARALLEL_KEY, enabled);
+		editor.apply();
+	}
+	
+	public boolean useRoiTracking() {
+		return mSettings.getBoolean(ROI_KEY, ROI_DEFAULT);
+	}
+	public void setUseRoiTracking(boolean enabled) {
+		Editor editor = mSettings.edit();
+		editor.putBoolean(ROI_KEY, enabled);
+		editor.apply();
+	}
+	
+	public boolean useHandTracking() {
+		return mSettings.getBoolean(TRACKING_KEY, TRACKING_DEFAULT);
+	}
+	public void setUseHandTracking(boolean enabled) {
+		Editor editor = mSettings.edit();
+		editor.putBoolean(TRACKING_KEY, enabled);
+		editor.apply();
+	}
+	
+	public boolean useAdaptiveResolution() {
+		return mSettings.getBoolean(ADAPTIVE_KEY, ADAPTIVE_DEFAULT);
+	}
+	public void setUseAdaptiveResolution(boolean enabled) {
+		Editor editor = mSettings.edit();
+		editor.putBoolean(ADAPTIVE_KEY, enabled);
+		editor.apply();
+	}
+	
+	public boolean usePipeline() {
+		return mSettings.getBoolean(PIPELINE_KEY, PIPELINE_DEFAULT);
+	}
+	public void setUsePipeline(boolean enabled) {
+		Editor editor = mSettings.edit();
+		editor.putBoolean(PIPELINE_KEY, enabled);
+		editor.apply();
+	}
+	
+	public boolean useNV21Input() {
+		return mSettings.getBoolean(NV21_KEY, NV21_DEFAULT);
+	}
+	public void setUseNV21Input(boolean enabled) {
+		Editor editor = mSettings.edit();
+		editor.putBoolean(NV21_KEY, enabled);
+		editor.apply();
+	}
+	
+	public int getThinningAlgorithm() {
+		return mSettings.getInt(THINNING_KEY, THINNING_DEFAULT);
+	}
+	public void setThinningAlgorithm(int algorithm) {
+		Editor editor = mSettings.edit();
+		editor.putInt(THINNING_KEY, algorithm);
+		editor.apply();
+	}
+	
+	public int getRecognitionMode() {
+		return mSettings.getInt(RECOGNITION_MODE_KEY, RECOGNITION_MODE_DEFAULT);
+	}
+	public void setRecognitionMode(int mode) {
+		Editor editor = mSettings.edit();
+		editor.putInt(RECOGNITION_MODE_KEY, mode);
+		editor.apply();
+	}
+	
+	public boolean useClassifier() {
+		return mSettings.getBoolean(CLASSIFIER_KEY, CLASSIFIER_DEFAULT);
+	}
+	public void setUseClassifier(boolean enabled) {
+		Editor editor = mSettings.edit();
+		editor.putBoolean(CLASSIFIER_KEY, enabled);
+		editor.apply();
+	}
+	
+	public boolean useTemporalSmoothing() {
+		return mSettings.getBoolean(SMOOTHING_KEY, SMOOTHING_DEFAULT);
+	}
+	public void setUseTemporalSmoothing(boolean enabled) {
+		Editor editor = mSettings.edit();
+		editor.putBoolean(SMOOTHING_KEY, enabled);
+		editor.apply();
+	}
+	
+	public boolean useChangeGate() {
+		return mSettings.getBoolean(CHANGEGATE_KEY, CHANGEGATE_DEFAULT);
+	}
+	public void setUseChangeGate(boolean enabled) {
+		Editor editor = mSettings.edit();
+		editor.putBoolean(CHANGEGATE_KEY, enabled);
+		editor.apply();
+	}
+	
 	public int[] getPrefs() {
 		int[] prefs = new int[PREF_DEFAULT.length];
 		for (int i = 0; i < PREF_DEFAULT.length; ++i) {
@@ -0,0 +1,106 @@
+package de.lmu.ifi.medien.mime;
+
+/**
+ * Chooses the scale factor of the frames processed by HandDetector, so processing a frame stays within the time budget of a target frame rate.
+ * If the smoothed frame time exceeds the budget, the next coarser scale factor is used; a finer one only if the frame time expected for it
+ * (processing time grows with the number of pixels) leaves some headroom, so the controller doesn't oscillate between two factors.
+ * After each change, the controller waits a few frames for the frame time to settle.
+ */
+public class ResolutionController {
+
+	public static final double DEFAULT_TARGET_FPS = 15.0;
+	public static final int MIN_WIDTH = 80;			// smallest width of processed frames
+	public static final int MAX_WIDTH = 320;		// largest width of processed frames
+	private static final double SMOOTHING = 0.2;
+	private static final int SETTLE_FRAMES = 10;	// frames measured before the next decision
+	private static final double HEADROOM = 0.8;		// share of the budget a finer resolution may be expected to need
+
+	private final double mBudget;
+	private final int mMinFactor;
+	private final int mMaxFactor;
+	private int mFactor;
+	private double mFrameTime = 0;
+	private int mFrames = 0;
+	private int mChanges = 0;
+
+
+	/**
+	 * Constructor
+	 * @param targetFps Target frame rate
+	 * @param frameWidth Width of the camera frames
+	 * @param factor Initial scale factor
+	 */
+	public ResolutionController(double targetFps, int frameWidth, int factor) {
+		mBudget = 1000.0 / targetFps;
+		mMinFactor = Math.max(1, (frameWidth + MAX_WIDTH - 1) / MAX_WIDTH);
+		mMaxFactor = Math.max(mMinFactor, frameWidth / MIN_WIDTH);
+		mFactor = Math.max(mMinFactor, Math.min(mMaxFactor, factor));
+	}
+
+	/**
+	 * Adds the processing time of a frame
+	 * @param frameTime Processing time in milliseconds
+	 * @return Scale factor for the next frames
+	 */
+	public int update(double frameTime) {
+		mFrameTime = mFrames == 0 ? frameTime : (1.0 - SMOOTHING) * mFrameTime + SMOOTHING * frameTime;
+		if (++mFrames < SETTLE_FRAMES) {
+			return mFactor;
+		}
+		if (mFrameTime > mBudget && mFactor < mMaxFactor) {
+			this.change(mFactor + 1);
+		}
+		else if (mFactor > mMinFactor) {
+			double ratio = (double) mFactor / (mFactor - 1);
+			if (mFrameTime * ratio * ratio < HEADROOM * mBudget) {
+				this.change(mFactor - 1);
+			}
+		}
+		return mFactor;
+	}
+
+	/**
+	 * Starts again with a given scale factor, e.g. after the processing has been paused
+	 * @param factor Scale factor
+	 */
+	public void reset(int factor) {
+		mFactor = Math.max(mMinFactor, Math.min(mMaxFactor, factor));
+		mFrames = 0;
+	}
+
+	public int getFactor() {
+		return mFactor;
+	}
+
+	/**
+	 * Returns the smoothed processing time of the current scale factor
+	 * @return Frame time in milliseconds
+	 */
+	public double getFrameTime() {
+		return mFrameTime;
+	}
+
+	/**
+	 * Returns the time budget of a frame
+	 * @return Budget in milliseconds
+	 */
+	public double getBudget() {
+		return mBudget;
+	}
+
+	/**
+	 * Returns the number of times the scale factor has changed
+	 * @return Number of changes
+	 */
+	public int getChanges() {
+		return mChanges;
+	}
+
+
+	private void change(int factor) {
+		mFactor = factor;
+		mFrames = 0;
+		++mChanges;
+	}
+
+}
@@ -0,0 +1,96 @@
+package de.lmu.ifi.medien.mime;
+
+import org.opencv.core.MatOfPoint;
+
+/**
+ * Bounding box of a skeleton, like Imgproc.boundingRect(), but computed from a single bulk read of the points into a reused buffer, so
+ * reading it every frame doesn't allocate anything.
+ */
+public class SkeletonBox {
+
+	private int[] mBuffer = new int[256];
+	private int mX;
+	private int mY;
+	private int mWidth;
+	private int mHeight;
+	private int mCount;
+
+
+	/**
+	 * Reads the points of a skeleton and computes their bounding box
+	 * @param skeleton Skeleton (may be null)
+	 * @return Skeleton could be read; false if it is null or its points can't be read (e.g. released), the box is empty then
+	 */
+	public boolean read(MatOfPoint skeleton) {
+		mX = mY = mWidth = mHeight = mCount = 0;
+		if (skeleton == null) {
+			return false;
+		}
+		try {
+			int count = (int) skeleton.total();
+			if (count > 0) {
+				if (mBuffer.length < 2 * count) {
+					mBuffer = new int[2 * count];
+				}
+				int[] points = mBuffer;
+				skeleton.get(0, 0, points);
+				this.set(points, count);
+			}
+		}
+		catch (Exception e) {
+			// Treated like a missing skeleton, as the decision tree's hasSkeleton feature does
+			mX = mY = mWidth = mHeight = mCount = 0;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the bounding box of packed points
+	 * @param points Points (x0, y0, x1, y1, ...)
+	 * @param count Number of points
+	 */
+	public void set(int[] points, int count) {
+		mCount = count;
+		if (count == 0) {
+			mX = mY = mWidth = mHeight = 0;
+			return;
+		}
+		int minX = points[0], maxX = points[0], minY = points[1], maxY = points[1];
+		for (int i = 2; i < 2 * count; i += 2) {
+			minX = Math.min(minX, points[i]);
+			maxX = Math.max(maxX, points[i]);
+			minY = Math.min(minY, points[i + 1]);
+			maxY = Math.max(maxY, points[i + 1]);
+		}
+		mX = minX;
+		mY = minY;
+		mWidth = maxX - minX + 1;
+		mHeight = maxY - minY + 1;
+	}
+
+	public int getX() {
+		return mX;
+	}
+
+	public int getY() {
+		return mY;
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 * Returns the number of points of the skeleton
+	 * @return Number of points
+	 */
+	public int getCount() {
+		return mCount;
+	}
+
+}
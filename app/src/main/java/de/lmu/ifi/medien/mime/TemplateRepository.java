@@ -0,0 +1,175 @@
+package de.lmu.ifi.medien.mime;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.opencv.core.Point;
+
+import de.lmu.ifi.medien.mime.$N.TemplateSource;
+import de.lmu.ifi.medien.mime.$N.Unistroke;
+
+/**
+ * Templates of a memory-mapped PoseStore file, for large pose libraries.
+ * Opening the file only collects the offsets of the pose and unistroke records. Types, start vectors and points are read from the mapped
+ * buffer when the recognizer needs them, Unistroke objects are only created for templates that survive pruning (and kept afterwards).
+ */
+public class TemplateRepository implements TemplateSource {
+
+	private final ByteBuffer mBuffer;
+	private final FloatBuffer mFloats;
+	private final boolean mUseBoundedRotationInvariance;
+	private final int[] mPoseOffsets;		// byte offset of each pose record
+	private final int[] mFirstUnistroke;	// index of the first unistroke of each pose, total number of unistrokes at the end
+	private final int[] mUnistrokeOffsets;	// float offset of each unistroke record (start vector, number of points, points)
+	private final AtomicReferenceArray<Unistroke> mUnistrokes;	// created on first use, possibly by several scorers at once
+	private final AtomicInteger mMaterialized = new AtomicInteger();
+
+
+	/**
+	 * Opens a pose file
+	 * @param file Pose file written by PoseStore
+	 * @return The repository
+	 * @throws IOException If the file doesn't exist or isn't a valid pose file
+	 */
+	public static TemplateRepository open(File file) throws IOException {
+		try {
+			return new TemplateRepository(PoseStore.map(file));
+		}
+		catch (RuntimeException e) {
+			// Truncated or corrupt file
+			throw new IOException(e);
+		}
+	}
+
+	private TemplateRepository(ByteBuffer buffer) {
+		mBuffer = buffer;
+		mFloats = buffer.asFloatBuffer();	// all records are 4-byte aligned
+		mUseBoundedRotationInvariance = (buffer.getInt(8) & PoseStore.FLAG_BOUNDED_ROTATION_INVARIANCE) != 0;
+		int count = buffer.getInt(12);
+		mPoseOffsets = new int[count];
+		mFirstUnistroke = new int[count + 1];
+		int[] unistrokeOffsets = new int[2 * count];
+		int unistrokes = 0;
+		for (int i = 0; i < count; ++i) {
+			int offset = buffer.getInt(PoseStore.HEADER_SIZE + 4 * i);
+			mPoseOffsets[i] = offset;
+			mFirstUnistroke[i] = unistrokes;
+			// Skip type, number of strokes and original strokes
+			int origStrokes = buffer.getInt(offset + 8);
+			offset += 12;
+			for (int j = 0; j < origStrokes; ++j) {
+				offset += 4 + 8 * buffer.getInt(offset);
+			}
+			int n = buffer.getInt(offset);
+			offset += 4;
+			for (int j = 0; j < n; ++j) {
+				if (unistrokes == unistrokeOffsets.length) {
+					unistrokeOffsets = Arrays.copyOf(unistrokeOffsets, 2 * unistrokes + 2);
+				}
+				unistrokeOffsets[unistrokes++] = offset / 4;
+				offset += 12 + 8 * buffer.getInt(offset + 8);
+			}
+			if (offset > buffer.limit()) {
+				throw new IndexOutOfBoundsException("Pose " + i + " exceeds the file");
+			}
+		}
+		mFirstUnistroke[count] = unistrokes;
+		mUnistrokeOffsets = Arrays.copyOf(unistrokeOffsets, unistrokes);
+		mUnistrokes = new AtomicReferenceArray<>(unistrokes);
+	}
+
+	/**
+	 * Reads all poses (e.g. for editing), independent of the templates of this repository
+	 * @return Poses
+	 */
+	public ArrayList<Pose> readPoses() {
+		return PoseStore.readPoses(mBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+	}
+
+	/**
+	 * Returns the number of unistrokes created so far
+	 * @return Number of Unistroke objects
+	 */
+	public int getMaterializedCount() {
+		return mMaterialized.get();
+	}
+
+	@Override
+	public int size() {
+		return mPoseOffsets.length;
+	}
+
+	@Override
+	public int getType(int index) {
+		return mBuffer.getInt(mPoseOffsets[index]);
+	}
+
+	@Override
+	public int getNumStrokes(int index) {
+		return mBuffer.getInt(mPoseOffsets[index] + 4);
+	}
+
+	@Override
+	public int getUnistrokeCount(int index) {
+		return mFirstUnistroke[index + 1] - mFirstUnistroke[index];
+	}
+
+	@Override
+	public double getStartUnitVectorX(int index, int unistroke) {
+		return mFloats.get(mUnistrokeOffsets[mFirstUnistroke[index] + unistroke]);
+	}
+
+	@Override
+	public double getStartUnitVectorY(int index, int unistroke) {
+		return mFloats.get(mUnistrokeOffsets[mFirstUnistroke[index] + unistroke] + 1);
+	}
+
+	@Override
+	public double[] getPackedPoints(int index, int unistroke, double[] buffer) {
+		Unistroke u = mUnistrokes.get(mFirstUnistroke[index] + unistroke);
+		if (u != null) {
+			return u.getPackedPoints();
+		}
+		int offset = mUnistrokeOffsets[mFirstUnistroke[index] + unistroke] + 2;
+		int length = 2 * mBuffer.getInt(4 * offset);
+		if (buffer.length < length) {
+			buffer = new double[length];
+		}
+		this.readPoints(offset + 1, length, buffer);
+		return buffer;
+	}
+
+	@Override
+	public Unistroke getUnistroke(int index, int unistroke) {
+		int k = mFirstUnistroke[index] + unistroke;
+		Unistroke u = mUnistrokes.get(k);
+		if (u == null) {
+			int offset = mUnistrokeOffsets[k];
+			double[] points = new double[2 * mBuffer.getInt(4 * (offset + 2))];
+			this.readPoints(offset + 3, points.length, points);
+			u = new Unistroke(mUseBoundedRotationInvariance, points, new Point(mFloats.get(offset), mFloats.get(offset + 1)));
+			if (mUnistrokes.compareAndSet(k, null, u)) {
+				mMaterialized.incrementAndGet();
+			}
+			else {
+				u = mUnistrokes.get(k);	// created by another thread in the meantime
+			}
+		}
+		return u;
+	}
+
+
+	private void readPoints(int offset, int length, double[] dest) {
+		for (int i = 0; i < length; ++i) {
+			dest[i] = mFloats.get(offset + i);
+		}
+	}
+
+}
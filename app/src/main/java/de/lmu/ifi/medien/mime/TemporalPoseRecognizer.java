@@ -0,0 +1,226 @@
+package de.lmu.ifi.medien.mime;
+
+import de.lmu.ifi.medien.mime.HandDetector.PoseFeatures;
+import de.lmu.ifi.medien.mime.PoseRecognizer.Result;
+
+/**
+ * Smooths the poses recognized by PoseRecognizer over consecutive frames.
+ * The per-frame poses of the last frames are kept in a ring buffer; a pose becomes the stable pose if it has the majority of the buffer or if
+ * the last few frames agree (early commit), and stays stable until another pose qualifies (hysteresis). If the features of a frame match the
+ * last recognized frame (same defects, holes and position flags, skeleton of about the same size and position), the previous per-frame pose is
+ * reused instead of running PoseRecognizer (and the $N recognizer) again. Every feature the decision tree reads has to match exactly, including
+ * which side of the skeleton's bounding box is longer.
+ */
+public class TemporalPoseRecognizer {
+
+	public static final int DEFAULT_WINDOW = 8;
+	private static final int EARLY_COMMIT_FRAMES = 3;		// consecutive frames that commit a pose without majority
+	private static final double MAX_SKELETON_CHANGE = 0.1;	// change of the skeleton's bounding box and length (relative) that counts as unchanged
+	private static final int MAX_REUSED_FRAMES = 15;		// recognition runs at least every n frames
+
+	private final FrameRecognizer mRecognizer;
+	private final SkeletonBox mBox = new SkeletonBox();
+	private final Result mResult = new Result();
+
+	// Per-frame poses of the last frames
+	private final int[] mPoses;
+	private int mCount = 0;
+	private int mNext = 0;
+
+	// Features of the last recognized frame
+	private boolean mHasPrevious = false;
+	private int mPrevFingerDefects;
+	private int mPrevNumHoles;
+	private int mPrevDirection;
+	private boolean mPrevTopScreen;
+	private boolean mPrevLeftScreen;
+	private boolean mPrevNarrowVertAngle;
+	private boolean mPrevUShape;
+	private boolean mPrevHasSkeleton;
+	private int mPrevX;
+	private int mPrevY;
+	private int mPrevWidth;
+	private int mPrevHeight;
+	private int mPrevLength;
+	private int mPrevPose;
+	private int mReusedFrames = 0;
+
+	private int mStablePose = PoseRecognizer.NO_POSE;
+	private double mConfidence = 0.0;
+	private long mFrames = 0;
+	private long mSkippedFrames = 0;
+
+
+	/**
+	 * Constructor
+	 * @param recognizer Recognizer for single frames
+	 * @param window Number of frames taken into account
+	 */
+	public TemporalPoseRecognizer(final PoseRecognizer recognizer, int window) {
+		this(new FrameRecognizer() {
+			@Override
+			public int recognizePose(PoseFeatures pf) {
+				return recognizer.recognizePose(pf);
+			}
+		}, window);
+	}
+
+	/**
+	 * Constructor
+	 * @param recognizer Recognizer for single frames
+	 * @param window Number of frames taken into account
+	 */
+	TemporalPoseRecognizer(FrameRecognizer recognizer, int window) {
+		mRecognizer = recognizer;
+		mPoses = new int[Math.max(1, window)];
+	}
+
+	/**
+	 * Recognizes the pose of the next frame
+	 * @param pf Features of the frame
+	 * @return Stable pose and its confidence (share of buffered frames with this pose); the result is reused for the next frame
+	 */
+	public synchronized Result recognize(PoseFeatures pf) {
+		++mFrames;
+		boolean hasSkeleton = mBox.read(pf.skeleton);
+		int direction = pf.getDirection();
+		boolean uShape = pf.checkForU();
+
+		// Per-frame pose: reuse the last one if nothing has changed materially
+		int pose;
+		if (mHasPrevious && mReusedFrames < MAX_REUSED_FRAMES && this.isUnchanged(pf, direction, uShape, hasSkeleton)) {
+			pose = mPrevPose;
+			++mReusedFrames;
+			++mSkippedFrames;
+		}
+		else {
+			pose = mRecognizer.recognizePose(pf);
+			mHasPrevious = true;
+			mPrevFingerDefects = pf.fingerDefects;
+			mPrevNumHoles = pf.numHoles;
+			mPrevDirection = direction;
+			mPrevTopScreen = pf.topScreen;
+			mPrevLeftScreen = pf.leftScreen;
+			mPrevNarrowVertAngle = pf.narrowVertAngle;
+			mPrevUShape = uShape;
+			mPrevHasSkeleton = hasSkeleton;
+			mPrevX = mBox.getX();
+			mPrevY = mBox.getY();
+			mPrevWidth = mBox.getWidth();
+			mPrevHeight = mBox.getHeight();
+			mPrevLength = mBox.getCount();
+			mPrevPose = pose;
+			mReusedFrames = 0;
+		}
+
+		mPoses[mNext] = pose;
+		mNext = (mNext + 1) % mPoses.length;
+		mCount = Math.min(mCount + 1, mPoses.length);
+		this.vote(pose);
+
+		mResult.pose = mStablePose;
+		mResult.confidence = mConfidence;
+		mResult.nonZero = false;
+		mResult.frame = null;
+		mResult.features = null;
+		return mResult;
+	}
+
+	/**
+	 * Forgets all previous frames, e.g. if the hand has left the frame or poses have changed
+	 */
+	public synchronized void reset() {
+		mCount = 0;
+		mNext = 0;
+		mHasPrevious = false;
+		mReusedFrames = 0;
+		mStablePose = PoseRecognizer.NO_POSE;
+		mConfidence = 0.0;
+	}
+
+	public synchronized int getStablePose() {
+		return mStablePose;
+	}
+
+	public synchronized double getConfidence() {
+		return mConfidence;
+	}
+
+	/**
+	 * Returns the number of frames whose pose was taken from the previous frame instead of running PoseRecognizer
+	 * @return Number of skipped frames
+	 */
+	public synchronized long getSkippedFrames() {
+		return mSkippedFrames;
+	}
+
+	/**
+	 * Returns the number of frames passed to recognize()
+	 * @return Number of frames
+	 */
+	public synchronized long getFrames() {
+		return mFrames;
+	}
+
+
+	/**
+	 * Updates stable pose and confidence after a frame has been added
+	 * @param pose Pose of the last frame
+	 */
+	private void vote(int pose) {
+		int votes = this.countVotes(pose);
+		if (pose != mStablePose) {
+			// Majority of the buffered frames or early commit
+			boolean commit = 2 * votes > mCount;
+			if (!commit && mCount >= EARLY_COMMIT_FRAMES) {
+				commit = true;
+				for (int i = 1; i <= EARLY_COMMIT_FRAMES; ++i) {
+					if (mPoses[(mNext - i + mPoses.length) % mPoses.length] != pose) {
+						commit = false;
+						break;
+					}
+				}
+			}
+			if (commit) {
+				mStablePose = pose;
+			}
+		}
+		mConfidence = (double) this.countVotes(mStablePose) / mCount;
+	}
+
+	private int countVotes(int pose) {
+		int votes = 0;
+		for (int i = 0; i < mCount; ++i) {
+			if (mPoses[i] == pose) {
+				++votes;
+			}
+		}
+		return votes;
+	}
+
+	/**
+	 * Checks if the features match the last recognized frame: the decision tree's features exactly, the skeleton's box and length (used by
+	 * the $N recognizer and the classifier) within MAX_SKELETON_CHANGE
+	 */
+	private boolean isUnchanged(PoseFeatures pf, int direction, boolean uShape, boolean hasSkeleton) {
+		SkeletonBox box = mBox;
+		if (pf.fingerDefects != mPrevFingerDefects || pf.numHoles != mPrevNumHoles || direction != mPrevDirection || pf.topScreen != mPrevTopScreen
+				|| pf.leftScreen != mPrevLeftScreen || pf.narrowVertAngle != mPrevNarrowVertAngle || uShape != mPrevUShape
+				|| hasSkeleton != mPrevHasSkeleton || Integer.signum(box.getWidth() - box.getHeight()) != Integer.signum(mPrevWidth - mPrevHeight)) {
+			return false;
+		}
+		double tolerance = MAX_SKELETON_CHANGE * Math.max(1, Math.max(mPrevWidth, mPrevHeight));
+		return Math.abs(box.getX() - mPrevX) <= tolerance && Math.abs(box.getY() - mPrevY) <= tolerance
+				&& Math.abs(box.getWidth() - mPrevWidth) <= tolerance && Math.abs(box.getHeight() - mPrevHeight) <= tolerance
+				&& Math.abs(box.getCount() - mPrevLength) <= MAX_SKELETON_CHANGE * mPrevLength + 2;
+	}
+
+
+	/**
+	 * Recognizes the pose of a single frame (PoseRecognizer; replaced in tests)
+	 */
+	interface FrameRecognizer {
+		int recognizePose(PoseFeatures pf);
+	}
+
+}
@@ -342,6 +342,22 @@ public class Util {
 		}
 	}
 	
+	/**
+	 * Copies a file into a temporary file next to the destination, then renames it to the destination; a destination that is still
+	 * memory-mapped (see TemplateRepository) keeps its content for the mapping instead of being overwritten while it is read
+	 * @param fromFile Origin
+	 * @param toFile Destination
+	 * @throws IOException
+	 */
+	public static void replaceFile(File fromFile, File toFile) throws IOException {
+		File tmp = new File(toFile.getPath() + ".tmp");
+		copyFile(new FileInputStream(fromFile), new FileOutputStream(tmp));
+		if (!tmp.renameTo(toFile)) {
+			tmp.delete();
+			throw new IOException("Could not replace " + toFile);
+		}
+	}
+	
 	/**
 	 * Returns the path to this app's own directory on the SD card (creates it if necessary) 
 	 * @return Path to directory
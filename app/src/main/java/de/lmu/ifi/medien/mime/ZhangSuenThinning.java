@@ -0,0 +1,166 @@
+package de.lmu.ifi.medien.mime;
+
+import java.util.Arrays;
+
+import org.opencv.core.Mat;
+
+/**
+ * Incremental implementation of the Zhang-Suen thinning algorithm; produces exactly the same skeleton as OpenCVUtil.zhangSuenThinning().
+ * The image is copied into a reusable buffer once. After the first step (which scans the whole image), only contour pixels are considered, and
+ * a contour pixel is only evaluated again once its 8-neighborhood has changed. Convergence is detected by counting removed pixels.
+ */
+public class ZhangSuenThinning {
+
+	// Per-pixel state flags
+	private static final byte DIRTY_STEP0  = 1;	// neighborhood changed since last evaluation in step 0
+	private static final byte DIRTY_STEP1  = 2;	// neighborhood changed since last evaluation in step 1
+	private static final byte IN_WORKLIST  = 4;
+	private static final byte DIRTY        = DIRTY_STEP0 | DIRTY_STEP1;
+
+	private byte[] mBuffer = new byte[0];
+	private byte[] mMarker = new byte[0];
+	private byte[] mState = new byte[0];
+	private int[] mWorklist = new int[0];
+	private int[] mRemoved = new int[0];
+	private int mWorklistSize = 0;
+	private int[] mOffsets = new int[8];
+
+
+	/**
+	 * Thins a binary image (filled pixels = white)
+	 * @param img The image, method works in-place
+	 */
+	public void thin(Mat img) {
+		int rows = img.rows();
+		int cols = img.cols();
+		if (mBuffer.length != rows * cols) {
+			mBuffer = new byte[rows * cols];
+		}
+		img.get(0, 0, mBuffer);
+		this.thin(mBuffer, rows, cols);
+		img.put(0, 0, mBuffer);
+	}
+
+	/**
+	 * Thins a binary image given as raw pixel buffer (filled pixels = -1)
+	 * @param buffer Image pixels, method works in-place
+	 * @param rows Number of rows
+	 * @param cols Number of columns
+	 */
+	public void thin(byte[] buffer, int rows, int cols) {
+		int total = rows * cols;
+		this.ensureCapacity(total);
+
+		// First step on the whole image; clears the image border and all pixels that aren't filled
+		OpenCVUtil.zhangSuenMark(buffer, mMarker, rows, cols, 0, 0, rows);
+		boolean changed = OpenCVUtil.zhangSuenEliminate(buffer, mMarker, 0, total);
+
+		// From now on, only contour pixels can be removed
+		this.initOffsets(cols);
+		this.initWorklist(buffer, rows, cols);
+		changed |= this.step(buffer, cols, 1) > 0;
+		while (changed) {
+			int removed = this.step(buffer, cols, 0);
+			removed += this.step(buffer, cols, 1);
+			changed = removed > 0;
+		}
+	}
+
+	/**
+	 * Adds all filled pixels with at least one empty neighbor to the worklist
+	 */
+	private void initWorklist(byte[] buffer, int rows, int cols) {
+		mWorklistSize = 0;
+		Arrays.fill(mState, 0, rows * cols, (byte) 0);
+		for (int y = 1; y < rows-1; ++y) {
+			for (int x = 1; x < cols-1; ++x) {
+				int i = y*cols + x;
+				if (buffer[i] == -1 && (buffer[i-cols-1] & buffer[i-cols] & buffer[i-cols+1] & buffer[i-1] & buffer[i+1] & buffer[i+cols-1] & buffer[i+cols] & buffer[i+cols+1]) != -1) {
+					mState[i] = IN_WORKLIST | DIRTY;
+					mWorklist[mWorklistSize++] = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs one step of the algorithm on the worklist
+	 * @return Number of removed pixels
+	 */
+	private int step(byte[] buffer, int cols, int step) {
+		final byte dirtyFlag = step == 0 ? DIRTY_STEP0 : DIRTY_STEP1;
+		final byte[] state = mState;
+		final int[] worklist = mWorklist;
+
+		// Mark pixels (all decisions are based on the image before this step)
+		int removed = 0;
+		for (int k = 0; k < mWorklistSize; ++k) {
+			int i = worklist[k];
+			if ((state[i] & dirtyFlag) == 0) {
+				continue;
+			}
+			if (OpenCVUtil.zhangSuenMarker(buffer, i, cols, step) == 0) {
+				mRemoved[removed++] = i;
+			}
+			else {
+				state[i] &= ~dirtyFlag;
+			}
+		}
+		if (removed == 0) {
+			return 0;
+		}
+
+		// Eliminate pixels
+		for (int k = 0; k < removed; ++k) {
+			int i = mRemoved[k];
+			buffer[i] = 0;
+			state[i] = 0;
+		}
+
+		// Drop removed pixels from the worklist
+		int size = 0;
+		for (int k = 0; k < mWorklistSize; ++k) {
+			int i = worklist[k];
+			if (buffer[i] == -1) {
+				worklist[size++] = i;
+			}
+		}
+
+		// Neighbors of removed pixels have to be evaluated again (and might have become contour pixels)
+		for (int k = 0; k < removed; ++k) {
+			int i = mRemoved[k];
+			for (int offset : mOffsets) {
+				int n = i + offset;
+				if (buffer[n] == -1) {
+					if ((state[n] & IN_WORKLIST) == 0) {
+						worklist[size++] = n;
+					}
+					state[n] = IN_WORKLIST | DIRTY;
+				}
+			}
+		}
+		mWorklistSize = size;
+		return removed;
+	}
+
+	private void initOffsets(int cols) {
+		mOffsets[0] = -cols-1;
+		mOffsets[1] = -cols;
+		mOffsets[2] = -cols+1;
+		mOffsets[3] = -1;
+		mOffsets[4] = 1;
+		mOffsets[5] = cols-1;
+		mOffsets[6] = cols;
+		mOffsets[7] = cols+1;
+	}
+
+	private void ensureCapacity(int total) {
+		if (mMarker.length < total) {
+			mMarker = new byte[total];
+			mState = new byte[total];
+			mWorklist = new int[total];
+			mRemoved = new int[total];
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+package de.lmu.ifi.medien.mime.$N;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.opencv.core.Point;
+
+/**
+ * Benchmark of NDollarRecognizer.MODE_GSS_ANGLE_GRID against the exact golden section search (MODE_GSS). Templates are rotated and jittered
+ * variants of 12 random strokes, candidates are rotated by up to 20 degrees and jittered. Run as a Java application on a desktop JVM; prints
+ * the time per recognition, how often both modes agree and the largest score difference.
+ */
+public class AngleGridBenchmark {
+
+	private static final int TYPES = 12;
+	private static final int CANDIDATES = 600;
+	private static final int RUNS = 20;
+
+
+	public static void main(String[] args) {
+		Random random = new Random(9);
+		Point[][] strokes = new Point[TYPES][];
+		for (int t = 0; t < TYPES; ++t) {
+			strokes[t] = TestStrokes.randomWalk(random);
+		}
+		NDollarRecognizer recognizer = new NDollarRecognizer(200, true);
+		recognizer.setSquareSize(200);
+		recognizer.setParallelThreshold(Integer.MAX_VALUE);
+
+		for (int perType : new int[] { 1, 10, 100 }) {
+			ArrayList<Multistroke> multistrokes = new ArrayList<>();
+			for (int t = 0; t < TYPES; ++t) {
+				for (int s = 0; s < perType; ++s) {
+					Point[] stroke = perType == 1 ? strokes[t] : transform(strokes[t], random, Math.toRadians(10), 4);
+					multistrokes.add(new Multistroke(t, true, new Point[][] { stroke }));
+				}
+			}
+			int[] indices = new int[multistrokes.size()];
+			for (int i = 0; i < indices.length; ++i) {
+				indices[i] = i;
+			}
+			recognizer.setMultistrokes(multistrokes);
+			recognizer.setUseIndices(indices);
+
+			double[][] candidates = new double[CANDIDATES][];
+			for (int k = 0; k < CANDIDATES; ++k) {
+				Point[] stroke = transform(strokes[k % TYPES], random, Math.toRadians(20), 5);
+				candidates[k] = new double[2 * stroke.length];
+				PackedUtil.pack(stroke, candidates[k]);
+			}
+
+			int[] poses = new int[CANDIDATES];
+			double[] scores = new double[CANDIDATES];
+			for (int mode : new int[] { NDollarRecognizer.MODE_GSS, NDollarRecognizer.MODE_GSS_ANGLE_GRID }) {
+				recognizer.setMode(mode);
+				double best = Double.POSITIVE_INFINITY;
+				int same = 0;
+				double maxDiff = 0.0;
+				for (int run = 0; run < RUNS; ++run) {
+					long start = System.nanoTime();
+					for (int k = 0; k < CANDIDATES; ++k) {
+						NDollarRecognizer.Result result = recognizer.recognize(candidates[k], candidates[k].length / 2);
+						if (run == 0 && mode == NDollarRecognizer.MODE_GSS) {
+							poses[k] = result.pose;
+							scores[k] = result.score;
+						}
+						else if (run == 0) {
+							same += result.pose == poses[k] ? 1 : 0;
+							maxDiff = Math.max(maxDiff, Math.abs(result.score - scores[k]));
+						}
+					}
+					best = Math.min(best, (System.nanoTime() - start) / 1e6 / CANDIDATES);
+				}
+				System.out.printf("%5d templates, %s: %.3f ms per recognition", multistrokes.size(),
+						mode == NDollarRecognizer.MODE_GSS ? "exact" : "grid ", best);
+				if (mode != NDollarRecognizer.MODE_GSS) {
+					System.out.printf(", same pose %d/%d, max score difference %.5f", same, CANDIDATES, maxDiff);
+				}
+				System.out.println();
+			}
+		}
+	}
+
+
+	/**
+	 * Rotates a stroke around its centroid by a random angle and moves each point by a random offset
+	 */
+	private static Point[] transform(Point[] points, Random random, double maxAngle, int jitter) {
+		double cx = 0.0, cy = 0.0;
+		for (Point p : points) {
+			cx += p.x / points.length;
+			cy += p.y / points.length;
+		}
+		double angle = (2.0 * random.nextDouble() - 1.0) * maxAngle;
+		double cos = Math.cos(angle), sin = Math.sin(angle);
+		Point[] result = new Point[points.length];
+		for (int i = 0; i < points.length; ++i) {
+			double x = points[i].x - cx, y = points[i].y - cy;
+			result[i] = new Point(x * cos - y * sin + cx + random.nextInt(2 * jitter + 1) - jitter,
+					x * sin + y * cos + cy + random.nextInt(2 * jitter + 1) - jitter);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,48 @@
+package de.lmu.ifi.medien.mime.$N;
+
+import java.util.Random;
+
+/**
+ * Benchmark of the golden section search over all templates: Util.distanceAtBestAngle() (rotated Point copies for every probe) against
+ * GoldenSectionSearch (rotation fused into the path distance). Run as a Java application on a desktop JVM; prints the time per recognition.
+ */
+public class GoldenSectionSearchBenchmark {
+
+	private static final int TEMPLATES = 12;
+	private static final int CANDIDATES = 500;
+	private static final int RUNS = 5;
+
+
+	public static void main(String[] args) {
+		Random random = new Random(3);
+		Unistroke[] templates = TestStrokes.randomTemplates(random, TEMPLATES);
+		Unistroke[] candidates = new Unistroke[CANDIDATES];
+		for (int i = 0; i < CANDIDATES; ++i) {
+			candidates[i] = new Unistroke(true, TestStrokes.randomWalk(random));
+		}
+		GoldenSectionSearch search = new GoldenSectionSearch();
+
+		for (int run = 0; run < RUNS; ++run) {
+			double checksum = 0.0;
+			long start = System.nanoTime();
+			for (Unistroke candidate : candidates) {
+				for (Unistroke template : templates) {
+					checksum += Util.distanceAtBestAngle(candidate.getPoints(), template, -Util.ANGLE_RANGE, +Util.ANGLE_RANGE, Util.ANGLE_PRECISION);
+				}
+			}
+			long middle = System.nanoTime();
+			double fusedChecksum = 0.0;
+			for (Unistroke candidate : candidates) {
+				search.setCandidate(candidate.getPackedPoints(), candidate.getPackedPoints().length / 2);
+				for (Unistroke template : templates) {
+					fusedChecksum += search.distanceAtBestAngle(template.getPackedPoints(), -Util.ANGLE_RANGE, +Util.ANGLE_RANGE, Util.ANGLE_PRECISION,
+							Double.POSITIVE_INFINITY);
+				}
+			}
+			long end = System.nanoTime();
+			System.out.printf("Util: %.3f ms, GoldenSectionSearch: %.3f ms per recognition (%d templates)%s%n", (middle - start) / 1e6 / CANDIDATES,
+					(end - middle) / 1e6 / CANDIDATES, TEMPLATES, checksum == fusedChecksum ? "" : ", DIFFERENT SCORES");
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+package de.lmu.ifi.medien.mime.$N;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares GoldenSectionSearch with Util.distanceAtBestAngle(), which rotates a copy of the candidate for every probe, and checks the search on
+ * the angle grid.
+ */
+public class GoldenSectionSearchTest {
+
+	private final Random mRandom = new Random(8);
+
+
+	@Test
+	public void sameDistanceAsUtil() {
+		Unistroke[] templates = TestStrokes.randomTemplates(mRandom, 12);
+		GoldenSectionSearch search = new GoldenSectionSearch();
+		for (int n = 0; n < 100; ++n) {
+			Unistroke candidate = new Unistroke(true, TestStrokes.randomWalk(mRandom));
+			search.setCandidate(candidate.getPackedPoints(), candidate.getPackedPoints().length / 2);
+			for (Unistroke template : templates) {
+				double expected = Util.distanceAtBestAngle(candidate.getPoints(), template, -Util.ANGLE_RANGE, +Util.ANGLE_RANGE, Util.ANGLE_PRECISION);
+				double d = search.distanceAtBestAngle(template.getPackedPoints(), -Util.ANGLE_RANGE, +Util.ANGLE_RANGE, Util.ANGLE_PRECISION,
+						Double.POSITIVE_INFINITY);
+				assertEquals(expected, d, 0);
+			}
+		}
+	}
+
+	@Test
+	public void lowerBoundBelowDistance() {
+		Unistroke[] templates = TestStrokes.randomTemplates(mRandom, 12);
+		GoldenSectionSearch search = new GoldenSectionSearch();
+		for (int n = 0; n < 100; ++n) {
+			Unistroke candidate = new Unistroke(true, TestStrokes.randomWalk(mRandom));
+			search.setCandidate(candidate.getPackedPoints(), candidate.getPackedPoints().length / 2);
+			for (Unistroke template : templates) {
+				double d = search.distanceAtBestAngle(template.getPackedPoints(), -Util.ANGLE_RANGE, +Util.ANGLE_RANGE, Util.ANGLE_PRECISION,
+						Double.POSITIVE_INFINITY);
+				assertEquals(true, search.lowerBound(template.getPackedPoints()) <= d + 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void gridDistanceAtGridAngle() {
+		Unistroke[] templates = TestStrokes.randomTemplates(mRandom, 12);
+		GoldenSectionSearch search = new GoldenSectionSearch();
+		search.setAngleGrid(Util.ANGLE_RANGE, Util.ANGLE_PRECISION);
+		int steps = (int) Math.round(2.0 * Util.ANGLE_RANGE / Util.ANGLE_PRECISION);
+		for (int n = 0; n < 50; ++n) {
+			Unistroke candidate = new Unistroke(true, TestStrokes.randomWalk(mRandom));
+			double[] points = candidate.getPackedPoints();
+			int count = points.length / 2;
+			double[] rotated = new double[points.length];
+			search.setCandidate(points, count);
+			for (Unistroke template : templates) {
+				// The result is the exact distance at one of the grid angles
+				double d = search.distanceAtBestAngle(template.getPackedPoints(), -Util.ANGLE_RANGE, +Util.ANGLE_RANGE, Util.ANGLE_PRECISION,
+						Double.POSITIVE_INFINITY);
+				boolean found = false;
+				double best = Double.POSITIVE_INFINITY;
+				for (int k = 0; k <= steps; ++k) {
+					PackedUtil.rotateBy(points, count, -Util.ANGLE_RANGE + k * Util.ANGLE_PRECISION, rotated);
+					double g = PackedUtil.pathDistance(rotated, template.getPackedPoints(), count);
+					found |= g == d;
+					best = Math.min(best, g);
+				}
+				assertEquals(true, found);
+				assertEquals(true, d >= best);
+			}
+		}
+	}
+
+	@Test
+	public void gridSharedByTemplates() {
+		Unistroke[] templates = TestStrokes.randomTemplates(mRandom, 12);
+		GoldenSectionSearch shared = new GoldenSectionSearch();
+		shared.setAngleGrid(Util.ANGLE_RANGE, Util.ANGLE_PRECISION);
+		for (int n = 0; n < 50; ++n) {
+			Unistroke candidate = new Unistroke(true, TestStrokes.randomWalk(mRandom));
+			int count = candidate.getPackedPoints().length / 2;
+			shared.setCandidate(candidate.getPackedPoints(), count);
+			for (Unistroke template : templates) {
+				// Rotated copies and memos of earlier templates must not change the result
+				GoldenSectionSearch single = new GoldenSectionSearch();
+				single.setAngleGrid(Util.ANGLE_RANGE, Util.ANGLE_PRECISION);
+				single.setCandidate(candidate.getPackedPoints(), count);
+				double expected = single.distanceAtBestAngle(template.getPackedPoints(), -Util.ANGLE_RANGE, +Util.ANGLE_RANGE, Util.ANGLE_PRECISION,
+						Double.POSITIVE_INFINITY);
+				double d = shared.distanceAtBestAngle(template.getPackedPoints(), -Util.ANGLE_RANGE, +Util.ANGLE_RANGE, Util.ANGLE_PRECISION,
+						Double.POSITIVE_INFINITY);
+				assertEquals(expected, d, 0);
+			}
+		}
+	}
+
+}
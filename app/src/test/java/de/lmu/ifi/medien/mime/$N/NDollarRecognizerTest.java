@@ -0,0 +1,163 @@
+package de.lmu.ifi.medien.mime.$N;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencv.core.Point;
+
+import de.lmu.ifi.medien.mime.PoseRecognizer;
+
+/**
+ * Compares NDollarRecognizer (pruned by lower bounds, packed points) with scoring every template through Util.
+ */
+public class NDollarRecognizerTest {
+
+	private static final int TEMPLATES = 60;
+	private static final int CANDIDATES = 100;
+	private static final int WORKERS = 3;	// independent of the machine's cores, so parallel scoring is always tested
+
+	private final Random mRandom = new Random(10);
+	private NDollarRecognizer mRecognizer;
+	private ArrayList<Multistroke> mMultistrokes;
+
+
+	@Before
+	public void createTemplates() {
+		mRecognizer = new NDollarRecognizer(200, true, WORKERS);
+		mRecognizer.setSquareSize(200);
+		mMultistrokes = new ArrayList<>();
+		int[] indices = new int[TEMPLATES];
+		for (int i = 0; i < TEMPLATES; ++i) {
+			mMultistrokes.add(new Multistroke(i % 12, true, new Point[][] { TestStrokes.randomWalk(mRandom) }));
+			indices[i] = i;
+		}
+		mRecognizer.setMultistrokes(mMultistrokes);
+		mRecognizer.setUseIndices(indices);
+	}
+
+	@After
+	public void shutdown() throws InterruptedException {
+		mRecognizer.shutdown();
+		while (countWorkers() > 0) {
+			Thread.sleep(1);
+		}
+	}
+
+	@Test
+	public void prunedSameAsAllTemplates() {
+		this.assertSameAsAllTemplates(NDollarRecognizer.MODE_GSS);
+	}
+
+	@Test
+	public void parallelSameAsSerial() {
+		int[] modes = { NDollarRecognizer.MODE_GSS, NDollarRecognizer.MODE_PROTRACTOR, NDollarRecognizer.MODE_GSS_ANGLE_GRID };
+		for (int mode : modes) {
+			mRecognizer.setMode(mode);
+			for (int n = 0; n < CANDIDATES; ++n) {
+				Point[] stroke = TestStrokes.randomWalk(mRandom);
+				double[] packed = new double[2 * stroke.length];
+				PackedUtil.pack(stroke, packed);
+				mRecognizer.setParallelThreshold(Integer.MAX_VALUE);
+				NDollarRecognizer.Result serial = mRecognizer.recognize(packed, stroke.length);
+				mRecognizer.setParallelThreshold(0);
+				NDollarRecognizer.Result parallel = mRecognizer.recognize(packed, stroke.length);
+				assertEquals(serial.pose, parallel.pose);
+				assertEquals(serial.score, parallel.score, 0);
+			}
+		}
+		assertEquals(WORKERS, countWorkers());
+	}
+
+	@Test(timeout = 10000)
+	public void noWorkersAfterShutdown() throws InterruptedException {
+		mRecognizer.setParallelThreshold(0);
+		this.assertSameAsAllTemplates(NDollarRecognizer.MODE_GSS);
+		assertEquals(WORKERS, countWorkers());
+		mRecognizer.shutdown();
+		while (countWorkers() > 0) {
+			Thread.sleep(1);
+		}
+		this.assertSameAsAllTemplates(NDollarRecognizer.MODE_GSS);
+		assertEquals(0, countWorkers());
+	}
+
+	@Test(timeout = 10000)
+	public void shutdownDuringRecognition() throws InterruptedException {
+		mRecognizer.setParallelThreshold(0);
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				while (!this.isInterrupted()) {
+					mRecognizer.shutdown();
+				}
+			}
+		};
+		thread.start();
+		try {
+			this.assertSameAsAllTemplates(NDollarRecognizer.MODE_GSS);
+		}
+		finally {
+			thread.interrupt();
+			thread.join();
+		}
+	}
+
+
+	private void assertSameAsAllTemplates(int mode) {
+		mRecognizer.setMode(mode);
+		for (int n = 0; n < CANDIDATES; ++n) {
+			Point[] stroke = TestStrokes.randomWalk(mRandom);
+			double[] packed = new double[2 * stroke.length];
+			PackedUtil.pack(stroke, packed);
+			NDollarRecognizer.Result result = mRecognizer.recognize(packed, stroke.length);
+			NDollarRecognizer.Result expected = this.recognizeWithUtil(stroke);
+			assertEquals(expected.pose, result.pose);
+			assertEquals(expected.score, result.score, 0);
+		}
+	}
+
+	private static int countWorkers() {
+		int count = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.isAlive() && NDollarRecognizer.WORKER_NAME.equals(thread.getName())) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Golden section search on every template that starts in the same direction, first best template wins
+	 */
+	private NDollarRecognizer.Result recognizeWithUtil(Point[] stroke) {
+		// Preprocessing of NDollarRecognizer.recognize(): the indicative angle is taken after resampling
+		Point[] points = Util.resample(stroke, Util.NUM_POINTS);
+		double radians = Util.indicativeAngle(points);
+		points = Util.rotateBy(points, -radians);
+		points = Util.scaleDimTo(points, NDollarRecognizer.mSquareSize, Util.ONE_D_THRESHOLD);
+		points = Util.rotateBy(points, radians);
+		points = Util.translateTo(points, Util.ORIGIN);
+		Point start = Util.calcStartUnitVector(points, Util.START_ANGLE_INDEX);
+
+		double b = Double.POSITIVE_INFINITY;
+		int pose = PoseRecognizer.NO_POSE;
+		for (Multistroke multistroke : mMultistrokes) {
+			for (Unistroke template : multistroke.getUnistrokes()) {
+				if (Util.angleBetweenUnitVectors(start, template.getStartUnitVector()) <= Util.ANGLE_SIMILARITY_THRESHOLD) {
+					double d = Util.distanceAtBestAngle(points, template, -Util.ANGLE_RANGE, +Util.ANGLE_RANGE, Util.ANGLE_PRECISION);
+					if (d < b) {
+						b = d;
+						pose = multistroke.getType();
+					}
+				}
+			}
+		}
+		return new NDollarRecognizer.Result(pose, pose == PoseRecognizer.NO_POSE ? 0.0 : 1.0 - b / Util.mHalfDiagonal);
+	}
+
+}
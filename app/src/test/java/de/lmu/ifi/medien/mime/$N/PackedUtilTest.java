@@ -0,0 +1,92 @@
+package de.lmu.ifi.medien.mime.$N;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.opencv.core.Point;
+
+/**
+ * Compares PackedUtil with the Point based implementation in Util; templates, vectors and scores have to be bit-identical.
+ */
+public class PackedUtilTest {
+
+	private final Random mRandom = new Random(7);
+
+
+	@Test
+	public void sameTemplateAsUtil() {
+		for (int n = 0; n < 100; ++n) {
+			boolean rotationInvariance = n % 2 == 0;
+			Point[] stroke = this.randomStroke();
+			Unistroke unistroke = new Unistroke(rotationInvariance, stroke);
+
+			// Template as Unistroke created it before PackedUtil
+			double radians = Util.indicativeAngle(stroke);
+			Point[] points = Util.resample(stroke, Util.NUM_POINTS);
+			points = Util.rotateBy(points, -radians);
+			points = Util.scaleDimTo(points, NDollarRecognizer.mSquareSize, Util.ONE_D_THRESHOLD);
+			if (rotationInvariance) {
+				points = Util.rotateBy(points, radians);
+			}
+			points = Util.translateTo(points, Util.ORIGIN);
+
+			assertArrayEquals(pack(points), unistroke.getPackedPoints(), 0);
+			Point start = Util.calcStartUnitVector(points, Util.START_ANGLE_INDEX);
+			assertEquals(start.x, unistroke.getStartUnitVector().x, 0);
+			assertEquals(start.y, unistroke.getStartUnitVector().y, 0);
+			assertArrayEquals(Util.vectorize(points, rotationInvariance), unistroke.getVector(), 0);
+		}
+	}
+
+	@Test
+	public void sameScoresAsUtil() {
+		for (int n = 0; n < 50; ++n) {
+			Unistroke template = new Unistroke(false, this.randomStroke());
+			Unistroke candidate = new Unistroke(false, this.randomStroke());
+			int count = template.getPackedPoints().length / 2;
+			if (candidate.getPackedPoints().length != 2 * count) {
+				continue;
+			}
+			double[] rotated = new double[2 * count];
+			for (double radians = -Util.ANGLE_RANGE; radians <= Util.ANGLE_RANGE; radians += Util.ANGLE_PRECISION) {
+				PackedUtil.rotateBy(candidate.getPackedPoints(), count, radians, rotated);
+				assertEquals(Util.distanceAtAngle(candidate.getPoints(), template, radians), PackedUtil.pathDistance(rotated, template.getPackedPoints(), count), 0);
+			}
+			assertEquals(Util.pathLength(candidate.getPoints()), PackedUtil.pathLength(candidate.getPackedPoints(), count), 0);
+		}
+	}
+
+	@Test
+	public void resampleSameAsUtil() {
+		for (int n = 0; n < 100; ++n) {
+			Point[] stroke = this.randomStroke();
+			double[] packed = pack(stroke);
+			double[] resampled = new double[2 * Util.NUM_POINTS];
+			int count = PackedUtil.resample(packed, stroke.length, Util.NUM_POINTS, resampled);
+
+			Point[] expected = Util.resample(stroke, Util.NUM_POINTS);
+			assertEquals(expected.length, count);
+			assertArrayEquals(pack(expected), Arrays.copyOf(resampled, 2 * count), 0);
+		}
+	}
+
+
+	private Point[] randomStroke() {
+		Point[] stroke = new Point[10 + mRandom.nextInt(50)];
+		for (int i = 0; i < stroke.length; ++i) {
+			stroke[i] = new Point(mRandom.nextInt(300), mRandom.nextInt(300));
+		}
+		return stroke;
+	}
+
+	private static double[] pack(Point[] points) {
+		double[] packed = new double[2 * points.length];
+		PackedUtil.pack(points, packed);
+		return packed;
+	}
+
+}
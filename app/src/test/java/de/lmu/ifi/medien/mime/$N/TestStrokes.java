@@ -0,0 +1,43 @@
+package de.lmu.ifi.medien.mime.$N;
+
+import java.util.Random;
+
+import org.opencv.core.Point;
+
+/**
+ * Random strokes shared by the $N unit tests and benchmarks.
+ */
+public class TestStrokes {
+
+	/**
+	 * Creates a random walk with small steps, similar to a skeleton path
+	 * @param random Random generator
+	 * @return Points of the stroke
+	 */
+	public static Point[] randomWalk(Random random) {
+		Point[] points = new Point[30 + random.nextInt(400)];
+		double x = random.nextInt(200);
+		double y = random.nextInt(200);
+		for (int i = 0; i < points.length; ++i) {
+			x += random.nextInt(5) - 2;
+			y += random.nextInt(5) - 2;
+			points[i] = new Point(x, y);
+		}
+		return points;
+	}
+
+	/**
+	 * Creates random templates of a single stroke, one pose type per template
+	 * @param random Random generator
+	 * @param count Number of templates
+	 * @return Unistrokes of the templates
+	 */
+	public static Unistroke[] randomTemplates(Random random, int count) {
+		Unistroke[] templates = new Unistroke[count];
+		for (int i = 0; i < count; ++i) {
+			templates[i] = new Unistroke(true, randomWalk(random));
+		}
+		return templates;
+	}
+
+}
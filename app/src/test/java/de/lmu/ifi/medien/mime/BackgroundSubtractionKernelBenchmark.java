@@ -0,0 +1,53 @@
+package de.lmu.ifi.medien.mime;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Benchmark of BackgroundSubtractionKernel against the per-pixel loop it replaced (Math.sqrt per channel), at the detection width of
+ * 160 px and at full preview resolution. Run as a Java application on a desktop JVM; prints the time per frame and the speedup.
+ */
+public class BackgroundSubtractionKernelBenchmark {
+
+	private static final int[][] SIZES = { { 160, 120 }, { 640, 480 }, { 1280, 720 } };
+	private static final int CHANNELS = 3;
+	private static final int RUNS = 20;
+
+
+	public static void main(String[] args) {
+		Random random = new Random(5);
+		// Thresholds H, S, V, lower H, upper H, blob S and weightings H, S, V, B, threshold (HandDetector's defaults)
+		int[] p = { 50, 45, 10, 30, 225, 128, 1, 1, 1, 3, 3 };
+		BackgroundSubtractionKernel kernel = new BackgroundSubtractionKernel();
+		kernel.update(p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7], p[8], p[9], p[10]);
+
+		for (int[] size : SIZES) {
+			int width = size[0], height = size[1];
+			byte[] input = new byte[width * height * CHANNELS];
+			byte[] background = new byte[input.length];
+			random.nextBytes(input);
+			random.nextBytes(background);
+			byte[] expected = new byte[width * height];
+			byte[] mask = new byte[width * height];
+			int frames = Math.max(10, 2000000 / (width * height));
+
+			double bestBaseline = Double.POSITIVE_INFINITY, bestKernel = Double.POSITIVE_INFINITY;
+			for (int run = 0; run < RUNS; ++run) {
+				long start = System.nanoTime();
+				for (int f = 0; f < frames; ++f) {
+					BackgroundSubtractionKernelTest.baseline(input, background, expected, p);
+				}
+				long middle = System.nanoTime();
+				for (int f = 0; f < frames; ++f) {
+					kernel.apply(input, background, mask, width, CHANNELS, 0, height);
+				}
+				long end = System.nanoTime();
+				bestBaseline = Math.min(bestBaseline, (middle - start) / 1e6 / frames);
+				bestKernel = Math.min(bestKernel, (end - middle) / 1e6 / frames);
+			}
+			System.out.printf("%4dx%-4d baseline: %.3f ms, kernel: %.3f ms per frame, speedup %.1fx%s%n", width, height, bestBaseline, bestKernel,
+					bestBaseline / bestKernel, Arrays.equals(expected, mask) ? "" : ", DIFFERENT MASKS");
+		}
+	}
+
+}
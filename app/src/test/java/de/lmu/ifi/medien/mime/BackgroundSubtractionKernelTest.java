@@ -0,0 +1,98 @@
+package de.lmu.ifi.medien.mime;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares BackgroundSubtractionKernel with the per-pixel loop it replaced in HandDetector.
+ */
+public class BackgroundSubtractionKernelTest {
+
+	private static final int WIDTH = 160;
+	private static final int HEIGHT = 120;
+	private static final int CHANNELS = 3;
+
+	private final Random mRandom = new Random(2);
+
+
+	@Test
+	public void sameMaskAsBaselineLoop() {
+		BackgroundSubtractionKernel kernel = new BackgroundSubtractionKernel();
+		for (int n = 0; n < 200; ++n) {
+			int[] p = this.randomParameters();
+			kernel.update(p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7], p[8], p[9], p[10]);
+			byte[] input = this.randomFrame();
+			byte[] background = this.randomFrame();
+
+			byte[] expected = new byte[WIDTH * HEIGHT];
+			baseline(input, background, expected, p);
+			byte[] mask = new byte[WIDTH * HEIGHT];
+			kernel.apply(input, background, mask, WIDTH, CHANNELS, 0, HEIGHT);
+			assertArrayEquals(expected, mask);
+		}
+	}
+
+	@Test
+	public void regionOnlyChangesRegion() {
+		BackgroundSubtractionKernel kernel = new BackgroundSubtractionKernel();
+		int[] p = this.randomParameters();
+		kernel.update(p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7], p[8], p[9], p[10]);
+		byte[] input = this.randomFrame();
+		byte[] background = this.randomFrame();
+
+		byte[] expected = new byte[WIDTH * HEIGHT];
+		baseline(input, background, expected, p);
+		byte[] mask = new byte[WIDTH * HEIGHT];
+		kernel.apply(input, background, mask, WIDTH, CHANNELS, 10, 50, 20, 90);
+		for (int y = 0; y < HEIGHT; ++y) {
+			for (int x = 0; x < WIDTH; ++x) {
+				if (y < 10 || y >= 50 || x < 20 || x >= 90) {
+					expected[y * WIDTH + x] = 0;
+				}
+			}
+		}
+		assertArrayEquals(expected, mask);
+	}
+
+
+	/**
+	 * Thresholds H, S, V, lower H, upper H, blob S and weightings H, S, V, B, threshold
+	 */
+	private int[] randomParameters() {
+		Random r = mRandom;
+		return new int[] { r.nextInt(60), r.nextInt(60), r.nextInt(60), r.nextInt(256) - 128, r.nextInt(256) - 128, r.nextInt(256) - 128,
+				r.nextInt(4), r.nextInt(4), r.nextInt(4), r.nextInt(5), 1 + r.nextInt(6) };
+	}
+
+	private byte[] randomFrame() {
+		byte[] frame = new byte[WIDTH * HEIGHT * CHANNELS];
+		mRandom.nextBytes(frame);
+		return frame;
+	}
+
+	/**
+	 * Background subtraction as HandDetector did it before BackgroundSubtractionKernel
+	 */
+	static void baseline(byte[] inputBuffer, byte[] background, byte[] diffBuffer, int[] p) {
+		for (int i = 0; i < inputBuffer.length; i += CHANNELS) {
+			byte value = 0;
+			if (Math.sqrt((inputBuffer[i] - background[i]) * (inputBuffer[i] - background[i])) > p[0]) {
+				value += p[6];
+			}
+			if (Math.sqrt((inputBuffer[i+1] - background[i+1]) * (inputBuffer[i+1] - background[i+1])) > p[1]) {
+				value += p[7];
+			}
+			if (Math.sqrt((inputBuffer[i+2] - background[i+2]) * (inputBuffer[i+2] - background[i+2])) > p[2]) {
+				value += p[8];
+			}
+			if ((inputBuffer[i] <= p[3] || inputBuffer[i] >= p[4]) && inputBuffer[i+1] <= p[5]) {
+				value += p[9];
+			}
+			diffBuffer[i/CHANNELS] = value >= p[10] ? (byte) 255 : 0;
+		}
+	}
+
+}
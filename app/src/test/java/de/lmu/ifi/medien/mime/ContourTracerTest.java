@@ -0,0 +1,217 @@
+package de.lmu.ifi.medien.mime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import org.junit.Test;
+import org.opencv.core.Rect;
+
+/**
+ * Checks ContourTracer and ContourRasterizer, which replace Imgproc.findContours() and Imgproc.drawContours() in the per-frame processing:
+ * filling the traced contours must reproduce the traced shapes, and there must be one contour per shape and per hole.
+ */
+public class ContourTracerTest {
+
+	private static final int COLS = 80;
+	private static final int ROWS = 60;
+
+	private final ContourTracer mTracer = new ContourTracer();
+	private final ContourRasterizer mRasterizer = new ContourRasterizer();
+	private final ContourList mContours = new ContourList();
+
+
+	@Test
+	public void rectangleHasFourCorners() {
+		byte[] image = new byte[COLS * ROWS];
+		fillRect(image, 10, 5, 20, 8, (byte) -1);
+		assertEquals(1, mTracer.find(image, COLS, 0, 0, COLS, ROWS, mContours));
+
+		assertFalse(mContours.isHole(0));
+		assertEquals(4, mContours.getCount(0));
+		assertEquals(19 * 7, mContours.area(0), 0);
+		Rect bounds = new Rect();
+		assertTrue(mContours.getBounds(bounds));
+		assertEquals(new Rect(10, 5, 20, 8), bounds);
+	}
+
+	@Test
+	public void ringHasHole() {
+		byte[] image = new byte[COLS * ROWS];
+		fillRect(image, 10, 10, 30, 30, (byte) -1);
+		fillRect(image, 20, 20, 10, 10, (byte) 0);
+		assertEquals(2, mTracer.find(image, COLS, 0, 0, COLS, ROWS, mContours));
+		assertTrue(mContours.isHole(0) != mContours.isHole(1));
+	}
+
+	@Test
+	public void borderOfRegionIsCleared() {
+		byte[] image = new byte[COLS * ROWS];
+		fillRect(image, 0, 0, COLS, ROWS, (byte) -1);
+		mTracer.find(image, COLS, 10, 10, 20, 20, mContours);
+
+		// Only the inside of the region is found, like findContours() on a submat
+		Rect bounds = new Rect();
+		mContours.getBounds(bounds);
+		assertEquals(new Rect(11, 11, 18, 18), bounds);
+	}
+
+	@Test
+	public void fillReproducesShapes() {
+		Random random = new Random(1);
+		for (int n = 0; n < 200; ++n) {
+			byte[] image = randomShapes(random, n % 2 == 1);
+			byte[] original = image.clone();
+			mContours.clear();
+			mTracer.find(image, COLS, 0, 0, COLS, ROWS, mContours);
+
+			byte[] filled = new byte[COLS * ROWS];
+			mRasterizer.fill(mContours, filled, COLS, ROWS, (byte) -1);
+			assertArrayEquals(original, filled);
+
+			int holes = 0;
+			for (int i = 0; i < mContours.size(); ++i) {
+				holes += mContours.isHole(i) ? 1 : 0;
+			}
+			assertEquals(countComponents(original, true), mContours.size() - holes);
+			assertEquals(countComponents(original, false), holes);
+		}
+	}
+
+	@Test
+	public void holeStartOnDiagonalIsDropped() {
+		// Diamond-shaped hole: the first hole pixel found by the scan lies in the middle of a diagonal edge
+		byte[] image = new byte[COLS * ROWS];
+		fillRect(image, 5, 3, 11, 9, (byte) -1);
+		for (int y = 5; y <= 9; ++y) {
+			int half = 2 - Math.abs(y - 7);
+			fillRect(image, 10 - half, y, 2 * half + 1, 1, (byte) 0);
+		}
+		assertEquals(2, mTracer.find(image, COLS, 0, 0, COLS, ROWS, mContours));
+		int hole = mContours.isHole(0) ? 0 : 1;
+		assertTrue(mContours.isHole(hole));
+		assertEquals(4, mContours.getCount(hole));
+		assertCorners(mContours, hole);
+	}
+
+	@Test
+	public void onlyCornersAreKept() {
+		// Like CHAIN_APPROX_SIMPLE, which keeps a point only where the direction changes (also between the last and the first point)
+		Random random = new Random(2);
+		for (int n = 0; n < 200; ++n) {
+			byte[] image = randomShapes(random, n % 2 == 1);
+			if (n % 4 == 0) {
+				TestImages.zhangSuenThinning(image, COLS, ROWS);
+			}
+			mContours.clear();
+			mTracer.find(image, COLS, 0, 0, COLS, ROWS, mContours);
+			for (int i = 0; i < mContours.size(); ++i) {
+				assertCorners(mContours, i);
+			}
+		}
+	}
+
+
+	/**
+	 * Checks that consecutive points of a contour are connected by straight chain code runs and that the direction changes at every point
+	 */
+	private static void assertCorners(ContourList contours, int i) {
+		int[] p = contours.getPoints();
+		int start = contours.getOffset(i);
+		int count = contours.getCount(i);
+		if (count < 2) {
+			return;
+		}
+		for (int k = 0; k < count; ++k) {
+			int prev = start + 2 * ((k + count - 1) % count);
+			int cur = start + 2 * k;
+			int next = start + 2 * ((k + 1) % count);
+			int dx0 = p[cur] - p[prev], dy0 = p[cur + 1] - p[prev + 1];
+			int dx1 = p[next] - p[cur], dy1 = p[next + 1] - p[cur + 1];
+			assertTrue(dx1 == 0 || dy1 == 0 || Math.abs(dx1) == Math.abs(dy1));
+			assertFalse("Point " + k + " of contour " + i + " lies on a straight run",
+					Integer.signum(dx0) == Integer.signum(dx1) && Integer.signum(dy0) == Integer.signum(dy1));
+		}
+	}
+
+	/**
+	 * Creates filled and empty ellipses, or noise; the image border stays empty
+	 */
+	private static byte[] randomShapes(Random random, boolean noise) {
+		byte[] image = new byte[COLS * ROWS];
+		for (int y = 1; y < ROWS - 1; ++y) {
+			for (int x = 1; x < COLS - 1; ++x) {
+				if (noise) {
+					image[y * COLS + x] = random.nextInt(100) < 45 ? (byte) -1 : 0;
+				}
+			}
+		}
+		int shapes = noise ? 0 : 1 + random.nextInt(6);
+		for (int k = 0; k < shapes; ++k) {
+			int cx = 5 + random.nextInt(COLS - 10);
+			int cy = 5 + random.nextInt(ROWS - 10);
+			int r = 2 + random.nextInt(12);
+			byte value = k > 0 && random.nextInt(3) == 0 ? 0 : (byte) -1;
+			for (int y = 1; y < ROWS - 1; ++y) {
+				for (int x = 1; x < COLS - 1; ++x) {
+					if ((x - cx) * (x - cx) + (y - cy) * (y - cy) * (1 + k % 2) <= r * r) {
+						image[y * COLS + x] = value;
+					}
+				}
+			}
+		}
+		return image;
+	}
+
+	private static void fillRect(byte[] image, int x, int y, int width, int height, byte value) {
+		for (int r = y; r < y + height; ++r) {
+			for (int c = x; c < x + width; ++c) {
+				image[r * COLS + c] = value;
+			}
+		}
+	}
+
+	/**
+	 * Counts 8-connected shapes or 4-connected holes (empty areas not connected to the image border) by flood filling
+	 */
+	private static int countComponents(byte[] image, boolean filled) {
+		boolean[] seen = new boolean[image.length];
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		int count = 0;
+		for (int s = 0; s < image.length; ++s) {
+			if (seen[s] || (image[s] != 0) != filled) {
+				continue;
+			}
+			boolean border = false;
+			seen[s] = true;
+			queue.add(s);
+			while (!queue.isEmpty()) {
+				int i = queue.poll();
+				int x = i % COLS, y = i / COLS;
+				border |= x == 0 || y == 0 || x == COLS - 1 || y == ROWS - 1;
+				for (int dy = -1; dy <= 1; ++dy) {
+					for (int dx = -1; dx <= 1; ++dx) {
+						int nx = x + dx, ny = y + dy;
+						if ((dx == 0 && dy == 0) || (!filled && dx != 0 && dy != 0) || nx < 0 || ny < 0 || nx >= COLS || ny >= ROWS) {
+							continue;
+						}
+						int j = ny * COLS + nx;
+						if (!seen[j] && (image[j] != 0) == filled) {
+							seen[j] = true;
+							queue.add(j);
+						}
+					}
+				}
+			}
+			if (filled || !border) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+}
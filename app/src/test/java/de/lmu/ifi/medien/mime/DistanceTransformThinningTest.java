@@ -0,0 +1,143 @@
+package de.lmu.ifi.medien.mime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that DistanceTransformThinning keeps the topology of the shapes (connected components and holes) and leaves lines that are one
+ * pixel wide (no 2x2 blocks).
+ */
+public class DistanceTransformThinningTest {
+
+	private static final int IMAGES = 500;
+
+	private final DistanceTransformThinning mThinning = new DistanceTransformThinning();
+	private final Random mRandom = new Random(5);
+
+
+	@Test
+	public void keepsComponentsAndHoles() {
+		for (int n = 0; n < IMAGES; ++n) {
+			int cols = 20 + mRandom.nextInt(150);
+			int rows = 20 + mRandom.nextInt(150);
+			byte[] image = TestImages.randomBlobs(mRandom, cols, rows);
+			clearBorder(image, cols, rows);
+			byte[] skeleton = image.clone();
+			mThinning.thin(skeleton, rows, cols);
+			assertEquals("Components of image " + n, countComponents(image, cols, rows, (byte) -1, true),
+					countComponents(skeleton, cols, rows, (byte) -1, true));
+			assertEquals("Holes of image " + n, countComponents(image, cols, rows, (byte) 0, false),
+					countComponents(skeleton, cols, rows, (byte) 0, false));
+		}
+	}
+
+	@Test
+	public void noBlocks() {
+		for (int n = 0; n < IMAGES; ++n) {
+			int cols = 20 + mRandom.nextInt(150);
+			int rows = 20 + mRandom.nextInt(150);
+			byte[] skeleton = TestImages.randomBlobs(mRandom, cols, rows);
+			mThinning.thin(skeleton, rows, cols);
+			for (int i = 0; i < skeleton.length - cols - 1; ++i) {
+				assertFalse("2x2 block in image " + n + " at " + (i % cols) + ", " + (i / cols), skeleton[i] == -1 && skeleton[i + 1] == -1
+						&& skeleton[i + cols] == -1 && skeleton[i + cols + 1] == -1);
+			}
+		}
+	}
+
+	@Test
+	public void diagonalCrossLosesBlock() {
+		// Four diagonal lines meeting at a 2x2 block, none of its pixels is simple
+		int size = 24, c = 11;
+		byte[] skeleton = new byte[size * size];
+		for (int k = 0; k < 8; ++k) {
+			skeleton[(c - k) * size + c - k] = skeleton[(c - k) * size + c + 1 + k] = -1;
+			skeleton[(c + 1 + k) * size + c - k] = skeleton[(c + 1 + k) * size + c + 1 + k] = -1;
+		}
+		mThinning.thin(skeleton, size, size);
+		assertEquals(1, countComponents(skeleton, size, size, (byte) -1, true));
+		assertEquals(0, countComponents(skeleton, size, size, (byte) 0, false));
+		assertEquals(4, countLineEnds(skeleton, size, size));
+		for (int i = 0; i < skeleton.length - size - 1; ++i) {
+			assertFalse(skeleton[i] == -1 && skeleton[i + 1] == -1 && skeleton[i + size] == -1 && skeleton[i + size + 1] == -1);
+		}
+	}
+
+
+	/**
+	 * Clears the image border, as the thinning does
+	 */
+	private static void clearBorder(byte[] image, int cols, int rows) {
+		for (int x = 0; x < cols; ++x) {
+			image[x] = image[(rows - 1) * cols + x] = 0;
+		}
+		for (int y = 0; y < rows; ++y) {
+			image[y * cols] = image[y * cols + cols - 1] = 0;
+		}
+	}
+
+	/**
+	 * Counts the filled pixels with exactly one filled neighbor
+	 */
+	private static int countLineEnds(byte[] image, int cols, int rows) {
+		int count = 0;
+		for (int y = 1; y < rows - 1; ++y) {
+			for (int x = 1; x < cols - 1; ++x) {
+				int neighbors = 0;
+				for (int dy = -1; dy <= 1; ++dy) {
+					for (int dx = -1; dx <= 1; ++dx) {
+						neighbors += (dx != 0 || dy != 0) && image[(y + dy) * cols + x + dx] == -1 ? 1 : 0;
+					}
+				}
+				count += image[y * cols + x] == -1 && neighbors == 1 ? 1 : 0;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the components of filled (8-connected) or empty (4-connected) pixels; for empty pixels the component at the image border isn't
+	 * counted, so the result is the number of holes
+	 */
+	private static int countComponents(byte[] image, int cols, int rows, byte value, boolean eightConnected) {
+		boolean[] visited = new boolean[image.length];
+		int[] stack = new int[image.length];
+		int count = 0;
+		for (int start = 0; start < image.length; ++start) {
+			if (image[start] != value || visited[start]) {
+				continue;
+			}
+			boolean border = false;
+			int top = 0;
+			stack[top++] = start;
+			visited[start] = true;
+			while (top > 0) {
+				int i = stack[--top];
+				int x = i % cols, y = i / cols;
+				border |= x == 0 || y == 0 || x == cols - 1 || y == rows - 1;
+				for (int dy = -1; dy <= 1; ++dy) {
+					for (int dx = -1; dx <= 1; ++dx) {
+						int nx = x + dx, ny = y + dy;
+						if ((dx == 0 && dy == 0) || (!eightConnected && dx != 0 && dy != 0) || nx < 0 || ny < 0 || nx >= cols || ny >= rows) {
+							continue;
+						}
+						int n = ny * cols + nx;
+						if (image[n] == value && !visited[n]) {
+							visited[n] = true;
+							stack[top++] = n;
+						}
+					}
+				}
+			}
+			if (eightConnected || !border) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,83 @@
+package de.lmu.ifi.medien.mime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests the drop policies of FrameQueue and waking up the consumer with close().
+ */
+public class FrameQueueTest {
+
+	@Test
+	public void dropOldestKeepsNewestItems() {
+		FrameQueue<Integer> queue = new FrameQueue<>(2, FrameQueue.DROP_OLDEST);
+		assertNull(queue.offer(1));
+		assertNull(queue.offer(2));
+		assertEquals(Integer.valueOf(1), queue.offer(3));
+		assertEquals(Integer.valueOf(2), queue.offer(4));
+		assertEquals(2, queue.size());
+		assertEquals(2, queue.getDropCount());
+		assertEquals(Integer.valueOf(3), queue.poll());
+		assertEquals(Integer.valueOf(4), queue.poll());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void dropNewestKeepsQueuedItems() {
+		FrameQueue<Integer> queue = new FrameQueue<>(2, FrameQueue.DROP_NEWEST);
+		Integer newest = 3;
+		assertNull(queue.offer(1));
+		assertNull(queue.offer(2));
+		assertSame(newest, queue.offer(newest));
+		assertEquals(2, queue.size());
+		assertEquals(1, queue.getDropCount());
+		assertEquals(Integer.valueOf(1), queue.take());
+		assertEquals(Integer.valueOf(2), queue.take());
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void wrapsAround() {
+		FrameQueue<Integer> queue = new FrameQueue<>(3, FrameQueue.DROP_OLDEST);
+		for (int i = 0; i < 10; ++i) {
+			queue.offer(i);
+			assertEquals(Integer.valueOf(i), queue.poll());
+		}
+		assertEquals(0, queue.getDropCount());
+	}
+
+	@Test
+	public void closeDrainsQueueThenReturnsNull() {
+		FrameQueue<Integer> queue = new FrameQueue<>(2, FrameQueue.DROP_OLDEST);
+		queue.offer(1);
+		queue.close();
+		assertEquals(Integer.valueOf(1), queue.take());
+		assertNull(queue.take());
+	}
+
+	@Test(timeout = 5000)
+	public void closeWakesWaitingConsumer() throws InterruptedException {
+		final FrameQueue<Integer> queue = new FrameQueue<>(1, FrameQueue.DROP_OLDEST);
+		final Object[] taken = { "not returned" };
+		Thread consumer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				taken[0] = queue.take();
+			}
+		});
+		consumer.start();
+		// Wait until the consumer is blocked in take()
+		while (consumer.getState() != Thread.State.WAITING) {
+			Thread.sleep(1);
+		}
+		queue.close();
+		consumer.join();
+		assertFalse(consumer.isAlive());
+		assertNull(taken[0]);
+	}
+
+}
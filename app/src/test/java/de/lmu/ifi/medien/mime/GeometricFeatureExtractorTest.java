@@ -0,0 +1,171 @@
+package de.lmu.ifi.medien.mime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+import org.opencv.core.Point;
+
+/**
+ * Compares convex hull, convexity defects and centroid of GeometricFeatureExtractor with their definitions, evaluated by brute force on random
+ * star-shaped contours.
+ */
+public class GeometricFeatureExtractorTest {
+
+	private final Random mRandom = new Random(22);
+	private final GeometricFeatureExtractor mExtractor = new GeometricFeatureExtractor();
+
+
+	@Test
+	public void rectangleHasNoDefects() {
+		// Corners and points on the edges, which are not part of the hull
+		int[] points = { 10, 10, 30, 10, 50, 10, 50, 40, 30, 40, 10, 40, 10, 25 };
+		mExtractor.setContour(points, 0, points.length / 2);
+		assertEquals(4, mExtractor.computeHull());
+		assertEquals(0, mExtractor.computeDefects());
+	}
+
+	@Test
+	public void sameAsDefinition() {
+		for (int n = 0; n < 200; ++n) {
+			int[] points = this.randomStar(10 + mRandom.nextInt(60), n % 2 == 0);
+			int count = points.length / 2;
+			mExtractor.setContour(points, 0, count);
+			int hullCount = mExtractor.computeHull();
+			assertEquals(hullEdges(points), hullCount);
+
+			// Every defect lies between two neighbouring hull points and has the depth of its deepest point
+			int defectCount = mExtractor.computeDefects();
+			int[] defects = mExtractor.getDefects();
+			boolean[] inDefect = new boolean[count];
+			int between = 0;
+			for (int i = 0; i < 4 * defectCount; i += 4) {
+				int start = defects[i], end = defects[i+1];
+				assertTrue(isHullEdge(points, start, end) || isHullEdge(points, end, start));
+				double depth = 0;
+				for (int j = (start + 1) % count; j != end; j = (j + 1) % count) {
+					depth = Math.max(depth, distance(points, start, end, j));
+					inDefect[j] = true;
+					++between;
+				}
+				assertEquals(Math.round(256 * depth), defects[i+3]);
+				assertEquals(depth, distance(points, start, end, defects[i+2]), 0);
+			}
+			// All other points are on the hull (corners or collinear points between them)
+			for (int j = 0; j < count; ++j) {
+				assertTrue(inDefect[j] || isOnHull(points, j));
+			}
+
+			// Filling all defects leaves the points on the hull
+			for (int i = 0; i < defectCount; ++i) {
+				mExtractor.fillDefect(i);
+			}
+			ContourList filled = new ContourList();
+			mExtractor.getFilledContour(filled);
+			assertEquals(count - between, filled.getCount(0));
+
+			Point centroid = new Point();
+			mExtractor.getCentroid(centroid);
+			assertCentroid(points, centroid);
+		}
+	}
+
+
+	/**
+	 * Creates a contour of points with distinct angles around a center, sorted by angle
+	 */
+	private int[] randomStar(int count, boolean clockwise) {
+		HashSet<Integer> angles = new HashSet<>();
+		while (angles.size() < count) {
+			angles.add(mRandom.nextInt(720));
+		}
+		int[] sorted = new int[count];
+		int k = 0;
+		for (int a = 0; a < 720; ++a) {
+			if (angles.contains(clockwise ? 719 - a : a)) {
+				sorted[k++] = clockwise ? 719 - a : a;
+			}
+		}
+		int[] points = new int[2 * count];
+		HashSet<Long> seen = new HashSet<>();
+		for (int i = 0; i < count; ++i) {
+			double angle = Math.toRadians(sorted[i] / 2.0);
+			double radius = 20 + mRandom.nextInt(80);
+			points[2*i] = (int) Math.round(100 + radius * Math.cos(angle));
+			points[2*i + 1] = (int) Math.round(100 + radius * Math.sin(angle));
+			if (!seen.add(((long) points[2*i] << 32) | points[2*i + 1])) {
+				return this.randomStar(count, clockwise);	// rounding produced a duplicate point
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * Counts the directed edges (a, b) with all points left of or on the segment; equals the number of hull points without collinear ones
+	 */
+	private static int hullEdges(int[] points) {
+		int edges = 0;
+		for (int a = 0; a < points.length / 2; ++a) {
+			for (int b = 0; b < points.length / 2; ++b) {
+				if (a != b && isHullEdge(points, a, b)) {
+					++edges;
+				}
+			}
+		}
+		return edges;
+	}
+
+	private static boolean isHullEdge(int[] points, int a, int b) {
+		long ax = points[2*a], ay = points[2*a + 1];
+		long bx = points[2*b], by = points[2*b + 1];
+		for (int c = 0; c < points.length / 2; ++c) {
+			long cx = points[2*c], cy = points[2*c + 1];
+			long cross = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+			if (cross < 0) {
+				return false;
+			}
+			// Collinear points must lie on the segment, otherwise (a, b) is only part of the edge
+			if (cross == 0 && (Math.min(ax, bx) > cx || cx > Math.max(ax, bx) || Math.min(ay, by) > cy || cy > Math.max(ay, by))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isOnHull(int[] points, int c) {
+		for (int a = 0; a < points.length / 2; ++a) {
+			for (int b = 0; b < points.length / 2; ++b) {
+				if (a != b && isHullEdge(points, a, b) && (c == a || distance(points, a, b, c) == 0)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static double distance(int[] points, int a, int b, int c) {
+		double x0 = points[2*a], y0 = points[2*a + 1];
+		double dx = points[2*b] - x0, dy = points[2*b + 1] - y0;
+		return Math.abs(-dy * (points[2*c] - x0) + dx * (points[2*c + 1] - y0)) / Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Checks the centroid against the area-weighted centroids of the triangles spanned with the first point
+	 */
+	private static void assertCentroid(int[] points, Point centroid) {
+		double area = 0, x = 0, y = 0;
+		for (int i = 1; i + 1 < points.length / 2; ++i) {
+			double a = ((double) points[2*i] - points[0]) * (points[2*i + 3] - points[1])
+					- ((double) points[2*i + 2] - points[0]) * (points[2*i + 1] - points[1]);
+			area += a;
+			x += a * (points[0] + points[2*i] + points[2*i + 2]) / 3;
+			y += a * (points[1] + points[2*i + 1] + points[2*i + 3]) / 3;
+		}
+		assertEquals(x / area, centroid.x, 1e-6);
+		assertEquals(y / area, centroid.y, 1e-6);
+	}
+
+}
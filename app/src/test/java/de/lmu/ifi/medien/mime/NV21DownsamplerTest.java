@@ -0,0 +1,155 @@
+package de.lmu.ifi.medien.mime;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares NV21Downsampler with a floating point reference: NV21 averaged over each block, converted to RGB (ITU-R BT.601, like
+ * COLOR_YUV2RGB_NV21) and then to HSV (like COLOR_RGB2HSV). Frames are read through NV21FileSource, as recorded dumps would be.
+ */
+public class NV21DownsamplerTest {
+
+	private static final int H_TOLERANCE = 1;
+	private static final int S_TOLERANCE = 6;
+	private static final int V_TOLERANCE = 1;
+
+	private final Random mRandom = new Random(8);
+
+
+	@Test
+	public void matchesReferenceConversion() throws IOException {
+		int[][] sizes = { { 64, 48, 1 }, { 64, 48, 2 }, { 160, 120, 4 }, { 98, 74, 3 }, { 640, 480, 4 } };
+		NV21Downsampler downsampler = new NV21Downsampler();
+		for (int[] size : sizes) {
+			int width = size[0], height = size[1], factor = size[2];
+			byte[] frames = new byte[3 * NV21Downsampler.getBufferSize(width, height)];
+			this.randomFrames(frames, width, height, factor);
+			NV21FileSource source = new NV21FileSource(new ByteArrayInputStream(frames), width, height);
+			byte[] hsv = new byte[(width / factor) * (height / factor) * NV21Downsampler.CHANNELS];
+			for (int f = 0; f < 3; ++f) {
+				assertTrue(source.next());
+				byte[] nv21 = source.getNV21(null);
+				downsampler.toHSV(nv21, width, height, factor, hsv);
+				assertClose(reference(nv21, width, height, factor), hsv, width / factor);
+			}
+			assertFalse(source.next());
+			source.close();
+		}
+	}
+
+
+	/**
+	 * Fills frames with blocks of random colors (about a third of them uniform, the others with noise), like a smooth camera image
+	 */
+	private void randomFrames(byte[] frames, int width, int height, int factor) {
+		int size = NV21Downsampler.getBufferSize(width, height);
+		for (int offset = 0; offset < frames.length; offset += size) {
+			this.randomFrame(frames, offset, width, height, factor);
+		}
+	}
+
+	private void randomFrame(byte[] frame, int offset, int width, int height, int factor) {
+		// Chroma blocks are at least 2x2 pixels, like the chroma samples
+		int block = Math.max(2, factor);
+		int uvStride = 2 * ((width + 1) / 2);
+		for (int by = 0; by < height; by += block) {
+			for (int bx = 0; bx < width; bx += block) {
+				int y0 = 16 + mRandom.nextInt(220), u0 = 16 + mRandom.nextInt(225), v0 = 16 + mRandom.nextInt(225);
+				int noise = mRandom.nextInt(3) == 0 ? 0 : 1 + mRandom.nextInt(12);
+				for (int y = by; y < Math.min(height, by + block); ++y) {
+					for (int x = bx; x < Math.min(width, bx + block); ++x) {
+						frame[offset + y * width + x] = (byte) clamp(y0 + jitter(noise));
+						if ((x & 1) == 0 && (y & 1) == 0) {
+							int uv = offset + width * height + (y >> 1) * uvStride + x;
+							frame[uv] = (byte) clamp(v0 + jitter(noise));
+							frame[uv + 1] = (byte) clamp(u0 + jitter(noise));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private int jitter(int noise) {
+		return noise == 0 ? 0 : mRandom.nextInt(2 * noise + 1) - noise;
+	}
+
+	/**
+	 * Floating point reference of NV21Downsampler.toHSV()
+	 */
+	private static int[] reference(byte[] nv21, int width, int height, int factor) {
+		int scaledWidth = width / factor, scaledHeight = height / factor;
+		int uvStride = 2 * ((width + 1) / 2);
+		int[] hsv = new int[scaledWidth * scaledHeight * 3];
+		for (int sy = 0; sy < scaledHeight; ++sy) {
+			for (int sx = 0; sx < scaledWidth; ++sx) {
+				double yy = 0, u = 0, v = 0;
+				for (int y = sy * factor; y < (sy + 1) * factor; ++y) {
+					for (int x = sx * factor; x < (sx + 1) * factor; ++x) {
+						int uv = width * height + (y >> 1) * uvStride + (x & ~1);
+						yy += nv21[y * width + x] & 0xFF;
+						v += nv21[uv] & 0xFF;
+						u += nv21[uv + 1] & 0xFF;
+					}
+				}
+				int area = factor * factor;
+				yy = Math.max(0, Math.round(yy / area) - 16) * 1.164;
+				u = Math.round(u / area) - 128;
+				v = Math.round(v / area) - 128;
+				int r = clamp((int) Math.round(yy + 1.596 * v));
+				int g = clamp((int) Math.round(yy - 0.813 * v - 0.391 * u));
+				int b = clamp((int) Math.round(yy + 2.018 * u));
+
+				int max = Math.max(r, Math.max(g, b));
+				int min = Math.min(r, Math.min(g, b));
+				double diff = max - min;
+				double s = max == 0 ? 0 : 255.0 * diff / max;
+				double h;
+				if (diff == 0) {
+					h = 0;	// gray, OpenCV sets H to 0
+				}
+				else if (max == r) {
+					h = 60.0 * (g - b) / diff;
+				}
+				else if (max == g) {
+					h = 120.0 + 60.0 * (b - r) / diff;
+				}
+				else {
+					h = 240.0 + 60.0 * (r - g) / diff;
+				}
+				if (h < 0) {
+					h += 360.0;
+				}
+				int i = 3 * (sy * scaledWidth + sx);
+				hsv[i] = (int) Math.round(h / 2.0) % 180;
+				hsv[i + 1] = (int) Math.round(s);
+				hsv[i + 2] = max;
+			}
+		}
+		return hsv;
+	}
+
+	private static void assertClose(int[] expected, byte[] actual, int scaledWidth) {
+		for (int i = 0; i < expected.length; i += 3) {
+			int h = actual[i] & 0xFF, s = actual[i + 1] & 0xFF, v = actual[i + 2] & 0xFF;
+			int dh = Math.abs(h - expected[i]);
+			dh = Math.min(dh, 180 - dh);
+			if (dh > H_TOLERANCE || Math.abs(s - expected[i + 1]) > S_TOLERANCE || Math.abs(v - expected[i + 2]) > V_TOLERANCE) {
+				fail(String.format("Pixel (%d, %d): expected HSV (%d, %d, %d), was (%d, %d, %d)", (i / 3) % scaledWidth, (i / 3) / scaledWidth,
+						expected[i], expected[i + 1], expected[i + 2], h, s, v));
+			}
+		}
+	}
+
+	private static int clamp(int value) {
+		return value < 0 ? 0 : (value > 255 ? 255 : value);
+	}
+
+}
@@ -0,0 +1,67 @@
+package de.lmu.ifi.medien.mime;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Compares the stripes of ParallelSegmenter with processing the whole frame at once.
+ */
+public class ParallelSegmenterTest {
+
+	private static final int WIDTH = 160;
+	private static final int HEIGHT = 120;
+
+	private final Random mRandom = new Random(3);
+	private final ParallelSegmenter mSegmenter = new ParallelSegmenter(3);
+
+
+	@After
+	public void shutdown() {
+		mSegmenter.shutdown();
+	}
+
+	@Test
+	public void subtractSameAsSerial() {
+		BackgroundSubtractionKernel kernel = new BackgroundSubtractionKernel();
+		kernel.update(20, 30, 40, 10, 160, 100, 1, 1, 1, 3, 3);
+		byte[] input = new byte[WIDTH * HEIGHT * 3];
+		byte[] background = new byte[WIDTH * HEIGHT * 3];
+		mRandom.nextBytes(input);
+		mRandom.nextBytes(background);
+
+		byte[] serial = new byte[WIDTH * HEIGHT];
+		kernel.apply(input, background, serial, WIDTH, 3, 0, HEIGHT);
+		byte[] parallel = new byte[WIDTH * HEIGHT];
+		mSegmenter.subtract(kernel, input, background, parallel, WIDTH, HEIGHT, 3);
+		assertArrayEquals(serial, parallel);
+	}
+
+	@Test
+	public void openSameAsSerial() {
+		for (int kernelSize = 3; kernelSize <= 7; kernelSize += 2) {
+			for (int n = 0; n < 20; ++n) {
+				byte[] serial = TestImages.randomBlobs(mRandom, WIDTH, HEIGHT);
+				byte[] parallel = serial.clone();
+				TestImages.open(serial, WIDTH, HEIGHT, kernelSize);
+				mSegmenter.open(parallel, new byte[parallel.length], WIDTH, HEIGHT, kernelSize);
+				assertArrayEquals(serial, parallel);
+			}
+		}
+	}
+
+	@Test
+	public void thinSameAsSerial() {
+		for (int n = 0; n < 20; ++n) {
+			byte[] serial = TestImages.randomBlobs(mRandom, WIDTH, HEIGHT);
+			byte[] parallel = serial.clone();
+			TestImages.zhangSuenThinning(serial, WIDTH, HEIGHT);
+			mSegmenter.thin(parallel, new byte[parallel.length], WIDTH, HEIGHT);
+			assertArrayEquals(serial, parallel);
+		}
+	}
+
+}
@@ -0,0 +1,148 @@
+package de.lmu.ifi.medien.mime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import de.lmu.ifi.medien.mime.HandDetector.PoseFeatures;
+
+/**
+ * Checks that the shipped decision tree (res/raw/pose_tree.txt) makes the same decisions as the if/else cascade it replaced in
+ * PoseRecognizer.recognize(), and that malformed trees are rejected.
+ */
+public class PoseDecisionTreeTest {
+
+	private static final String SHIPPED_TREE = "src/main/res/raw/pose_tree.txt";
+
+	private static final int[] ALL = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11 };
+
+
+	@Test
+	public void shippedTreeSameAsCascade() throws IOException {
+		PoseDecisionTree tree = PoseDecisionTree.read(new FileInputStream(SHIPPED_TREE));
+		int[] directions = { PoseFeatures.NO_DIRECTION, PoseFeatures.HORIZONTAL, PoseFeatures.VERTICAL };
+		int[][] boxes = { { 10, 20 }, { 20, 10 }, { 15, 15 } };
+		int combinations = 0;
+		for (int fingers = 0; fingers <= 5; ++fingers) {
+			for (int holes = 0; holes <= 2; ++holes) {
+				for (int flags = 0; flags < 32; ++flags) {
+					for (int direction : directions) {
+						for (int[] box : boxes) {
+							boolean narrow = (flags & 1) != 0, u = (flags & 2) != 0, top = (flags & 4) != 0, left = (flags & 8) != 0;
+							boolean skeleton = (flags & 16) != 0;
+							double[] values = { fingers, holes, narrow ? 1 : 0, u ? 1 : 0, direction, top ? 1 : 0, left ? 1 : 0, skeleton ? 1 : 0,
+									skeleton ? box[0] : 0, skeleton ? box[1] : 0 };
+							int leaf = tree.evaluate(values);
+							Object expected = cascade(fingers, holes, narrow, u, direction, top, left, skeleton, box[0], box[1]);
+							if (expected instanceof Integer) {
+								assertEquals(expected, tree.getPose(leaf));
+							}
+							else {
+								assertEquals(PoseRecognizer.NO_POSE, tree.getPose(leaf));
+								int[] candidates = tree.getCandidates(leaf).clone();
+								Arrays.sort(candidates);
+								assertArrayEquals((int[]) expected, candidates);
+							}
+							++combinations;
+						}
+					}
+				}
+			}
+		}
+		assertEquals(6 * 3 * 32 * 3 * 3, combinations);
+	}
+
+	@Test(expected = IOException.class)
+	public void unknownFeatureFails() throws IOException {
+		PoseDecisionTree.parse(new StringReader("root = fingers == 0 ? pose O : pose I"));
+	}
+
+	@Test(expected = IOException.class)
+	public void unknownPoseFails() throws IOException {
+		PoseDecisionTree.parse(new StringReader("root = fingerDefects == 0 ? pose X : pose I"));
+	}
+
+	@Test(expected = IOException.class)
+	public void unknownLabelFails() throws IOException {
+		PoseDecisionTree.parse(new StringReader("root = fingerDefects == 0 ? other : pose I"));
+	}
+
+	@Test(expected = IOException.class)
+	public void cycleFails() throws IOException {
+		PoseDecisionTree.parse(new StringReader("a = fingerDefects == 0 ? b : pose I\nb = numHoles >= 1 ? a : pose O"));
+	}
+
+
+	/**
+	 * The heuristics of PoseRecognizer.recognize() before the decision tree
+	 * @return Pose (Integer) or sorted candidates of the $N recognizer (int[])
+	 */
+	private static Object cascade(int fingerDefects, int numHoles, boolean narrowVertAngle, boolean uShape, int direction, boolean topScreen,
+			boolean leftScreen, boolean hasSkeleton, int width, int height) {
+		if (fingerDefects == 0 && numHoles >= 1) {
+			return PoseRecognizer.POSE_O;
+		}
+		else if (fingerDefects == 0) {
+			if (hasSkeleton) {
+				return width > height ? PoseRecognizer.POSE_MINUS : PoseRecognizer.POSE_I;
+			}
+			return candidates(PoseRecognizer.POSE_I, PoseRecognizer.POSE_MINUS);
+		}
+		else if (fingerDefects <= 1) {
+			if (numHoles >= 1) {
+				return PoseRecognizer.POSE_OK;
+			}
+			else if (narrowVertAngle) {
+				return PoseRecognizer.POSE_V;
+			}
+			else if (uShape) {
+				return PoseRecognizer.POSE_U;
+			}
+			else if (topScreen && leftScreen) {
+				return PoseRecognizer.POSE_TD_L;
+			}
+			else if (direction == PoseFeatures.HORIZONTAL) {
+				return candidates(PoseRecognizer.POSE_C, PoseRecognizer.POSE_MINUS);
+			}
+			else if (!topScreen && leftScreen) {
+				return PoseRecognizer.POSE_L;
+			}
+			else if (!topScreen && !leftScreen) {
+				return PoseRecognizer.POSE_INV_L;
+			}
+			return candidates(PoseRecognizer.POSE_L, PoseRecognizer.POSE_INV_L, PoseRecognizer.POSE_TD_L, PoseRecognizer.POSE_U);
+		}
+		else if (fingerDefects <= 2) {
+			if (direction == PoseFeatures.HORIZONTAL) {
+				return PoseRecognizer.POSE_E;
+			}
+			else if (topScreen && leftScreen) {
+				return candidates(PoseRecognizer.POSE_TD_L, PoseRecognizer.POSE_W);
+			}
+			else if (!topScreen && leftScreen) {
+				return candidates(PoseRecognizer.POSE_L, PoseRecognizer.POSE_W);
+			}
+			else if (!topScreen && !leftScreen) {
+				return candidates(PoseRecognizer.POSE_INV_L, PoseRecognizer.POSE_W);
+			}
+			return candidates(PoseRecognizer.POSE_L, PoseRecognizer.POSE_INV_L, PoseRecognizer.POSE_TD_L, PoseRecognizer.POSE_W);
+		}
+		else if (fingerDefects == 3) {
+			return direction == PoseFeatures.HORIZONTAL ? PoseRecognizer.POSE_E : PoseRecognizer.POSE_W;
+		}
+		return ALL;
+	}
+
+	private static int[] candidates(int... poses) {
+		int[] sorted = poses.clone();
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+}
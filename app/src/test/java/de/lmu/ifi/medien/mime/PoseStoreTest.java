@@ -0,0 +1,151 @@
+package de.lmu.ifi.medien.mime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencv.core.Point;
+
+import de.lmu.ifi.medien.mime.$N.Multistroke;
+import de.lmu.ifi.medien.mime.$N.Unistroke;
+
+/**
+ * Writes poses with PoseStore and reads them back; coordinates are stored as float.
+ */
+public class PoseStoreTest {
+
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	private final Random mRandom = new Random(11);
+
+
+	@Test
+	public void roundTrip() throws IOException {
+		ArrayList<Pose> poses = this.randomPoses(20);
+		File file = mFolder.newFile(PoseStore.FILENAME);
+		PoseStore.write(file, poses, true);
+		assertPosesEqual(poses, PoseStore.read(file));
+	}
+
+	@Test
+	public void migrateLegacyFile() throws Exception {
+		ArrayList<Pose> poses = this.randomPoses(10);
+		File legacyFile = mFolder.newFile(".saved_poses");
+		ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(legacyFile));
+		try {
+			oos.writeInt(poses.size());
+			for (Pose pose : poses) {
+				oos.writeObject(pose);
+			}
+		}
+		finally {
+			oos.close();
+		}
+
+		File file = new File(mFolder.getRoot(), PoseStore.FILENAME);
+		ArrayList<Pose> migrated = PoseStore.migrate(legacyFile, file, true);
+		assertFalse(legacyFile.exists());
+		for (int i = 1; i < migrated.size(); ++i) {
+			assertEquals(true, migrated.get(i - 1).getType() <= migrated.get(i).getType());
+		}
+		assertPosesEqual(migrated, PoseStore.read(file));
+	}
+
+	@Test(expected = IOException.class)
+	public void truncatedFileFails() throws IOException {
+		File file = mFolder.newFile(PoseStore.FILENAME);
+		PoseStore.write(file, this.randomPoses(5), true);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(raf.length() / 2);
+		}
+		finally {
+			raf.close();
+		}
+		PoseStore.read(file);
+	}
+
+	@Test(expected = IOException.class)
+	public void otherFileFails() throws IOException {
+		File file = mFolder.newFile(PoseStore.FILENAME);
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			fos.write(new byte[64]);
+		}
+		finally {
+			fos.close();
+		}
+		PoseStore.read(file);
+	}
+
+
+	private ArrayList<Pose> randomPoses(int count) {
+		ArrayList<Pose> poses = new ArrayList<>();
+		for (int i = 0; i < count; ++i) {
+			Point[] stroke = new Point[20 + mRandom.nextInt(100)];
+			for (int k = 0; k < stroke.length; ++k) {
+				stroke[k] = new Point(mRandom.nextInt(200), mRandom.nextInt(200));
+			}
+			Pose pose = new Pose();
+			pose.setType(mRandom.nextInt(12));
+			pose.setMultistroke(new Multistroke(pose.getType(), true, new Point[][] { stroke }));
+			poses.add(pose);
+		}
+		return poses;
+	}
+
+	private static void assertPosesEqual(ArrayList<Pose> expected, ArrayList<Pose> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); ++i) {
+			Multistroke e = expected.get(i).getMultistroke();
+			Multistroke a = actual.get(i).getMultistroke();
+			assertEquals(expected.get(i).getType(), actual.get(i).getType());
+			assertEquals(e.getType(), a.getType());
+			assertEquals(e.getNumStrokes(), a.getNumStrokes());
+
+			Point[][] eStrokes = e.getOrigStrokes();
+			Point[][] aStrokes = a.getOrigStrokes();
+			assertEquals(eStrokes.length, aStrokes.length);
+			for (int s = 0; s < eStrokes.length; ++s) {
+				assertArrayEquals(toFloat(eStrokes[s]), toFloat(aStrokes[s]), 0);
+			}
+
+			Unistroke[] eUnistrokes = e.getUnistrokes();
+			Unistroke[] aUnistrokes = a.getUnistrokes();
+			assertEquals(eUnistrokes.length, aUnistrokes.length);
+			for (int u = 0; u < eUnistrokes.length; ++u) {
+				double[] points = eUnistrokes[u].getPackedPoints();
+				double[] read = aUnistrokes[u].getPackedPoints();
+				assertEquals(points.length, read.length);
+				for (int k = 0; k < points.length; ++k) {
+					assertEquals((float) points[k], read[k], 0);
+				}
+				assertEquals((float) eUnistrokes[u].getStartUnitVector().x, aUnistrokes[u].getStartUnitVector().x, 0);
+				assertEquals((float) eUnistrokes[u].getStartUnitVector().y, aUnistrokes[u].getStartUnitVector().y, 0);
+				assertArrayEquals(eUnistrokes[u].getVector(), aUnistrokes[u].getVector(), 1e-6);
+			}
+		}
+	}
+
+	private static double[] toFloat(Point[] points) {
+		double[] values = new double[2 * points.length];
+		for (int i = 0; i < points.length; ++i) {
+			values[2 * i] = (float) points[i].x;
+			values[2 * i + 1] = (float) points[i].y;
+		}
+		return values;
+	}
+
+}
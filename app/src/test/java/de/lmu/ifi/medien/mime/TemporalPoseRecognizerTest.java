@@ -0,0 +1,151 @@
+package de.lmu.ifi.medien.mime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.lmu.ifi.medien.mime.HandDetector.PoseFeatures;
+import de.lmu.ifi.medien.mime.PoseRecognizer.Result;
+
+/**
+ * Tests voting, early commit, hysteresis and the reuse of unchanged frames of TemporalPoseRecognizer, with a scripted per-frame recognizer
+ * instead of PoseRecognizer (features without skeleton).
+ */
+public class TemporalPoseRecognizerTest {
+
+	private static final int WINDOW = 8;
+	private static final int A = PoseRecognizer.POSE_O;
+	private static final int B = PoseRecognizer.POSE_V;
+	private static final int C = PoseRecognizer.POSE_L;
+
+	private int mNextPose;
+	private int mCalls;
+	private int mFrame;
+	private TemporalPoseRecognizer mRecognizer;
+
+
+	@Before
+	public void createRecognizer() {
+		mRecognizer = new TemporalPoseRecognizer(new TemporalPoseRecognizer.FrameRecognizer() {
+			@Override
+			public int recognizePose(PoseFeatures pf) {
+				++mCalls;
+				return mNextPose;
+			}
+		}, WINDOW);
+	}
+
+	@Test
+	public void firstFrameCommits() {
+		Result result = this.frame(A);
+		assertEquals(A, result.pose);
+		assertEquals(1.0, result.confidence, 0);
+	}
+
+	@Test
+	public void earlyCommitAfterConsecutiveFrames() {
+		this.frames(A, WINDOW);
+		assertEquals(A, this.frame(B).pose);
+		assertEquals(A, this.frame(B).pose);
+		Result result = this.frame(B);
+		assertEquals(B, result.pose);
+		assertEquals(3.0 / WINDOW, result.confidence, 1e-9);
+	}
+
+	@Test
+	public void hysteresisKeepsStablePose() {
+		this.frames(A, WINDOW);
+		// Neither B nor C gets the majority or three frames in a row, A stays even without votes
+		for (int i = 0; i < 2 * WINDOW; ++i) {
+			Result result = this.frame(i % 2 == 0 ? B : C);
+			assertEquals(A, result.pose);
+		}
+		assertEquals(0.0, mRecognizer.getConfidence(), 0);
+	}
+
+	@Test
+	public void majorityCommitsWithoutConsecutiveFrames() {
+		this.frames(A, WINDOW);
+		int[] poses = { B, B, C, B, B, C };
+		for (int pose : poses) {
+			assertEquals(A, this.frame(pose).pose);
+		}
+		// Window is now A B B C B B C B: 5 of 8 frames are B
+		Result result = this.frame(B);
+		assertEquals(B, result.pose);
+		assertEquals(5.0 / WINDOW, result.confidence, 1e-9);
+	}
+
+	@Test
+	public void resetForgetsFrames() {
+		this.frames(A, WINDOW);
+		mRecognizer.reset();
+		assertEquals(PoseRecognizer.NO_POSE, mRecognizer.getStablePose());
+		assertEquals(B, this.frame(B).pose);
+	}
+
+	@Test
+	public void resultIsReused() {
+		assertSame(this.frame(A), this.frame(B));
+	}
+
+	@Test
+	public void unchangedFramesReusePose() {
+		PoseFeatures pf = new PoseFeatures();
+		pf.fingerDefects = 1;
+		pf.addDefect(80, 120);
+		mNextPose = A;
+		mRecognizer.recognize(pf);
+		mNextPose = B;
+		for (int i = 0; i < 5; ++i) {
+			assertEquals(A, mRecognizer.recognize(pf).pose);
+		}
+		assertEquals(1, mCalls);
+		assertEquals(5, mRecognizer.getSkippedFrames());
+		assertEquals(6, mRecognizer.getFrames());
+	}
+
+	@Test
+	public void uShapeIsCompared() {
+		PoseFeatures pf = new PoseFeatures();
+		pf.fingerDefects = 1;
+		pf.addDefect(80, 120);
+		mRecognizer.recognize(pf);
+		// Same number of defects, direction and flags, but now a U
+		PoseFeatures u = new PoseFeatures();
+		u.fingerDefects = 1;
+		u.addDefect(80, 75);
+		mRecognizer.recognize(u);
+		assertEquals(2, mCalls);
+	}
+
+	@Test
+	public void recognizesAtLeastEveryFewFrames() {
+		PoseFeatures pf = new PoseFeatures();
+		for (int i = 0; i < 100; ++i) {
+			mRecognizer.recognize(pf);
+		}
+		// Recognized, then reused up to 15 times in a row
+		assertEquals((100 + 15) / 16, mCalls);
+	}
+
+
+	/**
+	 * Passes a frame whose features differ from the previous one, so its pose is recognized
+	 */
+	private Result frame(int pose) {
+		PoseFeatures pf = new PoseFeatures();
+		pf.fingerDefects = mFrame++ % 2;
+		mNextPose = pose;
+		return mRecognizer.recognize(pf);
+	}
+
+	private void frames(int pose, int count) {
+		for (int i = 0; i < count; ++i) {
+			this.frame(pose);
+		}
+	}
+
+}
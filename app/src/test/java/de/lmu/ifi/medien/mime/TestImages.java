@@ -0,0 +1,90 @@
+package de.lmu.ifi.medien.mime;
+
+import java.util.Random;
+
+/**
+ * Synthetic binary images (0 = empty, -1 = filled) and reference implementations shared by the unit tests.
+ */
+public class TestImages {
+
+	/**
+	 * Creates an image of random filled ellipses (some of them cut out of others) and a little noise
+	 * @param random Random generator
+	 * @param cols Number of columns
+	 * @param rows Number of rows
+	 * @return Image pixels
+	 */
+	public static byte[] randomBlobs(Random random, int cols, int rows) {
+		byte[] image = new byte[cols * rows];
+		int blobs = 1 + random.nextInt(5);
+		for (int k = 0; k < blobs; ++k) {
+			int cx = random.nextInt(cols);
+			int cy = random.nextInt(rows);
+			int rx = 3 + random.nextInt(cols / 3);
+			int ry = 3 + random.nextInt(rows / 3);
+			byte value = k > 0 && random.nextInt(3) == 0 ? 0 : (byte) -1;
+			for (int y = 0; y < rows; ++y) {
+				for (int x = 0; x < cols; ++x) {
+					double dx = (double) (x - cx) / rx, dy = (double) (y - cy) / ry;
+					if (dx * dx + dy * dy <= 1) {
+						image[y * cols + x] = value;
+					}
+				}
+			}
+		}
+		for (int n = cols * rows / 100; n > 0; --n) {
+			image[random.nextInt(cols * rows)] ^= -1;
+		}
+		return image;
+	}
+
+	/**
+	 * Zhang-Suen thinning on the whole image, like OpenCVUtil.zhangSuenThinning() without Mats
+	 * @param image Image pixels, thinned in-place
+	 * @param cols Number of columns
+	 * @param rows Number of rows
+	 */
+	public static void zhangSuenThinning(byte[] image, int cols, int rows) {
+		byte[] marker = new byte[image.length];
+		boolean changed;
+		do {
+			changed = false;
+			for (int step = 0; step <= 1; ++step) {
+				OpenCVUtil.zhangSuenMark(image, marker, rows, cols, step, 0, rows);
+				changed |= OpenCVUtil.zhangSuenEliminate(image, marker, 0, image.length);
+			}
+		}
+		while (changed);
+	}
+
+	/**
+	 * Morphological opening with a square kernel; pixels outside the image are ignored, like Imgproc.morphologyEx() with the default border
+	 * @param image Image pixels, opened in-place
+	 * @param cols Number of columns
+	 * @param rows Number of rows
+	 * @param kernelSize Side length of the kernel (odd)
+	 */
+	public static void open(byte[] image, int cols, int rows, int kernelSize) {
+		byte[] eroded = morph(image, cols, rows, kernelSize / 2, true);
+		System.arraycopy(morph(eroded, cols, rows, kernelSize / 2, false), 0, image, 0, image.length);
+	}
+
+
+	private static byte[] morph(byte[] src, int cols, int rows, int radius, boolean erode) {
+		byte[] dest = new byte[src.length];
+		for (int y = 0; y < rows; ++y) {
+			for (int x = 0; x < cols; ++x) {
+				int value = erode ? 255 : 0;
+				for (int ny = Math.max(0, y - radius); ny <= Math.min(rows - 1, y + radius); ++ny) {
+					for (int nx = Math.max(0, x - radius); nx <= Math.min(cols - 1, x + radius); ++nx) {
+						int v = src[ny * cols + nx] & 0xFF;
+						value = erode ? Math.min(value, v) : Math.max(value, v);
+					}
+				}
+				dest[y * cols + x] = (byte) value;
+			}
+		}
+		return dest;
+	}
+
+}
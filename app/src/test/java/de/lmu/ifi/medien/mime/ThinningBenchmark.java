@@ -0,0 +1,59 @@
+package de.lmu.ifi.medien.mime;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Benchmark of ZhangSuenThinning and LookupTableThinning against the iterative Zhang-Suen thinning of OpenCVUtil (TestImages without Mats)
+ * on random blob images of the detection size (160x120) and of a larger size. Run as a Java application on a desktop JVM; prints the time
+ * per image and the speedup.
+ */
+public class ThinningBenchmark {
+
+	private static final int[][] SIZES = { { 160, 120 }, { 320, 240 } };
+	private static final int IMAGES = 50;
+	private static final int RUNS = 10;
+
+
+	public static void main(String[] args) {
+		Random random = new Random(7);
+		for (int[] size : SIZES) {
+			int cols = size[0], rows = size[1];
+			byte[][] images = new byte[IMAGES][];
+			byte[][] expected = new byte[IMAGES][];
+			for (int i = 0; i < IMAGES; ++i) {
+				images[i] = TestImages.randomBlobs(random, cols, rows);
+			}
+
+			double reference = Double.POSITIVE_INFINITY;
+			for (int run = 0; run < RUNS; ++run) {
+				long start = System.nanoTime();
+				for (int i = 0; i < IMAGES; ++i) {
+					expected[i] = images[i].clone();
+					TestImages.zhangSuenThinning(expected[i], cols, rows);
+				}
+				reference = Math.min(reference, (System.nanoTime() - start) / 1e6 / IMAGES);
+			}
+			System.out.printf("%dx%d iterative: %.3f ms per image%n", cols, rows, reference);
+
+			for (Object[] algorithm : ThinningTest.algorithms()) {
+				ThinningTest.Thinning thinning = (ThinningTest.Thinning) algorithm[1];
+				double best = Double.POSITIVE_INFINITY;
+				boolean same = true;
+				byte[] skeleton = new byte[cols * rows];
+				for (int run = 0; run < RUNS; ++run) {
+					long start = System.nanoTime();
+					for (int i = 0; i < IMAGES; ++i) {
+						System.arraycopy(images[i], 0, skeleton, 0, skeleton.length);
+						thinning.thin(skeleton, rows, cols);
+						same &= Arrays.equals(expected[i], skeleton);
+					}
+					best = Math.min(best, (System.nanoTime() - start) / 1e6 / IMAGES);
+				}
+				System.out.printf("%dx%d %s: %.3f ms per image, speedup %.1fx%s%n", cols, rows, algorithm[0], best, reference / best,
+						same ? "" : ", DIFFERENT SKELETONS");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package de.lmu.ifi.medien.mime;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Compares the incremental ZhangSuenThinning and the table driven LookupTableThinning with the iterative implementation of OpenCVUtil.
+ */
+@RunWith(Parameterized.class)
+public class ThinningTest {
+
+	/**
+	 * Common interface of the tested thinning algorithms
+	 */
+	interface Thinning {
+		void thin(byte[] buffer, int rows, int cols);
+	}
+
+	private final Thinning mThinning;
+	private final Random mRandom = new Random(5);
+
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> algorithms() {
+		final ZhangSuenThinning zhangSuen = new ZhangSuenThinning();
+		final LookupTableThinning lookupTable = new LookupTableThinning();
+		return Arrays.asList(new Object[][] {
+			{ "ZhangSuenThinning", new Thinning() {
+				@Override
+				public void thin(byte[] buffer, int rows, int cols) {
+					zhangSuen.thin(buffer, rows, cols);
+				}
+			} },
+			{ "LookupTableThinning", new Thinning() {
+				@Override
+				public void thin(byte[] buffer, int rows, int cols) {
+					lookupTable.thin(buffer, rows, cols);
+				}
+			} }
+		});
+	}
+
+	public ThinningTest(String name, Thinning thinning) {
+		mThinning = thinning;
+	}
+
+	@Test
+	public void sameSkeletonAsIterative() {
+		for (int n = 0; n < 100; ++n) {
+			int cols = 20 + mRandom.nextInt(150);
+			int rows = 20 + mRandom.nextInt(150);
+			byte[] expected = TestImages.randomBlobs(mRandom, cols, rows);
+			byte[] skeleton = expected.clone();
+			TestImages.zhangSuenThinning(expected, cols, rows);
+			mThinning.thin(skeleton, rows, cols);
+			assertArrayEquals(expected, skeleton);
+		}
+	}
+
+}